@@ -0,0 +1,368 @@
+package com.bankshield.api.component;
+
+import com.bankshield.api.config.AccessLogBufferConfig;
+import com.bankshield.api.entity.AccessDecisionRollup;
+import com.bankshield.api.entity.AccessLog;
+import com.bankshield.api.mapper.AccessDecisionRollupMapper;
+import com.bankshield.api.mapper.AccessLogMapper;
+import com.bankshield.common.utils.JsonlSpillStore;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 访问决策日志写入缓冲
+ * 鉴权线程只做内存计数和入队：每次决策都累加到按小时/结果/策略/规则/用户聚合的计数器，
+ * 明细日志DENY全量、ALLOW按采样率入队，由单刷写线程合并为多行INSERT；
+ * 汇总计数定期以 INSERT ... ON DUPLICATE KEY UPDATE 累加入库。队列满时落盘，空闲时回放。
+ *
+ * @author BankShield
+ */
+@Slf4j
+@Component
+public class AccessLogWriteBuffer {
+
+    private static final String SPILL_NAME = "access-log-spill";
+    private static final long REPLAY_INTERVAL_MS = 5000;
+
+    @Autowired
+    private AccessLogMapper accessLogMapper;
+
+    @Autowired
+    private AccessDecisionRollupMapper rollupMapper;
+
+    @Autowired
+    private AccessLogBufferConfig config;
+
+    private BlockingQueue<AccessLog> queue;
+    private Thread flusher;
+    private volatile boolean running;
+
+    private JsonlSpillStore<AccessLog> spillStore;
+
+    /**
+     * 未入库的汇总计数
+     */
+    private final Map<RollupKey, AtomicLong> pendingRollups = new ConcurrentHashMap<>();
+
+    // 统计信息
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong sampledOut = new AtomicLong();
+    private final AtomicLong flushed = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong spilled = new AtomicLong();
+    private final AtomicLong replayed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong rollupFlushes = new AtomicLong();
+    private volatile long lastFlushMillis;
+    private long lastRollupFlush;
+
+    @PostConstruct
+    public void start() {
+        spillStore = new JsonlSpillStore<>(config.getSpillDir(), SPILL_NAME, AccessLog.class, REPLAY_INTERVAL_MS);
+        if (!config.isEnabled()) {
+            log.info("访问日志批量写入缓冲未启用，使用逐条写入");
+            return;
+        }
+        queue = new ArrayBlockingQueue<>(Math.max(config.getCapacity(), config.getBatchSize()));
+        running = true;
+        lastRollupFlush = System.currentTimeMillis();
+        flusher = new Thread(this::flushLoop, "access-log-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+        log.info("访问日志写入缓冲已启动，容量: {}, 批次: {}, ALLOW采样率: {}",
+                config.getCapacity(), config.getBatchSize(), config.getAllowSampleRate());
+    }
+
+    /**
+     * 提交访问决策日志，正常情况下只计数和入队，不访问数据库
+     */
+    public void submit(AccessLog accessLog) {
+        if (accessLog == null) {
+            return;
+        }
+        submitted.incrementAndGet();
+
+        // 未启用或已停机：直接同步写入，保证记录不丢
+        if (queue == null || !running) {
+            writeDirect(accessLog);
+            return;
+        }
+
+        addRollup(accessLog);
+        if (!"DENY".equals(accessLog.getAccessResult()) && !sampled()) {
+            sampledOut.incrementAndGet();
+            return;
+        }
+        if (!queue.offer(accessLog)) {
+            spill(Collections.singletonList(accessLog));
+        } else if (!running && queue.remove(accessLog)) {
+            // 与停机排空竞争时刷写线程可能已退出，改为直接写入
+            flush(Collections.singletonList(accessLog));
+        }
+    }
+
+    private void writeDirect(AccessLog accessLog) {
+        flush(Collections.singletonList(accessLog));
+        addRollup(accessLog);
+        flushRollups();
+    }
+
+    private boolean sampled() {
+        double rate = config.getAllowSampleRate();
+        return rate >= 1.0 || (rate > 0 && ThreadLocalRandom.current().nextDouble() < rate);
+    }
+
+    private void addRollup(AccessLog accessLog) {
+        LocalDateTime time = accessLog.getAccessTime() != null ? accessLog.getAccessTime() : LocalDateTime.now();
+        RollupKey key = new RollupKey(time.truncatedTo(ChronoUnit.HOURS), accessLog.getAccessResult(),
+                accessLog.getPolicyMatched(), accessLog.getRuleMatched(), accessLog.getUsername());
+        pendingRollups.computeIfAbsent(key, k -> new AtomicLong()).incrementAndGet();
+    }
+
+    /**
+     * 刷写线程主循环
+     */
+    private void flushLoop() {
+        List<AccessLog> batch = new ArrayList<>(config.getBatchSize());
+        while (running || !queue.isEmpty()) {
+            try {
+                AccessLog first = queue.poll(config.getFlushIntervalMs(), TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    // 队列空闲时回放落盘记录
+                    replaySpill();
+                } else {
+                    batch.add(first);
+                    long deadline = System.currentTimeMillis() + config.getFlushIntervalMs();
+                    while (batch.size() < config.getBatchSize()) {
+                        queue.drainTo(batch, config.getBatchSize() - batch.size());
+                        long remaining = deadline - System.currentTimeMillis();
+                        if (batch.size() >= config.getBatchSize() || remaining <= 0) {
+                            break;
+                        }
+                        AccessLog next = queue.poll(remaining, TimeUnit.MILLISECONDS);
+                        if (next == null) {
+                            break;
+                        }
+                        batch.add(next);
+                    }
+                    flush(batch);
+                }
+                if (System.currentTimeMillis() - lastRollupFlush >= config.getRollupFlushIntervalMs()) {
+                    lastRollupFlush = System.currentTimeMillis();
+                    flushRollups();
+                }
+            } catch (InterruptedException e) {
+                if (!running) {
+                    break;
+                }
+            } catch (Exception e) {
+                log.error("访问日志刷写线程异常", e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * 批量写入，失败时整批落盘等待回放
+     */
+    private void flush(List<AccessLog> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        if (!insertBatch(batch)) {
+            spill(batch);
+        }
+    }
+
+    private boolean insertBatch(List<AccessLog> batch) {
+        long start = System.currentTimeMillis();
+        try {
+            accessLogMapper.batchInsert(batch);
+            flushed.addAndGet(batch.size());
+            batches.incrementAndGet();
+            lastFlushMillis = System.currentTimeMillis() - start;
+            log.debug("批量写入访问日志{}条，耗时{}ms", batch.size(), lastFlushMillis);
+            return true;
+        } catch (Exception e) {
+            log.error("批量写入访问日志失败，条数: {}", batch.size(), e);
+            return false;
+        }
+    }
+
+    /**
+     * 将累计的汇总计数累加入库，失败的计数留待下次写入
+     */
+    private synchronized void flushRollups() {
+        if (pendingRollups.isEmpty()) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime staleBefore = now.truncatedTo(ChronoUnit.HOURS).minusHours(1);
+        List<RollupKey> keys = new ArrayList<>();
+        List<AccessDecisionRollup> rollups = new ArrayList<>();
+        for (Map.Entry<RollupKey, AtomicLong> entry : pendingRollups.entrySet()) {
+            long count = entry.getValue().getAndSet(0);
+            if (count > 0) {
+                keys.add(entry.getKey());
+                rollups.add(entry.getKey().toRollup(count, now));
+            }
+            // 早于上一小时的计数器不会再被累加，清理以限制内存
+            if (entry.getKey().statHour.isBefore(staleBefore)) {
+                pendingRollups.remove(entry.getKey(), entry.getValue());
+            }
+        }
+        for (int i = 0; i < rollups.size(); i += config.getBatchSize()) {
+            int end = Math.min(i + config.getBatchSize(), rollups.size());
+            try {
+                rollupMapper.batchUpsert(rollups.subList(i, end));
+                rollupFlushes.incrementAndGet();
+            } catch (Exception e) {
+                log.error("写入访问决策汇总失败，条数: {}", end - i, e);
+                for (int j = i; j < end; j++) {
+                    pendingRollups.computeIfAbsent(keys.get(j), k -> new AtomicLong())
+                            .addAndGet(rollups.get(j).getDecisionCount());
+                }
+            }
+        }
+    }
+
+    /**
+     * 追加写入落盘文件，落盘也失败时计入丢失
+     */
+    private void spill(List<AccessLog> logs) {
+        if (spillStore.append(logs)) {
+            spilled.addAndGet(logs.size());
+        } else {
+            failed.addAndGet(logs.size());
+            log.error("访问日志落盘失败，丢失{}条", logs.size());
+        }
+    }
+
+    /**
+     * 回放落盘记录，数据库仍不可用时从已提交偏移处保留到下次
+     */
+    private void replaySpill() {
+        replayed.addAndGet(spillStore.replay(config.getBatchSize(), this::insertBatch));
+    }
+
+    /**
+     * 获取缓冲区统计信息
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", queue != null);
+        stats.put("queueDepth", queue == null ? 0 : queue.size());
+        stats.put("capacity", queue == null ? 0 : queue.size() + queue.remainingCapacity());
+        stats.put("submitted", submitted.get());
+        stats.put("sampledOut", sampledOut.get());
+        stats.put("flushed", flushed.get());
+        stats.put("batches", batches.get());
+        stats.put("spilled", spilled.get());
+        stats.put("replayed", replayed.get());
+        stats.put("quarantined", spillStore.getQuarantined());
+        stats.put("failed", failed.get());
+        stats.put("pendingRollups", pendingRollups.size());
+        stats.put("rollupFlushes", rollupFlushes.get());
+        stats.put("lastFlushMillis", lastFlushMillis);
+        return stats;
+    }
+
+    /**
+     * 停机时排空缓冲区并写入剩余汇总计数
+     */
+    @PreDestroy
+    public void shutdown() {
+        if (queue == null || !running) {
+            return;
+        }
+        running = false;
+        try {
+            flusher.join(TimeUnit.SECONDS.toMillis(config.getShutdownTimeoutSeconds()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (flusher.isAlive()) {
+            flusher.interrupt();
+        }
+
+        // 刷写线程未能排空的记录在当前线程落库
+        List<AccessLog> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        for (int i = 0; i < remaining.size(); i += config.getBatchSize()) {
+            flush(remaining.subList(i, Math.min(i + config.getBatchSize(), remaining.size())));
+        }
+        flushRollups();
+        log.info("访问日志写入缓冲已关闭，累计写入{}条，采样丢弃{}条，落盘{}条",
+                flushed.get(), sampledOut.get(), spilled.get());
+    }
+
+    /**
+     * 汇总维度
+     */
+    private static final class RollupKey {
+        private final LocalDateTime statHour;
+        private final String accessResult;
+        private final String policyMatched;
+        private final String ruleMatched;
+        private final String username;
+
+        private RollupKey(LocalDateTime statHour, String accessResult, String policyMatched,
+                          String ruleMatched, String username) {
+            this.statHour = statHour;
+            this.accessResult = accessResult != null ? accessResult : "";
+            this.policyMatched = policyMatched != null ? policyMatched : "";
+            this.ruleMatched = ruleMatched != null ? ruleMatched : "";
+            this.username = username != null ? username : "";
+        }
+
+        private AccessDecisionRollup toRollup(long count, LocalDateTime now) {
+            AccessDecisionRollup rollup = new AccessDecisionRollup();
+            rollup.setStatHour(statHour);
+            rollup.setAccessResult(accessResult);
+            rollup.setPolicyMatched(policyMatched);
+            rollup.setRuleMatched(ruleMatched);
+            rollup.setUsername(username);
+            rollup.setDecisionCount(count);
+            rollup.setUpdatedTime(now);
+            return rollup;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof RollupKey)) {
+                return false;
+            }
+            RollupKey other = (RollupKey) o;
+            return statHour.equals(other.statHour) && accessResult.equals(other.accessResult)
+                    && policyMatched.equals(other.policyMatched) && ruleMatched.equals(other.ruleMatched)
+                    && username.equals(other.username);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(statHour, accessResult, policyMatched, ruleMatched, username);
+        }
+    }
+}
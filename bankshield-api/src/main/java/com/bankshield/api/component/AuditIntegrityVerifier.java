@@ -0,0 +1,446 @@
+package com.bankshield.api.component;
+
+import com.bankshield.api.config.AuditIntegrityConfig;
+import com.bankshield.api.dto.AuditVerificationProgress;
+import com.bankshield.api.entity.AuditBlock;
+import com.bankshield.api.entity.AuditVerifyCheckpoint;
+import com.bankshield.api.mapper.AuditBlockMapper;
+import com.bankshield.api.mapper.AuditVerifyCheckpointMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * 审计完整性全量校验器
+ * 按主键游标分页读取区块，在有界线程池中并行整块复核，每页完成后写入检查点，
+ * 中断或重启后可从检查点续跑，运行中实时提供吞吐量与预计剩余时间。
+ * 同一时刻只运行一次校验；同步校验不写检查点，遇到后台校验在运行时等待其结束并返回其结果。
+ * 检查点只记录已完整提交的页，未完成页的计数在异常结束时回退，续跑时不会重复计数
+ *
+ * @author BankShield
+ */
+@Slf4j
+@Component
+public class AuditIntegrityVerifier {
+
+    public static final String STATUS_RUNNING = "RUNNING";
+    public static final String STATUS_COMPLETED = "COMPLETED";
+    public static final String STATUS_FAILED = "FAILED";
+    public static final String STATUS_INTERRUPTED = "INTERRUPTED";
+
+    private static final int MAX_INVALID_IDS = 1000;
+
+    @Autowired
+    private AuditBlockMapper blockMapper;
+
+    @Autowired
+    private AuditVerifyCheckpointMapper checkpointMapper;
+
+    @Autowired
+    private AuditIntegrityConfig config;
+
+    private ExecutorService workers;
+    private ExecutorService coordinator;
+
+    private final Object runLock = new Object();
+    private volatile boolean stopRequested;
+    /**
+     * 正在运行的校验，无运行时为null
+     */
+    private volatile RunState active;
+    /**
+     * 最近一次校验
+     */
+    private volatile RunState current;
+
+    @PostConstruct
+    public void init() {
+        int parallelism = Math.max(1, config.getVerify().getParallelism());
+        workers = Executors.newFixedThreadPool(parallelism, namedThreadFactory("audit-verify-"));
+        coordinator = Executors.newSingleThreadExecutor(namedThreadFactory("audit-verify-coordinator-"));
+    }
+
+    /**
+     * 后台启动全量校验，已有校验在运行时直接返回其进度
+     *
+     * @param blockVerifier 整块复核逻辑
+     * @param resume 是否从最近一次未完成的检查点续跑
+     * @return 初始进度
+     */
+    public AuditVerificationProgress start(Predicate<AuditBlock> blockVerifier, boolean resume) {
+        RunState state = begin(resume, true);
+        if (state == null) {
+            RunState running = active;
+            log.info("已有全量完整性校验在运行，返回其进度: {}", running != null ? running.checkpoint.getRunId() : null);
+            return running != null ? snapshot(running) : getProgress();
+        }
+        coordinator.execute(() -> run(state, blockVerifier, false));
+        return snapshot(state);
+    }
+
+    /**
+     * 在当前线程执行一次完整校验直至完成，不写检查点
+     * 调用方处于事务中时在当前线程串行复核，保证能读到事务内未提交的数据；
+     * 已有校验在运行时最多等待配置的时长，返回该次校验的结果（超时则为其当前进度）
+     */
+    public AuditVerificationProgress verify(Predicate<AuditBlock> blockVerifier) {
+        RunState state = begin(false, false);
+        if (state == null) {
+            return awaitActive();
+        }
+        run(state, blockVerifier, TransactionSynchronizationManager.isActualTransactionActive());
+        return snapshot(state);
+    }
+
+    /**
+     * 请求停止当前校验，已完成的页已写入检查点
+     */
+    public void stop() {
+        if (active != null) {
+            stopRequested = true;
+        }
+    }
+
+    /**
+     * 获取当前（或最近一次）校验进度
+     */
+    public AuditVerificationProgress getProgress() {
+        RunState state = current;
+        if (state != null) {
+            return snapshot(state);
+        }
+        AuditVerifyCheckpoint latest = checkpointMapper.selectLatest();
+        return latest == null ? null : snapshot(new RunState(latest, false, true));
+    }
+
+    private AuditVerificationProgress awaitActive() {
+        RunState running = active;
+        if (running == null) {
+            return getProgress();
+        }
+        log.info("已有全量完整性校验在运行，等待其结束: {}", running.checkpoint.getRunId());
+        try {
+            if (!running.done.await(config.getVerify().getSyncWaitSeconds(), TimeUnit.SECONDS)) {
+                log.warn("等待全量完整性校验超时，返回当前进度: {}", running.checkpoint.getRunId());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return snapshot(running);
+    }
+
+    /**
+     * 开始一次校验，已有校验在运行时返回null
+     *
+     * @param persistent 是否写入检查点（仅后台校验写入，可续跑）
+     */
+    private RunState begin(boolean resume, boolean persistent) {
+        synchronized (runLock) {
+            if (active != null) {
+                return null;
+            }
+            stopRequested = false;
+            AuditVerifyCheckpoint checkpoint = resume ? checkpointMapper.selectLatestUnfinished() : null;
+            boolean resumed = checkpoint != null;
+            if (resumed) {
+                checkpoint.setStatus(STATUS_RUNNING);
+                checkpoint.setUpdateTime(LocalDateTime.now());
+                if (persistent) {
+                    checkpointMapper.updateById(checkpoint);
+                }
+                log.info("从检查点续跑审计完整性校验: {}, 已完成 {}/{} 个区块",
+                        checkpoint.getRunId(), checkpoint.getVerifiedBlocks(), checkpoint.getTotalBlocks());
+            } else {
+                Long maxBlockId = blockMapper.selectMaxBlockId();
+                maxBlockId = maxBlockId != null ? maxBlockId : 0L;
+                checkpoint = AuditVerifyCheckpoint.builder()
+                        .runId("AV" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMddHHmmssSSS")))
+                        .status(STATUS_RUNNING)
+                        .lastBlockId(0L)
+                        .maxBlockId(maxBlockId)
+                        .totalBlocks(blockMapper.countBlocksBetween(0L, maxBlockId))
+                        .verifiedBlocks(0L)
+                        .verifiedAudits(0L)
+                        .invalidBlocks(0L)
+                        .invalidAudits(0L)
+                        .startTime(LocalDateTime.now())
+                        .updateTime(LocalDateTime.now())
+                        .build();
+                if (persistent) {
+                    checkpointMapper.insert(checkpoint);
+                }
+                log.info("开始审计完整性全量校验: {}, 共 {} 个区块", checkpoint.getRunId(), checkpoint.getTotalBlocks());
+            }
+            RunState state = new RunState(checkpoint, resumed, persistent);
+            active = state;
+            current = state;
+            return state;
+        }
+    }
+
+    private void run(RunState state, Predicate<AuditBlock> blockVerifier, boolean inline) {
+        AuditVerifyCheckpoint checkpoint = state.checkpoint;
+        int pageSize = Math.max(1, config.getVerify().getPageSize());
+        String finalStatus = STATUS_COMPLETED;
+        List<Future<?>> futures = new ArrayList<>();
+        try {
+            List<AuditBlock> page = blockMapper.selectBlocksBetween(
+                    checkpoint.getLastBlockId(), checkpoint.getMaxBlockId(), pageSize);
+            while (!page.isEmpty()) {
+                if (stopRequested) {
+                    finalStatus = STATUS_INTERRUPTED;
+                    break;
+                }
+                futures.clear();
+                for (AuditBlock block : page) {
+                    if (inline) {
+                        verifyOne(state, blockVerifier, block);
+                    } else {
+                        futures.add(workers.submit(() -> verifyOne(state, blockVerifier, block)));
+                    }
+                }
+
+                // 当前页校验期间预取下一页
+                Long pageLastId = page.get(page.size() - 1).getId();
+                List<AuditBlock> next = page.size() < pageSize ? Collections.emptyList()
+                        : blockMapper.selectBlocksBetween(pageLastId, checkpoint.getMaxBlockId(), pageSize);
+
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+                state.commitPage(pageLastId);
+                saveCheckpoint(state, STATUS_RUNNING);
+                page = next;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            finalStatus = STATUS_INTERRUPTED;
+        } catch (ExecutionException | RuntimeException e) {
+            log.error("审计完整性全量校验失败: {}", checkpoint.getRunId(), e);
+            finalStatus = STATUS_FAILED;
+        } finally {
+            for (Future<?> future : futures) {
+                future.cancel(true);
+            }
+            // 未完整提交的页在续跑时会重新校验，其计数回退到最近一个检查点
+            state.close();
+            try {
+                saveCheckpoint(state, finalStatus);
+            } catch (Exception e) {
+                log.error("保存审计完整性校验检查点失败: {}", checkpoint.getRunId(), e);
+            }
+            synchronized (runLock) {
+                active = null;
+            }
+            state.done.countDown();
+            AuditVerificationProgress progress = snapshot(state);
+            log.info("审计完整性全量校验结束: {}, 状态: {}, 已校验 {} 个区块/{} 条日志, 失败区块 {} 个, 吞吐 {} 条/秒",
+                    progress.getRunId(), progress.getStatus(), progress.getVerifiedBlocks(),
+                    progress.getVerifiedAudits(), progress.getInvalidBlocks(),
+                    String.format("%.1f", progress.getAuditsPerSecond()));
+        }
+    }
+
+    private void verifyOne(RunState state, Predicate<AuditBlock> blockVerifier, AuditBlock block) {
+        boolean valid;
+        try {
+            valid = blockVerifier.test(block);
+        } catch (Exception e) {
+            log.error("区块 #{} 复核异常", block.getBlockNumber(), e);
+            valid = false;
+        }
+        long auditCount = block.getAuditCount() != null ? block.getAuditCount() : 0;
+        synchronized (state) {
+            if (state.closed) {
+                return;
+            }
+            state.verifiedBlocks.incrementAndGet();
+            state.verifiedAudits.addAndGet(auditCount);
+            if (!valid) {
+                state.invalidBlocks.incrementAndGet();
+                state.invalidAudits.addAndGet(auditCount);
+                synchronized (state.invalidBlockIds) {
+                    if (state.invalidBlockIds.size() < MAX_INVALID_IDS) {
+                        state.invalidBlockIds.add(block.getId());
+                    }
+                }
+            }
+        }
+    }
+
+    private void saveCheckpoint(RunState state, String status) {
+        AuditVerifyCheckpoint checkpoint = state.checkpoint;
+        checkpoint.setStatus(status);
+        checkpoint.setLastBlockId(state.lastBlockId);
+        checkpoint.setVerifiedBlocks(state.verifiedBlocks.get());
+        checkpoint.setVerifiedAudits(state.verifiedAudits.get());
+        checkpoint.setInvalidBlocks(state.invalidBlocks.get());
+        checkpoint.setInvalidAudits(state.invalidAudits.get());
+        synchronized (state.invalidBlockIds) {
+            checkpoint.setInvalidBlockIds(state.invalidBlockIds.stream()
+                    .map(String::valueOf).collect(Collectors.joining(",")));
+        }
+        checkpoint.setUpdateTime(LocalDateTime.now());
+        if (!STATUS_RUNNING.equals(status)) {
+            checkpoint.setFinishTime(LocalDateTime.now());
+        }
+        if (state.persistent) {
+            checkpointMapper.updateById(checkpoint);
+        }
+    }
+
+    private AuditVerificationProgress snapshot(RunState state) {
+        AuditVerifyCheckpoint checkpoint = state.checkpoint;
+        long total = checkpoint.getTotalBlocks() != null ? checkpoint.getTotalBlocks() : 0;
+        long verifiedBlocks = state.verifiedBlocks.get();
+        long verifiedAudits = state.verifiedAudits.get();
+
+        // 吞吐量只统计本次进程内的校验量，续跑前已完成部分不计入
+        double elapsedSeconds = Math.max((System.nanoTime() - state.startNanos) / 1e9, 0.001);
+        double blocksPerSecond = (verifiedBlocks - state.baseBlocks) / elapsedSeconds;
+        double auditsPerSecond = (verifiedAudits - state.baseAudits) / elapsedSeconds;
+        long remaining = Math.max(total - verifiedBlocks, 0);
+        Long eta = blocksPerSecond > 0 ? (long) Math.ceil(remaining / blocksPerSecond) : null;
+
+        List<Long> invalidIds;
+        synchronized (state.invalidBlockIds) {
+            invalidIds = new ArrayList<>(state.invalidBlockIds);
+        }
+        return AuditVerificationProgress.builder()
+                .runId(checkpoint.getRunId())
+                .status(checkpoint.getStatus())
+                .totalBlocks(total)
+                .verifiedBlocks(verifiedBlocks)
+                .verifiedAudits(verifiedAudits)
+                .invalidBlocks(state.invalidBlocks.get())
+                .invalidAudits(state.invalidAudits.get())
+                .invalidBlockIds(invalidIds)
+                .progressPercentage(total > 0 ? Math.min(verifiedBlocks * 100.0 / total, 100.0) : 100.0)
+                .auditsPerSecond(auditsPerSecond)
+                .blocksPerSecond(blocksPerSecond)
+                .etaSeconds(STATUS_RUNNING.equals(checkpoint.getStatus()) ? eta : Long.valueOf(0L))
+                .resumed(state.resumed)
+                .build();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        stopRequested = true;
+        coordinator.shutdown();
+        try {
+            // 协调线程在当前页结束后写入INTERRUPTED检查点
+            if (!coordinator.awaitTermination(30, TimeUnit.SECONDS)) {
+                coordinator.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            coordinator.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        workers.shutdownNow();
+    }
+
+    private static ThreadFactory namedThreadFactory(String prefix) {
+        AtomicInteger counter = new AtomicInteger(0);
+        return r -> {
+            Thread thread = new Thread(r, prefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * 单次校验的运行状态
+     */
+    private static class RunState {
+        private final AuditVerifyCheckpoint checkpoint;
+        private final boolean resumed;
+        private final boolean persistent;
+        private final CountDownLatch done = new CountDownLatch(1);
+        private final long startNanos = System.nanoTime();
+        private final long baseBlocks;
+        private final long baseAudits;
+        private final AtomicLong verifiedBlocks;
+        private final AtomicLong verifiedAudits;
+        private final AtomicLong invalidBlocks;
+        private final AtomicLong invalidAudits;
+        private final List<Long> invalidBlockIds = new ArrayList<>();
+        private volatile Long lastBlockId;
+        private boolean closed;
+
+        // 最近一个已提交页结束时的计数
+        private long committedBlocks;
+        private long committedAudits;
+        private long committedInvalidBlocks;
+        private long committedInvalidAudits;
+        private int committedInvalidIds;
+
+        RunState(AuditVerifyCheckpoint checkpoint, boolean resumed, boolean persistent) {
+            this.checkpoint = checkpoint;
+            this.resumed = resumed;
+            this.persistent = persistent;
+            this.baseBlocks = valueOf(checkpoint.getVerifiedBlocks());
+            this.baseAudits = valueOf(checkpoint.getVerifiedAudits());
+            this.verifiedBlocks = new AtomicLong(baseBlocks);
+            this.verifiedAudits = new AtomicLong(baseAudits);
+            this.invalidBlocks = new AtomicLong(valueOf(checkpoint.getInvalidBlocks()));
+            this.invalidAudits = new AtomicLong(valueOf(checkpoint.getInvalidAudits()));
+            this.lastBlockId = checkpoint.getLastBlockId() != null ? checkpoint.getLastBlockId() : 0L;
+            String ids = checkpoint.getInvalidBlockIds();
+            if (ids != null && !ids.isEmpty()) {
+                for (String id : ids.split(",")) {
+                    invalidBlockIds.add(Long.valueOf(id.trim()));
+                }
+            }
+            commitPage(lastBlockId);
+        }
+
+        synchronized void commitPage(Long pageLastId) {
+            lastBlockId = pageLastId;
+            committedBlocks = verifiedBlocks.get();
+            committedAudits = verifiedAudits.get();
+            committedInvalidBlocks = invalidBlocks.get();
+            committedInvalidAudits = invalidAudits.get();
+            synchronized (invalidBlockIds) {
+                committedInvalidIds = invalidBlockIds.size();
+            }
+        }
+
+        /**
+         * 结束校验，丢弃未提交页的计数，此后到达的复核结果不再计入
+         */
+        synchronized void close() {
+            closed = true;
+            verifiedBlocks.set(committedBlocks);
+            verifiedAudits.set(committedAudits);
+            invalidBlocks.set(committedInvalidBlocks);
+            invalidAudits.set(committedInvalidAudits);
+            synchronized (invalidBlockIds) {
+                invalidBlockIds.subList(committedInvalidIds, invalidBlockIds.size()).clear();
+            }
+        }
+
+        private static long valueOf(Long value) {
+            return value != null ? value : 0L;
+        }
+    }
+}
@@ -0,0 +1,251 @@
+package com.bankshield.api.component;
+
+import com.bankshield.api.config.AuditBufferConfig;
+import com.bankshield.api.entity.OperationAudit;
+import com.bankshield.api.mapper.OperationAuditMapper;
+import com.bankshield.common.utils.JsonlSpillStore;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 操作审计写入缓冲
+ * 有界环形队列 + 单刷写线程，按批次大小或时间窗口合并为多行INSERT，
+ * 队列满时按配置阻塞等待或落盘，落盘记录在空闲时回放入库；
+ * 未启用、已停机或停机排空后才入队的记录同步写库，写库失败同样落盘
+ *
+ * @author BankShield
+ */
+@Slf4j
+@Component
+public class OperationAuditWriteBuffer {
+
+    private static final String SPILL_NAME = "operation-audit-spill";
+    private static final long REPLAY_INTERVAL_MS = 5000;
+
+    @Autowired
+    private OperationAuditMapper operationAuditMapper;
+
+    @Autowired
+    private AuditBufferConfig config;
+
+    private BlockingQueue<OperationAudit> queue;
+    private Thread flusher;
+    private volatile boolean running;
+
+    private JsonlSpillStore<OperationAudit> spillStore;
+
+    // 统计信息
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong flushed = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong overflowed = new AtomicLong();
+    private final AtomicLong direct = new AtomicLong();
+    private final AtomicLong spilled = new AtomicLong();
+    private final AtomicLong replayed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private volatile long lastFlushMillis;
+
+    @PostConstruct
+    public void start() {
+        spillStore = new JsonlSpillStore<>(config.getSpillDir(), SPILL_NAME, OperationAudit.class, REPLAY_INTERVAL_MS);
+        if (!config.isEnabled()) {
+            log.info("操作审计批量写入缓冲未启用，使用逐条写入");
+            return;
+        }
+        queue = new ArrayBlockingQueue<>(Math.max(config.getCapacity(), config.getBatchSize()));
+        running = true;
+        flusher = new Thread(this::flushLoop, "audit-write-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+        log.info("操作审计写入缓冲已启动，容量: {}, 批次: {}, 刷写间隔: {}ms, 溢出策略: {}",
+                config.getCapacity(), config.getBatchSize(), config.getFlushIntervalMs(), config.getOverflowPolicy());
+    }
+
+    /**
+     * 提交审计记录，正常情况下只入队不访问数据库
+     */
+    public void submit(OperationAudit audit) {
+        if (audit == null) {
+            return;
+        }
+        submitted.incrementAndGet();
+
+        // 未启用或已停机：直接同步写入，保证记录不丢
+        if (queue == null || !running) {
+            writeDirect(audit);
+            return;
+        }
+
+        if (queue.offer(audit)) {
+            // 入队期间缓冲已停机排空时，取回记录同步写入
+            if (!running && queue.remove(audit)) {
+                writeDirect(audit);
+            }
+            return;
+        }
+
+        overflowed.incrementAndGet();
+        if ("BLOCK".equalsIgnoreCase(config.getOverflowPolicy())) {
+            try {
+                if (queue.offer(audit, config.getBlockTimeoutMs(), TimeUnit.MILLISECONDS)) {
+                    return;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        spill(Collections.singletonList(audit));
+    }
+
+    private void writeDirect(OperationAudit audit) {
+        direct.incrementAndGet();
+        flush(Collections.singletonList(audit));
+    }
+
+    /**
+     * 刷写线程主循环
+     */
+    private void flushLoop() {
+        List<OperationAudit> batch = new ArrayList<>(config.getBatchSize());
+        while (running || !queue.isEmpty()) {
+            try {
+                OperationAudit first = queue.poll(config.getFlushIntervalMs(), TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    // 队列空闲时回放落盘记录
+                    replaySpill();
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.currentTimeMillis() + config.getFlushIntervalMs();
+                while (batch.size() < config.getBatchSize()) {
+                    queue.drainTo(batch, config.getBatchSize() - batch.size());
+                    long remaining = deadline - System.currentTimeMillis();
+                    if (batch.size() >= config.getBatchSize() || remaining <= 0) {
+                        break;
+                    }
+                    OperationAudit next = queue.poll(remaining, TimeUnit.MILLISECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                flush(batch);
+            } catch (InterruptedException e) {
+                if (!running) {
+                    break;
+                }
+            } catch (Exception e) {
+                log.error("操作审计刷写线程异常", e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * 批量写入，失败时整批落盘等待回放
+     */
+    private void flush(List<OperationAudit> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        if (!insertBatch(batch)) {
+            spill(batch);
+        }
+    }
+
+    private boolean insertBatch(List<OperationAudit> batch) {
+        long start = System.currentTimeMillis();
+        try {
+            operationAuditMapper.batchInsert(batch);
+            flushed.addAndGet(batch.size());
+            batches.incrementAndGet();
+            lastFlushMillis = System.currentTimeMillis() - start;
+            log.debug("批量写入操作审计记录{}条，耗时{}ms", batch.size(), lastFlushMillis);
+            return true;
+        } catch (Exception e) {
+            log.error("批量写入操作审计记录失败，条数: {}", batch.size(), e);
+            return false;
+        }
+    }
+
+    /**
+     * 追加写入落盘文件，等待空闲时回放
+     */
+    private void spill(List<OperationAudit> audits) {
+        if (spillStore.append(audits)) {
+            spilled.addAndGet(audits.size());
+        } else {
+            failed.addAndGet(audits.size());
+            log.error("操作审计记录落盘失败，丢失{}条", audits.size());
+        }
+    }
+
+    /**
+     * 回放落盘记录，每批提交后持久化回放偏移，失败时下次从偏移处续放
+     */
+    private void replaySpill() {
+        replayed.addAndGet(spillStore.replay(config.getBatchSize(), this::insertBatch));
+    }
+
+    /**
+     * 获取缓冲区统计信息
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", queue != null);
+        stats.put("queueDepth", queue == null ? 0 : queue.size());
+        stats.put("capacity", queue == null ? 0 : queue.size() + queue.remainingCapacity());
+        stats.put("submitted", submitted.get());
+        stats.put("flushed", flushed.get());
+        stats.put("batches", batches.get());
+        stats.put("overflowed", overflowed.get());
+        stats.put("direct", direct.get());
+        stats.put("spilled", spilled.get());
+        stats.put("replayed", replayed.get());
+        stats.put("quarantined", spillStore.getQuarantined());
+        stats.put("failed", failed.get());
+        stats.put("lastFlushMillis", lastFlushMillis);
+        return stats;
+    }
+
+    /**
+     * 停机时排空缓冲区
+     */
+    @PreDestroy
+    public void shutdown() {
+        if (queue == null || !running) {
+            return;
+        }
+        running = false;
+        try {
+            flusher.join(TimeUnit.SECONDS.toMillis(config.getShutdownTimeoutSeconds()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (flusher.isAlive()) {
+            flusher.interrupt();
+        }
+
+        // 刷写线程未能排空的记录在当前线程落库
+        List<OperationAudit> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        for (int i = 0; i < remaining.size(); i += config.getBatchSize()) {
+            flush(remaining.subList(i, Math.min(i + config.getBatchSize(), remaining.size())));
+        }
+        log.info("操作审计写入缓冲已关闭，累计写入{}条，落盘{}条", flushed.get(), spilled.get());
+    }
+}
@@ -0,0 +1,56 @@
+package com.bankshield.api.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 访问决策日志写入缓冲配置
+ *
+ * @author BankShield
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "access-control.log")
+public class AccessLogBufferConfig {
+
+    /**
+     * 是否启用批量写入缓冲，关闭时退化为逐条同步写入
+     */
+    private boolean enabled = true;
+
+    /**
+     * 缓冲队列容量（条），满时直接落盘，不阻塞鉴权线程
+     */
+    private int capacity = 20000;
+
+    /**
+     * 单批次最大写入条数
+     */
+    private int batchSize = 500;
+
+    /**
+     * 批次最长等待时间（毫秒）
+     */
+    private long flushIntervalMs = 200;
+
+    /**
+     * ALLOW决策明细的采样率（0~1），DENY决策始终全量记录，汇总计数不受采样影响
+     */
+    private double allowSampleRate = 1.0;
+
+    /**
+     * 汇总计数写入间隔（毫秒）
+     */
+    private long rollupFlushIntervalMs = 10000;
+
+    /**
+     * 溢出落盘目录
+     */
+    private String spillDir = "logs/access-log-spill";
+
+    /**
+     * 停机时等待缓冲区排空的最长时间（秒）
+     */
+    private int shutdownTimeoutSeconds = 30;
+}
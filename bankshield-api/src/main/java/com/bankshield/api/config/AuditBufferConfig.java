@@ -0,0 +1,56 @@
+package com.bankshield.api.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 操作审计写入缓冲配置
+ *
+ * @author BankShield
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "audit.buffer")
+public class AuditBufferConfig {
+
+    /**
+     * 是否启用批量写入缓冲，关闭时退化为逐条同步写入
+     */
+    private boolean enabled = true;
+
+    /**
+     * 环形缓冲区容量（条）
+     */
+    private int capacity = 20000;
+
+    /**
+     * 单批次最大写入条数
+     */
+    private int batchSize = 500;
+
+    /**
+     * 批次最长等待时间（毫秒），未攒满一批时到时也会落库
+     */
+    private long flushIntervalMs = 200;
+
+    /**
+     * 缓冲区满时的处理策略：BLOCK-阻塞等待（超时后落盘），SPILL-直接落盘
+     */
+    private String overflowPolicy = "BLOCK";
+
+    /**
+     * BLOCK策略下的最长阻塞时间（毫秒）
+     */
+    private long blockTimeoutMs = 50;
+
+    /**
+     * 溢出落盘目录
+     */
+    private String spillDir = "logs/audit-spill";
+
+    /**
+     * 停机时等待缓冲区排空的最长时间（秒）
+     */
+    private int shutdownTimeoutSeconds = 30;
+}
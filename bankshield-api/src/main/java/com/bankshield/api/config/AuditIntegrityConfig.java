@@ -29,11 +29,44 @@ public class AuditIntegrityConfig {
      */
     private int intervalMinutes = 5;
     
+    /**
+     * 积压检查间隔（毫秒），未上链日志达到区块大小时立即封块
+     */
+    private long sealCheckIntervalMs = 5000;
+    
+    /**
+     * 每轮积压检查最多连续封块数量
+     */
+    private int maxBlocksPerRound = 20;
+    
     /**
      * 区块链存证配置
      */
     private BlockchainAnchor blockchainAnchor = new BlockchainAnchor();
     
+    /**
+     * 全量完整性校验配置
+     */
+    private Verify verify = new Verify();
+    
+    @Data
+    public static class Verify {
+        /**
+         * 并行校验线程数
+         */
+        private int parallelism = Runtime.getRuntime().availableProcessors();
+        
+        /**
+         * 每次游标读取的区块数（每页完成后写入检查点）
+         */
+        private int pageSize = 100;
+        
+        /**
+         * 同步校验遇到后台校验在运行时的最长等待时间（秒），超时返回其当前进度
+         */
+        private int syncWaitSeconds = 30;
+    }
+    
     @Data
     public static class BlockchainAnchor {
         /**
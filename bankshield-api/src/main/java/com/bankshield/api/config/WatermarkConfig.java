@@ -48,6 +48,11 @@ public class WatermarkConfig {
      * 数据库配置
      */
     private DatabaseConfig database = new DatabaseConfig();
+
+    /**
+     * 大文档流式处理配置
+     */
+    private StreamConfig stream = new StreamConfig();
     
     /**
      * 输出配置
@@ -112,5 +117,44 @@ public class WatermarkConfig {
         private String columnPrefix = "wm_";
         private String pseudoColumn = "watermark_data";
         private int batchSize = 1000;
+        /**
+         * 元组选择所用的HMAC密钥，嵌入与提取必须一致
+         */
+        private String secretKey = "";
+        /**
+         * 元组选择比例，约每gamma行标记一行
+         */
+        private int gamma = 10;
+        /**
+         * 水印内容最大字节数（UTF-8）
+         */
+        private int payloadBytes = 64;
+        /**
+         * 提取时并行扫描的主键区间数
+         */
+        private int extractParallelism = 4;
+    }
+
+    /**
+     * 大文档流式处理配置
+     */
+    @Data
+    public static class StreamConfig {
+        /**
+         * 超过该大小（MB）的文档改用流式处理
+         */
+        private int thresholdMb = 20;
+        /**
+         * 临时文件目录，为空时使用系统临时目录
+         */
+        private String tempPath = "";
+        /**
+         * PDF解析时驻留内存的最大字节数（MB），超出部分写入临时文件
+         */
+        private int pdfMainMemoryMb = 16;
+        /**
+         * 流式提取时允许的最大PDF页数
+         */
+        private int maxPdfPages = 10000;
     }
-}
\ No newline at end of file
+}
@@ -14,6 +14,7 @@ import org.springframework.web.bind.annotation.*;
 
 import javax.servlet.http.HttpServletResponse;
 import java.time.LocalDateTime;
+import java.util.Map;
 
 /**
  * 审计管理控制器
@@ -62,6 +63,14 @@ public class AuditController {
         return operationAuditService.getOperationAuditById(id);
     }
 
+    /**
+     * 获取操作审计写入缓冲统计信息
+     */
+    @GetMapping("/operation/buffer-stats")
+    public Result<Map<String, Object>> getWriteBufferStatistics() {
+        return Result.OK(operationAuditService.getWriteBufferStatistics());
+    }
+
     /**
      * 分页查询登录审计列表
      */
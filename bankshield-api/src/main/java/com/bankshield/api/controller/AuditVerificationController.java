@@ -2,6 +2,7 @@ package com.bankshield.api.controller;
 
 import com.bankshield.api.dto.AuditIntegrityReport;
 import com.bankshield.api.dto.AuditIntegrityStatistics;
+import com.bankshield.api.dto.AuditVerificationProgress;
 import com.bankshield.api.entity.AuditBlock;
 import com.bankshield.api.service.AuditBlockService;
 import com.bankshield.common.result.Result;
@@ -46,6 +47,23 @@ public class AuditVerificationController {
         }
     }
     
+    /**
+     * 整块复核区块完整性
+     */
+    @GetMapping("/block/{blockId}/verify")
+    @ApiOperation("整块复核区块完整性")
+    // @RequiresPermission("AUDIT_VIEW")  // 暂时注释掉
+    public Result<Boolean> verifyBlock(
+            @ApiParam("区块ID") @PathVariable Long blockId) {
+        try {
+            boolean isValid = auditBlockService.verifyBlockIntegrity(blockId);
+            return Result.success(isValid);
+        } catch (Exception e) {
+            log.error("复核区块完整性失败: {}", blockId, e);
+            return Result.error(500, "验证失败: " + e.getMessage());
+        }
+    }
+    
     /**
      * 验证整个审计日志系统的完整性
      */
@@ -62,6 +80,50 @@ public class AuditVerificationController {
         }
     }
     
+    /**
+     * 后台启动全量完整性校验
+     */
+    @PostMapping("/system-integrity/start")
+    @ApiOperation("后台启动全量完整性校验")
+    // @RequiresPermission("AUDIT_MANAGE")  // 暂时注释掉
+    public Result<AuditVerificationProgress> startSystemVerification(
+            @ApiParam("是否从最近一次未完成的检查点续跑") @RequestParam(defaultValue = "true") boolean resume) {
+        try {
+            return Result.success(auditBlockService.startSystemVerification(resume));
+        } catch (IllegalStateException e) {
+            return Result.error(400, e.getMessage());
+        } catch (Exception e) {
+            log.error("启动全量完整性校验失败", e);
+            return Result.error(500, "启动失败: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * 查询全量完整性校验进度
+     */
+    @GetMapping("/system-integrity/progress")
+    @ApiOperation("查询全量完整性校验进度")
+    // @RequiresPermission("AUDIT_VIEW")  // 暂时注释掉
+    public Result<AuditVerificationProgress> getVerificationProgress() {
+        try {
+            return Result.success(auditBlockService.getVerificationProgress());
+        } catch (Exception e) {
+            log.error("查询全量完整性校验进度失败", e);
+            return Result.error(500, "查询失败: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * 停止全量完整性校验
+     */
+    @PostMapping("/system-integrity/stop")
+    @ApiOperation("停止全量完整性校验")
+    // @RequiresPermission("AUDIT_MANAGE")  // 暂时注释掉
+    public Result<Void> stopSystemVerification() {
+        auditBlockService.stopSystemVerification();
+        return Result.success();
+    }
+    
     /**
      * 手动触发区块生成
      */
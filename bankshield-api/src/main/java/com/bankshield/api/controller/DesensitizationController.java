@@ -1,12 +1,18 @@
 package com.bankshield.api.controller;
 
+import com.bankshield.api.dto.DesensitizationJobProgress;
+import com.bankshield.api.dto.DesensitizationJobRequest;
 import com.bankshield.api.entity.DesensitizationLog;
 import com.bankshield.api.entity.DesensitizationRule;
 import com.bankshield.api.entity.DesensitizationTemplate;
+import com.bankshield.api.entity.User;
+import com.bankshield.api.mapper.UserMapper;
+import com.bankshield.api.service.DesensitizationJobService;
 import com.bankshield.api.service.DesensitizationRuleService;
 import com.bankshield.api.service.DesensitizationTemplateService;
 import com.bankshield.api.service.DesensitizationService;
 import com.bankshield.common.result.Result;
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.core.metadata.IPage;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import io.swagger.annotations.Api;
@@ -15,6 +21,8 @@ import io.swagger.annotations.ApiParam;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
 
 import javax.validation.Valid;
@@ -36,6 +44,8 @@ public class DesensitizationController {
     private final DesensitizationRuleService ruleService;
     private final DesensitizationTemplateService templateService;
     private final DesensitizationService desensitizationService;
+    private final DesensitizationJobService jobService;
+    private final UserMapper userMapper;
 
     // ==================== 脱敏规则管理 ====================
 
@@ -371,4 +381,60 @@ public class DesensitizationController {
             return Result.error("快捷脱敏测试失败: " + e.getMessage());
         }
     }
+
+    // ==================== 流式脱敏任务 ====================
+
+    @PostMapping("/jobs")
+    @ApiOperation("提交流式脱敏任务")
+    @PreAuthorize("hasAuthority('desensitization:job:execute')")
+    public Result<String> submitJob(@Valid @RequestBody DesensitizationJobRequest request) {
+        try {
+            String userName = getCurrentUserName();
+            String jobId = jobService.submitJob(request, getCurrentUserId(userName), userName);
+            return Result.success(jobId);
+        } catch (Exception e) {
+            log.error("提交流式脱敏任务失败", e);
+            return Result.error("提交流式脱敏任务失败: " + e.getMessage());
+        }
+    }
+
+    @GetMapping("/jobs")
+    @ApiOperation("查询流式脱敏任务列表")
+    @PreAuthorize("hasAuthority('desensitization:job:query')")
+    public Result<List<DesensitizationJobProgress>> listJobs() {
+        return Result.success(jobService.listJobs());
+    }
+
+    @GetMapping("/jobs/{jobId}")
+    @ApiOperation("查询流式脱敏任务进度")
+    @PreAuthorize("hasAuthority('desensitization:job:query')")
+    public Result<DesensitizationJobProgress> getJobProgress(@PathVariable String jobId) {
+        DesensitizationJobProgress progress = jobService.getProgress(jobId);
+        return progress != null ? Result.success(progress) : Result.error("任务不存在");
+    }
+
+    @PostMapping("/jobs/{jobId}/cancel")
+    @ApiOperation("取消流式脱敏任务")
+    @PreAuthorize("hasAuthority('desensitization:job:execute')")
+    public Result<Void> cancelJob(@PathVariable String jobId) {
+        return jobService.cancelJob(jobId) ? Result.success() : Result.error("任务不存在或已结束");
+    }
+
+    /**
+     * 获取当前登录用户名
+     */
+    private String getCurrentUserName() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        return authentication != null ? authentication.getName() : "system";
+    }
+
+    /**
+     * 按用户名查询当前用户ID，用户不存在时返回null
+     */
+    private String getCurrentUserId(String userName) {
+        User user = userMapper.selectOne(new LambdaQueryWrapper<User>()
+                .select(User::getId)
+                .eq(User::getUsername, userName));
+        return user != null && user.getId() != null ? String.valueOf(user.getId()) : null;
+    }
 }
@@ -0,0 +1,85 @@
+package com.bankshield.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * 审计完整性全量校验进度
+ * 
+ * @author BankShield
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AuditVerificationProgress {
+    
+    /**
+     * 校验批次号
+     */
+    private String runId;
+    
+    /**
+     * 状态：RUNNING-运行中, COMPLETED-已完成, FAILED-失败, INTERRUPTED-已中断
+     */
+    private String status;
+    
+    /**
+     * 待校验区块总数
+     */
+    private Long totalBlocks;
+    
+    /**
+     * 已校验区块数
+     */
+    private Long verifiedBlocks;
+    
+    /**
+     * 已校验审计日志数
+     */
+    private Long verifiedAudits;
+    
+    /**
+     * 校验失败区块数
+     */
+    private Long invalidBlocks;
+    
+    /**
+     * 校验失败涉及的审计日志数
+     */
+    private Long invalidAudits;
+    
+    /**
+     * 校验失败的区块ID（最多前1000个）
+     */
+    private List<Long> invalidBlockIds;
+    
+    /**
+     * 完成百分比
+     */
+    private Double progressPercentage;
+    
+    /**
+     * 吞吐量（审计日志/秒）
+     */
+    private Double auditsPerSecond;
+    
+    /**
+     * 吞吐量（区块/秒）
+     */
+    private Double blocksPerSecond;
+    
+    /**
+     * 预计剩余时间（秒）
+     */
+    private Long etaSeconds;
+    
+    /**
+     * 是否从检查点续跑
+     */
+    private Boolean resumed;
+}
@@ -0,0 +1,80 @@
+package com.bankshield.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * 流式脱敏任务进度
+ * 
+ * @author BankShield
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class DesensitizationJobProgress {
+    
+    /**
+     * 任务ID
+     */
+    private String jobId;
+    
+    /**
+     * 状态：RUNNING-运行中, COMPLETED-已完成, FAILED-失败, CANCELLED-已取消
+     */
+    private String status;
+    
+    /**
+     * 数据源
+     */
+    private String source;
+    
+    /**
+     * 输出目标
+     */
+    private String target;
+    
+    /**
+     * 源数据总行数（CSV源未知时为空）
+     */
+    private Long totalRows;
+    
+    /**
+     * 已读取行数
+     */
+    private Long readRows;
+    
+    /**
+     * 已写入行数
+     */
+    private Long writtenRows;
+    
+    /**
+     * 进度百分比（总行数未知时为空）
+     */
+    private Integer progressPercentage;
+    
+    /**
+     * 吞吐量（行/秒）
+     */
+    private Long rowsPerSecond;
+    
+    /**
+     * 开始时间
+     */
+    private LocalDateTime startTime;
+    
+    /**
+     * 结束时间
+     */
+    private LocalDateTime endTime;
+    
+    /**
+     * 错误信息
+     */
+    private String errorMessage;
+}
@@ -0,0 +1,48 @@
+package com.bankshield.api.dto;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.Data;
+
+import javax.validation.constraints.NotBlank;
+import javax.validation.constraints.NotEmpty;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 流式脱敏任务请求DTO
+ */
+@Data
+@ApiModel("流式脱敏任务请求")
+public class DesensitizationJobRequest {
+
+    @ApiModelProperty("数据源类型：TABLE-数据表, CSV-CSV文件")
+    @NotBlank(message = "数据源类型不能为空")
+    private String sourceType;
+
+    @ApiModelProperty("源表名，需在 desensitization.stream.source-tables 中配置（TABLE）")
+    private String sourceTable;
+
+    @ApiModelProperty("源文件路径，相对于工作目录（CSV，首行为表头）")
+    private String sourceFile;
+
+    @ApiModelProperty("目标表名，需预先创建且以 desensitization.stream.target-table-prefix 开头（TABLE）")
+    private String targetTable;
+
+    @ApiModelProperty("目标文件路径，相对于工作目录（CSV）")
+    private String targetFile;
+
+    @ApiModelProperty("输出列白名单，必须显式列出；未配置脱敏规则的列按原值写入目标")
+    @NotEmpty(message = "输出列不能为空")
+    private List<String> columns;
+
+    @ApiModelProperty("列脱敏规则：列名 -> 规则编码")
+    @NotEmpty(message = "列脱敏规则不能为空")
+    private Map<String, String> columnRules;
+
+    @ApiModelProperty("每批行数，为空时使用默认值")
+    private Integer batchSize;
+
+    @ApiModelProperty("脱敏并行度，为空时使用默认值")
+    private Integer parallelism;
+}
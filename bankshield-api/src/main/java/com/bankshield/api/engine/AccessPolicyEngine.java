@@ -0,0 +1,432 @@
+package com.bankshield.api.engine;
+
+import com.alibaba.fastjson2.JSON;
+import com.alibaba.fastjson2.JSONObject;
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.bankshield.api.entity.AccessPolicy;
+import com.bankshield.api.entity.AccessRule;
+import com.bankshield.api.entity.IpBlacklist;
+import com.bankshield.api.entity.IpWhitelist;
+import com.bankshield.api.mapper.AccessPolicyMapper;
+import com.bankshield.api.mapper.AccessRuleMapper;
+import com.bankshield.api.mapper.IpBlacklistMapper;
+import com.bankshield.api.mapper.IpWhitelistMapper;
+import com.bankshield.common.utils.IpPrefixTrie;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.StringUtils;
+
+import javax.annotation.PostConstruct;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * 访问策略决策引擎
+ * 启用的策略与规则在加载时编译为类型化的匹配条件，按资源类型和操作预先建立候选规则索引，
+ * IP黑白名单编译为CIDR前缀树，整体作为不可变快照原子替换。决策过程不访问数据库，
+ * 同一快照内的决策结果按主体/资源类型/操作/IP/MFA缓存。
+ */
+@Slf4j
+@Component
+public class AccessPolicyEngine {
+
+    private static final String ANY = "*";
+
+    /**
+     * 索引中代表"未在任何规则中显式出现的值"的键
+     */
+    private static final String OTHER = "\u0000";
+
+    @Autowired
+    private AccessPolicyMapper policyMapper;
+
+    @Autowired
+    private AccessRuleMapper ruleMapper;
+
+    @Autowired
+    private IpWhitelistMapper ipWhitelistMapper;
+
+    @Autowired
+    private IpBlacklistMapper ipBlacklistMapper;
+
+    @Value("${access-control.decision-cache-size:100000}")
+    private int decisionCacheSize;
+
+    private volatile PolicySnapshot snapshot = PolicySnapshot.EMPTY;
+
+    @PostConstruct
+    public void init() {
+        reload();
+    }
+
+    /**
+     * 定时全量重建，同步其他节点的策略与名单变更
+     */
+    @Scheduled(fixedDelayString = "${access-control.refresh-interval-ms:60000}",
+               initialDelayString = "${access-control.refresh-interval-ms:60000}")
+    public void scheduledReload() {
+        reload();
+    }
+
+    /**
+     * 从数据库全量重建快照，失败时保留现有快照
+     */
+    public void reload() {
+        try {
+            List<AccessPolicy> policies = policyMapper.selectEnabledPolicies();
+            List<AccessRule> rules = ruleMapper.selectList(new LambdaQueryWrapper<AccessRule>()
+                    .eq(AccessRule::getStatus, "ENABLED")
+                    .orderByDesc(AccessRule::getPriority));
+            PolicySnapshot rebuilt = PolicySnapshot.compile(policies, rules,
+                    ipBlacklistMapper.selectActive(), ipWhitelistMapper.selectEnabled(), decisionCacheSize);
+            snapshot = rebuilt;
+            log.debug("访问策略快照已重建，策略数: {}, 规则数: {}", policies.size(), rebuilt.rules.length);
+        } catch (Exception e) {
+            log.error("重建访问策略快照失败，继续使用现有快照", e);
+        }
+    }
+
+    /**
+     * 在当前事务提交后重建快照，无事务时立即重建
+     */
+    public void reloadAfterCommit() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    reload();
+                }
+            });
+        } else {
+            reload();
+        }
+    }
+
+    /**
+     * 访问决策
+     *
+     * @param userId 用户ID
+     * @param resourceType 资源类型
+     * @param action 操作
+     * @param ipAddress 客户端IP
+     * @param mfaVerified 是否已通过MFA
+     * @return 决策结果
+     */
+    public AccessDecision decide(Long userId, String resourceType, String action,
+                                 String ipAddress, boolean mfaVerified) {
+        PolicySnapshot current = snapshot;
+        // 黑名单带过期时间，单独判断且不进入决策缓存
+        if (ipAddress != null && current.blacklist.contains(ipAddress, System.currentTimeMillis())) {
+            return AccessDecision.BLACKLISTED;
+        }
+        String key = userId + "|" + resourceType + "|" + action + "|" + ipAddress + "|" + mfaVerified;
+        AccessDecision cached = current.cachedDecision(key);
+        if (cached != null) {
+            return cached;
+        }
+        AccessDecision decision = current.evaluate(resourceType, action, ipAddress, mfaVerified);
+        current.cacheDecision(key, decision);
+        return decision;
+    }
+
+    /**
+     * IP是否命中黑名单（含CIDR网段）
+     */
+    public boolean isIpBlacklisted(String ipAddress) {
+        return ipAddress != null && snapshot.blacklist.contains(ipAddress, System.currentTimeMillis());
+    }
+
+    /**
+     * IP是否命中白名单：全局白名单或指定用户的白名单
+     */
+    public boolean isIpWhitelisted(String ipAddress, Long userId) {
+        return ipAddress != null && snapshot.isWhitelisted(ipAddress, userId);
+    }
+
+    /**
+     * 决策结果
+     */
+    @Getter
+    public static final class AccessDecision {
+
+        static final AccessDecision BLACKLISTED = new AccessDecision(false, null, null, "IP地址已被封禁");
+
+        static final AccessDecision NO_MATCH = new AccessDecision(false, null, null, "未匹配到任何允许策略");
+
+        private final boolean allowed;
+        private final String policyMatched;
+        private final String ruleMatched;
+        private final String denyReason;
+
+        private AccessDecision(boolean allowed, String policyMatched, String ruleMatched, String denyReason) {
+            this.allowed = allowed;
+            this.policyMatched = policyMatched;
+            this.ruleMatched = ruleMatched;
+            this.denyReason = denyReason;
+        }
+    }
+
+    /**
+     * 编译后的规则，条件为空表示不限
+     */
+    private static final class CompiledRule {
+        private final AccessDecision decisionOnMatch;
+        private final boolean mfaRequired;
+        private final Set<String> resourceTypes;
+        private final Set<String> actions;
+        private final boolean requireWhitelist;
+
+        private CompiledRule(AccessPolicy policy, AccessRule rule, Set<String> resourceTypes,
+                             Set<String> actions, boolean requireWhitelist) {
+            boolean allow = "ALLOW".equals(policy.getEffect());
+            this.decisionOnMatch = new AccessDecision(allow, policy.getPolicyCode(), rule.getRuleCode(),
+                    allow ? null : "策略拒绝访问");
+            this.mfaRequired = Boolean.TRUE.equals(rule.getMfaRequired());
+            this.resourceTypes = resourceTypes;
+            this.actions = actions;
+            this.requireWhitelist = requireWhitelist;
+        }
+
+        private boolean acceptsResourceType(String resourceType) {
+            return resourceTypes == null || resourceTypes.contains(resourceType);
+        }
+
+        private boolean acceptsAction(String action) {
+            return actions == null || actions.contains(action);
+        }
+
+        /**
+         * 编译单条规则，条件无法解析时返回null，该规则不参与匹配
+         */
+        private static CompiledRule compile(AccessPolicy policy, AccessRule rule) {
+            try {
+                JSONObject resourceCondition = parse(rule.getResourceCondition());
+                JSONObject actionCondition = parse(rule.getActionCondition());
+                JSONObject environmentCondition = parse(rule.getEnvironmentCondition());
+                // 主体条件目前不参与匹配（不限主体），仅校验格式
+                parse(rule.getSubjectCondition());
+
+                Set<String> resourceTypes = null;
+                if (resourceCondition != null) {
+                    String type = resourceCondition.getString("type");
+                    if (type != null && !ANY.equals(type)) {
+                        resourceTypes = Collections.singleton(type);
+                    }
+                }
+
+                Set<String> actions = null;
+                if (actionCondition != null) {
+                    Object actionObj = actionCondition.get("action");
+                    if (actionObj instanceof String) {
+                        if (!ANY.equals(actionObj)) {
+                            actions = Collections.singleton((String) actionObj);
+                        }
+                    } else if (actionObj instanceof List) {
+                        actions = ((List<?>) actionObj).stream()
+                                .map(String::valueOf)
+                                .collect(Collectors.toSet());
+                    } else if (actionObj != null) {
+                        // 无法识别的操作条件，不匹配任何操作
+                        actions = Collections.emptySet();
+                    }
+                }
+
+                boolean requireWhitelist = environmentCondition != null
+                        && Boolean.TRUE.equals(environmentCondition.getBoolean("ip_whitelist"));
+
+                return new CompiledRule(policy, rule, resourceTypes, actions, requireWhitelist);
+            } catch (Exception e) {
+                log.error("编译访问规则失败，规则不生效: {}", rule.getRuleCode(), e);
+                return null;
+            }
+        }
+
+        private static JSONObject parse(String condition) {
+            if (!StringUtils.hasText(condition)) {
+                return null;
+            }
+            return JSON.parseObject(condition);
+        }
+    }
+
+    /**
+     * 不可变策略快照
+     */
+    private static final class PolicySnapshot {
+
+        private static final PolicySnapshot EMPTY = new PolicySnapshot(new CompiledRule[0],
+                Collections.emptyMap(), new IpPrefixTrie(), new IpPrefixTrie(), Collections.emptyMap(), 1);
+
+        /**
+         * 按策略优先级、规则优先级排列的全部规则
+         */
+        private final CompiledRule[] rules;
+
+        /**
+         * 资源类型 -> 操作 -> 候选规则（保持优先级顺序）
+         */
+        private final Map<String, Map<String, CompiledRule[]>> index;
+
+        private final IpPrefixTrie blacklist;
+
+        private final IpPrefixTrie globalWhitelist;
+
+        private final Map<Long, IpPrefixTrie> userWhitelists;
+
+        /**
+         * 按访问顺序淘汰的有界决策缓存，满时只淘汰最久未使用的一条，热点决策不受影响
+         */
+        private final LinkedHashMap<String, AccessDecision> decisionCache;
+
+        private PolicySnapshot(CompiledRule[] rules, Map<String, Map<String, CompiledRule[]>> index,
+                               IpPrefixTrie blacklist, IpPrefixTrie globalWhitelist,
+                               Map<Long, IpPrefixTrie> userWhitelists, int decisionCacheSize) {
+            this.rules = rules;
+            this.index = index;
+            this.blacklist = blacklist;
+            this.globalWhitelist = globalWhitelist;
+            this.userWhitelists = userWhitelists;
+            int maxDecisions = Math.max(1, decisionCacheSize);
+            this.decisionCache = new LinkedHashMap<String, AccessDecision>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, AccessDecision> eldest) {
+                    return size() > maxDecisions;
+                }
+            };
+        }
+
+        private AccessDecision cachedDecision(String key) {
+            synchronized (decisionCache) {
+                return decisionCache.get(key);
+            }
+        }
+
+        private void cacheDecision(String key, AccessDecision decision) {
+            synchronized (decisionCache) {
+                decisionCache.put(key, decision);
+            }
+        }
+
+        private AccessDecision evaluate(String resourceType, String action, String ipAddress, boolean mfaVerified) {
+            Map<String, CompiledRule[]> byAction = index.get(index.containsKey(resourceType) ? resourceType : OTHER);
+            if (byAction == null) {
+                return AccessDecision.NO_MATCH;
+            }
+            CompiledRule[] candidates = byAction.get(byAction.containsKey(action) ? action : OTHER);
+            if (candidates == null) {
+                return AccessDecision.NO_MATCH;
+            }
+            for (CompiledRule rule : candidates) {
+                if (rule.mfaRequired && !mfaVerified) {
+                    continue;
+                }
+                if (rule.requireWhitelist && (ipAddress == null || !isWhitelisted(ipAddress, null))) {
+                    continue;
+                }
+                return rule.decisionOnMatch;
+            }
+            return AccessDecision.NO_MATCH;
+        }
+
+        private boolean isWhitelisted(String ipAddress, Long userId) {
+            long now = System.currentTimeMillis();
+            if (globalWhitelist.contains(ipAddress, now)) {
+                return true;
+            }
+            IpPrefixTrie userTrie = userId != null ? userWhitelists.get(userId) : null;
+            return userTrie != null && userTrie.contains(ipAddress, now);
+        }
+
+        private static PolicySnapshot compile(List<AccessPolicy> policies, List<AccessRule> rules,
+                                              List<IpBlacklist> blacklists, List<IpWhitelist> whitelists,
+                                              int decisionCacheSize) {
+            Map<Long, List<AccessRule>> rulesByPolicy = rules.stream()
+                    .filter(rule -> rule.getPolicyId() != null)
+                    .collect(Collectors.groupingBy(AccessRule::getPolicyId, LinkedHashMap::new, Collectors.toList()));
+
+            List<CompiledRule> compiled = new ArrayList<>();
+            Set<String> resourceTypes = new HashSet<>();
+            Set<String> actions = new HashSet<>();
+            for (AccessPolicy policy : policies) {
+                for (AccessRule rule : rulesByPolicy.getOrDefault(policy.getId(), Collections.emptyList())) {
+                    CompiledRule compiledRule = CompiledRule.compile(policy, rule);
+                    if (compiledRule == null) {
+                        continue;
+                    }
+                    compiled.add(compiledRule);
+                    if (compiledRule.resourceTypes != null) {
+                        resourceTypes.addAll(compiledRule.resourceTypes);
+                    }
+                    if (compiledRule.actions != null) {
+                        actions.addAll(compiledRule.actions);
+                    }
+                }
+            }
+            resourceTypes.add(OTHER);
+            actions.add(OTHER);
+
+            // 对每个(资源类型, 操作)组合预先筛出候选规则；OTHER只命中不限该维度的规则
+            Map<String, Map<String, CompiledRule[]>> index = new HashMap<>();
+            for (String resourceType : resourceTypes) {
+                Map<String, CompiledRule[]> byAction = new HashMap<>();
+                for (String action : actions) {
+                    CompiledRule[] candidates = compiled.stream()
+                            .filter(rule -> rule.acceptsResourceType(resourceType) && rule.acceptsAction(action))
+                            .toArray(CompiledRule[]::new);
+                    if (candidates.length > 0) {
+                        byAction.put(action, candidates);
+                    }
+                }
+                if (!byAction.isEmpty()) {
+                    index.put(resourceType, byAction);
+                }
+            }
+
+            IpPrefixTrie blacklist = new IpPrefixTrie();
+            for (IpBlacklist entry : blacklists) {
+                long expireAt = toExpireAt(entry.getExpireTime());
+                addIp(blacklist, entry.getIpAddress(), expireAt);
+                addIp(blacklist, entry.getIpRange(), expireAt);
+            }
+
+            IpPrefixTrie globalWhitelist = new IpPrefixTrie();
+            Map<Long, IpPrefixTrie> userWhitelists = new HashMap<>();
+            for (IpWhitelist entry : whitelists) {
+                IpPrefixTrie target;
+                if ("ALL".equals(entry.getApplyTo())) {
+                    target = globalWhitelist;
+                } else if ("USER".equals(entry.getApplyTo()) && entry.getTargetId() != null) {
+                    target = userWhitelists.computeIfAbsent(entry.getTargetId(), id -> new IpPrefixTrie());
+                } else {
+                    continue;
+                }
+                addIp(target, entry.getIpAddress(), IpPrefixTrie.NEVER_EXPIRE);
+                addIp(target, entry.getIpRange(), IpPrefixTrie.NEVER_EXPIRE);
+            }
+
+            return new PolicySnapshot(compiled.toArray(new CompiledRule[0]), index,
+                    blacklist, globalWhitelist, userWhitelists, decisionCacheSize);
+        }
+
+        private static void addIp(IpPrefixTrie trie, String ipOrCidr, long expireAt) {
+            if (StringUtils.hasText(ipOrCidr) && !trie.add(ipOrCidr.trim(), expireAt)) {
+                log.warn("IP名单地址格式非法，已忽略: {}", ipOrCidr);
+            }
+        }
+
+        private static long toExpireAt(LocalDateTime expireTime) {
+            if (expireTime == null) {
+                return IpPrefixTrie.NEVER_EXPIRE;
+            }
+            return expireTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        }
+    }
+}
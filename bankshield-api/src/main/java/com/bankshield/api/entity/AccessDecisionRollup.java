@@ -0,0 +1,33 @@
+package com.bankshield.api.entity;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * 访问决策小时汇总实体
+ */
+@Data
+@TableName("access_decision_rollup")
+public class AccessDecisionRollup {
+    
+    @TableId(type = IdType.AUTO)
+    private Long id;
+    
+    private LocalDateTime statHour;
+    
+    private String accessResult;
+    
+    private String policyMatched;
+    
+    private String ruleMatched;
+    
+    private String username;
+    
+    private Long decisionCount;
+    
+    private LocalDateTime updatedTime;
+}
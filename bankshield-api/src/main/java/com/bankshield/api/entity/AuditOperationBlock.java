@@ -46,11 +46,17 @@ public class AuditOperationBlock implements Serializable {
     private Long blockId;
 
     /**
-     * Merkle路径（用于验证完整性）
+     * Merkle路径（旧版占位字段，新区块不再写入）
      */
     @TableField("merkle_path")
     private String merklePath;
 
+    /**
+     * Merkle包含证明（二进制，每层1字节方向 + 32字节兄弟哈希）
+     */
+    @TableField("merkle_proof")
+    private byte[] merkleProof;
+
     /**
      * 在区块中的索引
      */
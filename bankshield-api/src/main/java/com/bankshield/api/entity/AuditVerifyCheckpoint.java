@@ -0,0 +1,114 @@
+package com.bankshield.api.entity;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableField;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * 审计完整性全量校验检查点实体类
+ * 对应数据库表：audit_verify_checkpoint
+ * 记录全量校验的进度，长时间运行中断后可从检查点续跑
+ * 
+ * @author BankShield
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@TableName("audit_verify_checkpoint")
+public class AuditVerifyCheckpoint implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 主键ID
+     */
+    @TableId(value = "id", type = IdType.AUTO)
+    private Long id;
+
+    /**
+     * 校验批次号
+     */
+    @TableField("run_id")
+    private String runId;
+
+    /**
+     * 状态：RUNNING-运行中, COMPLETED-已完成, FAILED-失败, INTERRUPTED-已中断
+     */
+    @TableField("status")
+    private String status;
+
+    /**
+     * 已完成校验的最大区块ID（续跑起点）
+     */
+    @TableField("last_block_id")
+    private Long lastBlockId;
+
+    /**
+     * 本次校验的区块ID上限（启动时快照）
+     */
+    @TableField("max_block_id")
+    private Long maxBlockId;
+
+    /**
+     * 待校验区块总数
+     */
+    @TableField("total_blocks")
+    private Long totalBlocks;
+
+    /**
+     * 已校验区块数
+     */
+    @TableField("verified_blocks")
+    private Long verifiedBlocks;
+
+    /**
+     * 已校验审计日志数
+     */
+    @TableField("verified_audits")
+    private Long verifiedAudits;
+
+    /**
+     * 校验失败区块数
+     */
+    @TableField("invalid_blocks")
+    private Long invalidBlocks;
+
+    /**
+     * 校验失败涉及的审计日志数
+     */
+    @TableField("invalid_audits")
+    private Long invalidAudits;
+
+    /**
+     * 校验失败的区块ID（逗号分隔，最多保留前1000个）
+     */
+    @TableField("invalid_block_ids")
+    private String invalidBlockIds;
+
+    /**
+     * 开始时间
+     */
+    @TableField("start_time")
+    private LocalDateTime startTime;
+
+    /**
+     * 最近检查点时间
+     */
+    @TableField("update_time")
+    private LocalDateTime updateTime;
+
+    /**
+     * 完成时间
+     */
+    @TableField("finish_time")
+    private LocalDateTime finishTime;
+}
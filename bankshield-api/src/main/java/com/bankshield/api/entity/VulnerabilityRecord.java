@@ -37,6 +37,8 @@ public class VulnerabilityRecord {
     private String verificationStatus;
     private String verifiedBy;
     private LocalDateTime verifiedTime;
+    private String scopeKey; // SHA-256(扫描类别|扫描目标)
+    private String fingerprint; // SHA-256(规则编码|位置|规范化代码片段)
     private LocalDateTime createdTime;
     private LocalDateTime updatedTime;
 }
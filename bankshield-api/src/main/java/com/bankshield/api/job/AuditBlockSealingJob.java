@@ -0,0 +1,87 @@
+package com.bankshield.api.job;
+
+import com.bankshield.api.config.AuditIntegrityConfig;
+import com.bankshield.api.entity.AuditBlock;
+import com.bankshield.api.mapper.OperationAuditMapper;
+import com.bankshield.api.service.AuditBlockService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 审计区块封块定时任务
+ * 积压达到区块大小时持续封满块，定时任务兜底封存不足一块的尾部日志
+ *
+ * @author BankShield
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class AuditBlockSealingJob {
+
+    private final AuditBlockService auditBlockService;
+
+    private final OperationAuditMapper operationAuditMapper;
+
+    private final AuditIntegrityConfig auditIntegrityConfig;
+
+    /**
+     * 封块串行执行，避免并发封块读取到同一批待上链日志
+     */
+    private final ReentrantLock sealLock = new ReentrantLock();
+
+    /**
+     * 积压检查：未上链日志达到区块大小时连续封满块
+     */
+    @Scheduled(fixedDelayString = "${audit.block.seal-check-interval-ms:5000}")
+    public void sealBacklog() {
+        if (!auditIntegrityConfig.isEnabled() || !sealLock.tryLock()) {
+            return;
+        }
+        try {
+            int blockSize = auditIntegrityConfig.getSize();
+            int maxBlocks = Math.max(1, auditIntegrityConfig.getMaxBlocksPerRound());
+            int sealed = 0;
+            while (sealed < maxBlocks && operationAuditMapper.countPendingAudits(blockSize) >= blockSize) {
+                AuditBlock block = auditBlockService.generateBlock();
+                if (block == null) {
+                    break;
+                }
+                sealed++;
+            }
+            if (sealed > 0) {
+                log.info("审计日志积压封块完成，本轮生成 {} 个区块", sealed);
+            }
+        } catch (Exception e) {
+            log.error("审计日志积压封块失败", e);
+        } finally {
+            sealLock.unlock();
+        }
+    }
+
+    /**
+     * 定时兜底：封存不足一个区块的尾部日志
+     * 每5分钟执行一次
+     */
+    @Scheduled(cron = "0 */5 * * * ?")
+    public void sealRemainder() {
+        if (!auditIntegrityConfig.isEnabled()) {
+            return;
+        }
+        sealLock.lock();
+        try {
+            log.info("开始生成审计区块...");
+            AuditBlock block = auditBlockService.generateBlock();
+            if (block != null) {
+                log.info("成功生成审计区块 #{}", block.getBlockNumber());
+            }
+        } catch (Exception e) {
+            log.error("定时生成审计区块失败", e);
+        } finally {
+            sealLock.unlock();
+        }
+    }
+}
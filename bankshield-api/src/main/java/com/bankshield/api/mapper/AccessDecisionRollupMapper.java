@@ -0,0 +1,56 @@
+package com.bankshield.api.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.bankshield.api.entity.AccessDecisionRollup;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 访问决策汇总Mapper
+ */
+@Mapper
+public interface AccessDecisionRollupMapper extends BaseMapper<AccessDecisionRollup> {
+    
+    /**
+     * 批量累加汇总计数
+     */
+    @Insert("<script>" +
+            "INSERT INTO access_decision_rollup (stat_hour, access_result, policy_matched, rule_matched, username, " +
+            "decision_count, updated_time) VALUES " +
+            "<foreach collection='rollups' item='r' separator=','>" +
+            "(#{r.statHour}, #{r.accessResult}, #{r.policyMatched}, #{r.ruleMatched}, #{r.username}, " +
+            "#{r.decisionCount}, #{r.updatedTime})" +
+            "</foreach>" +
+            " ON DUPLICATE KEY UPDATE decision_count = decision_count + VALUES(decision_count), " +
+            "updated_time = VALUES(updated_time)" +
+            "</script>")
+    int batchUpsert(@Param("rollups") List<AccessDecisionRollup> rollups);
+    
+    /**
+     * 按访问结果统计
+     */
+    @Select("SELECT access_result, SUM(decision_count) AS count FROM access_decision_rollup " +
+            "WHERE stat_hour >= #{startTime} GROUP BY access_result")
+    List<Map<String, Object>> sumByResult(@Param("startTime") LocalDateTime startTime);
+    
+    /**
+     * 按用户统计访问次数
+     */
+    @Select("SELECT username, SUM(decision_count) AS count FROM access_decision_rollup " +
+            "WHERE stat_hour >= #{startTime} GROUP BY username ORDER BY count DESC LIMIT #{limit}")
+    List<Map<String, Object>> sumByUser(@Param("startTime") LocalDateTime startTime, @Param("limit") Integer limit);
+    
+    /**
+     * 按策略和规则统计
+     */
+    @Select("SELECT policy_matched, rule_matched, access_result, SUM(decision_count) AS count " +
+            "FROM access_decision_rollup WHERE stat_hour >= #{startTime} " +
+            "GROUP BY policy_matched, rule_matched, access_result ORDER BY count DESC LIMIT #{limit}")
+    List<Map<String, Object>> sumByPolicyRule(@Param("startTime") LocalDateTime startTime, @Param("limit") Integer limit);
+}
@@ -2,7 +2,9 @@ package com.bankshield.api.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.bankshield.api.entity.AccessLog;
+import org.apache.ibatis.annotations.Insert;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
 import org.apache.ibatis.annotations.Select;
 
 import java.time.LocalDateTime;
@@ -44,4 +46,19 @@ public interface AccessLogMapper extends BaseMapper<AccessLog> {
      */
     @Select("SELECT username, COUNT(*) as count FROM access_log WHERE access_time >= #{startTime} GROUP BY username ORDER BY count DESC LIMIT #{limit}")
     List<Map<String, Object>> countAccessByUser(LocalDateTime startTime, Integer limit);
+    
+    /**
+     * 批量插入访问日志（多行INSERT）
+     */
+    @Insert("<script>" +
+            "INSERT INTO access_log (user_id, username, user_role, resource_type, resource_id, action, " +
+            "access_result, policy_matched, rule_matched, ip_address, location, user_agent, mfa_verified, " +
+            "deny_reason, access_time, response_time) VALUES " +
+            "<foreach collection='logs' item='l' separator=','>" +
+            "(#{l.userId}, #{l.username}, #{l.userRole}, #{l.resourceType}, #{l.resourceId}, #{l.action}, " +
+            "#{l.accessResult}, #{l.policyMatched}, #{l.ruleMatched}, #{l.ipAddress}, #{l.location}, " +
+            "#{l.userAgent}, #{l.mfaVerified}, #{l.denyReason}, #{l.accessTime}, #{l.responseTime})" +
+            "</foreach>" +
+            "</script>")
+    int batchInsert(@Param("logs") List<AccessLog> logs);
 }
@@ -30,6 +30,25 @@ public interface AuditBlockMapper extends BaseMapper<AuditBlock> {
     List<AuditBlock> selectBlocksByTimeRange(@Param("startTime") LocalDateTime startTime, 
                                             @Param("endTime") LocalDateTime endTime);
     
+    /**
+     * 按主键游标分页查询区块（限定主键上限）
+     */
+    @Select("SELECT * FROM audit_block WHERE id > #{afterId} AND id <= #{maxId} ORDER BY id LIMIT #{limit}")
+    List<AuditBlock> selectBlocksBetween(@Param("afterId") Long afterId, @Param("maxId") Long maxId,
+                                         @Param("limit") int limit);
+    
+    /**
+     * 查询最大区块ID
+     */
+    @Select("SELECT MAX(id) FROM audit_block")
+    Long selectMaxBlockId();
+    
+    /**
+     * 统计主键区间内的区块数量
+     */
+    @Select("SELECT COUNT(*) FROM audit_block WHERE id > #{afterId} AND id <= #{maxId}")
+    Long countBlocksBetween(@Param("afterId") Long afterId, @Param("maxId") Long maxId);
+    
     /**
      * 统计已上链的审计日志数量
      */
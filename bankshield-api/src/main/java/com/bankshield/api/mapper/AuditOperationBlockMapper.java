@@ -2,10 +2,13 @@ package com.bankshield.api.mapper;
 
 import com.bankshield.api.entity.AuditOperationBlock;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import org.apache.ibatis.annotations.Insert;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Select;
 import org.apache.ibatis.annotations.Param;
 
+import java.util.List;
+
 /**
  * 审计日志与区块关联Mapper接口
  * 
@@ -19,4 +22,15 @@ public interface AuditOperationBlockMapper extends BaseMapper<AuditOperationBloc
      */
     @Select("SELECT * FROM audit_operation_block WHERE audit_id = #{auditId}")
     AuditOperationBlock selectByAuditId(@Param("auditId") Long auditId);
-}
\ No newline at end of file
+    
+    /**
+     * 批量插入审计日志与区块关联（多行INSERT）
+     */
+    @Insert("<script>" +
+            "INSERT INTO audit_operation_block (audit_id, block_id, merkle_proof, index_in_block) VALUES " +
+            "<foreach collection='relations' item='r' separator=','>" +
+            "(#{r.auditId}, #{r.blockId}, #{r.merkleProof}, #{r.indexInBlock})" +
+            "</foreach>" +
+            "</script>")
+    int batchInsert(@Param("relations") List<AuditOperationBlock> relations);
+}
@@ -0,0 +1,27 @@
+package com.bankshield.api.mapper;
+
+import com.bankshield.api.entity.AuditVerifyCheckpoint;
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Select;
+
+/**
+ * 审计完整性校验检查点Mapper接口
+ * 
+ * @author BankShield
+ */
+@Mapper
+public interface AuditVerifyCheckpointMapper extends BaseMapper<AuditVerifyCheckpoint> {
+    
+    /**
+     * 查询最近一次未完成的校验
+     */
+    @Select("SELECT * FROM audit_verify_checkpoint WHERE status <> 'COMPLETED' ORDER BY id DESC LIMIT 1")
+    AuditVerifyCheckpoint selectLatestUnfinished();
+    
+    /**
+     * 查询最近一次校验
+     */
+    @Select("SELECT * FROM audit_verify_checkpoint ORDER BY id DESC LIMIT 1")
+    AuditVerifyCheckpoint selectLatest();
+}
@@ -2,23 +2,60 @@ package com.bankshield.api.mapper;
 
 import com.bankshield.api.entity.OperationAudit;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import org.apache.ibatis.annotations.Insert;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Select;
 import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Update;
 
 import java.util.List;
 
 /**
  * 操作审计Mapper接口
- * 
+ *
  * @author BankShield
  */
 @Mapper
 public interface OperationAuditMapper extends BaseMapper<OperationAudit> {
-    
+
     /**
      * 查询未上链的审计日志（按时间升序）
      */
     @Select("SELECT * FROM audit_operation WHERE block_id IS NULL ORDER BY create_time ASC LIMIT #{limit}")
     List<OperationAudit> selectPendingAudits(@Param("limit") int limit);
-}
\ No newline at end of file
+
+    /**
+     * 统计未上链的审计日志数量（最多统计到limit，避免全表计数）
+     */
+    @Select("SELECT COUNT(*) FROM (SELECT id FROM audit_operation WHERE block_id IS NULL LIMIT #{limit}) t")
+    int countPendingAudits(@Param("limit") int limit);
+
+    /**
+     * 按区块关联表集合更新审计日志的区块ID
+     */
+    @Update("UPDATE audit_operation a JOIN audit_operation_block ob ON ob.audit_id = a.id " +
+            "SET a.block_id = ob.block_id WHERE ob.block_id = #{blockId}")
+    int bindBlock(@Param("blockId") Long blockId);
+
+    /**
+     * 按区块内顺序查询区块包含的审计日志
+     */
+    @Select("SELECT a.* FROM audit_operation a JOIN audit_operation_block ob ON ob.audit_id = a.id " +
+            "WHERE ob.block_id = #{blockId} ORDER BY ob.index_in_block")
+    List<OperationAudit> selectByBlockIdOrdered(@Param("blockId") Long blockId);
+
+    /**
+     * 批量插入审计日志（多行INSERT）
+     */
+    @Insert("<script>" +
+            "INSERT INTO audit_operation (user_id, username, operation_type, operation_module, operation_content, " +
+            "request_url, request_method, request_params, response_result, ip_address, location, status, " +
+            "error_message, create_time) VALUES " +
+            "<foreach collection='audits' item='a' separator=','>" +
+            "(#{a.userId}, #{a.username}, #{a.operationType}, #{a.operationModule}, #{a.operationContent}, " +
+            "#{a.requestUrl}, #{a.requestMethod}, #{a.requestParams}, #{a.responseResult}, #{a.ipAddress}, " +
+            "#{a.location}, #{a.status}, #{a.errorMessage}, #{a.createTime})" +
+            "</foreach>" +
+            "</script>")
+    int batchInsert(@Param("audits") List<OperationAudit> audits);
+}
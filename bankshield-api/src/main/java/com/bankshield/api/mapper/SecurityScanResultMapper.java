@@ -2,6 +2,7 @@ package com.bankshield.api.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.bankshield.api.entity.SecurityScanResult;
+import org.apache.ibatis.annotations.Insert;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
 import org.apache.ibatis.annotations.Select;
@@ -66,8 +67,18 @@ public interface SecurityScanResultMapper extends BaseMapper<SecurityScanResult>
                           @Param("verifyBy") String verifyBy, @Param("verifyTime") LocalDateTime verifyTime);
 
     /**
-     * 批量插入扫描结果
+     * 批量插入扫描结果（多行INSERT）
      */
+    @Insert("<script>" +
+            "INSERT INTO security_scan_result (task_id, risk_level, risk_type, risk_description, impact_scope, " +
+            "remediation_advice, discovered_time, fix_status, fix_time, fix_by, verify_result, risk_details, " +
+            "cve_id, cvss_score, asset_info) VALUES " +
+            "<foreach collection='results' item='r' separator=','>" +
+            "(#{r.taskId}, #{r.riskLevel}, #{r.riskType}, #{r.riskDescription}, #{r.impactScope}, " +
+            "#{r.remediationAdvice}, #{r.discoveredTime}, #{r.fixStatus}, #{r.fixTime}, #{r.fixBy}, " +
+            "#{r.verifyResult}, #{r.riskDetails}, #{r.cveId}, #{r.cvssScore}, #{r.assetInfo})" +
+            "</foreach>" +
+            "</script>")
     int batchInsert(@Param("results") List<SecurityScanResult> results);
 
     /**
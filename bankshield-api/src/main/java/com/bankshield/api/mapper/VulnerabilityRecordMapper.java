@@ -2,9 +2,11 @@ package com.bankshield.api.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.bankshield.api.entity.VulnerabilityRecord;
+import org.apache.ibatis.annotations.Insert;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
 import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
 
 import java.util.List;
 import java.util.Map;
@@ -29,4 +31,55 @@ public interface VulnerabilityRecordMapper extends BaseMapper<VulnerabilityRecor
 
     @Select("SELECT COUNT(*) FROM vulnerability_record WHERE task_id = #{taskId} AND severity IN ('CRITICAL', 'HIGH')")
     int countHighRiskByTask(@Param("taskId") Long taskId);
+
+    /**
+     * 查询扫描范围内已有漏洞的指纹、规则、状态与位置，用于跨扫描去重及判定本次扫描是否覆盖
+     */
+    @Select("SELECT id, vuln_code, fingerprint, status, location FROM vulnerability_record WHERE scope_key = #{scopeKey}")
+    List<VulnerabilityRecord> selectFingerprintsByScope(@Param("scopeKey") String scopeKey);
+
+    /**
+     * 批量插入漏洞记录（多行INSERT）
+     */
+    @Insert("<script>" +
+            "INSERT INTO vulnerability_record (task_id, vuln_code, vuln_name, vuln_type, severity, cvss_score, " +
+            "cve_id, cwe_id, description, location, affected_component, affected_version, proof_of_concept, " +
+            "impact, recommendation, reference_links, status, scope_key, fingerprint, created_time, updated_time) VALUES " +
+            "<foreach collection='records' item='r' separator=','>" +
+            "(#{r.taskId}, #{r.vulnCode}, #{r.vulnName}, #{r.vulnType}, #{r.severity}, #{r.cvssScore}, " +
+            "#{r.cveId}, #{r.cweId}, #{r.description}, #{r.location}, #{r.affectedComponent}, #{r.affectedVersion}, " +
+            "#{r.proofOfConcept}, #{r.impact}, #{r.recommendation}, #{r.referenceLinks}, #{r.status}, " +
+            "#{r.scopeKey}, #{r.fingerprint}, #{r.createdTime}, #{r.updatedTime})" +
+            "</foreach>" +
+            "</script>")
+    int batchInsert(@Param("records") List<VulnerabilityRecord> records);
+
+    /**
+     * 批量重新打开已修复后再次发现的漏洞
+     */
+    @Update("<script>" +
+            "UPDATE vulnerability_record SET status = 'OPEN', task_id = #{taskId}, resolved_by = NULL, " +
+            "resolved_time = NULL, updated_time = NOW() WHERE id IN " +
+            "<foreach collection='ids' item='id' open='(' separator=',' close=')'>#{id}</foreach>" +
+            "</script>")
+    int reopenByIds(@Param("ids") List<Long> ids, @Param("taskId") Long taskId);
+
+    /**
+     * 批量记录复扫仍存在且未变化的漏洞的最近发现任务，只更新任务ID
+     */
+    @Update("<script>" +
+            "UPDATE vulnerability_record SET task_id = #{taskId}, updated_time = updated_time WHERE id IN " +
+            "<foreach collection='ids' item='id' open='(' separator=',' close=')'>#{id}</foreach>" +
+            "</script>")
+    int markSeenByIds(@Param("ids") List<Long> ids, @Param("taskId") Long taskId);
+
+    /**
+     * 批量将复扫未再发现的漏洞标记为已修复
+     */
+    @Update("<script>" +
+            "UPDATE vulnerability_record SET status = 'RESOLVED', resolved_by = #{resolvedBy}, resolved_time = NOW(), " +
+            "resolution_notes = #{notes}, updated_time = NOW() WHERE id IN " +
+            "<foreach collection='ids' item='id' open='(' separator=',' close=')'>#{id}</foreach>" +
+            "</script>")
+    int resolveByIds(@Param("ids") List<Long> ids, @Param("resolvedBy") String resolvedBy, @Param("notes") String notes);
 }
@@ -3,90 +3,372 @@ package com.bankshield.api.scanner;
 import com.bankshield.api.entity.ScanRule;
 import com.bankshield.api.entity.VulnerabilityRecord;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
-import java.io.BufferedReader;
-import java.io.File;
-import java.io.FileReader;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
 import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+import java.util.stream.Collectors;
 
+/**
+ * 源代码安全扫描器
+ * 规则正则每次扫描只编译一次；文件树用Files.walkFileTree遍历（不跟随目录符号链接），无法访问的目录或文件
+ * 跳过并记录后继续遍历，收集到的文件在工作窃取线程池中并行扫描，大文件以内存映射方式读取。
+ * 按文件缓存内容哈希及其扫描发现，规则集未变时：文件大小与修改时间未变且修改时间早于上次扫描超过文件系统时间戳精度，
+ * 或内容哈希未变，直接复用上次的发现，增量扫描只重新扫描变更的文件。
+ * 扫描结果带完整性标记与成功扫描的文件集合，跳过的路径与读取失败的文件使结果不完整。
+ */
 @Slf4j
 @Component
 public class CodeSecurityScanner {
 
-    public List<VulnerabilityRecord> scanJavaCode(Long taskId, String sourcePath, List<ScanRule> rules) {
-        List<VulnerabilityRecord> vulnerabilities = new ArrayList<>();
-        
+    /**
+     * 文件系统修改时间精度上限（FAT为2秒），修改时间落在上次扫描前这一窗口内的文件，
+     * 扫描后可能再被修改而修改时间不变，不能只凭大小和修改时间判定未变更
+     */
+    private static final long MTIME_GRANULARITY_MS = 2000;
+
+    @Value("${security-scan.code.parallelism:0}")
+    private int parallelism;
+
+    @Value("${security-scan.code.mmap-threshold-kb:1024}")
+    private int mmapThresholdKb;
+
+    private ForkJoinPool scanPool;
+
+    /**
+     * 文件扫描缓存，键为规范化的绝对路径
+     */
+    private final Map<String, FileScanCache> fileCache = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        int threads = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        scanPool = new ForkJoinPool(threads);
+        log.info("代码安全扫描器初始化完成: 并行度={}, 内存映射阈值={}KB", threads, mmapThresholdKb);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (scanPool != null) {
+            scanPool.shutdownNow();
+        }
+    }
+
+    public ScanOutcome scanJavaCode(Long taskId, String sourcePath, List<ScanRule> rules) {
         log.info("开始代码安全扫描，路径: {}", sourcePath);
-        
-        File sourceDir = new File(sourcePath);
-        if (!sourceDir.exists()) {
+
+        Path root = Paths.get(sourcePath).toAbsolutePath().normalize();
+        if (!Files.exists(root)) {
             log.warn("源代码路径不存在: {}", sourcePath);
-            return vulnerabilities;
+            return ScanOutcome.incomplete(new ArrayList<>(), Collections.singletonList(sourcePath));
+        }
+
+        long start = System.currentTimeMillis();
+        Set<String> failedRules = new HashSet<>();
+        List<CompiledRule> compiledRules = compileRules(rules, failedRules);
+        String rulesFingerprint = fingerprint(compiledRules);
+        Map<String, CompiledRule> rulesByCode = new HashMap<>();
+        for (CompiledRule rule : compiledRules) {
+            rulesByCode.put(rule.rule.getRuleCode(), rule);
         }
-        
-        scanDirectory(taskId, sourceDir, rules, vulnerabilities);
-        
-        log.info("代码安全扫描完成，发现 {} 个漏洞", vulnerabilities.size());
-        return vulnerabilities;
-    }
 
-    private void scanDirectory(Long taskId, File dir, List<ScanRule> rules, List<VulnerabilityRecord> vulnerabilities) {
-        File[] files = dir.listFiles();
-        if (files == null) {
-            return;
+        List<Path> files = new ArrayList<>();
+        List<Path> skippedPaths = new ArrayList<>();
+        try {
+            collectSourceFiles(root, files, skippedPaths);
+        } catch (IOException e) {
+            log.error("遍历源代码目录失败: {} - {}", sourcePath, e.getMessage());
+            return ScanOutcome.incomplete(new ArrayList<>(), Collections.singletonList(sourcePath));
+        }
+        Collections.sort(files);
+        if (!skippedPaths.isEmpty()) {
+            log.warn("代码安全扫描跳过 {} 个无法访问的路径: {}", skippedPaths.size(), skippedPaths);
         }
-        
-        for (File file : files) {
-            if (file.isDirectory()) {
-                scanDirectory(taskId, file, rules, vulnerabilities);
-            } else if (file.getName().endsWith(".java")) {
-                scanFile(taskId, file, rules, vulnerabilities);
+
+        AtomicInteger rescanned = new AtomicInteger();
+        Set<String> scannedFiles = ConcurrentHashMap.newKeySet();
+        List<VulnerabilityRecord> vulnerabilities;
+        try {
+            vulnerabilities = scanPool.submit(() -> files.parallelStream()
+                    .flatMap(file -> scanFile(taskId, file, compiledRules, rulesByCode, rulesFingerprint, rescanned,
+                            scannedFiles).stream())
+                    .collect(Collectors.toList()))
+                    .get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("代码安全扫描被中断", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("代码安全扫描失败: " + e.getCause().getMessage(), e.getCause());
+        }
+
+        evictDeletedFiles(root, files, skippedPaths);
+
+        List<String> failures = new ArrayList<>(failedRules);
+        skippedPaths.forEach(path -> failures.add(path.toString()));
+        for (Path file : files) {
+            if (!scannedFiles.contains(file.toString())) {
+                failures.add(file.toString());
             }
         }
+        log.info("代码安全扫描完成，共 {} 个文件（重新扫描 {} 个，复用缓存 {} 个，失败 {} 个），发现 {} 个漏洞，耗时 {} ms",
+                files.size(), rescanned.get(), scannedFiles.size() - rescanned.get(), files.size() - scannedFiles.size(),
+                vulnerabilities.size(), System.currentTimeMillis() - start);
+        return new ScanOutcome(vulnerabilities, failures.isEmpty(), scannedFiles, failures, failedRules);
     }
 
-    private void scanFile(Long taskId, File file, List<ScanRule> rules, List<VulnerabilityRecord> vulnerabilities) {
-        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-            String line;
-            int lineNumber = 0;
-            
-            while ((line = reader.readLine()) != null) {
-                lineNumber++;
-                
-                for (ScanRule rule : rules) {
-                    if (detectVulnerability(line, rule)) {
-                        VulnerabilityRecord vuln = createVulnerability(taskId, file, lineNumber, line, rule);
-                        vulnerabilities.add(vuln);
-                        log.warn("发现代码安全问题: {} - {} ({}:{})", 
-                                rule.getRuleCode(), rule.getRuleName(), file.getName(), lineNumber);
-                    }
+    /**
+     * 遍历收集.java文件，无法访问的目录或文件记入skippedPaths后继续遍历
+     */
+    private void collectSourceFiles(Path root, List<Path> files, List<Path> skippedPaths) throws IOException {
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+                if (file.toString().endsWith(".java")
+                        && (attributes.isRegularFile() || attributes.isSymbolicLink() && Files.isRegularFile(file))) {
+                    files.add(file);
                 }
+                return FileVisitResult.CONTINUE;
             }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                log.debug("无法访问路径，已跳过: {} - {}", file, e.toString());
+                skippedPaths.add(file);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /**
+     * 清空文件扫描缓存，下次扫描将全量扫描
+     */
+    public void clearCache() {
+        fileCache.clear();
+    }
+
+    private List<VulnerabilityRecord> scanFile(Long taskId, Path file, List<CompiledRule> rules,
+                                               Map<String, CompiledRule> rulesByCode, String rulesFingerprint,
+                                               AtomicInteger rescanned, Set<String> scannedFiles) {
+        String key = file.toString();
+        try {
+            // 先取时间再读属性和内容，保证之后的修改要么改变修改时间，要么落在时间戳精度窗口内被重新哈希
+            long scannedAt = System.currentTimeMillis();
+            BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            long size = attributes.size();
+            long lastModified = attributes.lastModifiedTime().toMillis();
+
+            FileScanCache cached = fileCache.get(key);
+            if (cached != null && rulesFingerprint.equals(cached.rulesFingerprint)
+                    && cached.size == size && cached.lastModified == lastModified
+                    && lastModified + MTIME_GRANULARITY_MS <= cached.scannedAt) {
+                scannedFiles.add(key);
+                return toVulnerabilities(taskId, file, cached.findings, rulesByCode);
+            }
+
+            ByteBuffer content = read(file, size);
+            String contentHash = sha256(content.duplicate());
+            if (cached != null && rulesFingerprint.equals(cached.rulesFingerprint)
+                    && contentHash.equals(cached.contentHash)) {
+                // 内容未变，仅修改时间变化或修改时间过于接近上次扫描
+                fileCache.put(key, new FileScanCache(size, lastModified, scannedAt, contentHash, rulesFingerprint,
+                        cached.findings));
+                scannedFiles.add(key);
+                return toVulnerabilities(taskId, file, cached.findings, rulesByCode);
+            }
+
+            List<Finding> findings = scanContent(decode(content), rules);
+            fileCache.put(key, new FileScanCache(size, lastModified, scannedAt, contentHash, rulesFingerprint, findings));
+            for (Finding finding : findings) {
+                CompiledRule rule = rulesByCode.get(finding.ruleCode);
+                log.warn("发现代码安全问题: {} - {} ({}:{})",
+                        rule.rule.getRuleCode(), rule.rule.getRuleName(), file.getFileName(), finding.lineNumber);
+            }
+            rescanned.incrementAndGet();
+            scannedFiles.add(key);
+            return toVulnerabilities(taskId, file, findings, rulesByCode);
         } catch (Exception e) {
-            log.error("扫描文件失败: {} - {}", file.getAbsolutePath(), e.getMessage());
+            log.error("扫描文件失败: {} - {}", file, e.getMessage());
+            fileCache.remove(key);
+            return Collections.emptyList();
         }
     }
 
-    private boolean detectVulnerability(String code, ScanRule rule) {
-        String pattern = rule.getDetectionPattern();
-        if (pattern == null || pattern.isEmpty()) {
-            return false;
+    /**
+     * 逐行匹配全部规则，每条规则在文件内复用同一个Matcher，行以CharBuffer视图传入避免复制
+     */
+    private List<Finding> scanContent(CharBuffer text, List<CompiledRule> rules) {
+        List<Finding> findings = new ArrayList<>();
+        if (rules.isEmpty()) {
+            return findings;
+        }
+        Matcher[] matchers = new Matcher[rules.size()];
+        for (int i = 0; i < matchers.length; i++) {
+            matchers[i] = rules.get(i).pattern.matcher("");
+        }
+
+        int length = text.length();
+        int lineStart = 0;
+        int lineNumber = 0;
+        while (lineStart < length) {
+            int lineEnd = lineStart;
+            while (lineEnd < length && text.get(lineEnd) != '\n' && text.get(lineEnd) != '\r') {
+                lineEnd++;
+            }
+            lineNumber++;
+            CharSequence line = text.subSequence(lineStart, lineEnd);
+            for (int i = 0; i < matchers.length; i++) {
+                if (matchers[i].reset(line).find()) {
+                    findings.add(new Finding(rules.get(i).rule.getRuleCode(), lineNumber, line.toString().trim()));
+                }
+            }
+            // 与BufferedReader.readLine一致：\r\n视为一个换行
+            if (lineEnd + 1 < length && text.get(lineEnd) == '\r' && text.get(lineEnd + 1) == '\n') {
+                lineEnd++;
+            }
+            lineStart = lineEnd + 1;
         }
-        
+        return findings;
+    }
+
+    private ByteBuffer read(Path file, long size) throws IOException {
+        if (size >= mmapThresholdKb * 1024L) {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+        }
+        return ByteBuffer.wrap(Files.readAllBytes(file));
+    }
+
+    private CharBuffer decode(ByteBuffer content) throws CharacterCodingException {
+        return StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE)
+                .decode(content);
+    }
+
+    /**
+     * 编译规则正则，无效的规则记入failedRules，使本次扫描结果不完整
+     */
+    private List<CompiledRule> compileRules(List<ScanRule> rules, Set<String> failedRules) {
+        List<CompiledRule> compiled = new ArrayList<>();
+        if (rules == null) {
+            return compiled;
+        }
+        for (ScanRule rule : rules) {
+            String pattern = rule.getDetectionPattern();
+            if (pattern == null || pattern.isEmpty()) {
+                continue;
+            }
+            try {
+                compiled.add(new CompiledRule(rule, Pattern.compile(pattern, Pattern.CASE_INSENSITIVE)));
+            } catch (PatternSyntaxException e) {
+                log.error("规则正则表达式无效，已跳过: {} - {}", rule.getRuleCode(), e.getMessage());
+                failedRules.add(rule.getRuleCode());
+            }
+        }
+        return compiled;
+    }
+
+    /**
+     * 规则集指纹：规则编码或检测正则变化时缓存的发现失效
+     */
+    private String fingerprint(List<CompiledRule> rules) {
+        StringBuilder builder = new StringBuilder();
+        for (CompiledRule rule : rules) {
+            builder.append(rule.rule.getRuleCode()).append('\u0000')
+                    .append(rule.pattern.pattern()).append('\u0001');
+        }
+        return sha256(ByteBuffer.wrap(builder.toString().getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * 移除扫描根路径下已删除文件的缓存，本次跳过的路径下的缓存保留
+     */
+    private void evictDeletedFiles(Path root, List<Path> files, List<Path> skippedPaths) {
+        Set<String> present = new HashSet<>(files.size() * 2);
+        for (Path file : files) {
+            present.add(file.toString());
+        }
+        fileCache.keySet().removeIf(key -> isUnder(key, root) && !present.contains(key)
+                && skippedPaths.stream().noneMatch(skipped -> isUnder(key, skipped)));
+    }
+
+    private static boolean isUnder(String key, Path directory) {
+        String directoryKey = directory.toString();
+        String separator = directory.getFileSystem().getSeparator();
+        return key.equals(directoryKey)
+                || key.startsWith(directoryKey.endsWith(separator) ? directoryKey : directoryKey + separator);
+    }
+
+    private List<VulnerabilityRecord> toVulnerabilities(Long taskId, Path file, List<Finding> findings,
+                                                        Map<String, CompiledRule> rulesByCode) {
+        if (findings.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<VulnerabilityRecord> vulnerabilities = new ArrayList<>(findings.size());
+        for (Finding finding : findings) {
+            ScanRule rule = rulesByCode.get(finding.ruleCode).rule;
+            vulnerabilities.add(createVulnerability(taskId, file, finding.lineNumber, finding.code, rule));
+        }
+        return vulnerabilities;
+    }
+
+    private static String sha256(ByteBuffer content) {
         try {
-            return Pattern.compile(pattern, Pattern.CASE_INSENSITIVE).matcher(code).find();
-        } catch (Exception e) {
-            log.error("正则表达式匹配失败: {}", e.getMessage());
-            return false;
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(content);
+            StringBuilder hex = new StringBuilder(64);
+            for (byte b : digest.digest()) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
         }
     }
 
-    private VulnerabilityRecord createVulnerability(Long taskId, File file, int lineNumber, 
+    /**
+     * 漏洞位置（"文件路径:行号"）中的文件路径，行号仅用于展示，不参与去重与覆盖判定
+     */
+    static String filePath(String location) {
+        int separator = location.lastIndexOf(':');
+        return separator > 0 ? location.substring(0, separator) : location;
+    }
+
+    private VulnerabilityRecord createVulnerability(Long taskId, Path file, int lineNumber,
                                                     String code, ScanRule rule) {
         VulnerabilityRecord vuln = new VulnerabilityRecord();
         vuln.setTaskId(taskId);
@@ -96,8 +378,8 @@ public class CodeSecurityScanner {
         vuln.setSeverity(rule.getSeverity());
         vuln.setCvssScore(calculateCvssScore(rule.getSeverity()));
         vuln.setDescription(rule.getDescription());
-        vuln.setLocation(file.getAbsolutePath() + ":" + lineNumber);
-        vuln.setProofOfConcept("代码行: " + code.trim());
+        vuln.setLocation(file + ":" + lineNumber);
+        vuln.setProofOfConcept("代码行: " + code);
         vuln.setImpact("可能导致敏感信息泄露或系统安全风险");
         vuln.setRecommendation("1. 使用安全的编码实践\n2. 避免硬编码敏感信息\n3. 使用配置文件或环境变量\n4. 定期进行代码审查");
         vuln.setReferenceLinks(rule.getReferenceLinks());
@@ -116,4 +398,48 @@ public class CodeSecurityScanner {
             default: return new BigDecimal("0.0");
         }
     }
+
+    private static class CompiledRule {
+        private final ScanRule rule;
+        private final Pattern pattern;
+
+        CompiledRule(ScanRule rule, Pattern pattern) {
+            this.rule = rule;
+            this.pattern = pattern;
+        }
+    }
+
+    /**
+     * 单条发现：规则编码、行号与去除首尾空白的代码行
+     */
+    private static class Finding {
+        private final String ruleCode;
+        private final int lineNumber;
+        private final String code;
+
+        Finding(String ruleCode, int lineNumber, String code) {
+            this.ruleCode = ruleCode;
+            this.lineNumber = lineNumber;
+            this.code = code;
+        }
+    }
+
+    private static class FileScanCache {
+        private final long size;
+        private final long lastModified;
+        private final long scannedAt;
+        private final String contentHash;
+        private final String rulesFingerprint;
+        private final List<Finding> findings;
+
+        FileScanCache(long size, long lastModified, long scannedAt, String contentHash, String rulesFingerprint,
+                      List<Finding> findings) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.scannedAt = scannedAt;
+            this.contentHash = contentHash;
+            this.rulesFingerprint = rulesFingerprint;
+            this.findings = findings;
+        }
+    }
 }
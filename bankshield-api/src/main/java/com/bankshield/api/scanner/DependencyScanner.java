@@ -9,13 +9,17 @@ import java.io.File;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 @Slf4j
 @Component
 public class DependencyScanner {
 
-    public List<VulnerabilityRecord> scanMavenDependencies(Long taskId, String pomPath) {
+    /**
+     * 扫描Maven依赖，文件不存在或解析出错时结果标记为不完整
+     */
+    public ScanOutcome scanMavenDependencies(Long taskId, String pomPath) {
         List<VulnerabilityRecord> vulnerabilities = new ArrayList<>();
         
         log.info("开始Maven依赖扫描，pom.xml路径: {}", pomPath);
@@ -24,7 +28,7 @@ public class DependencyScanner {
             File pomFile = new File(pomPath);
             if (!pomFile.exists()) {
                 log.warn("pom.xml文件不存在: {}", pomPath);
-                return vulnerabilities;
+                return ScanOutcome.incomplete(vulnerabilities, Collections.singletonList(pomPath));
             }
             
             // TODO: 实际实现需要解析pom.xml并查询NVD数据库
@@ -51,13 +55,17 @@ public class DependencyScanner {
             
         } catch (Exception e) {
             log.error("Maven依赖扫描失败: {}", e.getMessage(), e);
+            return ScanOutcome.incomplete(vulnerabilities, Collections.singletonList(pomPath));
         }
         
         log.info("Maven依赖扫描完成，发现 {} 个漏洞", vulnerabilities.size());
-        return vulnerabilities;
+        return ScanOutcome.complete(vulnerabilities);
     }
 
-    public List<VulnerabilityRecord> scanNpmDependencies(Long taskId, String packageJsonPath) {
+    /**
+     * 扫描NPM依赖，文件不存在或解析出错时结果标记为不完整
+     */
+    public ScanOutcome scanNpmDependencies(Long taskId, String packageJsonPath) {
         List<VulnerabilityRecord> vulnerabilities = new ArrayList<>();
         
         log.info("开始NPM依赖扫描，package.json路径: {}", packageJsonPath);
@@ -66,7 +74,7 @@ public class DependencyScanner {
             File packageFile = new File(packageJsonPath);
             if (!packageFile.exists()) {
                 log.warn("package.json文件不存在: {}", packageJsonPath);
-                return vulnerabilities;
+                return ScanOutcome.incomplete(vulnerabilities, Collections.singletonList(packageJsonPath));
             }
             
             // TODO: 实际实现需要解析package.json并查询npm audit
@@ -74,10 +82,11 @@ public class DependencyScanner {
             
         } catch (Exception e) {
             log.error("NPM依赖扫描失败: {}", e.getMessage(), e);
+            return ScanOutcome.incomplete(vulnerabilities, Collections.singletonList(packageJsonPath));
         }
         
         log.info("NPM依赖扫描完成，发现 {} 个漏洞", vulnerabilities.size());
-        return vulnerabilities;
+        return ScanOutcome.complete(vulnerabilities);
     }
 
     public List<DependencyComponent> extractDependencies(String filePath, String type) {
@@ -0,0 +1,43 @@
+package com.bankshield.api.scanner;
+
+import lombok.Data;
+
+/**
+ * 一次扫描与已有漏洞记录对账后的变化统计
+ */
+@Data
+public class FindingDelta {
+
+    /**
+     * 本次发现的漏洞数（已去除本次扫描内的重复）
+     */
+    private int foundCount;
+
+    /**
+     * 首次发现并新插入的漏洞数
+     */
+    private int newCount;
+
+    /**
+     * 已修复后再次发现而重新打开的漏洞数
+     */
+    private int reopenedCount;
+
+    /**
+     * 复扫未再发现而标记为已修复的漏洞数
+     */
+    private int fixedCount;
+
+    /**
+     * 已存在且状态不变、未写库的漏洞数
+     */
+    private int unchangedCount;
+
+    public void add(FindingDelta other) {
+        foundCount += other.foundCount;
+        newCount += other.newCount;
+        reopenedCount += other.reopenedCount;
+        fixedCount += other.fixedCount;
+        unchangedCount += other.unchangedCount;
+    }
+}
@@ -0,0 +1,440 @@
+package com.bankshield.api.scanner;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+
+/**
+ * 并发端口与服务探测引擎
+ * 每个探测在虚拟线程中执行，阻塞式建连不占用平台线程，可同时保持数千个连接在途；
+ * 全局信号量限制在途连接总数，每个目标主机另有独立的并发上限，避免压垮单台主机。
+ * 超时按主机自适应：以建连成功或被拒绝（RST）的往返时间按RFC 6298估算RTO，被过滤端口不再等待固定的长超时。
+ * RTT估算按主机缓存并在空闲超过TTL后丢弃，后续扫描直接沿用；尚无样本的主机先单独发出一个探测，
+ * 取得首个往返样本后其余端口再并发探测，避免所有建连都使用初始超时。
+ * 端口开放后先被动读取服务标识，服务不主动发送时再发送HTTP HEAD请求获取响应头。
+ */
+@Slf4j
+@Component
+public class PortProbeEngine {
+
+    @Value("${security-scan.probe.global-concurrency:1024}")
+    private int globalConcurrency;
+
+    @Value("${security-scan.probe.per-target-concurrency:64}")
+    private int perTargetConcurrency;
+
+    @Value("${security-scan.probe.initial-timeout-ms:1500}")
+    private int initialTimeoutMs;
+
+    @Value("${security-scan.probe.min-timeout-ms:1000}")
+    private int minTimeoutMs;
+
+    @Value("${security-scan.probe.max-timeout-ms:5000}")
+    private int maxTimeoutMs;
+
+    @Value("${security-scan.probe.banner-timeout-ms:1000}")
+    private int bannerTimeoutMs;
+
+    @Value("${security-scan.probe.banner-max-bytes:1024}")
+    private int bannerMaxBytes;
+
+    @Value("${security-scan.probe.max-targets:1024}")
+    private int maxTargets;
+
+    @Value("${security-scan.probe.host-state-ttl-ms:600000}")
+    private long hostStateTtlMs;
+
+    private final ConcurrentHashMap<String, HostState> hostStates = new ConcurrentHashMap<>();
+
+    private Semaphore globalPermits;
+
+    private ExecutorService executor;
+
+    @PostConstruct
+    public void init() {
+        globalPermits = new Semaphore(globalConcurrency);
+        executor = Executors.newVirtualThreadPerTaskExecutor();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 解析扫描目标，支持逗号/空白分隔的主机名、IP、URL以及IPv4 CIDR（前缀不小于16）
+     *
+     * @throws IllegalArgumentException 目标格式错误或数量超过上限时
+     */
+    public List<String> expandTargets(String scanTarget) {
+        Set<String> hosts = new LinkedHashSet<>();
+        if (scanTarget == null) {
+            return new ArrayList<>();
+        }
+        for (String token : scanTarget.trim().split("[,;\\s]+")) {
+            if (token.isEmpty()) {
+                continue;
+            }
+            if (token.contains("://")) {
+                String host = URI.create(token).getHost();
+                if (host == null) {
+                    throw new IllegalArgumentException("无法解析扫描目标: " + token);
+                }
+                addTarget(hosts, host);
+            } else if (token.contains("/")) {
+                expandCidr(hosts, token);
+            } else if (token.indexOf(':') > 0 && token.indexOf(':') == token.lastIndexOf(':')) {
+                addTarget(hosts, token.substring(0, token.indexOf(':')));
+            } else {
+                addTarget(hosts, token);
+            }
+        }
+        return new ArrayList<>(hosts);
+    }
+
+    /**
+     * 并发探测主机端口
+     *
+     * @param hosts 目标主机
+     * @param ports 端口列表
+     * @param cancelled 返回true时停止发起新的探测
+     * @return 探测结果，按主机、端口的输入顺序排列；无法解析的主机不出现在结果中
+     */
+    public List<PortProbeResult> probe(Collection<String> hosts, int[] ports, BooleanSupplier cancelled) {
+        long startTime = System.currentTimeMillis();
+        evictIdleHostStates(startTime);
+        List<HostState> registered = new ArrayList<>(hosts.size());
+        List<Future<PortProbeResult>> futures = new ArrayList<>(hosts.size() * ports.length);
+        List<PortProbeResult> results = new ArrayList<>(futures.size());
+        try {
+            for (String host : hosts) {
+                HostState state = registerHostState(host, startTime);
+                registered.add(state);
+                ScanTarget target = new ScanTarget(state);
+                for (int port : ports) {
+                    futures.add(executor.submit(() -> probeOne(target, port, cancelled)));
+                }
+            }
+
+            for (Future<PortProbeResult> future : futures) {
+                PortProbeResult result = future.get();
+                if (result != null) {
+                    results.add(result);
+                }
+            }
+        } catch (InterruptedException e) {
+            futures.forEach(future -> future.cancel(true));
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            futures.forEach(future -> future.cancel(true));
+            throw new IllegalStateException("端口探测失败: " + e.getCause().getMessage(), e.getCause());
+        } finally {
+            registered.forEach(this::releaseHostState);
+        }
+        long open = results.stream().filter(PortProbeResult::isOpen).count();
+        log.info("端口探测完成，主机数: {}, 探测数: {}, 开放: {}, 耗时: {}ms",
+                hosts.size(), results.size(), open, System.currentTimeMillis() - startTime);
+        return results;
+    }
+
+    /**
+     * 淘汰空闲超过TTL且没有扫描在使用的主机状态；在用状态被淘汰会让后续扫描新建状态，使单主机并发上限翻倍
+     */
+    private void evictIdleHostStates(long now) {
+        for (String host : hostStates.keySet()) {
+            hostStates.computeIfPresent(host, (key, state) ->
+                    state.activeScans == 0 && now - state.lastUsed > hostStateTtlMs ? null : state);
+        }
+    }
+
+    /**
+     * 登记一次扫描对主机状态的使用，与淘汰在同一个键锁内进行
+     */
+    private HostState registerHostState(String host, long now) {
+        return hostStates.compute(host, (key, state) -> {
+            HostState current = state != null ? state : new HostState(key);
+            current.activeScans++;
+            current.lastUsed = now;
+            return current;
+        });
+    }
+
+    private void releaseHostState(HostState state) {
+        hostStates.computeIfPresent(state.name, (key, current) -> {
+            current.activeScans--;
+            current.lastUsed = System.currentTimeMillis();
+            return current;
+        });
+    }
+
+    private PortProbeResult probeOne(ScanTarget target, int port, BooleanSupplier cancelled) throws InterruptedException {
+        HostState host = target.host;
+        host.permits.acquire();
+        try {
+            if (cancelled.getAsBoolean()) {
+                return null;
+            }
+            InetAddress address = target.resolve();
+            if (address == null) {
+                return null;
+            }
+            boolean pacing = host.awaitWarmup();
+            try {
+                if (!pacing && cancelled.getAsBoolean()) {
+                    return null;
+                }
+                globalPermits.acquire();
+                try {
+                    return connect(host, address, port);
+                } finally {
+                    globalPermits.release();
+                }
+            } finally {
+                if (pacing) {
+                    host.warmedUp.countDown();
+                }
+            }
+        } finally {
+            host.permits.release();
+        }
+    }
+
+    private PortProbeResult connect(HostState host, InetAddress address, int port) {
+        int timeout = host.timeout();
+        long start = System.nanoTime();
+        try (Socket socket = new Socket()) {
+            socket.connect(new InetSocketAddress(address, port), timeout);
+            long latency = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            host.sample(latency);
+            return new PortProbeResult(host.name, port, PortProbeResult.OPEN, grabBanner(socket, host.name), latency);
+        } catch (ConnectException e) {
+            // 连接被拒绝同样是一次完整的往返，可用于估算RTT
+            long latency = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            host.sample(latency);
+            return new PortProbeResult(host.name, port, PortProbeResult.CLOSED, null, latency);
+        } catch (SocketTimeoutException e) {
+            return new PortProbeResult(host.name, port, PortProbeResult.FILTERED, null, timeout);
+        } catch (IOException e) {
+            long latency = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            log.debug("探测{}:{}失败: {}", host.name, port, e.getMessage());
+            return new PortProbeResult(host.name, port, PortProbeResult.FILTERED, null, latency);
+        }
+    }
+
+    /**
+     * 读取服务标识：先被动读取，服务未主动发送时发送HTTP HEAD请求
+     */
+    private String grabBanner(Socket socket, String host) {
+        byte[] buffer = new byte[bannerMaxBytes];
+        try {
+            socket.setSoTimeout(bannerTimeoutMs);
+            InputStream in = socket.getInputStream();
+            int length = readOnce(in, buffer, 0);
+            if (length == 0) {
+                OutputStream out = socket.getOutputStream();
+                out.write(("HEAD / HTTP/1.0\r\nHost: " + host + "\r\nConnection: close\r\n\r\n")
+                        .getBytes(StandardCharsets.ISO_8859_1));
+                out.flush();
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(bannerTimeoutMs);
+                while (length < buffer.length && !endsWithBlankLine(buffer, length) && System.nanoTime() < deadline) {
+                    int read = readOnce(in, buffer, length);
+                    if (read <= 0) {
+                        break;
+                    }
+                    length += read;
+                }
+            }
+            return length > 0 ? sanitize(buffer, length) : null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 读取一次，超时返回0，连接关闭返回-1
+     */
+    private static int readOnce(InputStream in, byte[] buffer, int offset) throws IOException {
+        try {
+            return in.read(buffer, offset, buffer.length - offset);
+        } catch (SocketTimeoutException e) {
+            return 0;
+        }
+    }
+
+    private static boolean endsWithBlankLine(byte[] buffer, int length) {
+        return length >= 4 && buffer[length - 4] == '\r' && buffer[length - 3] == '\n'
+                && buffer[length - 2] == '\r' && buffer[length - 1] == '\n';
+    }
+
+    /**
+     * 保留可打印字符和换行，其余替换为'.'
+     */
+    private static String sanitize(byte[] buffer, int length) {
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            int b = buffer[i] & 0xFF;
+            chars[i] = (b >= 0x20 && b < 0x7F) || b == '\r' || b == '\n' || b == '\t' ? (char) b : '.';
+        }
+        return new String(chars).trim();
+    }
+
+    private void addTarget(Set<String> hosts, String host) {
+        hosts.add(host);
+        if (hosts.size() > maxTargets) {
+            throw new IllegalArgumentException("扫描目标数量超过上限: " + maxTargets);
+        }
+    }
+
+    private void expandCidr(Set<String> hosts, String cidr) {
+        String[] parts = cidr.split("/");
+        int prefix;
+        byte[] base;
+        try {
+            prefix = Integer.parseInt(parts[1]);
+            base = InetAddress.getByName(parts[0]).getAddress();
+        } catch (NumberFormatException | UnknownHostException | ArrayIndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("无效的网段: " + cidr);
+        }
+        if (parts.length != 2 || base.length != 4 || prefix < 16 || prefix > 32) {
+            throw new IllegalArgumentException("仅支持前缀16~32的IPv4网段: " + cidr);
+        }
+        long network = ((base[0] & 0xFFL) << 24 | (base[1] & 0xFFL) << 16 | (base[2] & 0xFFL) << 8 | (base[3] & 0xFFL))
+                & (0xFFFFFFFFL << (32 - prefix)) & 0xFFFFFFFFL;
+        long size = 1L << (32 - prefix);
+        // 前缀不大于30时跳过网络地址和广播地址
+        long first = prefix <= 30 ? 1 : 0;
+        long last = prefix <= 30 ? size - 2 : size - 1;
+        for (long i = first; i <= last; i++) {
+            long address = network + i;
+            addTarget(hosts, (address >>> 24) + "." + (address >>> 16 & 0xFF) + "." + (address >>> 8 & 0xFF)
+                    + "." + (address & 0xFF));
+        }
+    }
+
+    /**
+     * 单次扫描内的目标主机，地址只解析一次，不跨扫描缓存
+     */
+    private static final class ScanTarget {
+        private final HostState host;
+        private final ReentrantLock resolveLock = new ReentrantLock();
+        private volatile boolean resolved;
+        private volatile InetAddress address;
+
+        private ScanTarget(HostState host) {
+            this.host = host;
+        }
+
+        /**
+         * 解析一次地址，使用ReentrantLock避免DNS查询时钉住虚拟线程的载体线程
+         */
+        private InetAddress resolve() {
+            if (!resolved) {
+                resolveLock.lock();
+                try {
+                    if (!resolved) {
+                        try {
+                            address = InetAddress.getByName(host.name);
+                        } catch (UnknownHostException e) {
+                            log.warn("无法解析扫描目标: {}", host.name);
+                        }
+                        resolved = true;
+                    }
+                } finally {
+                    resolveLock.unlock();
+                }
+            }
+            return address;
+        }
+    }
+
+    /**
+     * 单个主机的并发许可和自适应超时，跨扫描缓存
+     */
+    private final class HostState {
+        private final String name;
+        private final Semaphore permits = new Semaphore(perTargetConcurrency);
+        private final AtomicBoolean warmupClaimed = new AtomicBoolean();
+        private final CountDownLatch warmedUp = new CountDownLatch(1);
+        private volatile long lastUsed;
+        /**
+         * 正在使用该状态的扫描数，只在 hostStates 的键锁内读写
+         */
+        private int activeScans;
+        private double smoothedRtt = -1;
+        private double rttVariance;
+
+        private HostState(String name) {
+            this.name = name;
+        }
+
+        /**
+         * 首个探测完成前只放行一个探测，其余等待
+         *
+         * @return 当前线程是否为放行的首个探测，是则完成后须调用 warmedUp.countDown()
+         */
+        private boolean awaitWarmup() throws InterruptedException {
+            if (warmedUp.getCount() == 0) {
+                return false;
+            }
+            if (warmupClaimed.compareAndSet(false, true)) {
+                return true;
+            }
+            warmedUp.await();
+            return false;
+        }
+
+        /**
+         * 记录一次往返时间（RFC 6298）
+         */
+        private synchronized void sample(long rttMillis) {
+            if (smoothedRtt < 0) {
+                smoothedRtt = rttMillis;
+                rttVariance = rttMillis / 2.0;
+            } else {
+                rttVariance = 0.75 * rttVariance + 0.25 * Math.abs(smoothedRtt - rttMillis);
+                smoothedRtt = 0.875 * smoothedRtt + 0.125 * rttMillis;
+            }
+        }
+
+        /**
+         * 当前建连超时，尚无样本时使用初始超时
+         */
+        private synchronized int timeout() {
+            if (smoothedRtt < 0) {
+                return initialTimeoutMs;
+            }
+            long rto = Math.round(smoothedRtt + 4 * rttVariance);
+            return (int) Math.max(minTimeoutMs, Math.min(maxTimeoutMs, rto));
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.bankshield.api.scanner;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 端口探测结果
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PortProbeResult {
+
+    public static final String OPEN = "OPEN";
+    public static final String CLOSED = "CLOSED";
+    public static final String FILTERED = "FILTERED";
+
+    /**
+     * 目标主机
+     */
+    private String host;
+
+    /**
+     * 端口
+     */
+    private int port;
+
+    /**
+     * 端口状态：OPEN、CLOSED（连接被拒绝）、FILTERED（超时或不可达）
+     */
+    private String state;
+
+    /**
+     * 服务标识（Banner），未获取到时为空
+     */
+    private String banner;
+
+    /**
+     * 建连耗时（毫秒），超时时为所用的超时时间
+     */
+    private long latencyMillis;
+
+    public boolean isOpen() {
+        return OPEN.equals(state);
+    }
+}
@@ -0,0 +1,53 @@
+package com.bankshield.api.scanner;
+
+import lombok.Getter;
+
+import java.util.regex.Pattern;
+
+/**
+ * 响应特征签名：由一个必需的字面量（用于多模式预筛选）和可选的正则（用于确认）组成，均不区分大小写
+ */
+@Getter
+public class ResponseSignature {
+
+    /**
+     * 签名类别，如 SQL_INJECTION、CSRF_PROTECTION
+     */
+    private final String category;
+
+    /**
+     * 签名名称，命中时用于日志和结果说明
+     */
+    private final String name;
+
+    /**
+     * 响应命中签名的必要字面量（ASCII），为空时每次都执行正则确认
+     */
+    private final String literal;
+
+    /**
+     * 确认用的预编译正则，为空时命中字面量即视为命中签名
+     */
+    private final Pattern pattern;
+
+    private ResponseSignature(String category, String name, String literal, Pattern pattern) {
+        this.category = category;
+        this.name = name;
+        this.literal = literal;
+        this.pattern = pattern;
+    }
+
+    /**
+     * 纯字面量签名
+     */
+    public static ResponseSignature literal(String category, String literal) {
+        return new ResponseSignature(category, literal, literal, null);
+    }
+
+    /**
+     * 正则签名，literal须为正则任一匹配都必然包含的子串
+     */
+    public static ResponseSignature regex(String category, String literal, String regex) {
+        return new ResponseSignature(category, regex, literal, Pattern.compile(regex, Pattern.CASE_INSENSITIVE));
+    }
+}
@@ -0,0 +1,206 @@
+package com.bankshield.api.scanner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 预编译的响应多模式匹配器，构建后不可变、线程安全。
+ * 所有签名的字面量编译为一个Aho-Corasick自动机（ASCII、不区分大小写），
+ * 对响应体只扫描一遍即可得到命中的字面量，仅对字面量命中的签名执行正则确认。
+ */
+public class ResponseSignatureMatcher {
+
+    private static final int ALPHABET = 128;
+
+    private final ResponseSignature[] signatures;
+
+    /**
+     * 每个签名对应的字面量编号，无字面量时为-1
+     */
+    private final int[] literalIds;
+
+    private final int literalCount;
+
+    /**
+     * 自动机状态转移表：delta[state][ch]，已按失败链接补全
+     */
+    private final int[][] delta;
+
+    /**
+     * 每个状态可输出的字面量编号（含沿失败链接可达的输出）
+     */
+    private final int[][] outputs;
+
+    public ResponseSignatureMatcher(List<ResponseSignature> signatures) {
+        this.signatures = signatures.toArray(new ResponseSignature[0]);
+        this.literalIds = new int[this.signatures.length];
+
+        Map<String, Integer> literals = new LinkedHashMap<>();
+        for (int i = 0; i < this.signatures.length; i++) {
+            String literal = this.signatures[i].getLiteral();
+            if (literal == null || literal.isEmpty()) {
+                literalIds[i] = -1;
+                continue;
+            }
+            String normalized = normalize(literal);
+            Integer id = literals.get(normalized);
+            if (id == null) {
+                id = literals.size();
+                literals.put(normalized, id);
+            }
+            literalIds[i] = id;
+        }
+        this.literalCount = literals.size();
+
+        // 构建字典树
+        List<int[]> gotoTable = new ArrayList<>();
+        List<int[]> outputTable = new ArrayList<>();
+        gotoTable.add(newRow());
+        outputTable.add(new int[0]);
+        for (Map.Entry<String, Integer> entry : literals.entrySet()) {
+            int state = 0;
+            for (char c : entry.getKey().toCharArray()) {
+                int next = gotoTable.get(state)[c];
+                if (next <= 0) {
+                    next = gotoTable.size();
+                    gotoTable.add(newRow());
+                    outputTable.add(new int[0]);
+                    gotoTable.get(state)[c] = next;
+                }
+                state = next;
+            }
+            outputTable.set(state, append(outputTable.get(state), entry.getValue()));
+        }
+
+        // 按广度优先计算失败链接，并补全为确定性自动机
+        int stateCount = gotoTable.size();
+        this.delta = gotoTable.toArray(new int[0][]);
+        this.outputs = outputTable.toArray(new int[0][]);
+        int[] fail = new int[stateCount];
+        int[] queue = new int[stateCount];
+        int head = 0;
+        int tail = 0;
+        for (int c = 0; c < ALPHABET; c++) {
+            int next = delta[0][c];
+            if (next > 0) {
+                fail[next] = 0;
+                queue[tail++] = next;
+            } else {
+                delta[0][c] = 0;
+            }
+        }
+        while (head < tail) {
+            int state = queue[head++];
+            outputs[state] = merge(outputs[state], outputs[fail[state]]);
+            for (int c = 0; c < ALPHABET; c++) {
+                int next = delta[state][c];
+                if (next > 0) {
+                    fail[next] = delta[fail[state]][c];
+                    queue[tail++] = next;
+                } else {
+                    delta[state][c] = delta[fail[state]][c];
+                }
+            }
+        }
+    }
+
+    /**
+     * 返回响应命中的全部签名，按构建时的顺序
+     */
+    public List<ResponseSignature> match(CharSequence text) {
+        boolean[] hits = scan(text);
+        List<ResponseSignature> matched = new ArrayList<>();
+        for (int i = 0; i < signatures.length; i++) {
+            if (confirm(i, hits, text)) {
+                matched.add(signatures[i]);
+            }
+        }
+        return matched;
+    }
+
+    /**
+     * 返回响应命中的指定类别的第一个签名，未命中返回null
+     */
+    public ResponseSignature findFirst(CharSequence text, String category) {
+        boolean[] hits = scan(text);
+        for (int i = 0; i < signatures.length; i++) {
+            if (signatures[i].getCategory().equals(category) && confirm(i, hits, text)) {
+                return signatures[i];
+            }
+        }
+        return null;
+    }
+
+    public int size() {
+        return signatures.length;
+    }
+
+    /**
+     * 单遍扫描文本，标记出现过的字面量
+     */
+    private boolean[] scan(CharSequence text) {
+        boolean[] hits = new boolean[literalCount];
+        if (text == null) {
+            return hits;
+        }
+        int state = 0;
+        for (int i = 0, length = text.length(); i < length; i++) {
+            char c = text.charAt(i);
+            if (c >= ALPHABET) {
+                // 字面量均为ASCII，非ASCII字符不可能处于匹配中间
+                state = 0;
+                continue;
+            }
+            if (c >= 'A' && c <= 'Z') {
+                c += 'a' - 'A';
+            }
+            state = delta[state][c];
+            for (int literalId : outputs[state]) {
+                hits[literalId] = true;
+            }
+        }
+        return hits;
+    }
+
+    private boolean confirm(int index, boolean[] hits, CharSequence text) {
+        int literalId = literalIds[index];
+        if (literalId >= 0 && !hits[literalId]) {
+            return false;
+        }
+        ResponseSignature signature = signatures[index];
+        return signature.getPattern() == null || (text != null && signature.getPattern().matcher(text).find());
+    }
+
+    private static String normalize(String literal) {
+        StringBuilder normalized = new StringBuilder(literal.length());
+        for (char c : literal.toCharArray()) {
+            if (c >= ALPHABET) {
+                throw new IllegalArgumentException("签名字面量仅支持ASCII字符: " + literal);
+            }
+            normalized.append(c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c);
+        }
+        return normalized.toString();
+    }
+
+    private static int[] newRow() {
+        return new int[ALPHABET];
+    }
+
+    private static int[] append(int[] values, int value) {
+        int[] result = Arrays.copyOf(values, values.length + 1);
+        result[values.length] = value;
+        return result;
+    }
+
+    private static int[] merge(int[] own, int[] inherited) {
+        if (inherited.length == 0) {
+            return own;
+        }
+        int[] result = Arrays.copyOf(own, own.length + inherited.length);
+        System.arraycopy(inherited, 0, result, own.length, inherited.length);
+        return result;
+    }
+}
@@ -5,7 +5,6 @@ import com.bankshield.api.entity.SecurityScanTask;
 import com.bankshield.api.entity.VulnerabilityRecord;
 import com.bankshield.api.mapper.ScanRuleMapper;
 import com.bankshield.api.mapper.SecurityScanTaskMapper;
-import com.bankshield.api.mapper.VulnerabilityRecordMapper;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.scheduling.annotation.Async;
@@ -14,7 +13,9 @@ import org.springframework.stereotype.Service;
 import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 @Slf4j
 @Service
@@ -39,7 +40,7 @@ public class ScanEngine {
     private SecurityScanTaskMapper taskMapper;
 
     @Autowired
-    private VulnerabilityRecordMapper vulnerabilityMapper;
+    private VulnerabilityFindingSink findingSink;
 
     @Async
     public void executeScan(SecurityScanTask task) {
@@ -52,9 +53,10 @@ public class ScanEngine {
             task.setProgress(0);
             taskMapper.updateById(task);
             
-            List<VulnerabilityRecord> allVulnerabilities = new ArrayList<>();
+            FindingDelta delta = new FindingDelta();
+            int[] severityCounts = new int[3];
             
-            // 根据扫描类型执行相应的扫描
+            // 根据扫描类型执行相应的扫描，每类发现与已有记录对账后只写入变化
             String scanType = task.getScanType();
             if (scanType == null) {
                 scanType = "FULL_SCAN";
@@ -62,64 +64,48 @@ public class ScanEngine {
             
             switch (scanType) {
                 case "SQL_INJECTION":
-                    allVulnerabilities.addAll(executeSqlInjectionScan(task));
+                    record(task, "SQL_INJECTION", executeSqlInjectionScan(task), delta, severityCounts);
                     break;
                     
                 case "XSS":
-                    allVulnerabilities.addAll(executeXssScan(task));
+                    record(task, "XSS", executeXssScan(task), delta, severityCounts);
                     break;
                     
                 case "DEPENDENCY":
-                    allVulnerabilities.addAll(executeDependencyScan(task));
+                    record(task, "DEPENDENCY", executeDependencyScan(task), delta, severityCounts);
                     break;
                     
                 case "CODE_SCAN":
-                    allVulnerabilities.addAll(executeCodeScan(task));
+                    record(task, "CODE_SCAN", executeCodeScan(task), delta, severityCounts);
                     break;
                     
                 case "FULL_SCAN":
                     task.setProgress(10);
                     taskMapper.updateById(task);
-                    allVulnerabilities.addAll(executeSqlInjectionScan(task));
+                    record(task, "SQL_INJECTION", executeSqlInjectionScan(task), delta, severityCounts);
                     
                     task.setProgress(30);
                     taskMapper.updateById(task);
-                    allVulnerabilities.addAll(executeXssScan(task));
+                    record(task, "XSS", executeXssScan(task), delta, severityCounts);
                     
                     task.setProgress(50);
                     taskMapper.updateById(task);
-                    allVulnerabilities.addAll(executeDependencyScan(task));
+                    record(task, "DEPENDENCY", executeDependencyScan(task), delta, severityCounts);
                     
                     task.setProgress(70);
                     taskMapper.updateById(task);
-                    allVulnerabilities.addAll(executeCodeScan(task));
+                    record(task, "CODE_SCAN", executeCodeScan(task), delta, severityCounts);
                     break;
                     
                 default:
                     log.warn("未知的扫描类型: {}", scanType);
             }
             
-            // 保存漏洞记录
-            for (VulnerabilityRecord vuln : allVulnerabilities) {
-                vulnerabilityMapper.insert(vuln);
-            }
-            
-            // 统计漏洞数量
-            int highRiskCount = (int) allVulnerabilities.stream()
-                    .filter(v -> "CRITICAL".equals(v.getSeverity()) || "HIGH".equals(v.getSeverity()))
-                    .count();
-            int mediumRiskCount = (int) allVulnerabilities.stream()
-                    .filter(v -> "MEDIUM".equals(v.getSeverity()))
-                    .count();
-            int lowRiskCount = (int) allVulnerabilities.stream()
-                    .filter(v -> "LOW".equals(v.getSeverity()))
-                    .count();
-            
             // 更新任务完成状态
             task.setStatus("SUCCESS");
             task.setEndTime(LocalDateTime.now());
             task.setProgress(100);
-            task.setRiskCount(allVulnerabilities.size());
+            task.setRiskCount(delta.getFoundCount());
             
             // 计算扫描时长
             if (task.getStartTime() != null && task.getEndTime() != null) {
@@ -129,8 +115,9 @@ public class ScanEngine {
             
             taskMapper.updateById(task);
             
-            log.info("扫描任务完成: {} - 发现 {} 个漏洞 (高危: {}, 中危: {}, 低危: {})", 
-                    task.getTaskName(), allVulnerabilities.size(), highRiskCount, mediumRiskCount, lowRiskCount);
+            log.info("扫描任务完成: {} - 发现 {} 个漏洞 (高危: {}, 中危: {}, 低危: {}), 新增 {}, 重新打开 {}, 已修复 {}", 
+                    task.getTaskName(), delta.getFoundCount(), severityCounts[0], severityCounts[1], severityCounts[2],
+                    delta.getNewCount(), delta.getReopenedCount(), delta.getFixedCount());
             
         } catch (Exception e) {
             log.error("扫描任务执行失败: {}", e.getMessage(), e);
@@ -141,36 +128,57 @@ public class ScanEngine {
         }
     }
 
-    private List<VulnerabilityRecord> executeSqlInjectionScan(SecurityScanTask task) {
+    /**
+     * 按扫描类别对账写入发现，并累计变化与风险级别统计（按指纹去重后计数，与对账的发现数一致）
+     */
+    private void record(SecurityScanTask task, String category, ScanOutcome outcome,
+                        FindingDelta delta, int[] severityCounts) {
+        Set<String> counted = new HashSet<>();
+        for (VulnerabilityRecord vuln : outcome.getFindings()) {
+            if (!counted.add(VulnerabilityFindingSink.fingerprint(category, vuln))) {
+                continue;
+            }
+            if ("CRITICAL".equals(vuln.getSeverity()) || "HIGH".equals(vuln.getSeverity())) {
+                severityCounts[0]++;
+            } else if ("MEDIUM".equals(vuln.getSeverity())) {
+                severityCounts[1]++;
+            } else if ("LOW".equals(vuln.getSeverity())) {
+                severityCounts[2]++;
+            }
+        }
+        delta.add(findingSink.reconcile(task, category, outcome));
+    }
+
+    private ScanOutcome executeSqlInjectionScan(SecurityScanTask task) {
         log.info("执行SQL注入扫描...");
         List<ScanRule> rules = scanRuleMapper.selectEnabledByType("SQL_INJECTION");
         return sqlScanner.scan(task.getId(), task.getScanTarget(), rules);
     }
 
-    private List<VulnerabilityRecord> executeXssScan(SecurityScanTask task) {
+    private ScanOutcome executeXssScan(SecurityScanTask task) {
         log.info("执行XSS扫描...");
         List<ScanRule> rules = scanRuleMapper.selectEnabledByType("XSS");
         return xssScanner.scan(task.getId(), task.getScanTarget(), rules);
     }
 
-    private List<VulnerabilityRecord> executeDependencyScan(SecurityScanTask task) {
+    private ScanOutcome executeDependencyScan(SecurityScanTask task) {
         log.info("执行依赖漏洞扫描...");
-        List<VulnerabilityRecord> vulnerabilities = new ArrayList<>();
+        List<ScanOutcome> outcomes = new ArrayList<>();
         
         String target = task.getScanTarget();
         if (target != null) {
             if (target.contains("pom.xml")) {
-                vulnerabilities.addAll(dependencyScanner.scanMavenDependencies(task.getId(), target));
+                outcomes.add(dependencyScanner.scanMavenDependencies(task.getId(), target));
             }
             if (target.contains("package.json")) {
-                vulnerabilities.addAll(dependencyScanner.scanNpmDependencies(task.getId(), target));
+                outcomes.add(dependencyScanner.scanNpmDependencies(task.getId(), target));
             }
         }
         
-        return vulnerabilities;
+        return ScanOutcome.merge(outcomes);
     }
 
-    private List<VulnerabilityRecord> executeCodeScan(SecurityScanTask task) {
+    private ScanOutcome executeCodeScan(SecurityScanTask task) {
         log.info("执行代码安全扫描...");
         List<ScanRule> rules = scanRuleMapper.selectEnabledByType("SECURITY_MISCONFIGURATION");
         return codeScanner.scanJavaCode(task.getId(), task.getScanTarget(), rules);
@@ -0,0 +1,95 @@
+package com.bankshield.api.scanner;
+
+import com.bankshield.api.entity.VulnerabilityRecord;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 一个扫描类别的扫描结果：发现列表及扫描是否覆盖了全部目标
+ * 目标不存在、检测出错、文件读取失败或遍历时跳过路径都会使结果不完整，
+ * 对账时不完整的结果不能说明未再发现的漏洞已修复。
+ */
+@Getter
+public class ScanOutcome {
+
+    private final List<VulnerabilityRecord> findings;
+
+    private final boolean complete;
+
+    /**
+     * 本次成功扫描的文件（含复用缓存的文件），仅代码扫描提供；
+     * 结果不完整时，位置（"文件路径:行号"）落在这些文件内的漏洞仍可判定为已修复
+     */
+    private final Set<String> scannedFiles;
+
+    /**
+     * 未能扫描的路径或检测项，供日志与排查使用
+     */
+    private final List<String> failures;
+
+    /**
+     * 本次未能执行的规则编码（如检测正则无效），这些规则的已有漏洞在任何位置都不能判定为已修复
+     */
+    private final Set<String> failedRules;
+
+    public ScanOutcome(List<VulnerabilityRecord> findings, boolean complete, Set<String> scannedFiles,
+                       List<String> failures) {
+        this(findings, complete, scannedFiles, failures, Collections.emptySet());
+    }
+
+    public ScanOutcome(List<VulnerabilityRecord> findings, boolean complete, Set<String> scannedFiles,
+                       List<String> failures, Set<String> failedRules) {
+        this.findings = findings;
+        this.complete = complete;
+        this.scannedFiles = scannedFiles;
+        this.failures = failures;
+        this.failedRules = failedRules;
+    }
+
+    public static ScanOutcome complete(List<VulnerabilityRecord> findings) {
+        return new ScanOutcome(findings, true, null, Collections.emptyList());
+    }
+
+    public static ScanOutcome incomplete(List<VulnerabilityRecord> findings, List<String> failures) {
+        return new ScanOutcome(findings, false, null, failures);
+    }
+
+    /**
+     * 合并同一扫描类别的多个结果，任一不完整则整体不完整
+     */
+    public static ScanOutcome merge(List<ScanOutcome> outcomes) {
+        List<VulnerabilityRecord> findings = new ArrayList<>();
+        List<String> failures = new ArrayList<>();
+        Set<String> failedRules = new HashSet<>();
+        boolean complete = true;
+        for (ScanOutcome outcome : outcomes) {
+            findings.addAll(outcome.findings);
+            failures.addAll(outcome.failures);
+            failedRules.addAll(outcome.failedRules);
+            complete &= outcome.complete;
+        }
+        return new ScanOutcome(findings, complete, null, failures, failedRules);
+    }
+
+    /**
+     * 本次扫描是否覆盖了该漏洞的规则与位置，覆盖时未再发现的漏洞才可判定为已修复
+     */
+    public boolean covers(VulnerabilityRecord previous) {
+        if (previous.getVulnCode() != null && failedRules.contains(previous.getVulnCode())) {
+            return false;
+        }
+        if (complete) {
+            return true;
+        }
+        String location = previous.getLocation();
+        if (scannedFiles == null || location == null) {
+            return false;
+        }
+        return scannedFiles.contains(CodeSecurityScanner.filePath(location));
+    }
+}
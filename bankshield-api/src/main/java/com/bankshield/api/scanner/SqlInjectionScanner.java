@@ -15,8 +15,12 @@ import java.util.regex.Pattern;
 @Component
 public class SqlInjectionScanner {
 
-    public List<VulnerabilityRecord> scan(Long taskId, String target, List<ScanRule> rules) {
+    /**
+     * 按规则检测目标，任一规则检测出错时结果标记为不完整
+     */
+    public ScanOutcome scan(Long taskId, String target, List<ScanRule> rules) {
         List<VulnerabilityRecord> vulnerabilities = new ArrayList<>();
+        List<String> failures = new ArrayList<>();
         
         log.info("开始SQL注入扫描，目标: {}", target);
         
@@ -29,11 +33,14 @@ public class SqlInjectionScanner {
                 }
             } catch (Exception e) {
                 log.error("SQL注入检测失败: {}", e.getMessage(), e);
+                failures.add(rule.getRuleCode());
             }
         }
         
         log.info("SQL注入扫描完成，发现 {} 个漏洞", vulnerabilities.size());
-        return vulnerabilities;
+        return failures.isEmpty()
+                ? ScanOutcome.complete(vulnerabilities)
+                : ScanOutcome.incomplete(vulnerabilities, failures);
     }
 
     private boolean detectVulnerability(String target, ScanRule rule) {
@@ -42,12 +49,8 @@ public class SqlInjectionScanner {
             return false;
         }
         
-        try {
-            return Pattern.compile(pattern, Pattern.CASE_INSENSITIVE).matcher(target).find();
-        } catch (Exception e) {
-            log.error("正则表达式匹配失败: {}", e.getMessage());
-            return false;
-        }
+        // 正则无效时抛出，由调用方记为检测失败，不能当作未发现
+        return Pattern.compile(pattern, Pattern.CASE_INSENSITIVE).matcher(target).find();
     }
 
     private VulnerabilityRecord createVulnerability(Long taskId, String location, ScanRule rule) {
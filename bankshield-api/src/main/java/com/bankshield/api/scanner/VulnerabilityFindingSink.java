@@ -0,0 +1,169 @@
+package com.bankshield.api.scanner;
+
+import cn.hutool.crypto.digest.DigestUtil;
+import com.bankshield.api.entity.SecurityScanTask;
+import com.bankshield.api.entity.VulnerabilityRecord;
+import com.bankshield.api.mapper.VulnerabilityRecordMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 漏洞发现写入器
+ * 按指纹（规则编码 + 位置 + 规范化代码片段）与同一扫描范围（扫描类别 + 扫描目标）内的已有记录对账，
+ * 只写入变化：新发现的漏洞分批多行插入，已修复后再次发现的重新打开，未再发现的标记为已修复，
+ * 已存在且未变化的漏洞只按批更新最近发现任务，任务的漏洞列表与风险数保持一致。扫描结果不完整时，只有本次扫描覆盖到的位置上未再发现的漏洞才标记为已修复。
+ */
+@Slf4j
+@Component
+public class VulnerabilityFindingSink {
+
+    /**
+     * 复扫未再发现时视为已修复的状态；WONT_FIX、FALSE_POSITIVE等人工处置状态保持不变
+     */
+    private static final Set<String> ACTIVE_STATUSES = new HashSet<>(Arrays.asList("OPEN", "IN_PROGRESS"));
+
+    private static final String RESOLVED = "RESOLVED";
+
+    private static final String RESOLVED_BY = "SYSTEM_SCANNER";
+
+    private static final String CODE_SCAN = "CODE_SCAN";
+
+    @Autowired
+    private VulnerabilityRecordMapper vulnerabilityMapper;
+
+    @Value("${security-scan.findings.batch-size:500}")
+    private int batchSize;
+
+    /**
+     * 将一个扫描类别的发现与已有记录对账并写入变化
+     *
+     * @param task     扫描任务
+     * @param category 扫描类别，如 SQL_INJECTION、CODE_SCAN
+     * @param outcome  本次扫描的发现及完整性
+     * @return 变化统计
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public FindingDelta reconcile(SecurityScanTask task, String category, ScanOutcome outcome) {
+        List<VulnerabilityRecord> findings = outcome.getFindings();
+        String scopeKey = scopeKey(category, task.getScanTarget());
+        Map<String, VulnerabilityRecord> existing = new HashMap<>();
+        for (VulnerabilityRecord record : vulnerabilityMapper.selectFingerprintsByScope(scopeKey)) {
+            existing.put(record.getFingerprint(), record);
+        }
+
+        FindingDelta delta = new FindingDelta();
+        Set<String> seen = new HashSet<>(findings.size() * 2);
+        List<VulnerabilityRecord> inserts = new ArrayList<>();
+        List<Long> reopened = new ArrayList<>();
+        List<Long> unchanged = new ArrayList<>();
+        for (VulnerabilityRecord finding : findings) {
+            String fingerprint = fingerprint(category, finding);
+            if (!seen.add(fingerprint)) {
+                continue;
+            }
+            delta.setFoundCount(delta.getFoundCount() + 1);
+
+            VulnerabilityRecord previous = existing.get(fingerprint);
+            if (previous == null) {
+                finding.setScopeKey(scopeKey);
+                finding.setFingerprint(fingerprint);
+                inserts.add(finding);
+                if (inserts.size() >= batchSize) {
+                    delta.setNewCount(delta.getNewCount() + flushInserts(inserts));
+                }
+            } else if (RESOLVED.equals(previous.getStatus())) {
+                reopened.add(previous.getId());
+            } else {
+                unchanged.add(previous.getId());
+            }
+        }
+        delta.setNewCount(delta.getNewCount() + flushInserts(inserts));
+
+        for (List<Long> ids : partition(reopened)) {
+            vulnerabilityMapper.reopenByIds(ids, task.getId());
+        }
+        delta.setReopenedCount(reopened.size());
+        for (List<Long> ids : partition(unchanged)) {
+            vulnerabilityMapper.markSeenByIds(ids, task.getId());
+        }
+        delta.setUnchangedCount(unchanged.size());
+
+        List<Long> fixed = new ArrayList<>();
+        int uncovered = 0;
+        for (Map.Entry<String, VulnerabilityRecord> entry : existing.entrySet()) {
+            VulnerabilityRecord previous = entry.getValue();
+            if (seen.contains(entry.getKey()) || !ACTIVE_STATUSES.contains(previous.getStatus())) {
+                continue;
+            }
+            if (outcome.covers(previous)) {
+                fixed.add(previous.getId());
+            } else {
+                uncovered++;
+            }
+        }
+        if (!outcome.isComplete()) {
+            log.warn("扫描结果不完整，{} 个未覆盖位置上的漏洞保持原状态: 任务={}, 类别={}, 未扫描={}",
+                    uncovered, task.getId(), category, outcome.getFailures());
+        }
+        for (List<Long> ids : partition(fixed)) {
+            vulnerabilityMapper.resolveByIds(ids, RESOLVED_BY, "扫描任务 " + task.getId() + " 复扫未再发现");
+        }
+        delta.setFixedCount(fixed.size());
+
+        log.info("漏洞对账完成: 任务={}, 类别={}, 发现={}, 新增={}, 重新打开={}, 已修复={}, 未变化={}",
+                task.getId(), category, delta.getFoundCount(), delta.getNewCount(), delta.getReopenedCount(),
+                delta.getFixedCount(), delta.getUnchangedCount());
+        return delta;
+    }
+
+    /**
+     * 漏洞指纹：规则编码 + 位置 + 规范化代码片段（去除首尾空白并合并连续空白）
+     * 代码扫描的位置只取文件路径，文件内插入或删除行不会改变其余漏洞的指纹
+     */
+    static String fingerprint(String category, VulnerabilityRecord finding) {
+        String location = nullToEmpty(finding.getLocation());
+        if (CODE_SCAN.equals(category)) {
+            location = CodeSecurityScanner.filePath(location);
+        }
+        return DigestUtil.sha256Hex(nullToEmpty(finding.getVulnCode()) + '\u0000'
+                + location + '\u0000'
+                + nullToEmpty(finding.getProofOfConcept()).trim().replaceAll("\\s+", " "));
+    }
+
+    static String scopeKey(String category, String scanTarget) {
+        return DigestUtil.sha256Hex(category + '\u0000' + nullToEmpty(scanTarget));
+    }
+
+    private int flushInserts(List<VulnerabilityRecord> inserts) {
+        if (inserts.isEmpty()) {
+            return 0;
+        }
+        int size = inserts.size();
+        vulnerabilityMapper.batchInsert(new ArrayList<>(inserts));
+        inserts.clear();
+        return size;
+    }
+
+    private List<List<Long>> partition(List<Long> ids) {
+        List<List<Long>> batches = new ArrayList<>();
+        for (int from = 0; from < ids.size(); from += batchSize) {
+            batches.add(ids.subList(from, Math.min(ids.size(), from + batchSize)));
+        }
+        return batches;
+    }
+
+    private static String nullToEmpty(String value) {
+        return value == null ? "" : value;
+    }
+}
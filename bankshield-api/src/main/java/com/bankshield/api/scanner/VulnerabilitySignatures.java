@@ -0,0 +1,90 @@
+package com.bankshield.api.scanner;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 漏洞检测响应特征库，基于OWASP测试指南中的错误回显与执行结果特征
+ */
+public final class VulnerabilitySignatures {
+
+    /**
+     * SQL错误回显
+     */
+    public static final String SQL_ERROR = "SQL_ERROR";
+
+    /**
+     * CSRF保护机制（令牌及SameSite cookie属性）
+     */
+    public static final String CSRF_PROTECTION = "CSRF_PROTECTION";
+
+    /**
+     * 目录遍历成功后读到的系统文件内容
+     */
+    public static final String TRAVERSAL = "TRAVERSAL";
+
+    /**
+     * 命令执行结果
+     */
+    public static final String COMMAND_OUTPUT = "COMMAND_OUTPUT";
+
+    /**
+     * 全部特征，字面量为对应正则任一匹配都必然包含的子串
+     */
+    public static final List<ResponseSignature> SIGNATURES = Collections.unmodifiableList(Arrays.asList(
+        // SQL错误模式
+        ResponseSignature.regex(SQL_ERROR, "sql syntax", "SQL syntax.*MySQL"),
+        ResponseSignature.regex(SQL_ERROR, "mysql_", "Warning.*mysql_.*"),
+        ResponseSignature.literal(SQL_ERROR, "valid MySQL result"),
+        ResponseSignature.literal(SQL_ERROR, "MySqlClient."),
+        ResponseSignature.regex(SQL_ERROR, "postgresql", "PostgreSQL.*ERROR"),
+        ResponseSignature.regex(SQL_ERROR, "pg_", "Warning.*pg_.*"),
+        ResponseSignature.literal(SQL_ERROR, "valid PostgreSQL result"),
+        ResponseSignature.literal(SQL_ERROR, "Npgsql."),
+        ResponseSignature.regex(SQL_ERROR, "driver", "Driver.* SQL.*Server"),
+        ResponseSignature.regex(SQL_ERROR, "ole db", "OLE DB.* SQL Server"),
+        ResponseSignature.regex(SQL_ERROR, "microsoft ole db", "\\(\\$.*Microsoft OLE DB.* SQL Server"),
+        ResponseSignature.regex(SQL_ERROR, "ole db", "\\(\\$.*OLE DB.* SQL.*Server"),
+        ResponseSignature.regex(SQL_ERROR, "mssql_", "Warning.*mssql_.*"),
+        ResponseSignature.regex(SQL_ERROR, "odbc_", "Warning.*odbc_.*"),
+        ResponseSignature.regex(SQL_ERROR, "ora-", "ORA-[0-9]{5}"),
+        ResponseSignature.literal(SQL_ERROR, "Oracle error"),
+        ResponseSignature.regex(SQL_ERROR, "oracle", "Oracle.*Driver"),
+        ResponseSignature.regex(SQL_ERROR, "oci_", "Warning.*oci_.*"),
+        ResponseSignature.regex(SQL_ERROR, "ora_", "Warning.*ora_.*"),
+        // CSRF保护机制（令牌及SameSite cookie属性）
+        ResponseSignature.regex(CSRF_PROTECTION, "csrf", "csrf[_-]?token"),
+        ResponseSignature.regex(CSRF_PROTECTION, "authenticity", "authenticity[_-]?token"),
+        ResponseSignature.literal(CSRF_PROTECTION, "__RequestVerificationToken"),
+        ResponseSignature.regex(CSRF_PROTECTION, "xsrf", "xsrf[_-]?token"),
+        ResponseSignature.literal(CSRF_PROTECTION, "SameSite=Strict"),
+        ResponseSignature.literal(CSRF_PROTECTION, "SameSite=Lax"),
+        // 目录遍历成功模式
+        ResponseSignature.regex(TRAVERSAL, "root:", "root:.*:.*:.*:"),
+        ResponseSignature.regex(TRAVERSAL, "daemon:", "daemon:.*:.*:"),
+        ResponseSignature.regex(TRAVERSAL, "bin:", "bin:.*:.*:"),
+        ResponseSignature.literal(TRAVERSAL, "[boot loader]"),
+        ResponseSignature.literal(TRAVERSAL, "[operating systems]"),
+        ResponseSignature.literal(TRAVERSAL, "autoexec"),
+        ResponseSignature.literal(TRAVERSAL, "config.sys"),
+        // 命令执行结果模式
+        ResponseSignature.literal(COMMAND_OUTPUT, "root"),
+        ResponseSignature.literal(COMMAND_OUTPUT, "administrator"),
+        ResponseSignature.literal(COMMAND_OUTPUT, "nt authority"),
+        ResponseSignature.literal(COMMAND_OUTPUT, "uid="),
+        ResponseSignature.literal(COMMAND_OUTPUT, "gid="),
+        ResponseSignature.literal(COMMAND_OUTPUT, "groups="),
+        ResponseSignature.literal(COMMAND_OUTPUT, "Pinging"),
+        ResponseSignature.literal(COMMAND_OUTPUT, "Reply from"),
+        ResponseSignature.literal(COMMAND_OUTPUT, "64 bytes from")
+    ));
+
+    /**
+     * 全部特征一次编译：字面量进入Aho-Corasick自动机预筛选，正则仅在字面量命中后确认
+     */
+    public static final ResponseSignatureMatcher MATCHER = new ResponseSignatureMatcher(SIGNATURES);
+
+    private VulnerabilitySignatures() {
+    }
+}
@@ -2,6 +2,7 @@ package com.bankshield.api.service;
 
 import com.bankshield.api.dto.AuditIntegrityReport;
 import com.bankshield.api.dto.AuditIntegrityStatistics;
+import com.bankshield.api.dto.AuditVerificationProgress;
 import com.bankshield.api.entity.AuditBlock;
 import com.bankshield.api.entity.AuditOperationBlock;
 import com.bankshield.api.entity.OperationAudit;
@@ -30,6 +31,14 @@ public interface AuditBlockService {
      */
     boolean verifyAuditIntegrity(Long auditId);
     
+    /**
+     * 整块复核：按区块内顺序重新计算Merkle根并与区块记录比对
+     * 
+     * @param blockId 区块ID
+     * @return 验证结果
+     */
+    boolean verifyBlockIntegrity(Long blockId);
+    
     /**
      * 验证整个审计日志系统的完整性
      * 
@@ -37,6 +46,26 @@ public interface AuditBlockService {
      */
     AuditIntegrityReport verifySystemIntegrity();
     
+    /**
+     * 后台启动全量完整性校验（游标分页、并行复核、检查点续跑）
+     * 
+     * @param resume 是否从最近一次未完成的检查点续跑
+     * @return 初始进度
+     */
+    AuditVerificationProgress startSystemVerification(boolean resume);
+    
+    /**
+     * 获取当前（或最近一次）全量完整性校验进度
+     * 
+     * @return 校验进度，从未执行过时返回null
+     */
+    AuditVerificationProgress getVerificationProgress();
+    
+    /**
+     * 停止全量完整性校验，已完成部分保留在检查点中
+     */
+    void stopSystemVerification();
+    
     /**
      * 分页查询审计区块
      * 
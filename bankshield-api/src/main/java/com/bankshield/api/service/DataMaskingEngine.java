@@ -3,31 +3,39 @@ package com.bankshield.api.service;
 import com.bankshield.api.dto.MaskingAlgorithmParams;
 import com.bankshield.api.entity.DataMaskingRule;
 import com.bankshield.api.enums.MaskingAlgorithm;
-import com.bankshield.common.crypto.SM3Util;
 import com.bankshield.common.utils.DataMaskUtil;
-import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.cache.annotation.Cacheable;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 import org.springframework.util.StringUtils;
 
-import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * 数据脱敏执行引擎
- * 实现各种脱敏算法，提供统一的数据脱敏接口
+ * 实现各种脱敏算法，提供统一的数据脱敏接口。
+ * 规则按算法和参数预编译为 {@link MaskingPlan} 并缓存；按敏感类型和场景查找的计划随
+ * DataMaskingRuleService 的规则版本失效，并定期重建以同步其他节点的变更。
  */
 @Slf4j
 @Component
 @RequiredArgsConstructor
 public class DataMaskingEngine {
 
+    /**
+     * 按算法和参数缓存的计划上限，超过后整体清空重建
+     */
+    private static final int MAX_RULE_PLANS = 1024;
+
     private final DataMaskingRuleService maskingRuleService;
     private final ObjectMapper objectMapper;
 
+    private final Map<PlanKey, MaskingPlan> rulePlans = new ConcurrentHashMap<>();
+    private volatile TypePlans typePlans = new TypePlans(0L);
+
     /**
      * 根据规则对数据进行脱敏处理
      * @param data 原始数据
@@ -40,19 +48,7 @@ public class DataMaskingEngine {
         }
 
         try {
-            MaskingAlgorithm algorithm = MaskingAlgorithm.fromCode(rule.getMaskingAlgorithm());
-            if (algorithm == null) {
-                log.warn("未知的脱敏算法：{}", rule.getMaskingAlgorithm());
-                return data;
-            }
-
-            // 解析算法参数
-            MaskingAlgorithmParams params = null;
-            if (StringUtils.hasText(rule.getAlgorithmParams())) {
-                params = objectMapper.readValue(rule.getAlgorithmParams(), MaskingAlgorithmParams.class);
-            }
-
-            return executeMasking(data, algorithm, params);
+            return getPlan(rule).mask(data);
         } catch (Exception e) {
             log.error("脱敏处理失败：{}，算法：{}", e.getMessage(), rule.getMaskingAlgorithm(), e);
             return data; // 脱敏失败时返回原始数据
@@ -66,23 +62,13 @@ public class DataMaskingEngine {
      * @param scenario 应用场景
      * @return 脱敏后的数据
      */
-    @Cacheable(value = "maskingRules", key = "#sensitiveDataType + ':' + #scenario")
     public String maskByType(String data, String sensitiveDataType, String scenario) {
         if (!StringUtils.hasText(data) || !StringUtils.hasText(sensitiveDataType)) {
             return data;
         }
 
         try {
-            // 获取适用的脱敏规则
-            List<DataMaskingRule> rules = maskingRuleService.getRulesBySensitiveType(sensitiveDataType, scenario);
-            if (rules.isEmpty()) {
-                // 没有配置规则时，使用默认脱敏
-                return DataMaskUtil.maskByType(data, sensitiveDataType);
-            }
-
-            // 使用第一个启用的规则进行脱敏
-            DataMaskingRule rule = rules.get(0);
-            return maskData(data, rule);
+            return getPlan(sensitiveDataType, scenario).mask(data);
         } catch (Exception e) {
             log.error("自动脱敏失败：{}，类型：{}，场景：{}", e.getMessage(), sensitiveDataType, scenario, e);
             return DataMaskUtil.maskByType(data, sensitiveDataType); // 失败时使用默认脱敏
@@ -96,13 +82,66 @@ public class DataMaskingEngine {
      * @return 脱敏后的数据列表
      */
     public List<String> maskDataList(List<String> dataList, DataMaskingRule rule) {
-        if (dataList == null || dataList.isEmpty()) {
+        if (dataList == null || dataList.isEmpty() || rule == null || !rule.getEnabled()) {
             return dataList;
         }
 
-        return dataList.stream()
-                .map(data -> maskData(data, rule))
-                .collect(ArrayList::new, ArrayList::add, ArrayList::addAll);
+        MaskingPlan plan = getPlan(rule);
+        List<String> result = new ArrayList<>(dataList.size());
+        for (String data : dataList) {
+            result.add(applyPlan(plan, data, rule.getMaskingAlgorithm()));
+        }
+        return result;
+    }
+
+    /**
+     * 按列批量脱敏，计划只解析一次
+     * @param values 列数据
+     * @param rule 脱敏规则
+     * @return 脱敏后的列数据（新数组）
+     */
+    public String[] maskColumn(String[] values, DataMaskingRule rule) {
+        if (values == null || rule == null || !rule.getEnabled()) {
+            return values;
+        }
+
+        MaskingPlan plan = getPlan(rule);
+        String[] masked = new String[values.length];
+        for (int i = 0; i < values.length; i++) {
+            masked[i] = applyPlan(plan, values[i], rule.getMaskingAlgorithm());
+        }
+        return masked;
+    }
+
+    /**
+     * 按敏感数据类型对整列脱敏，计划只解析一次
+     * @param values 列数据
+     * @param sensitiveDataType 敏感数据类型
+     * @param scenario 应用场景
+     * @return 脱敏后的列数据（新数组）
+     */
+    public String[] maskColumn(String[] values, String sensitiveDataType, String scenario) {
+        if (values == null || !StringUtils.hasText(sensitiveDataType)) {
+            return values;
+        }
+
+        MaskingPlan plan;
+        try {
+            plan = getPlan(sensitiveDataType, scenario);
+        } catch (Exception e) {
+            log.error("获取脱敏计划失败：{}，类型：{}，场景：{}", e.getMessage(), sensitiveDataType, scenario, e);
+            plan = defaultPlan(sensitiveDataType);
+        }
+        String[] masked = new String[values.length];
+        for (int i = 0; i < values.length; i++) {
+            try {
+                masked[i] = plan.mask(values[i]);
+            } catch (Exception e) {
+                log.error("自动脱敏失败：{}，类型：{}，场景：{}", e.getMessage(), sensitiveDataType, scenario, e);
+                masked[i] = DataMaskUtil.maskByType(values[i], sensitiveDataType);
+            }
+        }
+        return masked;
     }
 
     /**
@@ -129,120 +168,129 @@ public class DataMaskingEngine {
     }
 
     /**
-     * 执行具体的脱敏算法
+     * 获取规则对应的预编译脱敏计划，按算法和参数内容缓存
+     * 未知算法或参数无效时返回原样输出的计划
      */
-    private String executeMasking(String data, MaskingAlgorithm algorithm, MaskingAlgorithmParams params) 
-            throws JsonProcessingException {
-        
-        switch (algorithm) {
-            case PARTIAL_MASK:
-                return executePartialMask(data, params);
-            case FULL_MASK:
-                return executeFullMask(data, params);
-            case HASH:
-                return executeHash(data, params);
-            case SYMMETRIC_ENCRYPT:
-                return executeSymmetricEncrypt(data, params);
-            case FORMAT_PRESERVING:
-                return executeFormatPreserving(data, params);
-            default:
-                return data;
+    public MaskingPlan getPlan(DataMaskingRule rule) {
+        PlanKey key = new PlanKey(rule.getMaskingAlgorithm(), rule.getAlgorithmParams());
+        MaskingPlan plan = rulePlans.get(key);
+        if (plan != null) {
+            return plan;
+        }
+        if (rulePlans.size() >= MAX_RULE_PLANS) {
+            rulePlans.clear();
         }
+        return rulePlans.computeIfAbsent(key, this::compile);
     }
 
     /**
-     * 部分掩码算法
+     * 获取敏感数据类型在指定场景下的脱敏计划，无适用规则时使用默认脱敏
      */
-    private String executePartialMask(String data, MaskingAlgorithmParams params) {
-        if (params == null) {
-            // 默认参数：保留前3位和后4位
-            return DataMaskUtil.maskCustom(data, 3, 4, '*', 0);
+    public MaskingPlan getPlan(String sensitiveDataType, String scenario) {
+        long version = maskingRuleService.getRulesVersion();
+        TypePlans current = typePlans;
+        if (current.version != version) {
+            current = new TypePlans(version);
+            typePlans = current;
         }
-
-        int keepPrefix = params.getKeepPrefix() != null ? params.getKeepPrefix() : 0;
-        int keepSuffix = params.getKeepSuffix() != null ? params.getKeepSuffix() : 0;
-        char maskChar = params.getMaskChar() != null && !params.getMaskChar().isEmpty() 
-                ? params.getMaskChar().charAt(0) : '*';
-        int maskLength = params.getMaskLength() != null ? params.getMaskLength() : 0;
-
-        return DataMaskUtil.maskCustom(data, keepPrefix, keepSuffix, maskChar, maskLength);
+        return current.plans.computeIfAbsent(sensitiveDataType + ':' + scenario, key -> {
+            // 使用第一个启用的规则进行脱敏
+            List<DataMaskingRule> rules = maskingRuleService.getRulesBySensitiveType(sensitiveDataType, scenario);
+            if (rules.isEmpty()) {
+                // 没有配置规则时，使用默认脱敏
+                return defaultPlan(sensitiveDataType);
+            }
+            DataMaskingRule rule = rules.get(0);
+            return Boolean.TRUE.equals(rule.getEnabled()) ? getPlan(rule) : MaskingPlan.IDENTITY;
+        });
     }
 
     /**
-     * 完整掩码算法
+     * 定期丢弃按类型缓存的计划，同步其他节点的规则变更
      */
-    private String executeFullMask(String data, MaskingAlgorithmParams params) {
-        char maskChar = params != null && params.getMaskChar() != null && !params.getMaskChar().isEmpty() 
-                ? params.getMaskChar().charAt(0) : '*';
-        return String.valueOf(maskChar).repeat(data.length());
+    @Scheduled(fixedDelayString = "${data-masking.plan-refresh-interval-ms:60000}",
+            initialDelayString = "${data-masking.plan-refresh-interval-ms:60000}")
+    public void refreshPlans() {
+        typePlans = new TypePlans(maskingRuleService.getRulesVersion());
     }
 
-    /**
-     * 哈希算法
-     */
-    private String executeHash(String data, MaskingAlgorithmParams params) {
-        String hashAlgorithm = params != null && params.getHashAlgorithm() != null
-                ? params.getHashAlgorithm() : "SM3";
+    private String applyPlan(MaskingPlan plan, String data, String algorithm) {
+        try {
+            return plan.mask(data);
+        } catch (Exception e) {
+            log.error("脱敏处理失败：{}，算法：{}", e.getMessage(), algorithm, e);
+            return data; // 脱敏失败时返回原始数据
+        }
+    }
+
+    private MaskingPlan compile(PlanKey key) {
+        MaskingAlgorithm algorithm = MaskingAlgorithm.fromCode(key.algorithm);
+        if (algorithm == null) {
+            log.warn("未知的脱敏算法：{}", key.algorithm);
+            return MaskingPlan.IDENTITY;
+        }
 
         try {
-            switch (hashAlgorithm.toUpperCase()) {
-                case "SM3":
-                    return SM3Util.hash(data);
-                case "SHA256":
-                    return bytesToHex(java.security.MessageDigest.getInstance("SHA-256")
-                            .digest(data.getBytes(StandardCharsets.UTF_8)));
-                default:
-                    return SM3Util.hash(data);
+            // 解析算法参数
+            MaskingAlgorithmParams params = null;
+            if (StringUtils.hasText(key.params)) {
+                params = objectMapper.readValue(key.params, MaskingAlgorithmParams.class);
             }
+            if (algorithm == MaskingAlgorithm.SYMMETRIC_ENCRYPT) {
+                log.warn("对称加密算法暂未实现，使用部分掩码代替");
+            }
+            return MaskingPlan.compile(algorithm, params);
         } catch (Exception e) {
-            log.error("哈希计算失败：{}", e.getMessage(), e);
-            throw new RuntimeException("哈希计算失败", e);
+            log.error("编译脱敏计划失败：{}，算法：{}，参数：{}", e.getMessage(), key.algorithm, key.params, e);
+            return MaskingPlan.IDENTITY;
         }
     }
 
-    /**
-     * 对称加密算法
-     */
-    private String executeSymmetricEncrypt(String data, MaskingAlgorithmParams params) {
-        // 这里可以集成SM4或其他对称加密算法
-        // 暂时使用部分掩码作为示例
-        log.warn("对称加密算法暂未实现，使用部分掩码代替");
-        return executePartialMask(data, params);
+    private static MaskingPlan defaultPlan(String sensitiveDataType) {
+        return MaskingPlan.of(data -> DataMaskUtil.maskByType(data, sensitiveDataType));
     }
 
     /**
-     * 格式保留加密
+     * 计划缓存键：算法编码与参数JSON
      */
-    private String executeFormatPreserving(String data, MaskingAlgorithmParams params) {
-        int preserveLength = params != null && params.getFormatPreserveLength() != null 
-                ? params.getFormatPreserveLength() : 4;
-        
-        if (data.length() <= preserveLength) {
-            return data;
+    private static final class PlanKey {
+        private final String algorithm;
+        private final String params;
+        private final int hash;
+
+        private PlanKey(String algorithm, String params) {
+            this.algorithm = algorithm;
+            this.params = params;
+            this.hash = Objects.hash(algorithm, params);
         }
 
-        // 保留前后各一部分，中间加密
-        int prefixLen = preserveLength / 2;
-        int suffixLen = preserveLength - prefixLen;
-        
-        String prefix = data.substring(0, prefixLen);
-        String suffix = data.substring(data.length() - suffixLen);
-        String middle = data.substring(prefixLen, data.length() - suffixLen);
-        
-        // 中间部分用*代替
-        String maskedMiddle = "*".repeat(middle.length());
-        
-        return prefix + maskedMiddle + suffix;
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof PlanKey)) {
+                return false;
+            }
+            PlanKey other = (PlanKey) o;
+            return Objects.equals(algorithm, other.algorithm) && Objects.equals(params, other.params);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
     }
 
     /**
-     * 字节数组转十六进制字符串
+     * 某一规则版本下按"类型:场景"缓存的计划
      */
-    private String bytesToHex(byte[] bytes) {
-        StringBuilder result = new StringBuilder();
-        for (byte b : bytes) {
-            result.append(String.format("%02x", b));
+    private static final class TypePlans {
+        private final long version;
+        private final Map<String, MaskingPlan> plans = new ConcurrentHashMap<>();
+
+        private TypePlans(long version) {
+            this.version = version;
         }
-        return result.toString();
     }
-}
\ No newline at end of file
+}
@@ -16,11 +16,14 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.util.StringUtils;
 
 import java.time.LocalDateTime;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 /**
@@ -34,6 +37,11 @@ public class DataMaskingRuleService {
     private final DataMaskingRuleMapper maskingRuleMapper;
     private final ObjectMapper objectMapper;
 
+    /**
+     * 规则版本号，规则变更提交后递增，DataMaskingEngine据此失效预编译的脱敏计划
+     */
+    private final AtomicLong rulesVersion = new AtomicLong();
+
     /**
      * 分页查询脱敏规则
      */
@@ -69,6 +77,7 @@ public class DataMaskingRuleService {
         rule.setCreatedBy(currentUser);
 
         maskingRuleMapper.insert(rule);
+        bumpVersionAfterCommit();
         log.info("创建脱敏规则成功：{} - {}", rule.getRuleName(), rule.getSensitiveDataType());
         
         return Result.success("创建成功");
@@ -107,6 +116,7 @@ public class DataMaskingRuleService {
         existingRule.setUpdateTime(LocalDateTime.now());
 
         maskingRuleMapper.updateById(existingRule);
+        bumpVersionAfterCommit();
         log.info("更新脱敏规则成功：{} - {}", rule.getRuleName(), rule.getSensitiveDataType());
         
         return Result.success("更新成功");
@@ -123,6 +133,7 @@ public class DataMaskingRuleService {
         }
 
         maskingRuleMapper.deleteById(id);
+        bumpVersionAfterCommit();
         log.info("删除脱敏规则成功：{} - {}", rule.getRuleName(), rule.getSensitiveDataType());
         
         return Result.success("删除成功");
@@ -141,11 +152,35 @@ public class DataMaskingRuleService {
         rule.setEnabled(enabled);
         rule.setUpdateTime(LocalDateTime.now());
         maskingRuleMapper.updateById(rule);
+        bumpVersionAfterCommit();
         
         log.info("{}脱敏规则成功：{} - {}", enabled ? "启用" : "禁用", rule.getRuleName(), rule.getSensitiveDataType());
         return Result.success(enabled ? "启用成功" : "禁用成功");
     }
 
+    /**
+     * 获取规则版本号
+     */
+    public long getRulesVersion() {
+        return rulesVersion.get();
+    }
+
+    /**
+     * 在当前事务提交后递增规则版本号，无事务时立即递增
+     */
+    private void bumpVersionAfterCommit() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    rulesVersion.incrementAndGet();
+                }
+            });
+        } else {
+            rulesVersion.incrementAndGet();
+        }
+    }
+
     /**
      * 根据敏感数据类型获取适用的脱敏规则
      */
@@ -0,0 +1,45 @@
+package com.bankshield.api.service;
+
+import com.bankshield.api.dto.DesensitizationJobProgress;
+import com.bankshield.api.dto.DesensitizationJobRequest;
+
+import java.util.List;
+
+/**
+ * 流式脱敏任务服务接口
+ * 以游标或逐行方式读取源表/CSV文件，按列规则并行脱敏后增量写入目标表/文件，内存占用有界。
+ * 只输出请求中显式列出的列，其中未配置脱敏规则的列按原值写入
+ */
+public interface DesensitizationJobService {
+    
+    /**
+     * 提交流式脱敏任务
+     * 
+     * @param request 任务请求
+     * @param userId 用户ID
+     * @param userName 用户名
+     * @return 任务ID
+     */
+    String submitJob(DesensitizationJobRequest request, String userId, String userName);
+    
+    /**
+     * 查询任务进度
+     * 
+     * @param jobId 任务ID
+     * @return 任务进度，不存在时返回null
+     */
+    DesensitizationJobProgress getProgress(String jobId);
+    
+    /**
+     * 查询全部任务进度
+     */
+    List<DesensitizationJobProgress> listJobs();
+    
+    /**
+     * 取消任务
+     * 
+     * @param jobId 任务ID
+     * @return 是否取消成功
+     */
+    boolean cancelJob(String jobId);
+}
@@ -0,0 +1,227 @@
+package com.bankshield.api.service;
+
+import com.bankshield.api.dto.MaskingAlgorithmParams;
+import com.bankshield.api.enums.MaskingAlgorithm;
+import com.bankshield.common.crypto.SM3Util;
+import org.springframework.util.StringUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.function.UnaryOperator;
+
+/**
+ * 预编译脱敏计划
+ * 由脱敏规则的算法和参数一次性编译得到，不可变且线程安全；
+ * 执行时不再查找算法枚举或解析JSON参数，适合按行、按列批量复用。
+ */
+public abstract class MaskingPlan {
+
+    /**
+     * 原样返回数据的计划，用于未知算法或参数无效的规则
+     */
+    public static final MaskingPlan IDENTITY = of(data -> data);
+
+    /**
+     * 对单个值脱敏，空值和空白串原样返回
+     */
+    public final String mask(String data) {
+        if (!StringUtils.hasText(data)) {
+            return data;
+        }
+        return apply(data);
+    }
+
+    /**
+     * 按列批量脱敏，返回与输入等长的新数组
+     */
+    public String[] maskColumn(String[] values) {
+        if (values == null) {
+            return null;
+        }
+        String[] masked = new String[values.length];
+        for (int i = 0; i < values.length; i++) {
+            masked[i] = mask(values[i]);
+        }
+        return masked;
+    }
+
+    /**
+     * 对非空值执行脱敏
+     */
+    protected abstract String apply(String data);
+
+    /**
+     * 由函数构造脱敏计划
+     */
+    public static MaskingPlan of(UnaryOperator<String> function) {
+        return new MaskingPlan() {
+            @Override
+            protected String apply(String data) {
+                return function.apply(data);
+            }
+        };
+    }
+
+    /**
+     * 编译脱敏计划
+     *
+     * @param algorithm 脱敏算法
+     * @param params 算法参数，可为空
+     * @return 脱敏计划
+     * @throws IllegalArgumentException 参数无效时
+     */
+    public static MaskingPlan compile(MaskingAlgorithm algorithm, MaskingAlgorithmParams params) {
+        switch (algorithm) {
+            case PARTIAL_MASK:
+            case SYMMETRIC_ENCRYPT:
+                return partialMask(params);
+            case FULL_MASK:
+                return new FullMask(maskChar(params));
+            case HASH:
+                return hash(params);
+            case FORMAT_PRESERVING:
+                int preserveLength = params != null && params.getFormatPreserveLength() != null
+                        ? params.getFormatPreserveLength() : 4;
+                requireNonNegative(preserveLength, "formatPreserveLength");
+                return new FormatPreserving(preserveLength);
+            default:
+                return IDENTITY;
+        }
+    }
+
+    private static MaskingPlan partialMask(MaskingAlgorithmParams params) {
+        if (params == null) {
+            // 默认参数：保留前3位和后4位
+            return new PartialMask(3, 4, '*', 0);
+        }
+        int keepPrefix = params.getKeepPrefix() != null ? params.getKeepPrefix() : 0;
+        int keepSuffix = params.getKeepSuffix() != null ? params.getKeepSuffix() : 0;
+        int maskLength = params.getMaskLength() != null ? params.getMaskLength() : 0;
+        requireNonNegative(keepPrefix, "keepPrefix");
+        requireNonNegative(keepSuffix, "keepSuffix");
+        return new PartialMask(keepPrefix, keepSuffix, maskChar(params), maskLength);
+    }
+
+    private static MaskingPlan hash(MaskingAlgorithmParams params) {
+        String hashAlgorithm = params != null && params.getHashAlgorithm() != null
+                ? params.getHashAlgorithm() : "SM3";
+        if ("SHA256".equalsIgnoreCase(hashAlgorithm)) {
+            return new Sha256Hash();
+        }
+        return of(SM3Util::hash);
+    }
+
+    private static char maskChar(MaskingAlgorithmParams params) {
+        return params != null && params.getMaskChar() != null && !params.getMaskChar().isEmpty()
+                ? params.getMaskChar().charAt(0) : '*';
+    }
+
+    private static void requireNonNegative(int value, String name) {
+        if (value < 0) {
+            throw new IllegalArgumentException("脱敏参数" + name + "不能为负数：" + value);
+        }
+    }
+
+    /**
+     * 部分掩码：保留前后缀，中间替换为掩码字符，maskLength大于0时限制掩码长度
+     */
+    private static final class PartialMask extends MaskingPlan {
+        private final int keepPrefix;
+        private final int keepSuffix;
+        private final char maskChar;
+        private final int maxMaskLength;
+
+        private PartialMask(int keepPrefix, int keepSuffix, char maskChar, int maxMaskLength) {
+            this.keepPrefix = keepPrefix;
+            this.keepSuffix = keepSuffix;
+            this.maskChar = maskChar;
+            this.maxMaskLength = maxMaskLength;
+        }
+
+        @Override
+        protected String apply(String data) {
+            int length = data.length();
+            if (length <= keepPrefix + keepSuffix) {
+                return data;
+            }
+            int maskLength = length - keepPrefix - keepSuffix;
+            if (maxMaskLength > 0 && maskLength > maxMaskLength) {
+                maskLength = maxMaskLength;
+            }
+            char[] masked = new char[keepPrefix + maskLength + keepSuffix];
+            data.getChars(0, keepPrefix, masked, 0);
+            Arrays.fill(masked, keepPrefix, keepPrefix + maskLength, maskChar);
+            data.getChars(length - keepSuffix, length, masked, keepPrefix + maskLength);
+            return new String(masked);
+        }
+    }
+
+    /**
+     * 完整掩码
+     */
+    private static final class FullMask extends MaskingPlan {
+        private final char maskChar;
+
+        private FullMask(char maskChar) {
+            this.maskChar = maskChar;
+        }
+
+        @Override
+        protected String apply(String data) {
+            char[] masked = new char[data.length()];
+            Arrays.fill(masked, maskChar);
+            return new String(masked);
+        }
+    }
+
+    /**
+     * 格式保留：保留前后共preserveLength位，中间替换为*
+     */
+    private static final class FormatPreserving extends MaskingPlan {
+        private final int prefixLength;
+        private final int suffixLength;
+
+        private FormatPreserving(int preserveLength) {
+            this.prefixLength = preserveLength / 2;
+            this.suffixLength = preserveLength - prefixLength;
+        }
+
+        @Override
+        protected String apply(String data) {
+            int length = data.length();
+            if (length <= prefixLength + suffixLength) {
+                return data;
+            }
+            char[] masked = data.toCharArray();
+            Arrays.fill(masked, prefixLength, length - suffixLength, '*');
+            return new String(masked);
+        }
+    }
+
+    /**
+     * SHA-256哈希，按线程复用MessageDigest
+     */
+    private static final class Sha256Hash extends MaskingPlan {
+        private static final char[] HEX = "0123456789abcdef".toCharArray();
+        private static final ThreadLocal<MessageDigest> DIGEST = ThreadLocal.withInitial(() -> {
+            try {
+                return MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("SHA-256不可用", e);
+            }
+        });
+
+        @Override
+        protected String apply(String data) {
+            byte[] digest = DIGEST.get().digest(data.getBytes(StandardCharsets.UTF_8));
+            char[] hex = new char[digest.length * 2];
+            for (int i = 0; i < digest.length; i++) {
+                hex[i * 2] = HEX[(digest[i] >> 4) & 0x0f];
+                hex[i * 2 + 1] = HEX[digest[i] & 0x0f];
+            }
+            return new String(hex);
+        }
+    }
+}
@@ -7,6 +7,7 @@ import com.baomidou.mybatisplus.extension.service.IService;
 
 import javax.servlet.http.HttpServletResponse;
 import java.time.LocalDateTime;
+import java.util.Map;
 
 /**
  * 操作审计业务接口
@@ -62,4 +63,11 @@ public interface OperationAuditService extends IService<OperationAudit> {
      * @param operationAudit 操作审计记录
      */
     void saveOperationAudit(OperationAudit operationAudit);
-}
\ No newline at end of file
+
+    /**
+     * 获取审计写入缓冲统计信息（队列深度、写入/落盘条数等）
+     * 
+     * @return 统计信息
+     */
+    Map<String, Object> getWriteBufferStatistics();
+}
@@ -16,6 +16,13 @@ public interface SecurityScanEngine {
      */
     List<SecurityScanResult> performVulnerabilityScan(SecurityScanTask task);
 
+    /**
+     * 执行漏洞扫描，扫描结果边发现边分批写入数据库
+     *
+     * @return 发现的风险数
+     */
+    int executeVulnerabilityScan(SecurityScanTask task);
+
     /**
      * 执行配置检查
      */
@@ -1,10 +1,10 @@
 package com.bankshield.api.service.impl;
 
-import com.alibaba.fastjson2.JSON;
-import com.alibaba.fastjson2.JSONObject;
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.core.metadata.IPage;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.bankshield.api.component.AccessLogWriteBuffer;
+import com.bankshield.api.engine.AccessPolicyEngine;
 import com.bankshield.api.entity.*;
 import com.bankshield.api.mapper.*;
 import com.bankshield.api.service.AccessControlService;
@@ -20,6 +20,7 @@ import java.nio.ByteBuffer;
 import java.security.SecureRandom;
 import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -37,7 +38,10 @@ public class AccessControlServiceImpl implements AccessControlService {
     private AccessRuleMapper ruleMapper;
     
     @Autowired
-    private AccessLogMapper logMapper;
+    private AccessDecisionRollupMapper rollupMapper;
+    
+    @Autowired
+    private AccessLogWriteBuffer accessLogWriteBuffer;
     
     @Autowired
     private MfaConfigMapper mfaConfigMapper;
@@ -51,6 +55,9 @@ public class AccessControlServiceImpl implements AccessControlService {
     @Autowired
     private IpBlacklistMapper ipBlacklistMapper;
     
+    @Autowired
+    private AccessPolicyEngine policyEngine;
+    
     // ==================== 访问策略管理 ====================
     
     @Override
@@ -71,6 +78,7 @@ public class AccessControlServiceImpl implements AccessControlService {
         policy.setUpdatedTime(LocalDateTime.now());
         policyMapper.insert(policy);
         log.info("创建访问策略: {}", policy.getPolicyCode());
+        policyEngine.reloadAfterCommit();
     }
     
     @Override
@@ -79,6 +87,7 @@ public class AccessControlServiceImpl implements AccessControlService {
         policy.setUpdatedTime(LocalDateTime.now());
         policyMapper.updateById(policy);
         log.info("更新访问策略: {}", policy.getPolicyCode());
+        policyEngine.reloadAfterCommit();
     }
     
     @Override
@@ -86,6 +95,7 @@ public class AccessControlServiceImpl implements AccessControlService {
     public void deletePolicy(Long id) {
         policyMapper.deleteById(id);
         log.info("删除访问策略: {}", id);
+        policyEngine.reloadAfterCommit();
     }
     
     @Override
@@ -97,6 +107,7 @@ public class AccessControlServiceImpl implements AccessControlService {
             policy.setUpdatedTime(LocalDateTime.now());
             policyMapper.updateById(policy);
             log.info("更新策略状态: {} -> {}", id, status);
+            policyEngine.reloadAfterCommit();
         }
     }
     
@@ -125,6 +136,7 @@ public class AccessControlServiceImpl implements AccessControlService {
         rule.setUpdatedTime(LocalDateTime.now());
         ruleMapper.insert(rule);
         log.info("创建访问规则: {}", rule.getRuleCode());
+        policyEngine.reloadAfterCommit();
     }
     
     @Override
@@ -133,6 +145,7 @@ public class AccessControlServiceImpl implements AccessControlService {
         rule.setUpdatedTime(LocalDateTime.now());
         ruleMapper.updateById(rule);
         log.info("更新访问规则: {}", rule.getRuleCode());
+        policyEngine.reloadAfterCommit();
     }
     
     @Override
@@ -140,6 +153,7 @@ public class AccessControlServiceImpl implements AccessControlService {
     public void deleteRule(Long id) {
         ruleMapper.deleteById(id);
         log.info("删除访问规则: {}", id);
+        policyEngine.reloadAfterCommit();
     }
     
     @Override
@@ -159,45 +173,13 @@ public class AccessControlServiceImpl implements AccessControlService {
         String denyReason = null;
         
         try {
-            // 1. 检查IP黑名单
-            if (isIpBlacklisted(ipAddress)) {
-                denyReason = "IP地址已被封禁";
-                return false;
-            }
-            
-            // 2. 获取所有启用的策略（按优先级排序）
-            List<AccessPolicy> policies = policyMapper.selectEnabledPolicies();
-            
-            // 3. 遍历策略，匹配规则
-            for (AccessPolicy policy : policies) {
-                List<AccessRule> rules = ruleMapper.selectByPolicyId(policy.getId());
-                
-                for (AccessRule rule : rules) {
-                    // 检查规则是否匹配
-                    if (matchRule(rule, userId, username, resourceType, resourceId, action, ipAddress, mfaVerified)) {
-                        policyMatched = policy.getPolicyCode();
-                        ruleMatched = rule.getRuleCode();
-                        
-                        // 根据策略效果决定是否允许
-                        if ("ALLOW".equals(policy.getEffect())) {
-                            allowed = true;
-                            break;
-                        } else {
-                            denyReason = "策略拒绝访问";
-                            allowed = false;
-                            break;
-                        }
-                    }
-                }
-                
-                if (policyMatched != null) {
-                    break;
-                }
-            }
-            
-            if (!allowed && denyReason == null) {
-                denyReason = "未匹配到任何允许策略";
-            }
+            // 基于内存中已编译的策略快照决策，不访问数据库
+            AccessPolicyEngine.AccessDecision decision =
+                    policyEngine.decide(userId, resourceType, action, ipAddress, mfaVerified);
+            allowed = decision.isAllowed();
+            policyMatched = decision.getPolicyMatched();
+            ruleMatched = decision.getRuleMatched();
+            denyReason = decision.getDenyReason();
             
         } catch (Exception e) {
             log.error("访问权限检查失败", e);
@@ -226,106 +208,11 @@ public class AccessControlServiceImpl implements AccessControlService {
         return allowed;
     }
     
-    /**
-     * 匹配规则
-     */
-    private boolean matchRule(AccessRule rule, Long userId, String username, String resourceType,
-                             String resourceId, String action, String ipAddress, boolean mfaVerified) {
-        try {
-            // 检查MFA要求
-            if (rule.getMfaRequired() && !mfaVerified) {
-                return false;
-            }
-            
-            // 解析条件
-            JSONObject subjectCondition = parseCondition(rule.getSubjectCondition());
-            JSONObject resourceCondition = parseCondition(rule.getResourceCondition());
-            JSONObject actionCondition = parseCondition(rule.getActionCondition());
-            JSONObject environmentCondition = parseCondition(rule.getEnvironmentCondition());
-            
-            // 匹配主体条件（简化版本，实际应该查询用户角色等）
-            if (subjectCondition != null && !matchSubjectCondition(subjectCondition, userId, username)) {
-                return false;
-            }
-            
-            // 匹配资源条件
-            if (resourceCondition != null && !matchResourceCondition(resourceCondition, resourceType, resourceId)) {
-                return false;
-            }
-            
-            // 匹配操作条件
-            if (actionCondition != null && !matchActionCondition(actionCondition, action)) {
-                return false;
-            }
-            
-            // 匹配环境条件
-            if (environmentCondition != null && !matchEnvironmentCondition(environmentCondition, ipAddress)) {
-                return false;
-            }
-            
-            return true;
-        } catch (Exception e) {
-            log.error("规则匹配失败: {}", rule.getRuleCode(), e);
-            return false;
-        }
-    }
-    
-    private JSONObject parseCondition(String condition) {
-        if (!StringUtils.hasText(condition)) {
-            return null;
-        }
-        try {
-            return JSON.parseObject(condition);
-        } catch (Exception e) {
-            log.error("解析条件失败: {}", condition, e);
-            return null;
-        }
-    }
-    
-    private boolean matchSubjectCondition(JSONObject condition, Long userId, String username) {
-        // 简化实现：实际应该检查用户角色、部门等
-        return true;
-    }
-    
-    private boolean matchResourceCondition(JSONObject condition, String resourceType, String resourceId) {
-        String type = condition.getString("type");
-        if (type != null && !"*".equals(type) && !type.equals(resourceType)) {
-            return false;
-        }
-        return true;
-    }
-    
-    private boolean matchActionCondition(JSONObject condition, String action) {
-        Object actionObj = condition.get("action");
-        if (actionObj == null) {
-            return true;
-        }
-        
-        if (actionObj instanceof String) {
-            String actionStr = (String) actionObj;
-            return "*".equals(actionStr) || actionStr.equals(action);
-        }
-        
-        if (actionObj instanceof List) {
-            List<String> actions = (List<String>) actionObj;
-            return actions.contains(action);
-        }
-        
-        return false;
-    }
-    
-    private boolean matchEnvironmentCondition(JSONObject condition, String ipAddress) {
-        Boolean ipWhitelist = condition.getBoolean("ip_whitelist");
-        if (ipWhitelist != null && ipWhitelist) {
-            return isIpWhitelisted(ipAddress, null);
-        }
-        return true;
-    }
-    
     @Override
     public void logAccess(AccessLog accessLog) {
         try {
-            logMapper.insert(accessLog);
+            // 只计数和入队，由写入缓冲异步批量落库
+            accessLogWriteBuffer.submit(accessLog);
         } catch (Exception e) {
             log.error("记录访问日志失败", e);
         }
@@ -333,21 +220,30 @@ public class AccessControlServiceImpl implements AccessControlService {
     
     @Override
     public Map<String, Object> getAccessStatistics(int days) {
-        LocalDateTime startTime = LocalDateTime.now().minusDays(days);
+        LocalDateTime startTime = LocalDateTime.now().minusDays(days).truncatedTo(ChronoUnit.HOURS);
         
         Map<String, Object> statistics = new HashMap<>();
         
-        // 统计访问次数
-        List<Map<String, Object>> countByResult = logMapper.countAccessByResult(startTime);
+        // 基于小时汇总表统计，计数包含未采样入库的ALLOW决策
+        List<Map<String, Object>> countByResult = rollupMapper.sumByResult(startTime);
         statistics.put("countByResult", countByResult);
         
         // 统计用户访问次数
-        List<Map<String, Object>> countByUser = logMapper.countAccessByUser(startTime, 10);
+        List<Map<String, Object>> countByUser = rollupMapper.sumByUser(startTime, 10);
         statistics.put("topUsers", countByUser);
         
-        // 统计拒绝访问的日志
-        List<AccessLog> deniedLogs = logMapper.selectDeniedLogs(startTime);
-        statistics.put("deniedCount", deniedLogs.size());
+        // 统计拒绝访问次数
+        long deniedCount = 0;
+        for (Map<String, Object> row : countByResult) {
+            if ("DENY".equals(row.get("access_result")) && row.get("count") instanceof Number) {
+                deniedCount += ((Number) row.get("count")).longValue();
+            }
+        }
+        statistics.put("deniedCount", deniedCount);
+        
+        // 统计各策略/规则命中次数
+        statistics.put("topPolicyRules", rollupMapper.sumByPolicyRule(startTime, 20));
+        statistics.put("logBuffer", accessLogWriteBuffer.getStatistics());
         
         return statistics;
     }
@@ -518,6 +414,7 @@ public class AccessControlServiceImpl implements AccessControlService {
         whitelist.setUpdatedTime(LocalDateTime.now());
         ipWhitelistMapper.insert(whitelist);
         log.info("添加IP白名单: {}", whitelist.getIpAddress());
+        policyEngine.reloadAfterCommit();
     }
     
     @Override
@@ -525,6 +422,7 @@ public class AccessControlServiceImpl implements AccessControlService {
     public void removeIpWhitelist(Long id) {
         ipWhitelistMapper.deleteById(id);
         log.info("删除IP白名单: {}", id);
+        policyEngine.reloadAfterCommit();
     }
     
     @Override
@@ -535,6 +433,7 @@ public class AccessControlServiceImpl implements AccessControlService {
         blacklist.setCreatedTime(LocalDateTime.now());
         ipBlacklistMapper.insert(blacklist);
         log.info("添加IP黑名单: {}", blacklist.getIpAddress());
+        policyEngine.reloadAfterCommit();
     }
     
     @Override
@@ -545,34 +444,18 @@ public class AccessControlServiceImpl implements AccessControlService {
             blacklist.setStatus("REMOVED");
             ipBlacklistMapper.updateById(blacklist);
             log.info("删除IP黑名单: {}", id);
+            policyEngine.reloadAfterCommit();
         }
     }
     
     @Override
     public boolean isIpWhitelisted(String ipAddress, Long userId) {
-        List<IpWhitelist> whitelists = ipWhitelistMapper.selectEnabled();
-        for (IpWhitelist whitelist : whitelists) {
-            if (matchIp(ipAddress, whitelist.getIpAddress(), whitelist.getIpRange())) {
-                if ("ALL".equals(whitelist.getApplyTo())) {
-                    return true;
-                }
-                if ("USER".equals(whitelist.getApplyTo()) && userId != null && userId.equals(whitelist.getTargetId())) {
-                    return true;
-                }
-            }
-        }
-        return false;
+        return policyEngine.isIpWhitelisted(ipAddress, userId);
     }
     
     @Override
     public boolean isIpBlacklisted(String ipAddress) {
-        List<IpBlacklist> blacklists = ipBlacklistMapper.selectActive();
-        for (IpBlacklist blacklist : blacklists) {
-            if (matchIp(ipAddress, blacklist.getIpAddress(), blacklist.getIpRange())) {
-                return true;
-            }
-        }
-        return false;
+        return policyEngine.isIpBlacklisted(ipAddress);
     }
     
     @Override
@@ -588,21 +471,4 @@ public class AccessControlServiceImpl implements AccessControlService {
         log.info("清理过期IP黑名单: {} 条", count);
         return count;
     }
-    
-    /**
-     * 匹配IP地址
-     */
-    private boolean matchIp(String ipAddress, String targetIp, String ipRange) {
-        if (ipAddress.equals(targetIp)) {
-            return true;
-        }
-        
-        if (StringUtils.hasText(ipRange)) {
-            // 简化实现：实际应该使用CIDR匹配
-            String prefix = ipRange.split("/")[0];
-            return ipAddress.startsWith(prefix.substring(0, prefix.lastIndexOf('.')));
-        }
-        
-        return false;
-    }
 }
@@ -1,7 +1,9 @@
 package com.bankshield.api.service.impl;
 
+import com.bankshield.api.component.AuditIntegrityVerifier;
 import com.bankshield.api.dto.AuditIntegrityReport;
 import com.bankshield.api.dto.AuditIntegrityStatistics;
+import com.bankshield.api.dto.AuditVerificationProgress;
 import com.bankshield.api.entity.AuditBlock;
 import com.bankshield.api.entity.AuditOperationBlock;
 import com.bankshield.api.entity.OperationAudit;
@@ -9,18 +11,20 @@ import com.bankshield.api.mapper.AuditBlockMapper;
 import com.bankshield.api.mapper.AuditOperationBlockMapper;
 import com.bankshield.api.mapper.OperationAuditMapper;
 import com.bankshield.api.service.AuditBlockService;
+import com.bankshield.api.util.MerkleTree;
 // import com.bankshield.api.service.AlertService;  // 暂时注释掉，因为AlertService不存在
 import com.bankshield.common.result.Result;
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import lombok.extern.slf4j.Slf4j;
+import org.bouncycastle.util.encoders.Hex;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.CollectionUtils;
 
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
@@ -37,6 +41,16 @@ import java.util.stream.Collectors;
 @Slf4j
 public class AuditBlockServiceImpl implements AuditBlockService {
     
+    /**
+     * 审计日志与区块关联关系多行插入的批大小
+     */
+    private static final int RELATION_INSERT_BATCH = 500;
+    
+    /**
+     * 新版Merkle树（SM3、带二进制包含证明）区块的元数据标记
+     */
+    private static final String MERKLE_V2_METADATA = "{\"merkleVersion\":2,\"hashAlgorithm\":\"SM3\"}";
+    
     @Autowired
     private AuditBlockMapper blockMapper;
     
@@ -46,6 +60,9 @@ public class AuditBlockServiceImpl implements AuditBlockService {
     @Autowired
     private OperationAuditMapper auditMapper;
     
+    @Autowired
+    private AuditIntegrityVerifier integrityVerifier;
+    
     // @Autowired
     // private AlertService alertService;  // 暂时注释掉
     
@@ -71,12 +88,13 @@ public class AuditBlockServiceImpl implements AuditBlockService {
             return null;
         }
         
-        // 2. 计算Merkle树
-        List<String> auditHashes = pendingAudits.stream()
-            .map(this::calculateAuditHash)
+        // 2. 构建Merkle树
+        List<byte[]> leaves = pendingAudits.stream()
+            .map(this::toMerkleLeaf)
             .collect(Collectors.toList());
         
-        String merkleRoot = calculateMerkleRoot(auditHashes);
+        MerkleTree merkleTree = MerkleTree.build(leaves);
+        String merkleRoot = merkleTree.getRootHex();
         
         // 3. 计算区块哈希
         AuditBlock lastBlock = blockMapper.selectLastBlock();
@@ -91,6 +109,7 @@ public class AuditBlockServiceImpl implements AuditBlockService {
         block.setAuditCount((long) pendingAudits.size());
         block.setBlockTime(LocalDateTime.now());
         block.setOperator(getCurrentUsername());
+        block.setMetadata(MERKLE_V2_METADATA);
         block.setStatus(1);
         
         // 计算当前区块哈希
@@ -100,21 +119,33 @@ public class AuditBlockServiceImpl implements AuditBlockService {
         // 4. 保存区块
         blockMapper.insert(block);
         
-        // 5. 建立审计日志与区块的关联
+        // 5. 批量建立审计日志与区块的关联
+        List<AuditOperationBlock> relations = new ArrayList<>(RELATION_INSERT_BATCH);
         for (int i = 0; i < pendingAudits.size(); i++) {
             OperationAudit audit = pendingAudits.get(i);
             
             AuditOperationBlock relation = new AuditOperationBlock();
             relation.setAuditId(audit.getId());
             relation.setBlockId(block.getId());
-            relation.setMerklePath(getMerklePath(auditHashes, i));
+            relation.setMerkleProof(merkleTree.getProof(i));
             relation.setIndexInBlock(i);
+            relations.add(relation);
             
-            operationBlockMapper.insert(relation);
-            
-            // 更新审计日志的区块ID
+            if (relations.size() >= RELATION_INSERT_BATCH) {
+                operationBlockMapper.batchInsert(relations);
+                relations.clear();
+            }
             audit.setBlockId(block.getId());
-            auditMapper.updateById(audit);
+        }
+        if (!relations.isEmpty()) {
+            operationBlockMapper.batchInsert(relations);
+        }
+        
+        // 6. 一条集合更新语句回写审计日志的区块ID
+        int bound = auditMapper.bindBlock(block.getId());
+        if (bound != pendingAudits.size()) {
+            throw new IllegalStateException("区块 #" + blockNumber + " 回写审计日志数量不一致，预期 "
+                + pendingAudits.size() + " 条，实际 " + bound + " 条");
         }
         
         log.info("成功生成审计区块: #{}, 包含 {} 条审计日志", blockNumber, pendingAudits.size());
@@ -140,10 +171,7 @@ public class AuditBlockServiceImpl implements AuditBlockService {
             return false;
         }
         
-        // 2. 重新计算审计日志哈希
-        String calculatedHash = calculateAuditHash(audit);
-        
-        // 3. 验证Merkle路径
+        // 2. 查询区块关联及包含证明
         AuditOperationBlock relation = operationBlockMapper.selectOne(
             new QueryWrapper<AuditOperationBlock>()
                 .eq("audit_id", auditId)
@@ -155,13 +183,13 @@ public class AuditBlockServiceImpl implements AuditBlockService {
             return false;
         }
         
-        // 4. 验证Merkle根
-        boolean isValid = verifyMerklePath(
-            calculatedHash,
-            relation.getMerklePath(),
-            relation.getIndexInBlock(),
-            block.getMerkleRoot()
-        );
+        // 3. 重新计算叶子并沿包含证明验证Merkle根；旧版区块没有证明，退化为整块复核
+        boolean isValid;
+        if (isMerkleV2(block) && relation.getMerkleProof() != null) {
+            isValid = MerkleTree.verifyProof(toMerkleLeaf(audit), relation.getMerkleProof(), block.getMerkleRoot());
+        } else {
+            isValid = verifyBlock(block);
+        }
         
         if (!isValid) {
             log.error("审计日志 {} 的Merkle验证失败，数据可能被篡改", auditId);
@@ -202,20 +230,16 @@ public class AuditBlockServiceImpl implements AuditBlockService {
             }
         }
         
-        // 3. 验证所有已上链的审计日志
-        List<OperationAudit> allAudits = auditMapper.selectList(
-            new QueryWrapper<OperationAudit>().isNotNull("block_id")
-        );
+        // 3. 游标分页并行整块复核
+        AuditVerificationProgress progress = integrityVerifier.verify(this::verifyBlock);
         
-        int invalidCount = 0;
-        for (OperationAudit audit : allAudits) {
-            if (!verifyAuditIntegrity(audit.getId())) {
-                invalidCount++;
-            }
+        if (!AuditIntegrityVerifier.STATUS_COMPLETED.equals(progress.getStatus())) {
+            issues.add("全量校验未完成，状态: " + progress.getStatus() + "，已校验 "
+                + progress.getVerifiedBlocks() + "/" + progress.getTotalBlocks() + " 个区块");
         }
-        
-        if (invalidCount > 0) {
-            issues.add("发现 " + invalidCount + " 条完整性验证失败的审计日志");
+        if (progress.getInvalidBlocks() > 0) {
+            issues.add("发现 " + progress.getInvalidBlocks() + " 个完整性验证失败的区块，涉及 "
+                + progress.getInvalidAudits() + " 条审计日志");
         }
         
         report.setIntegrityIssues(issues);
@@ -224,6 +248,74 @@ public class AuditBlockServiceImpl implements AuditBlockService {
         return report;
     }
     
+    /**
+     * 后台启动全量完整性校验
+     */
+    @Override
+    public AuditVerificationProgress startSystemVerification(boolean resume) {
+        return integrityVerifier.start(this::verifyBlock, resume);
+    }
+    
+    /**
+     * 获取全量完整性校验进度
+     */
+    @Override
+    public AuditVerificationProgress getVerificationProgress() {
+        return integrityVerifier.getProgress();
+    }
+    
+    /**
+     * 停止全量完整性校验
+     */
+    @Override
+    public void stopSystemVerification() {
+        integrityVerifier.stop();
+    }
+    
+    /**
+     * 整块复核
+     */
+    @Override
+    public boolean verifyBlockIntegrity(Long blockId) {
+        AuditBlock block = blockMapper.selectById(blockId);
+        if (block == null) {
+            log.warn("区块 {} 不存在", blockId);
+            return false;
+        }
+        return verifyBlock(block);
+    }
+    
+    /**
+     * 按区块内顺序取回审计日志，单遍重算Merkle根并比对
+     */
+    private boolean verifyBlock(AuditBlock block) {
+        List<OperationAudit> audits = auditMapper.selectByBlockIdOrdered(block.getId());
+        if (CollectionUtils.isEmpty(audits)) {
+            log.error("区块 #{} 没有关联的审计日志", block.getBlockNumber());
+            return false;
+        }
+        if (block.getAuditCount() != null && block.getAuditCount() != audits.size()) {
+            log.error("区块 #{} 审计日志数量不一致，记录 {} 条，实际 {} 条",
+                block.getBlockNumber(), block.getAuditCount(), audits.size());
+            return false;
+        }
+        
+        String calculatedRoot;
+        if (isMerkleV2(block)) {
+            calculatedRoot = Hex.toHexString(MerkleTree.computeRoot(
+                audits.stream().map(this::toMerkleLeaf).collect(Collectors.toList())));
+        } else {
+            calculatedRoot = calculateMerkleRoot(
+                audits.stream().map(this::calculateAuditHash).collect(Collectors.toList()));
+        }
+        
+        boolean isValid = calculatedRoot.equalsIgnoreCase(block.getMerkleRoot());
+        if (!isValid) {
+            log.error("区块 #{} 的Merkle根验证失败，数据可能被篡改", block.getBlockNumber());
+        }
+        return isValid;
+    }
+    
     /**
      * 分页查询审计区块
      */
@@ -275,7 +367,18 @@ public class AuditBlockServiceImpl implements AuditBlockService {
     }
     
     /**
-     * 计算Merkle根哈希
+     * Merkle叶子数据：审计日志内容哈希
+     */
+    private byte[] toMerkleLeaf(OperationAudit audit) {
+        return calculateAuditHash(audit).getBytes(StandardCharsets.UTF_8);
+    }
+    
+    private boolean isMerkleV2(AuditBlock block) {
+        return block.getMetadata() != null && block.getMetadata().contains("\"merkleVersion\":2");
+    }
+    
+    /**
+     * 计算Merkle根哈希（旧版区块，仅用于复核历史数据）
      */
     private String calculateMerkleRoot(List<String> hashes) {
         if (hashes.isEmpty()) {
@@ -313,23 +416,6 @@ public class AuditBlockServiceImpl implements AuditBlockService {
         return com.bankshield.common.crypto.EncryptUtil.sm3Hash(content);
     }
     
-    /**
-     * 获取Merkle路径
-     */
-    private String getMerklePath(List<String> hashes, int index) {
-        // 简化的Merkle路径实现
-        return "path_" + index + "_" + hashes.get(index);
-    }
-    
-    /**
-     * 验证Merkle路径
-     */
-    private boolean verifyMerklePath(String leafHash, String merklePath, int index, String expectedRoot) {
-        // 简化的验证逻辑（实际应该实现完整的Merkle证明）
-        String calculatedRoot = com.bankshield.common.crypto.EncryptUtil.sm3Hash(leafHash + merklePath + index);
-        return calculatedRoot.equals(expectedRoot);
-    }
-    
     /**
      * 获取当前用户名
      */
@@ -346,18 +432,4 @@ public class AuditBlockServiceImpl implements AuditBlockService {
         }
         return "SYSTEM";
     }
-    
-    /**
-     * 定时任务：定期生成审计区块
-     */
-    @Scheduled(cron = "0 */5 * * * ?")  // 每5分钟执行一次
-    public void scheduledBlockGeneration() {
-        log.info("开始生成审计区块...");
-        
-        AuditBlock block = generateBlock();
-        
-        if (block != null) {
-            log.info("成功生成审计区块 #{}", block.getBlockNumber());
-        }
-    }
 }
\ No newline at end of file
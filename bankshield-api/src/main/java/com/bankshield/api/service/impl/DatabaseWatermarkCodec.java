@@ -0,0 +1,284 @@
+package com.bankshield.api.service.impl;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.BitSet;
+import java.util.zip.CRC32;
+
+/**
+ * 数据库水印编解码器
+ * 基于带密钥哈希的元组选择（Agrawal-Kiernan）：对主键做HMAC-SHA256，
+ * 摘要决定该行是否被选中、承载水印的第几位以及掩码位，选中行通过数值列的最低有效位承载比特。
+ * 水印位串为 16位内容长度 + 定长内容 + 32位CRC，提取时按位多数投票后校验CRC。
+ * 实例不可变且线程安全。
+ */
+public final class DatabaseWatermarkCodec {
+
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+    private static final int LENGTH_BITS = 16;
+    private static final int CRC_BITS = 32;
+
+    private final SecretKeySpec key;
+    private final int gamma;
+    private final int payloadBytes;
+    private final int markBits;
+    private final ThreadLocal<Mac> mac;
+
+    /**
+     * @param secretKey 元组选择密钥
+     * @param gamma 选择比例，约每gamma行选中一行
+     * @param payloadBytes 水印内容最大字节数
+     */
+    public DatabaseWatermarkCodec(String secretKey, int gamma, int payloadBytes) {
+        if (secretKey == null || secretKey.isEmpty()) {
+            throw new IllegalArgumentException("数据库水印密钥不能为空");
+        }
+        if (gamma < 1) {
+            throw new IllegalArgumentException("gamma必须大于0：" + gamma);
+        }
+        if (payloadBytes < 1 || payloadBytes > 0xFFFF) {
+            throw new IllegalArgumentException("水印内容字节数超出范围：" + payloadBytes);
+        }
+        this.key = new SecretKeySpec(secretKey.getBytes(StandardCharsets.UTF_8), HMAC_ALGORITHM);
+        this.gamma = gamma;
+        this.payloadBytes = payloadBytes;
+        this.markBits = LENGTH_BITS + payloadBytes * 8 + CRC_BITS;
+        this.mac = ThreadLocal.withInitial(this::newMac);
+    }
+
+    /**
+     * 水印位串长度
+     */
+    public int getMarkBits() {
+        return markBits;
+    }
+
+    /**
+     * 计算主键对应的槽位
+     *
+     * @param primaryKey 主键的字符串形式
+     * @return 未被选中返回-1，否则为 (位序号 << 1 | 掩码位)
+     */
+    public int slot(String primaryKey) {
+        byte[] digest = mac.get().doFinal(primaryKey.getBytes(StandardCharsets.UTF_8));
+        if (Long.remainderUnsigned(readLong(digest, 0), gamma) != 0) {
+            return -1;
+        }
+        int bitIndex = (int) Long.remainderUnsigned(readLong(digest, 8), markBits);
+        return bitIndex << 1 | (digest[16] & 1);
+    }
+
+    /**
+     * 将水印内容编码为位串
+     *
+     * @throws IllegalArgumentException 内容超过最大字节数时
+     */
+    public BitSet encode(String content) {
+        byte[] data = content.getBytes(StandardCharsets.UTF_8);
+        if (data.length > payloadBytes) {
+            throw new IllegalArgumentException("水印内容超过" + payloadBytes + "字节：" + data.length);
+        }
+        byte[] frame = new byte[2 + payloadBytes];
+        frame[0] = (byte) (data.length >>> 8);
+        frame[1] = (byte) data.length;
+        System.arraycopy(data, 0, frame, 2, data.length);
+        CRC32 crc = new CRC32();
+        crc.update(frame);
+        long checksum = crc.getValue();
+
+        BitSet mark = new BitSet(markBits);
+        for (int i = 0; i < frame.length * 8; i++) {
+            if ((frame[i >>> 3] >>> (7 - (i & 7)) & 1) != 0) {
+                mark.set(i);
+            }
+        }
+        int offset = frame.length * 8;
+        for (int i = 0; i < CRC_BITS; i++) {
+            if ((checksum >>> (CRC_BITS - 1 - i) & 1) != 0) {
+                mark.set(offset + i);
+            }
+        }
+        return mark;
+    }
+
+    /**
+     * 计算选中行应写入的值
+     *
+     * @param value 原值
+     * @param mark 水印位串
+     * @param slot {@link #slot(String)} 的返回值
+     * @return 最低有效位替换后的值，空值原样返回
+     */
+    public Object embed(Object value, BitSet mark, int slot) {
+        if (value == null) {
+            return null;
+        }
+        boolean bit = mark.get(slot >>> 1) ^ ((slot & 1) == 1);
+        if (value instanceof BigDecimal) {
+            BigDecimal decimal = (BigDecimal) value;
+            BigInteger unscaled = decimal.unscaledValue();
+            BigInteger marked = bit ? unscaled.setBit(0) : unscaled.clearBit(0);
+            return marked.equals(unscaled) ? value : new BigDecimal(marked, decimal.scale());
+        }
+        if (value instanceof BigInteger) {
+            BigInteger integer = (BigInteger) value;
+            return bit ? integer.setBit(0) : integer.clearBit(0);
+        }
+        if (isIntegral(value)) {
+            long raw = ((Number) value).longValue();
+            long marked = bit ? raw | 1L : raw & ~1L;
+            return marked == raw ? value : marked;
+        }
+        throw new IllegalArgumentException("不支持的水印列类型：" + value.getClass().getSimpleName());
+    }
+
+    /**
+     * 读取值的最低有效位
+     *
+     * @return 0或1，空值或不支持的类型返回-1
+     */
+    public static int leastSignificantBit(Object value) {
+        if (value instanceof BigDecimal) {
+            return ((BigDecimal) value).unscaledValue().testBit(0) ? 1 : 0;
+        }
+        if (value instanceof BigInteger) {
+            return ((BigInteger) value).testBit(0) ? 1 : 0;
+        }
+        if (isIntegral(value)) {
+            return (int) (((Number) value).longValue() & 1L);
+        }
+        return -1;
+    }
+
+    /**
+     * 新建投票计数器
+     */
+    public Votes newVotes() {
+        return new Votes(markBits);
+    }
+
+    /**
+     * 按位多数投票并解码
+     *
+     * @return 水印内容，存在未覆盖的位或CRC校验失败时返回null
+     */
+    public String decode(Votes votes) {
+        BitSet mark = new BitSet(markBits);
+        for (int i = 0; i < markBits; i++) {
+            int ones = votes.ones[i];
+            int zeros = votes.zeros[i];
+            if (ones == zeros) {
+                return null;
+            }
+            if (ones > zeros) {
+                mark.set(i);
+            }
+        }
+        byte[] frame = new byte[2 + payloadBytes];
+        for (int i = 0; i < frame.length * 8; i++) {
+            if (mark.get(i)) {
+                frame[i >>> 3] |= (byte) (1 << (7 - (i & 7)));
+            }
+        }
+        long checksum = 0;
+        int offset = frame.length * 8;
+        for (int i = 0; i < CRC_BITS; i++) {
+            checksum = checksum << 1 | (mark.get(offset + i) ? 1 : 0);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(frame);
+        int length = (frame[0] & 0xFF) << 8 | (frame[1] & 0xFF);
+        if (crc.getValue() != checksum || length > payloadBytes) {
+            return null;
+        }
+        return new String(frame, 2, length, StandardCharsets.UTF_8);
+    }
+
+    private static boolean isIntegral(Object value) {
+        return value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte;
+    }
+
+    private static long readLong(byte[] bytes, int offset) {
+        long result = 0;
+        for (int i = offset; i < offset + 8; i++) {
+            result = result << 8 | (bytes[i] & 0xFF);
+        }
+        return result;
+    }
+
+    private Mac newMac() {
+        try {
+            Mac instance = Mac.getInstance(HMAC_ALGORITHM);
+            instance.init(key);
+            return instance;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("初始化HMAC失败", e);
+        }
+    }
+
+    /**
+     * 按位投票计数器，内存占用只与水印位串长度有关；非线程安全，每个扫描线程各持一份后合并
+     */
+    public static final class Votes {
+        private final int[] ones;
+        private final int[] zeros;
+        private long total;
+
+        private Votes(int markBits) {
+            this.ones = new int[markBits];
+            this.zeros = new int[markBits];
+        }
+
+        /**
+         * 记录一个选中行的投票
+         *
+         * @param slot {@link DatabaseWatermarkCodec#slot(String)} 的返回值
+         * @param lsb 该行水印列的最低有效位
+         */
+        public void vote(int slot, int lsb) {
+            int bitIndex = slot >>> 1;
+            if ((lsb ^ (slot & 1)) == 1) {
+                ones[bitIndex]++;
+            } else {
+                zeros[bitIndex]++;
+            }
+            total++;
+        }
+
+        /**
+         * 合并另一个计数器
+         */
+        public void merge(Votes other) {
+            for (int i = 0; i < ones.length; i++) {
+                ones[i] += other.ones[i];
+                zeros[i] += other.zeros[i];
+            }
+            total += other.total;
+        }
+
+        /**
+         * 总投票数
+         */
+        public long getTotal() {
+            return total;
+        }
+
+        /**
+         * 与多数票一致的投票占比，用于衡量提取置信度
+         */
+        public double getAgreement() {
+            if (total == 0) {
+                return 0;
+            }
+            long majority = 0;
+            for (int i = 0; i < ones.length; i++) {
+                majority += Math.max(ones[i], zeros[i]);
+            }
+            return (double) majority / total;
+        }
+    }
+}
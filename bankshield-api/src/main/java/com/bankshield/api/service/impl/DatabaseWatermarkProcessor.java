@@ -0,0 +1,439 @@
+package com.bankshield.api.service.impl;
+
+import com.alibaba.fastjson2.JSON;
+import com.alibaba.fastjson2.JSONObject;
+import com.bankshield.api.config.WatermarkConfig;
+import com.bankshield.api.mapper.DataSourceMapper;
+import com.bankshield.common.exception.BusinessException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+/**
+ * 数据库水印处理器
+ * 嵌入：按主键顺序分页读取（键集分页，每页batchSize行），对选中行计算新值，页读完后批量UPDATE并提交，
+ * 内存只与页大小有关，且读游标与更新语句不会在同一连接上交错。
+ * 提取：整数主键按 [min, max] 切成若干区间并行扫描，各线程持有独立连接和投票计数器，最后合并投票解码。
+ *
+ * @author BankShield
+ */
+@Slf4j
+@Component
+public class DatabaseWatermarkProcessor {
+
+    private static final Pattern IDENTIFIER = Pattern.compile("[A-Za-z_][A-Za-z0-9_]{0,63}");
+
+    @Autowired
+    private WatermarkConfig watermarkConfig;
+
+    @Autowired
+    private DataSourceMapper dataSourceMapper;
+
+    @Autowired
+    private DataSource dataSource;
+
+    private ExecutorService scanExecutor;
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger sequence = new AtomicInteger();
+        scanExecutor = Executors.newFixedThreadPool(Math.max(1, watermarkConfig.getDatabase().getExtractParallelism()),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "db-watermark-scan-" + sequence.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scanExecutor.shutdownNow();
+    }
+
+    /**
+     * 向表的数值列嵌入水印
+     *
+     * @param dataSourceId 数据源ID，为空时使用本系统数据源
+     * @param tableName 表名
+     * @param columnName 承载水印的数值列
+     * @param content 水印内容
+     * @return 扫描的记录数
+     */
+    public long embed(Long dataSourceId, String tableName, String columnName, String content) throws SQLException {
+        requireIdentifier(tableName, "表名");
+        requireIdentifier(columnName, "列名");
+        DatabaseWatermarkCodec codec = newCodec();
+        BitSet mark;
+        try {
+            mark = codec.encode(content);
+        } catch (IllegalArgumentException e) {
+            throw new BusinessException(e.getMessage());
+        }
+        int batchSize = watermarkConfig.getDatabase().getBatchSize();
+        long startTime = System.currentTimeMillis();
+
+        try (Connection connection = openConnection(dataSourceId)) {
+            TableLayout layout = resolveLayout(connection, tableName);
+            if (!layout.markableColumns.contains(columnName.toLowerCase())) {
+                throw new BusinessException("列" + columnName + "不是可承载水印的整数或定点数列");
+            }
+            String pk = layout.primaryKey;
+            String select = "SELECT " + pk + ", " + columnName + " FROM " + tableName;
+            String update = "UPDATE " + tableName + " SET " + columnName + " = ? WHERE " + pk + " = ?";
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            long scanned = 0;
+            long selected = 0;
+            long updated = 0;
+            try (PreparedStatement first = connection.prepareStatement(select + " ORDER BY " + pk);
+                 PreparedStatement next = connection.prepareStatement(select + " WHERE " + pk + " > ? ORDER BY " + pk);
+                 PreparedStatement updateStatement = connection.prepareStatement(update)) {
+                first.setMaxRows(batchSize);
+                next.setMaxRows(batchSize);
+                Object lastKey = null;
+                List<Object[]> pending = new ArrayList<>();
+                while (true) {
+                    PreparedStatement page = lastKey == null ? first : next;
+                    if (lastKey != null) {
+                        page.setObject(1, lastKey);
+                    }
+                    int rows = 0;
+                    try (ResultSet rs = page.executeQuery()) {
+                        while (rs.next()) {
+                            rows++;
+                            lastKey = rs.getObject(1);
+                            int slot = codec.slot(String.valueOf(lastKey));
+                            Object value = rs.getObject(2);
+                            if (slot < 0 || value == null) {
+                                continue;
+                            }
+                            selected++;
+                            Object marked = codec.embed(value, mark, slot);
+                            if (marked != value) {
+                                pending.add(new Object[]{marked, lastKey});
+                            }
+                        }
+                    }
+                    scanned += rows;
+                    if (!pending.isEmpty()) {
+                        for (Object[] row : pending) {
+                            updateStatement.setObject(1, row[0]);
+                            updateStatement.setObject(2, row[1]);
+                            updateStatement.addBatch();
+                        }
+                        updateStatement.executeBatch();
+                        updated += pending.size();
+                        pending.clear();
+                    }
+                    connection.commit();
+                    if (rows < batchSize) {
+                        break;
+                    }
+                }
+            } catch (SQLException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+            log.info("数据库水印嵌入完成，表: {}, 列: {}, 扫描行数: {}, 选中行数: {}, 更新行数: {}, 耗时: {}ms",
+                    tableName, columnName, scanned, selected, updated, System.currentTimeMillis() - startTime);
+            if (selected < codec.getMarkBits()) {
+                log.warn("选中行数{}少于水印位数{}，提取可能无法恢复完整水印", selected, codec.getMarkBits());
+            }
+            return scanned;
+        }
+    }
+
+    /**
+     * 从疑似泄露的表中提取水印
+     *
+     * @param dataSourceId 数据源ID，为空时使用本系统数据源
+     * @param tableName 表名
+     * @param columnName 承载水印的列，为空时在一次扫描中尝试所有可承载水印的列
+     * @return 水印内容，未能恢复时返回null
+     */
+    public String extract(Long dataSourceId, String tableName, String columnName) throws SQLException {
+        requireIdentifier(tableName, "表名");
+        DatabaseWatermarkCodec codec = newCodec();
+        long startTime = System.currentTimeMillis();
+
+        TableLayout layout;
+        List<Object[]> ranges;
+        try (Connection connection = openConnection(dataSourceId)) {
+            layout = resolveLayout(connection, tableName);
+            ranges = splitRanges(connection, tableName, layout);
+        }
+        List<String> columns = new ArrayList<>();
+        if (columnName != null) {
+            requireIdentifier(columnName, "列名");
+            if (!layout.markableColumns.contains(columnName.toLowerCase())) {
+                throw new BusinessException("列" + columnName + "不是可承载水印的整数或定点数列");
+            }
+            columns.add(columnName);
+        } else {
+            columns.addAll(layout.markableColumns);
+        }
+        if (columns.isEmpty()) {
+            throw new BusinessException("表" + tableName + "没有可承载水印的数值列");
+        }
+
+        List<Future<DatabaseWatermarkCodec.Votes[]>> futures = new ArrayList<>();
+        for (Object[] range : ranges) {
+            futures.add(scanExecutor.submit(() -> scanRange(dataSourceId, tableName, layout.primaryKey, columns,
+                    range[0], range[1], codec)));
+        }
+        DatabaseWatermarkCodec.Votes[] votes = new DatabaseWatermarkCodec.Votes[columns.size()];
+        for (int i = 0; i < votes.length; i++) {
+            votes[i] = codec.newVotes();
+        }
+        try {
+            for (Future<DatabaseWatermarkCodec.Votes[]> future : futures) {
+                DatabaseWatermarkCodec.Votes[] partial = future.get();
+                for (int i = 0; i < votes.length; i++) {
+                    votes[i].merge(partial[i]);
+                }
+            }
+        } catch (InterruptedException e) {
+            futures.forEach(future -> future.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new BusinessException("数据库水印提取被中断");
+        } catch (ExecutionException e) {
+            futures.forEach(future -> future.cancel(true));
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException) {
+                throw (SQLException) cause;
+            }
+            if (cause instanceof BusinessException) {
+                throw (BusinessException) cause;
+            }
+            throw new BusinessException("数据库水印提取失败: " + cause.getMessage());
+        }
+
+        for (int i = 0; i < votes.length; i++) {
+            String content = codec.decode(votes[i]);
+            log.debug("列{}投票数: {}, 一致率: {}", columns.get(i), votes[i].getTotal(), votes[i].getAgreement());
+            if (content != null) {
+                log.info("数据库水印提取完成，表: {}, 列: {}, 投票数: {}, 一致率: {}, 耗时: {}ms", tableName,
+                        columns.get(i), votes[i].getTotal(), String.format("%.4f", votes[i].getAgreement()),
+                        System.currentTimeMillis() - startTime);
+                return content;
+            }
+        }
+        log.info("未能从表{}中恢复水印，耗时: {}ms", tableName, System.currentTimeMillis() - startTime);
+        return null;
+    }
+
+    /**
+     * 扫描一个主键区间 (lower, upper]，lower为空表示从头开始，upper为空表示到表尾
+     */
+    private DatabaseWatermarkCodec.Votes[] scanRange(Long dataSourceId, String tableName, String pk,
+                                                     List<String> columns, Object lower, Object upper,
+                                                     DatabaseWatermarkCodec codec) throws SQLException {
+        DatabaseWatermarkCodec.Votes[] votes = new DatabaseWatermarkCodec.Votes[columns.size()];
+        for (int i = 0; i < votes.length; i++) {
+            votes[i] = codec.newVotes();
+        }
+        int batchSize = watermarkConfig.getDatabase().getBatchSize();
+        String select = "SELECT " + pk + ", " + String.join(", ", columns) + " FROM " + tableName;
+        String upperBound = upper != null ? " AND " + pk + " <= ?" : "";
+        try (Connection connection = openConnection(dataSourceId);
+             PreparedStatement first = connection.prepareStatement(select
+                     + (upper != null ? " WHERE " + pk + " <= ?" : "") + " ORDER BY " + pk);
+             PreparedStatement next = connection.prepareStatement(select + " WHERE " + pk + " > ?" + upperBound
+                     + " ORDER BY " + pk)) {
+            first.setMaxRows(batchSize);
+            next.setMaxRows(batchSize);
+            Object lastKey = lower;
+            while (!Thread.currentThread().isInterrupted()) {
+                PreparedStatement page = lastKey == null ? first : next;
+                int index = 1;
+                if (lastKey != null) {
+                    page.setObject(index++, lastKey);
+                }
+                if (upper != null) {
+                    page.setObject(index, upper);
+                }
+                int rows = 0;
+                try (ResultSet rs = page.executeQuery()) {
+                    while (rs.next()) {
+                        rows++;
+                        lastKey = rs.getObject(1);
+                        int slot = codec.slot(String.valueOf(lastKey));
+                        if (slot < 0) {
+                            continue;
+                        }
+                        for (int i = 0; i < votes.length; i++) {
+                            int lsb = DatabaseWatermarkCodec.leastSignificantBit(rs.getObject(i + 2));
+                            if (lsb >= 0) {
+                                votes[i].vote(slot, lsb);
+                            }
+                        }
+                    }
+                }
+                if (rows < batchSize) {
+                    break;
+                }
+            }
+        }
+        return votes;
+    }
+
+    /**
+     * 整数主键按取值范围均分为若干区间，其他主键整体作为一个区间
+     */
+    private List<Object[]> splitRanges(Connection connection, String tableName, TableLayout layout)
+            throws SQLException {
+        List<Object[]> ranges = new ArrayList<>();
+        int parallelism = Math.max(1, watermarkConfig.getDatabase().getExtractParallelism());
+        if (!layout.integralKey || parallelism == 1) {
+            ranges.add(new Object[]{null, null});
+            return ranges;
+        }
+        long min;
+        long max;
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT MIN(" + layout.primaryKey + "), MAX("
+                     + layout.primaryKey + ") FROM " + tableName)) {
+            if (!rs.next() || rs.getObject(1) == null) {
+                ranges.add(new Object[]{null, null});
+                return ranges;
+            }
+            min = rs.getLong(1);
+            max = rs.getLong(2);
+        }
+        long span = Math.max(1, (max - min) / parallelism + 1);
+        Object lower = null;
+        for (long bound = min + span - 1; ; bound += span) {
+            if (bound >= max || bound < min) {
+                ranges.add(new Object[]{lower, null});
+                break;
+            }
+            ranges.add(new Object[]{lower, bound});
+            lower = bound;
+        }
+        return ranges;
+    }
+
+    /**
+     * 读取主键和可承载水印的列，要求单列主键
+     */
+    private TableLayout resolveLayout(Connection connection, String tableName) throws SQLException {
+        DatabaseMetaData metaData = connection.getMetaData();
+        String catalog = connection.getCatalog();
+        List<String> primaryKeys = new ArrayList<>();
+        try (ResultSet rs = metaData.getPrimaryKeys(catalog, null, tableName)) {
+            while (rs.next()) {
+                primaryKeys.add(rs.getString("COLUMN_NAME"));
+            }
+        }
+        if (primaryKeys.isEmpty()) {
+            throw new BusinessException("表" + tableName + "不存在或没有主键");
+        }
+        if (primaryKeys.size() > 1) {
+            throw new BusinessException("数据库水印仅支持单列主键的表: " + tableName);
+        }
+        String primaryKey = primaryKeys.get(0);
+        Map<String, Integer> columnTypes = new LinkedHashMap<>();
+        try (ResultSet rs = metaData.getColumns(catalog, null, tableName, null)) {
+            while (rs.next()) {
+                columnTypes.put(rs.getString("COLUMN_NAME"), rs.getInt("DATA_TYPE"));
+            }
+        }
+        List<String> markable = new ArrayList<>();
+        for (Map.Entry<String, Integer> entry : columnTypes.entrySet()) {
+            if (!entry.getKey().equalsIgnoreCase(primaryKey) && isMarkableType(entry.getValue())) {
+                markable.add(entry.getKey().toLowerCase());
+            }
+        }
+        Integer keyType = columnTypes.get(primaryKey);
+        boolean integralKey = keyType != null && (keyType == Types.INTEGER || keyType == Types.BIGINT
+                || keyType == Types.SMALLINT || keyType == Types.TINYINT);
+        return new TableLayout(primaryKey, integralKey, markable);
+    }
+
+    private static boolean isMarkableType(int sqlType) {
+        switch (sqlType) {
+            case Types.TINYINT:
+            case Types.SMALLINT:
+            case Types.INTEGER:
+            case Types.BIGINT:
+            case Types.DECIMAL:
+            case Types.NUMERIC:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * 打开数据源连接，数据源连接配置为JSON：{"url": "...", "username": "...", "password": "..."}
+     */
+    private Connection openConnection(Long dataSourceId) throws SQLException {
+        if (dataSourceId == null) {
+            return dataSource.getConnection();
+        }
+        com.bankshield.api.entity.DataSource source = dataSourceMapper.selectById(dataSourceId);
+        if (source == null) {
+            throw new BusinessException("数据源不存在: " + dataSourceId);
+        }
+        JSONObject config = source.getConnectionConfig() != null ? JSON.parseObject(source.getConnectionConfig()) : null;
+        String url = config != null ? config.getString(config.containsKey("url") ? "url" : "jdbcUrl") : null;
+        if (url == null || !url.startsWith("jdbc:")) {
+            throw new BusinessException("数据源连接配置缺少JDBC地址，数据源ID: " + dataSourceId);
+        }
+        return DriverManager.getConnection(url, config.getString("username"), config.getString("password"));
+    }
+
+    private DatabaseWatermarkCodec newCodec() {
+        WatermarkConfig.DatabaseConfig config = watermarkConfig.getDatabase();
+        if (config.getSecretKey() == null || config.getSecretKey().isEmpty()) {
+            throw new BusinessException("未配置数据库水印密钥 watermark.database.secret-key");
+        }
+        return new DatabaseWatermarkCodec(config.getSecretKey(), config.getGamma(), config.getPayloadBytes());
+    }
+
+    private static void requireIdentifier(String name, String label) {
+        if (name == null || !IDENTIFIER.matcher(name).matches()) {
+            throw new BusinessException(label + "不合法: " + name);
+        }
+    }
+
+    /**
+     * 表结构信息
+     */
+    private static final class TableLayout {
+        private final String primaryKey;
+        private final boolean integralKey;
+        private final List<String> markableColumns;
+
+        private TableLayout(String primaryKey, boolean integralKey, List<String> markableColumns) {
+            this.primaryKey = primaryKey;
+            this.integralKey = integralKey;
+            this.markableColumns = markableColumns;
+        }
+    }
+}
@@ -0,0 +1,827 @@
+package com.bankshield.api.service.impl;
+
+import cn.hutool.core.text.csv.CsvParser;
+import cn.hutool.core.text.csv.CsvReadConfig;
+import cn.hutool.core.text.csv.CsvRow;
+import cn.hutool.core.text.csv.CsvUtil;
+import cn.hutool.core.text.csv.CsvWriter;
+import com.bankshield.api.dto.DesensitizationJobProgress;
+import com.bankshield.api.dto.DesensitizationJobRequest;
+import com.bankshield.api.entity.DesensitizationRule;
+import com.bankshield.api.mapper.DesensitizationRuleMapper;
+import com.bankshield.api.service.DesensitizationJobService;
+import com.bankshield.api.service.DesensitizationService;
+import com.bankshield.api.util.DesensitizationUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.sql.DataSource;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.UnaryOperator;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * 流式脱敏任务服务实现
+ * 读取线程按批读取源数据（JDBC游标或逐行CSV），脱敏线程池按列并行处理各批，单个写入线程按读取顺序增量写出。
+ * 在途批次数不超过 并行度×2，读取线程在窗口满时等待最早批次写完，从而限制内存并形成背压。
+ */
+@Slf4j
+@Service
+public class DesensitizationJobServiceImpl implements DesensitizationJobService {
+
+    /**
+     * 表名与列名只允许不带库名限定的标识符，表只能是当前库中的表
+     */
+    private static final Pattern IDENTIFIER = Pattern.compile("[A-Za-z_][A-Za-z0-9_]{0,63}");
+
+    private static final String SOURCE_TABLE = "TABLE";
+    private static final String SOURCE_CSV = "CSV";
+
+    /**
+     * 保留的已结束任务数上限
+     */
+    private static final int MAX_FINISHED_JOBS = 100;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private DesensitizationRuleMapper ruleMapper;
+
+    @Autowired
+    private DesensitizationService desensitizationService;
+
+    @Value("${desensitization.stream.work-dir:data/desensitization}")
+    private String workDir;
+
+    @Value("${desensitization.stream.batch-size:1000}")
+    private int defaultBatchSize;
+
+    @Value("${desensitization.stream.parallelism:4}")
+    private int defaultParallelism;
+
+    @Value("${desensitization.stream.max-parallelism:16}")
+    private int maxParallelism;
+
+    @Value("${desensitization.stream.max-concurrent-jobs:2}")
+    private int maxConcurrentJobs;
+
+    @Value("${desensitization.stream.fetch-size:1000}")
+    private int fetchSize;
+
+    @Value("${desensitization.stream.source-tables:}")
+    private String[] sourceTables;
+
+    @Value("${desensitization.stream.target-table-prefix:masked_}")
+    private String targetTablePrefix;
+
+    private final Map<String, JobState> jobs = new ConcurrentHashMap<>();
+
+    private ThreadPoolExecutor jobExecutor;
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger sequence = new AtomicInteger();
+        jobExecutor = new ThreadPoolExecutor(maxConcurrentJobs, maxConcurrentJobs, 60L, TimeUnit.SECONDS,
+                new SynchronousQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, "desensitization-job-" + sequence.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        jobExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        jobs.values().forEach(job -> job.cancelled = true);
+        jobExecutor.shutdownNow();
+    }
+
+    @Override
+    public String submitJob(DesensitizationJobRequest request, String userId, String userName) {
+        JobSpec spec = buildSpec(request);
+        String jobId = UUID.randomUUID().toString().replace("-", "");
+        JobState state = new JobState(jobId, spec.sourceDescription(), spec.targetDescription());
+        jobs.put(jobId, state);
+        trimFinishedJobs();
+
+        try {
+            jobExecutor.execute(() -> runJob(state, spec, userId, userName));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(jobId);
+            throw new IllegalStateException("并发脱敏任务数已达上限: " + maxConcurrentJobs);
+        }
+        log.info("提交流式脱敏任务: jobId={}, source={}, target={}, 并行度={}, 批大小={}",
+                jobId, state.source, state.target, spec.parallelism, spec.batchSize);
+        return jobId;
+    }
+
+    @Override
+    public DesensitizationJobProgress getProgress(String jobId) {
+        JobState state = jobs.get(jobId);
+        return state != null ? state.toProgress() : null;
+    }
+
+    @Override
+    public List<DesensitizationJobProgress> listJobs() {
+        return jobs.values().stream()
+                .sorted(Comparator.comparing((JobState job) -> job.startTime).reversed())
+                .map(JobState::toProgress)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public boolean cancelJob(String jobId) {
+        JobState state = jobs.get(jobId);
+        if (state == null || !JobState.RUNNING.equals(state.status)) {
+            return false;
+        }
+        state.cancelled = true;
+        log.info("取消流式脱敏任务: {}", jobId);
+        return true;
+    }
+
+    /**
+     * 执行任务：读取 → 并行脱敏 → 顺序写出
+     */
+    private void runJob(JobState state, JobSpec spec, String userId, String userName) {
+        ExecutorService maskWorkers = Executors.newFixedThreadPool(spec.parallelism, namedThreads(state.jobId + "-mask"));
+        ExecutorService writer = Executors.newSingleThreadExecutor(namedThreads(state.jobId + "-write"));
+        Deque<Future<?>> inFlight = new ArrayDeque<>();
+        int window = spec.parallelism * 2;
+
+        RowSource source = null;
+        RowSink sink = null;
+        try {
+            source = openSource(spec);
+            sink = openSink(spec);
+            state.totalRows = source.totalRows();
+            List<String> columns = source.columns();
+            UnaryOperator<String>[] plans = resolvePlans(spec, columns);
+            sink.open(columns);
+
+            RowSink output = sink;
+            List<String[]> batch;
+            while (!state.cancelled && !(batch = source.read(spec.batchSize)).isEmpty()) {
+                state.readRows.addAndGet(batch.size());
+                List<String[]> rows = batch;
+                Future<List<String[]>> masked = maskWorkers.submit(() -> maskBatch(rows, plans));
+                inFlight.addLast(writer.submit(() -> {
+                    List<String[]> maskedRows = masked.get();
+                    output.write(maskedRows);
+                    state.writtenRows.addAndGet(maskedRows.size());
+                    return null;
+                }));
+                while (inFlight.size() >= window) {
+                    inFlight.removeFirst().get();
+                }
+            }
+            while (!inFlight.isEmpty()) {
+                inFlight.removeFirst().get();
+            }
+
+            if (state.cancelled) {
+                sink.abort();
+                state.finish(JobState.CANCELLED, null);
+                log.info("流式脱敏任务已取消: jobId={}, 已写入={}", state.jobId, state.writtenRows.get());
+                return;
+            }
+            sink.commit();
+            recordThroughput(state, spec, userId, userName);
+            state.finish(JobState.COMPLETED, null);
+        } catch (Exception e) {
+            inFlight.forEach(future -> future.cancel(true));
+            Throwable cause = e instanceof ExecutionException && e.getCause() != null ? e.getCause() : e;
+            state.finish(JobState.FAILED, cause.getMessage());
+            log.error("流式脱敏任务失败: jobId={}, 已读取={}, 已写入={}",
+                    state.jobId, state.readRows.get(), state.writtenRows.get(), cause);
+        } finally {
+            maskWorkers.shutdownNow();
+            writer.shutdownNow();
+            awaitTermination(writer, state.jobId);
+            closeQuietly(sink, state.jobId);
+            closeQuietly(source, state.jobId);
+        }
+    }
+
+    /**
+     * 等待写入线程退出后再关闭输出，避免关闭时仍有批次在写
+     */
+    private static void awaitTermination(ExecutorService executor, String jobId) {
+        try {
+            if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+                log.warn("流式脱敏任务写入线程未能及时退出: {}", jobId);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void closeQuietly(AutoCloseable closeable, String jobId) {
+        if (closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
+        } catch (Exception e) {
+            log.warn("关闭流式脱敏任务资源失败: {}", jobId, e);
+        }
+    }
+
+    /**
+     * 按列对一批数据脱敏，直接改写行数组
+     */
+    private static List<String[]> maskBatch(List<String[]> rows, UnaryOperator<String>[] plans) {
+        for (int column = 0; column < plans.length; column++) {
+            UnaryOperator<String> plan = plans[column];
+            if (plan == null) {
+                continue;
+            }
+            for (String[] row : rows) {
+                row[column] = plan.apply(row[column]);
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * 记录任务吞吐量到脱敏日志
+     */
+    private void recordThroughput(JobState state, JobSpec spec, String userId, String userName) {
+        long rows = state.writtenRows.get();
+        long elapsedMillis = state.elapsedMillis();
+        String summary = String.format("行数: %d, 耗时: %dms, 吞吐量: %d 行/秒", rows, elapsedMillis, state.rowsPerSecond());
+        desensitizationService.logDesensitization("STREAM_JOB", String.join(",", spec.columnRules.values()),
+                userId, userName, state.target, String.join(",", spec.columnRules.keySet()),
+                state.source, summary, spec.algorithmTypes, (int) Math.min(rows, Integer.MAX_VALUE));
+        log.info("流式脱敏任务完成: jobId={}, {}", state.jobId, summary);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static UnaryOperator<String>[] resolvePlans(JobSpec spec, List<String> columns) {
+        UnaryOperator<String>[] plans = new UnaryOperator[columns.size()];
+        for (Map.Entry<String, UnaryOperator<String>> entry : spec.plans.entrySet()) {
+            int index = indexOfIgnoreCase(columns, entry.getKey());
+            if (index < 0) {
+                throw new IllegalArgumentException("脱敏列不存在于源数据中: " + entry.getKey());
+            }
+            plans[index] = entry.getValue();
+        }
+        return plans;
+    }
+
+    private JobSpec buildSpec(DesensitizationJobRequest request) {
+        if (request.getColumnRules() == null || request.getColumnRules().isEmpty()) {
+            throw new IllegalArgumentException("列脱敏规则不能为空");
+        }
+
+        JobSpec spec = new JobSpec();
+        spec.sourceType = request.getSourceType() != null ? request.getSourceType().toUpperCase() : "";
+        if (SOURCE_TABLE.equals(spec.sourceType)) {
+            spec.sourceTable = requireSourceTable(request.getSourceTable());
+            spec.targetTable = requireTargetTable(request.getTargetTable());
+            if (spec.sourceTable.equalsIgnoreCase(spec.targetTable)) {
+                throw new IllegalArgumentException("源表与目标表不能相同: " + spec.sourceTable);
+            }
+        } else if (SOURCE_CSV.equals(spec.sourceType)) {
+            spec.sourceFile = resolveFile(request.getSourceFile(), "源文件");
+            spec.targetFile = resolveFile(request.getTargetFile(), "目标文件");
+            if (!Files.isRegularFile(spec.sourceFile)) {
+                throw new IllegalArgumentException("源文件不存在: " + request.getSourceFile());
+            }
+        } else {
+            throw new IllegalArgumentException("不支持的数据源类型: " + request.getSourceType());
+        }
+
+        // 未配置规则的列按原值写入目标，输出列必须显式列出，避免源表新增的敏感列被原样复制
+        if (request.getColumns() == null || request.getColumns().isEmpty()) {
+            throw new IllegalArgumentException("输出列不能为空，需显式列出要写入目标的列");
+        }
+        spec.columns = new ArrayList<>();
+        for (String column : request.getColumns()) {
+            spec.columns.add(requireIdentifier(column, "列名"));
+        }
+
+        spec.columnRules = new LinkedHashMap<>();
+        spec.plans = new LinkedHashMap<>();
+        List<String> algorithmTypes = new ArrayList<>();
+        for (Map.Entry<String, String> entry : request.getColumnRules().entrySet()) {
+            String column = requireIdentifier(entry.getKey(), "列名");
+            DesensitizationRule rule = ruleMapper.selectByRuleCode(entry.getValue());
+            if (rule == null) {
+                throw new IllegalArgumentException("脱敏规则不存在: " + entry.getValue());
+            }
+            spec.columnRules.put(column, entry.getValue());
+            spec.plans.put(column, DesensitizationUtil.compile(rule.getAlgorithmType(), rule.getAlgorithmConfig()));
+            if (!algorithmTypes.contains(rule.getAlgorithmType())) {
+                algorithmTypes.add(rule.getAlgorithmType());
+            }
+        }
+        spec.algorithmTypes = String.join(",", algorithmTypes);
+
+        int batchSize = request.getBatchSize() != null ? request.getBatchSize() : defaultBatchSize;
+        int parallelism = request.getParallelism() != null ? request.getParallelism() : defaultParallelism;
+        spec.batchSize = Math.max(1, batchSize);
+        spec.parallelism = Math.max(1, Math.min(parallelism, maxParallelism));
+        return spec;
+    }
+
+    private static String requireIdentifier(String name, String label) {
+        if (name == null || !IDENTIFIER.matcher(name).matches()) {
+            throw new IllegalArgumentException(label + "不合法: " + name);
+        }
+        return name;
+    }
+
+    /**
+     * 源表必须在配置的允许列表中，与CSV源文件限定在工作目录内同理
+     */
+    private String requireSourceTable(String table) {
+        requireIdentifier(table, "源表名");
+        if (sourceTables == null || Arrays.stream(sourceTables).map(String::trim).noneMatch(table::equalsIgnoreCase)) {
+            throw new IllegalArgumentException("源表不在允许脱敏的表列表中: " + table);
+        }
+        return table;
+    }
+
+    /**
+     * 目标表必须带脱敏输出表前缀，避免写入业务表
+     */
+    private String requireTargetTable(String table) {
+        requireIdentifier(table, "目标表名");
+        if (targetTablePrefix == null || targetTablePrefix.isEmpty()
+                || !table.toLowerCase().startsWith(targetTablePrefix.toLowerCase())) {
+            throw new IllegalArgumentException("目标表名必须以 " + targetTablePrefix + " 开头: " + table);
+        }
+        return table;
+    }
+
+    /**
+     * 解析工作目录下的文件路径，禁止越出工作目录
+     */
+    private Path resolveFile(String file, String label) {
+        if (file == null || file.trim().isEmpty()) {
+            throw new IllegalArgumentException(label + "不能为空");
+        }
+        Path base = Paths.get(workDir).toAbsolutePath().normalize();
+        Path resolved = base.resolve(file).normalize();
+        if (!resolved.startsWith(base)) {
+            throw new IllegalArgumentException(label + "路径超出工作目录: " + file);
+        }
+        return resolved;
+    }
+
+    private RowSource openSource(JobSpec spec) throws SQLException, IOException {
+        return SOURCE_TABLE.equals(spec.sourceType)
+                ? new TableSource(dataSource, spec.sourceTable, spec.columns, fetchSize)
+                : new CsvSource(spec.sourceFile, spec.columns);
+    }
+
+    private RowSink openSink(JobSpec spec) throws SQLException, IOException {
+        return SOURCE_TABLE.equals(spec.sourceType)
+                ? new TableSink(dataSource, spec.targetTable)
+                : new CsvSink(spec.targetFile);
+    }
+
+    private void trimFinishedJobs() {
+        List<JobState> finished = jobs.values().stream()
+                .filter(job -> !JobState.RUNNING.equals(job.status))
+                .sorted(Comparator.comparing((JobState job) -> job.startTime))
+                .collect(Collectors.toList());
+        for (int i = 0; i < finished.size() - MAX_FINISHED_JOBS; i++) {
+            jobs.remove(finished.get(i).jobId);
+        }
+    }
+
+    private static int indexOfIgnoreCase(List<String> columns, String column) {
+        for (int i = 0; i < columns.size(); i++) {
+            if (columns.get(i).equalsIgnoreCase(column)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static ThreadFactory namedThreads(String prefix) {
+        AtomicInteger sequence = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + "-" + sequence.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * 任务配置（提交时校验并编译规则）
+     */
+    private static final class JobSpec {
+        private String sourceType;
+        private String sourceTable;
+        private String targetTable;
+        private Path sourceFile;
+        private Path targetFile;
+        private List<String> columns;
+        private Map<String, String> columnRules;
+        private Map<String, UnaryOperator<String>> plans;
+        private String algorithmTypes;
+        private int batchSize;
+        private int parallelism;
+
+        private String sourceDescription() {
+            return SOURCE_TABLE.equals(sourceType) ? "table:" + sourceTable : "csv:" + sourceFile.getFileName();
+        }
+
+        private String targetDescription() {
+            return SOURCE_TABLE.equals(sourceType) ? "table:" + targetTable : "csv:" + targetFile.getFileName();
+        }
+    }
+
+    /**
+     * 任务运行状态
+     */
+    private static final class JobState {
+        private static final String RUNNING = "RUNNING";
+        private static final String COMPLETED = "COMPLETED";
+        private static final String FAILED = "FAILED";
+        private static final String CANCELLED = "CANCELLED";
+
+        private final String jobId;
+        private final String source;
+        private final String target;
+        private final LocalDateTime startTime = LocalDateTime.now();
+        private final long startNanos = System.nanoTime();
+        private final AtomicLong readRows = new AtomicLong();
+        private final AtomicLong writtenRows = new AtomicLong();
+        private volatile Long totalRows;
+        private volatile String status = RUNNING;
+        private volatile boolean cancelled;
+        private volatile LocalDateTime endTime;
+        private volatile long endNanos;
+        private volatile String errorMessage;
+
+        private JobState(String jobId, String source, String target) {
+            this.jobId = jobId;
+            this.source = source;
+            this.target = target;
+        }
+
+        private void finish(String finalStatus, String error) {
+            endNanos = System.nanoTime();
+            endTime = LocalDateTime.now();
+            errorMessage = error;
+            status = finalStatus;
+        }
+
+        private long elapsedMillis() {
+            long end = RUNNING.equals(status) ? System.nanoTime() : endNanos;
+            return TimeUnit.NANOSECONDS.toMillis(end - startNanos);
+        }
+
+        private long rowsPerSecond() {
+            long elapsed = elapsedMillis();
+            return elapsed > 0 ? writtenRows.get() * 1000 / elapsed : writtenRows.get();
+        }
+
+        private DesensitizationJobProgress toProgress() {
+            Long total = totalRows;
+            long written = writtenRows.get();
+            Integer percentage = null;
+            if (COMPLETED.equals(status)) {
+                percentage = 100;
+            } else if (total != null && total > 0) {
+                percentage = (int) Math.min(99, written * 100 / total);
+            }
+            return DesensitizationJobProgress.builder()
+                    .jobId(jobId)
+                    .status(status)
+                    .source(source)
+                    .target(target)
+                    .totalRows(total)
+                    .readRows(readRows.get())
+                    .writtenRows(written)
+                    .progressPercentage(percentage)
+                    .rowsPerSecond(rowsPerSecond())
+                    .startTime(startTime)
+                    .endTime(endTime)
+                    .errorMessage(errorMessage)
+                    .build();
+        }
+    }
+
+    /**
+     * 行数据源，按批读取，空批表示读取结束
+     */
+    private interface RowSource extends AutoCloseable {
+        List<String> columns();
+
+        Long totalRows();
+
+        List<String[]> read(int batchSize) throws Exception;
+
+        @Override
+        void close() throws Exception;
+    }
+
+    /**
+     * 行输出，write只在写入线程中按批次顺序调用
+     */
+    private interface RowSink extends AutoCloseable {
+        void open(List<String> columns) throws Exception;
+
+        void write(List<String[]> rows) throws Exception;
+
+        /**
+         * 全部批次写入成功后调用
+         */
+        void commit() throws Exception;
+
+        /**
+         * 任务取消时调用
+         */
+        void abort() throws Exception;
+
+        @Override
+        void close() throws Exception;
+    }
+
+    /**
+     * 以只进游标读取源表，MySQL驱动使用流式结果集
+     */
+    private static final class TableSource implements RowSource {
+        private final Connection connection;
+        private final Statement statement;
+        private final ResultSet resultSet;
+        private final List<String> columns = new ArrayList<>();
+        private final Long totalRows;
+
+        private TableSource(DataSource dataSource, String table, List<String> selectColumns, int fetchSize)
+                throws SQLException {
+            this.connection = dataSource.getConnection();
+            try {
+                try (Statement countStatement = connection.createStatement();
+                     ResultSet count = countStatement.executeQuery("SELECT COUNT(*) FROM " + table)) {
+                    this.totalRows = count.next() ? count.getLong(1) : null;
+                }
+                String projection = selectColumns != null ? String.join(", ", selectColumns) : "*";
+                PreparedStatement query = connection.prepareStatement("SELECT " + projection + " FROM " + table,
+                        ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                boolean mysql = "MySQL".equalsIgnoreCase(connection.getMetaData().getDatabaseProductName());
+                query.setFetchSize(mysql ? Integer.MIN_VALUE : fetchSize);
+                this.statement = query;
+                this.resultSet = query.executeQuery();
+                ResultSetMetaData metaData = resultSet.getMetaData();
+                for (int i = 1; i <= metaData.getColumnCount(); i++) {
+                    columns.add(metaData.getColumnLabel(i));
+                }
+            } catch (SQLException e) {
+                connection.close();
+                throw e;
+            }
+        }
+
+        @Override
+        public List<String> columns() {
+            return columns;
+        }
+
+        @Override
+        public Long totalRows() {
+            return totalRows;
+        }
+
+        @Override
+        public List<String[]> read(int batchSize) throws SQLException {
+            List<String[]> batch = new ArrayList<>(batchSize);
+            while (batch.size() < batchSize && resultSet.next()) {
+                String[] row = new String[columns.size()];
+                for (int i = 0; i < row.length; i++) {
+                    row[i] = resultSet.getString(i + 1);
+                }
+                batch.add(row);
+            }
+            return batch;
+        }
+
+        @Override
+        public void close() throws SQLException {
+            try {
+                resultSet.close();
+                statement.close();
+            } finally {
+                connection.close();
+            }
+        }
+    }
+
+    /**
+     * 逐批插入目标表，每批独立提交
+     */
+    private static final class TableSink implements RowSink {
+        private final Connection connection;
+        private final String table;
+        private PreparedStatement insert;
+
+        private TableSink(DataSource dataSource, String table) throws SQLException {
+            this.connection = dataSource.getConnection();
+            this.table = table;
+            connection.setAutoCommit(false);
+        }
+
+        @Override
+        public void open(List<String> columns) throws SQLException {
+            String placeholders = columns.stream().map(column -> "?").collect(Collectors.joining(", "));
+            insert = connection.prepareStatement("INSERT INTO " + table + " (" + String.join(", ", columns)
+                    + ") VALUES (" + placeholders + ")");
+        }
+
+        @Override
+        public void write(List<String[]> rows) throws SQLException {
+            try {
+                for (String[] row : rows) {
+                    for (int i = 0; i < row.length; i++) {
+                        insert.setString(i + 1, row[i]);
+                    }
+                    insert.addBatch();
+                }
+                insert.executeBatch();
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            }
+        }
+
+        @Override
+        public void commit() {
+            // 每批已提交
+        }
+
+        @Override
+        public void abort() {
+            // 已提交的批次保留在目标表中
+        }
+
+        @Override
+        public void close() throws SQLException {
+            try {
+                if (insert != null) {
+                    insert.close();
+                }
+                connection.setAutoCommit(true);
+            } finally {
+                connection.close();
+            }
+        }
+    }
+
+    /**
+     * 逐行读取CSV文件，首行为表头
+     */
+    private static final class CsvSource implements RowSource {
+        private final BufferedReader reader;
+        private final CsvParser parser;
+        private final List<String> columns;
+        private final int[] projection;
+
+        private CsvSource(Path file, List<String> selectColumns) throws IOException {
+            this.reader = Files.newBufferedReader(file, StandardCharsets.UTF_8);
+            this.parser = new CsvParser(reader, CsvReadConfig.defaultConfig());
+            CsvRow header = parser.nextRow();
+            List<String> headerColumns = header != null ? new ArrayList<>(header.getRawList()) : new ArrayList<>();
+            if (selectColumns == null) {
+                this.columns = headerColumns;
+                this.projection = null;
+            } else {
+                this.columns = selectColumns;
+                this.projection = new int[selectColumns.size()];
+                for (int i = 0; i < projection.length; i++) {
+                    projection[i] = indexOfIgnoreCase(headerColumns, selectColumns.get(i));
+                    if (projection[i] < 0) {
+                        reader.close();
+                        throw new IllegalArgumentException("列不存在于源文件中: " + selectColumns.get(i));
+                    }
+                }
+            }
+        }
+
+        @Override
+        public List<String> columns() {
+            return columns;
+        }
+
+        @Override
+        public Long totalRows() {
+            return null;
+        }
+
+        @Override
+        public List<String[]> read(int batchSize) {
+            List<String[]> batch = new ArrayList<>(batchSize);
+            CsvRow csvRow;
+            while (batch.size() < batchSize && (csvRow = parser.nextRow()) != null) {
+                List<String> raw = csvRow.getRawList();
+                String[] row = new String[columns.size()];
+                for (int i = 0; i < row.length; i++) {
+                    int source = projection != null ? projection[i] : i;
+                    row[i] = source < raw.size() ? raw.get(source) : null;
+                }
+                batch.add(row);
+            }
+            return batch;
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
+    }
+
+    /**
+     * 写入临时文件，全部成功后原子替换为目标文件
+     */
+    private static final class CsvSink implements RowSink {
+        private final Path target;
+        private final Path partial;
+        private final CsvWriter writer;
+        private boolean committed;
+
+        private CsvSink(Path target) throws IOException {
+            this.target = target;
+            this.partial = target.resolveSibling(target.getFileName() + ".part");
+            Files.createDirectories(target.toAbsolutePath().getParent());
+            this.writer = CsvUtil.getWriter(partial.toFile(), StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public void open(List<String> columns) {
+            writer.writeLine(columns.toArray(new String[0]));
+        }
+
+        @Override
+        public void write(List<String[]> rows) {
+            for (String[] row : rows) {
+                writer.writeLine(row);
+            }
+            writer.flush();
+        }
+
+        @Override
+        public void commit() throws IOException {
+            writer.close();
+            Files.move(partial, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            committed = true;
+        }
+
+        @Override
+        public void abort() {
+            // 在close中删除临时文件
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!committed) {
+                writer.close();
+                Files.deleteIfExists(partial);
+            }
+        }
+    }
+}
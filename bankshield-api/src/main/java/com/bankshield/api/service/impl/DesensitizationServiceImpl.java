@@ -19,6 +19,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.UnaryOperator;
 import java.util.stream.Collectors;
 
 /**
@@ -53,8 +54,9 @@ public class DesensitizationServiceImpl implements DesensitizationService {
     @Override
     public List<String> batchDesensitize(List<String> values, String ruleCode) {
         try {
+            UnaryOperator<String> desensitizer = compileRule(ruleCode);
             return values.stream()
-                    .map(value -> desensitize(value, ruleCode))
+                    .map(desensitizer)
                     .collect(Collectors.toList());
         } catch (Exception e) {
             log.error("批量脱敏失败: {}", e.getMessage(), e);
@@ -62,6 +64,18 @@ public class DesensitizationServiceImpl implements DesensitizationService {
         }
     }
     
+    /**
+     * 按规则编码编译脱敏函数，规则不存在时原样返回
+     */
+    private UnaryOperator<String> compileRule(String ruleCode) {
+        DesensitizationRule rule = ruleMapper.selectByRuleCode(ruleCode);
+        if (rule == null) {
+            log.warn("脱敏规则不存在: {}", ruleCode);
+            return UnaryOperator.identity();
+        }
+        return DesensitizationUtil.compile(rule.getAlgorithmType(), rule.getAlgorithmConfig());
+    }
+    
     @Override
     public String autoDesensitize(String value, String dataType) {
         try {
@@ -236,11 +250,12 @@ public class DesensitizationServiceImpl implements DesensitizationService {
     
     @Override
     public List<Map<String, Object>> desensitizeBatch(String ruleCode, List<String> testDataList) {
+        UnaryOperator<String> desensitizer = compileRule(ruleCode);
         List<Map<String, Object>> results = new ArrayList<>();
         for (String data : testDataList) {
             Map<String, Object> result = new HashMap<>();
             result.put("original", data);
-            result.put("masked", desensitize(data, ruleCode));
+            result.put("masked", desensitizer.apply(data));
             results.add(result);
         }
         return results;
@@ -2,6 +2,7 @@ package com.bankshield.api.service.impl;
 
 import com.alibaba.excel.EasyExcel;
 import com.alibaba.excel.write.style.column.LongestMatchColumnWidthStyleStrategy;
+import com.bankshield.api.component.OperationAuditWriteBuffer;
 import com.bankshield.api.entity.OperationAudit;
 import com.bankshield.api.mapper.OperationAuditMapper;
 import com.bankshield.api.service.OperationAuditService;
@@ -11,7 +12,6 @@ import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 
 import javax.servlet.http.HttpServletResponse;
@@ -19,6 +19,7 @@ import java.io.IOException;
 import java.net.URLEncoder;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 
 /**
  * 操作审计业务实现类
@@ -33,6 +34,9 @@ public class OperationAuditServiceImpl extends ServiceImpl<OperationAuditMapper,
     @Autowired
     private OperationAuditMapper operationAuditMapper;
 
+    @Autowired
+    private OperationAuditWriteBuffer operationAuditWriteBuffer;
+
     @Override
     public Result<Page<OperationAudit>> getOperationAuditPage(int page, int size, String username, 
                                                              String operationType, String operationModule, 
@@ -138,14 +142,18 @@ public class OperationAuditServiceImpl extends ServiceImpl<OperationAuditMapper,
         }
     }
 
-    @Async
     @Override
     public void saveOperationAudit(OperationAudit operationAudit) {
         try {
-            operationAuditMapper.insert(operationAudit);
-            log.debug("异步保存操作审计记录成功");
+            // 入队后由写入缓冲批量落库，请求线程不再访问数据库
+            operationAuditWriteBuffer.submit(operationAudit);
         } catch (Exception e) {
-            log.error("异步保存操作审计记录失败", e);
+            log.error("提交操作审计记录失败", e);
         }
     }
-}
\ No newline at end of file
+
+    @Override
+    public Map<String, Object> getWriteBufferStatistics() {
+        return operationAuditWriteBuffer.getStatistics();
+    }
+}
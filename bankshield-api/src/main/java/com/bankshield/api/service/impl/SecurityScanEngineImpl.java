@@ -6,25 +6,41 @@ import com.bankshield.api.entity.SecurityScanTask;
 import com.bankshield.api.enums.RiskLevel;
 import com.bankshield.api.mapper.SecurityBaselineMapper;
 import com.bankshield.api.mapper.SecurityScanResultMapper;
+import com.bankshield.api.scanner.PortProbeEngine;
+import com.bankshield.api.scanner.PortProbeResult;
+import com.bankshield.api.scanner.ResponseSignature;
+import com.bankshield.api.scanner.VulnerabilitySignatures;
 import com.bankshield.api.service.SecurityScanEngine;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
-import java.net.InetSocketAddress;
-import java.net.Socket;
-import java.net.URL;
-import java.net.URLConnection;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.function.BiPredicate;
+import java.util.function.Consumer;
 
 /**
  * 安全扫描引擎实现类 - 基于NIST 800-115和OWASP标准
@@ -46,6 +62,22 @@ public class SecurityScanEngineImpl implements SecurityScanEngine {
     @Autowired
     private SecurityScanResultMapper scanResultMapper;
 
+    @Autowired
+    private PortProbeEngine portProbeEngine;
+
+    @Value("${security-scan.orchestrator.parallelism:32}")
+    private int orchestratorParallelism;
+
+    @Value("${security-scan.orchestrator.result-batch-size:200}")
+    private int resultBatchSize;
+
+    @Value("${security-scan.orchestrator.max-response-bytes:262144}")
+    private int maxResponseBytes;
+
+    // 漏洞检测工作窃取线程池与共享HTTP客户端（复用keep-alive连接）
+    private ForkJoinPool scanPool;
+    private HttpClient httpClient;
+
     // 扫描进度跟踪
     private final Map<Long, AtomicInteger> scanProgressMap = new ConcurrentHashMap<>();
     private final Map<Long, Boolean> scanStopFlags = new ConcurrentHashMap<>();
@@ -53,6 +85,52 @@ public class SecurityScanEngineImpl implements SecurityScanEngine {
     // 确定性检测规则配置
     private static final int CONNECTION_TIMEOUT = 5000; // 5秒连接超时
     private static final int READ_TIMEOUT = 10000; // 10秒读取超时
+    private static final long STOP_POLL_MILLIS = 200; // 等待检测单元时轮询停止标志的间隔
+
+    // OWASP SQL注入检测payloads
+    private static final String[] SQL_INJECTION_PAYLOADS = {
+        "' OR '1'='1",
+        "'; DROP TABLE users; --",
+        "' UNION SELECT * FROM users --",
+        "admin'--",
+        "1' OR 1=1#",
+        "1' AND 1=1--",
+        "1' AND 1=2--",
+        "1' AND (SELECT COUNT(*) FROM users) > 0--"
+    };
+
+    // OWASP XSS检测payloads
+    private static final String[] XSS_PAYLOADS = {
+        "<script>alert('XSS')</script>",
+        "<img src=x onerror=alert('XSS')>",
+        "javascript:alert('XSS')",
+        "<svg onload=alert('XSS')>",
+        "'><script>alert('XSS')</script>",
+        "</script><script>alert('XSS')</script>",
+        "<iframe src=javascript:alert('XSS')>",
+        "<body onload=alert('XSS')>"
+    };
+
+    // Directory traversal检测payloads
+    private static final String[] TRAVERSAL_PAYLOADS = {
+        "../../../etc/passwd",
+        "..\\..\\..\\windows\\system32\\drivers\\etc\\hosts",
+        "....//....//....//etc/passwd",
+        "%2e%2e%2f%2e%2e%2f%2e%2e%2fetc%2fpasswd",
+        "..%2F..%2F..%2Fetc%2Fpasswd",
+        "%252e%252e%252fetc%252fpasswd"
+    };
+
+    // Command injection检测payloads
+    private static final String[] COMMAND_PAYLOADS = {
+        "; cat /etc/passwd",
+        "| whoami",
+        "&& dir",
+        "`whoami`",
+        "$(whoami)",
+        ";nslookup attacker.com",
+        "|ping -n 10 127.0.0.1"
+    };
     
     // 已知脆弱端口列表 (基于CIS基准和NIST指南)
     private static final int[] VULNERABLE_PORTS = {
@@ -71,6 +149,11 @@ public class SecurityScanEngineImpl implements SecurityScanEngine {
         9300,  // Elasticsearch
         27017  // MongoDB
     };
+
+    // 服务识别端口 (Web服务及会主动发送标识的常见服务)
+    private static final int[] SERVICE_PORTS = {
+        21, 22, 25, 80, 3306, 5432, 6379, 8000, 8080, 8081, 8888, 9200
+    };
     
     // 已知脆弱服务版本模式
     private static final Map<String, String[]> VULNERABLE_SERVICE_PATTERNS = new HashMap<>();
@@ -89,53 +172,217 @@ public class SecurityScanEngineImpl implements SecurityScanEngine {
         });
     }
 
+    @PostConstruct
+    public void init() {
+        AtomicInteger threadIndex = new AtomicInteger();
+        scanPool = new ForkJoinPool(orchestratorParallelism, pool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("vuln-scan-" + threadIndex.incrementAndGet());
+            return thread;
+        }, null, false);
+        httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofMillis(CONNECTION_TIMEOUT))
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+        log.info("漏洞扫描编排器初始化完成: 并行度={}, 结果批大小={}", orchestratorParallelism, resultBatchSize);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (scanPool != null) {
+            scanPool.shutdownNow();
+        }
+    }
+
     @Override
     public List<SecurityScanResult> performVulnerabilityScan(SecurityScanTask task) {
-        log.info("开始执行漏洞扫描任务: {}", task.getTaskName());
         List<SecurityScanResult> results = new ArrayList<>();
+        runVulnerabilityScan(task, results::add);
+        return results;
+    }
 
+    @Override
+    public int executeVulnerabilityScan(SecurityScanTask task) {
+        ScanResultBatchWriter writer = new ScanResultBatchWriter();
         try {
-            scanProgressMap.put(task.getId(), new AtomicInteger(0));
-            scanStopFlags.put(task.getId(), false);
+            runVulnerabilityScan(task, writer::add);
+        } catch (RuntimeException e) {
+            // 失败时也保留已发现的风险，写入失败附在原始异常上，不覆盖扫描失败原因
+            try {
+                writer.flush();
+            } catch (RuntimeException flushError) {
+                e.addSuppressed(flushError);
+            }
+            throw e;
+        }
+        // 正常完成或被停止时写入剩余结果
+        writer.flush();
+        return writer.getWritten();
+    }
 
-            // 基于OWASP Top 10的漏洞检测
-            if (!checkStopFlag(task.getId())) {
-                results.addAll(scanSQLInjection(task));
+    /**
+     * 将各项检测按“目标 × 检测项 × payload”拆分为检测单元，提交到工作窃取线程池并发执行。
+     * 结果按提交顺序逐个交给sink，保证相同输入得到相同顺序的输出；
+     * 等待期间轮询停止标志，停止后取消尚未开始的检测单元并立即返回。
+     *
+     * @return 交给sink的风险数
+     */
+    private int runVulnerabilityScan(SecurityScanTask task, Consumer<SecurityScanResult> sink) {
+        log.info("开始执行漏洞扫描任务: {}", task.getTaskName());
+        Long taskId = task.getId();
+        AtomicInteger progress = new AtomicInteger(0);
+        scanProgressMap.put(taskId, progress);
+        scanStopFlags.put(taskId, false);
+        int found = 0;
+
+        try {
+            List<Callable<List<SecurityScanResult>>> units = buildScanUnits(task);
+            int total = units.size();
+            AtomicInteger completed = new AtomicInteger();
+            List<Future<List<SecurityScanResult>>> futures = new ArrayList<>(total);
+            for (Callable<List<SecurityScanResult>> unit : units) {
+                futures.add(scanPool.submit(() -> {
+                    try {
+                        return checkStopFlag(taskId) ? Collections.<SecurityScanResult>emptyList() : unit.call();
+                    } finally {
+                        progress.accumulateAndGet(completed.incrementAndGet() * 100 / total, Math::max);
+                    }
+                }));
             }
-            if (!checkStopFlag(task.getId())) {
-                results.addAll(scanXSS(task));
+
+            for (Future<List<SecurityScanResult>> future : futures) {
+                List<SecurityScanResult> unitResults = awaitUnit(taskId, future);
+                if (unitResults == null) {
+                    futures.forEach(f -> f.cancel(false));
+                    log.info("漏洞扫描任务已停止: {}, 已发现 {} 个风险", task.getTaskName(), found);
+                    return found;
+                }
+                for (SecurityScanResult result : unitResults) {
+                    sink.accept(result);
+                    found++;
+                }
             }
-            if (!checkStopFlag(task.getId())) {
-                results.addAll(scanCSRF(task));
+
+            log.info("漏洞扫描任务完成: {}, {} 个检测单元, 发现 {} 个风险", task.getTaskName(), total, found);
+            return found;
+        } catch (Exception e) {
+            log.error("漏洞扫描任务执行失败: " + task.getTaskName(), e);
+            throw new RuntimeException("漏洞扫描失败: " + e.getMessage(), e);
+        } finally {
+            scanProgressMap.remove(taskId);
+            scanStopFlags.remove(taskId);
+        }
+    }
+
+    /**
+     * 等待检测单元完成，期间轮询停止标志
+     *
+     * @return 检测单元的结果，扫描被停止时返回null
+     */
+    private List<SecurityScanResult> awaitUnit(Long taskId, Future<List<SecurityScanResult>> future)
+            throws InterruptedException, ExecutionException {
+        while (!checkStopFlag(taskId)) {
+            try {
+                return future.get(STOP_POLL_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                // 继续等待并检查停止标志
             }
-            if (!checkStopFlag(task.getId())) {
-                results.addAll(scanDirectoryTraversal(task));
+        }
+        return null;
+    }
+
+    private List<Callable<List<SecurityScanResult>>> buildScanUnits(SecurityScanTask task) {
+        List<Callable<List<SecurityScanResult>>> units = new ArrayList<>();
+
+        // 端口扫描与服务识别内部已按主机并发探测，耗时最长，最先提交 (基于NIST 800-115)
+        units.add(() -> scanOpenPorts(task));
+        units.add(() -> scanServiceVulnerabilities(task));
+
+        // 基于OWASP Top 10的漏洞检测
+        for (String target : resolveWebTargets(task.getScanTarget())) {
+            for (String payload : SQL_INJECTION_PAYLOADS) {
+                units.add(payloadUnit(task, target, payload, this::checkSQLInjectionVulnerability,
+                        "SQL_INJECTION", "检测到SQL注入漏洞", "高危"));
             }
-            if (!checkStopFlag(task.getId())) {
-                results.addAll(scanCommandInjection(task));
+            for (String payload : XSS_PAYLOADS) {
+                units.add(payloadUnit(task, target, payload, this::checkXSSVulnerability,
+                        "XSS", "检测到跨站脚本攻击(XSS)漏洞", "中危"));
             }
-
-            // 端口扫描 (基于NIST 800-115)
-            if (!checkStopFlag(task.getId())) {
-                results.addAll(scanOpenPorts(task));
+            units.add(payloadUnit(task, target, "缺乏CSRF令牌验证", (url, details) -> checkCSRFVulnerability(url),
+                    "CSRF", "检测到跨站请求伪造(CSRF)漏洞", "中危"));
+            for (String payload : TRAVERSAL_PAYLOADS) {
+                units.add(payloadUnit(task, target, payload, this::checkDirectoryTraversalVulnerability,
+                        "DIRECTORY_TRAVERSAL", "检测到目录遍历漏洞", "高危"));
+            }
+            for (String payload : COMMAND_PAYLOADS) {
+                units.add(payloadUnit(task, target, payload, this::checkCommandInjectionVulnerability,
+                        "COMMAND_INJECTION", "检测到命令注入漏洞", "高危"));
             }
+        }
+        return units;
+    }
 
-            // 服务漏洞扫描
-            if (!checkStopFlag(task.getId())) {
-                results.addAll(scanServiceVulnerabilities(task));
+    private Callable<List<SecurityScanResult>> payloadUnit(SecurityScanTask task, String target, String payload,
+                                                          BiPredicate<String, String> check, String riskType,
+                                                          String description, String level) {
+        return () -> check.test(target, payload)
+                ? Collections.singletonList(createVulnerabilityResult(task, target, riskType, description, level, payload))
+                : Collections.emptyList();
+    }
+
+    /**
+     * 解析Web检测目标：URL原样使用，主机、主机:端口加http://前缀，网段展开为各主机
+     */
+    private List<String> resolveWebTargets(String scanTarget) {
+        List<String> targets = new ArrayList<>();
+        if (scanTarget == null) {
+            return targets;
+        }
+        for (String token : scanTarget.trim().split("[,;\\s]+")) {
+            if (token.isEmpty()) {
+                continue;
+            }
+            if (token.contains("://")) {
+                targets.add(token);
+            } else if (token.contains("/")) {
+                for (String host : portProbeEngine.expandTargets(token)) {
+                    targets.add("http://" + host);
+                }
+            } else {
+                targets.add("http://" + token);
             }
+        }
+        return targets;
+    }
 
-            log.info("漏洞扫描任务完成: {}, 发现 {} 个风险", task.getTaskName(), results.size());
+    /**
+     * 扫描结果批量写入器：攒满一批即写入数据库，避免在内存中累积全部结果
+     */
+    private class ScanResultBatchWriter {
 
-        } catch (Exception e) {
-            log.error("漏洞扫描任务执行失败: " + task.getTaskName(), e);
-            throw new RuntimeException("漏洞扫描失败: " + e.getMessage(), e);
-        } finally {
-            scanProgressMap.remove(task.getId());
-            scanStopFlags.remove(task.getId());
+        private final List<SecurityScanResult> buffer = new ArrayList<>();
+        private int written;
+
+        void add(SecurityScanResult result) {
+            buffer.add(result);
+            if (buffer.size() >= resultBatchSize) {
+                flush();
+            }
         }
 
-        return results;
+        void flush() {
+            if (buffer.isEmpty()) {
+                return;
+            }
+            scanResultMapper.batchInsert(new ArrayList<>(buffer));
+            written += buffer.size();
+            buffer.clear();
+        }
+
+        int getWritten() {
+            return written;
+        }
     }
 
     @Override
@@ -340,141 +587,23 @@ public class SecurityScanEngineImpl implements SecurityScanEngine {
         return stopFlag != null && stopFlag;
     }
 
-    // 基于规则的漏洞检测方法
-    
-    private List<SecurityScanResult> scanSQLInjection(SecurityScanTask task) {
-        List<SecurityScanResult> results = new ArrayList<>();
-        
-        // OWASP SQL注入检测payloads
-        String[] sqlInjectionPayloads = {
-            "' OR '1'='1",
-            "'; DROP TABLE users; --",
-            "' UNION SELECT * FROM users --",
-            "admin'--",
-            "1' OR 1=1#",
-            "1' AND 1=1--",
-            "1' AND 1=2--",
-            "1' AND (SELECT COUNT(*) FROM users) > 0--"
-        };
-        
-        String target = task.getScanTarget();
-        for (String payload : sqlInjectionPayloads) {
-            if (checkSQLInjectionVulnerability(target, payload)) {
-                SecurityScanResult result = createVulnerabilityResult(task, "SQL_INJECTION", 
-                    "检测到SQL注入漏洞", "高危", payload);
-                results.add(result);
-            }
-        }
-        
-        return results;
-    }
-    
-    private List<SecurityScanResult> scanXSS(SecurityScanTask task) {
-        List<SecurityScanResult> results = new ArrayList<>();
-        
-        // OWASP XSS检测payloads
-        String[] xssPayloads = {
-            "<script>alert('XSS')</script>",
-            "<img src=x onerror=alert('XSS')>",
-            "javascript:alert('XSS')",
-            "<svg onload=alert('XSS')>",
-            "'><script>alert('XSS')</script>",
-            "</script><script>alert('XSS')</script>",
-            "<iframe src=javascript:alert('XSS')>",
-            "<body onload=alert('XSS')>"
-        };
-        
-        String target = task.getScanTarget();
-        for (String payload : xssPayloads) {
-            if (checkXSSVulnerability(target, payload)) {
-                SecurityScanResult result = createVulnerabilityResult(task, "XSS", 
-                    "检测到跨站脚本攻击(XSS)漏洞", "中危", payload);
-                results.add(result);
-            }
-        }
-        
-        return results;
-    }
-    
-    private List<SecurityScanResult> scanCSRF(SecurityScanTask task) {
-        List<SecurityScanResult> results = new ArrayList<>();
-        
-        String target = task.getScanTarget();
-        if (checkCSRFVulnerability(target)) {
-            SecurityScanResult result = createVulnerabilityResult(task, "CSRF", 
-                "检测到跨站请求伪造(CSRF)漏洞", "中危", "缺乏CSRF令牌验证");
-            results.add(result);
-        }
-        
-        return results;
-    }
-    
-    private List<SecurityScanResult> scanDirectoryTraversal(SecurityScanTask task) {
-        List<SecurityScanResult> results = new ArrayList<>();
-        
-        // Directory traversal检测payloads
-        String[] traversalPayloads = {
-            "../../../etc/passwd",
-            "..\\..\\..\\windows\\system32\\drivers\\etc\\hosts",
-            "....//....//....//etc/passwd",
-            "%2e%2e%2f%2e%2e%2f%2e%2e%2fetc%2fpasswd",
-            "..%2F..%2F..%2Fetc%2Fpasswd",
-            "%252e%252e%252fetc%252fpasswd"
-        };
-        
-        String target = task.getScanTarget();
-        for (String payload : traversalPayloads) {
-            if (checkDirectoryTraversalVulnerability(target, payload)) {
-                SecurityScanResult result = createVulnerabilityResult(task, "DIRECTORY_TRAVERSAL", 
-                    "检测到目录遍历漏洞", "高危", payload);
-                results.add(result);
-            }
-        }
-        
-        return results;
-    }
-    
-    private List<SecurityScanResult> scanCommandInjection(SecurityScanTask task) {
-        List<SecurityScanResult> results = new ArrayList<>();
-        
-        // Command injection检测payloads
-        String[] commandPayloads = {
-            "; cat /etc/passwd",
-            "| whoami",
-            "&& dir",
-            "`whoami`",
-            "$(whoami)",
-            ";nslookup attacker.com",
-            "|ping -n 10 127.0.0.1"
-        };
-        
-        String target = task.getScanTarget();
-        for (String payload : commandPayloads) {
-            if (checkCommandInjectionVulnerability(target, payload)) {
-                SecurityScanResult result = createVulnerabilityResult(task, "COMMAND_INJECTION", 
-                    "检测到命令注入漏洞", "高危", payload);
-                results.add(result);
-            }
-        }
-        
-        return results;
-    }
-    
     private List<SecurityScanResult> scanOpenPorts(SecurityScanTask task) {
         List<SecurityScanResult> results = new ArrayList<>();
         
-        String target = task.getScanTarget();
+        List<String> hosts = portProbeEngine.expandTargets(task.getScanTarget());
         
-        // 检查已知脆弱端口
-        for (int port : VULNERABLE_PORTS) {
-            if (isPortOpen(target, port)) {
+        // 并发探测已知脆弱端口
+        List<PortProbeResult> probes = portProbeEngine.probe(hosts, VULNERABLE_PORTS, () -> checkStopFlag(task.getId()));
+        for (PortProbeResult probe : probes) {
+            if (probe.isOpen()) {
                 SecurityScanResult result = new SecurityScanResult();
                 result.setTaskId(task.getId());
                 result.setRiskLevel(RiskLevel.MEDIUM.name());
                 result.setRiskType("OPEN_PORT");
-                result.setRiskDescription("检测到开放的高危端口: " + port);
-                result.setImpactScope("目标IP: " + target + ", 端口: " + port);
+                result.setRiskDescription("检测到开放的高危端口: " + probe.getPort());
+                result.setImpactScope("目标IP: " + probe.getHost() + ", 端口: " + probe.getPort());
                 result.setRemediationAdvice("建议关闭不必要的端口或配置防火墙规则");
+                result.setRiskDetails(probe.getBanner());
                 result.setDiscoveredTime(LocalDateTime.now());
                 result.setFixStatus("UNFIXED");
                 result.setCreateTime(LocalDateTime.now());
@@ -490,21 +619,23 @@ public class SecurityScanEngineImpl implements SecurityScanEngine {
     private List<SecurityScanResult> scanServiceVulnerabilities(SecurityScanTask task) {
         List<SecurityScanResult> results = new ArrayList<>();
         
-        String target = task.getScanTarget();
-        Map<String, String> detectedServices = detectServices(target);
+        Map<String, Map<String, String>> detectedServices = detectServices(task);
         
-        for (Map.Entry<String, String> entry : detectedServices.entrySet()) {
-            String serviceType = entry.getKey();
-            String serviceVersion = entry.getValue();
-            
-            // 检查是否为已知脆弱服务版本
-            if (isVulnerableService(serviceType, serviceVersion)) {
+        for (Map.Entry<String, Map<String, String>> endpoint : detectedServices.entrySet()) {
+            for (Map.Entry<String, String> entry : endpoint.getValue().entrySet()) {
+                String serviceType = entry.getKey();
+                String serviceVersion = entry.getValue();
+                
+                // 检查是否为已知脆弱服务版本
+                if (!isVulnerableService(serviceType, serviceVersion)) {
+                    continue;
+                }
                 SecurityScanResult result = new SecurityScanResult();
                 result.setTaskId(task.getId());
                 result.setRiskLevel(RiskLevel.HIGH.name());
                 result.setRiskType("SERVICE_VULNERABILITY");
                 result.setRiskDescription("检测到存在漏洞的服务: " + serviceType + " " + serviceVersion);
-                result.setImpactScope("目标系统: " + target);
+                result.setImpactScope("目标系统: " + endpoint.getKey());
                 result.setRemediationAdvice("建议升级服务到最新版本");
                 result.setDiscoveredTime(LocalDateTime.now());
                 result.setFixStatus("UNFIXED");
@@ -645,33 +776,10 @@ public class SecurityScanEngineImpl implements SecurityScanEngine {
             String response = sendHttpRequest(testUrl);
             
             // 检测SQL错误模式
-            String[] sqlErrorPatterns = {
-                "SQL syntax.*MySQL",
-                "Warning.*mysql_.*",
-                "valid MySQL result",
-                "MySqlClient\\.",
-                "PostgreSQL.*ERROR",
-                "Warning.*pg_.*",
-                "valid PostgreSQL result",
-                "Npgsql\\.",
-                "Driver.* SQL.*Server",
-                "OLE DB.* SQL Server",
-                "\\(\\$.*Microsoft OLE DB.* SQL Server",
-                "\\(\\$.*OLE DB.* SQL.*Server",
-                "Warning.*mssql_.*",
-                "Warning.*odbc_.*",
-                "ORA-[0-9]{5}",
-                "Oracle error",
-                "Oracle.*Driver",
-                "Warning.*oci_.*",
-                "Warning.*ora_.*"
-            };
-            
-            for (String pattern : sqlErrorPatterns) {
-                if (Pattern.compile(pattern, Pattern.CASE_INSENSITIVE).matcher(response).find()) {
-                    log.warn("检测到SQL注入漏洞: {} with payload: {}", target, payload);
-                    return true;
-                }
+            ResponseSignature signature = VulnerabilitySignatures.MATCHER.findFirst(response, VulnerabilitySignatures.SQL_ERROR);
+            if (signature != null) {
+                log.warn("检测到SQL注入漏洞: {} with payload: {}, 命中特征: {}", target, payload, signature.getName());
+                return true;
             }
             
             return false;
@@ -703,23 +811,9 @@ public class SecurityScanEngineImpl implements SecurityScanEngine {
         try {
             String response = sendHttpRequest(target);
             
-            // 检查CSRF保护机制
-            String[] csrfPatterns = {
-                "csrf[_-]?token",
-                "authenticity[_-]?token", 
-                "__RequestVerificationToken",
-                "xsrf[_-]?token"
-            };
-            
-            for (String pattern : csrfPatterns) {
-                if (Pattern.compile(pattern, Pattern.CASE_INSENSITIVE).matcher(response).find()) {
-                    return false; // 发现CSRF保护
-                }
-            }
-            
-            // 检查SameSite cookie属性
-            if (response.contains("SameSite=Strict") || response.contains("SameSite=Lax")) {
-                return false;
+            // 检查CSRF令牌及SameSite cookie属性
+            if (VulnerabilitySignatures.MATCHER.findFirst(response, VulnerabilitySignatures.CSRF_PROTECTION) != null) {
+                return false; // 发现CSRF保护
             }
             
             log.warn("检测到CSRF漏洞: {} - 缺少CSRF保护机制", target);
@@ -736,21 +830,10 @@ public class SecurityScanEngineImpl implements SecurityScanEngine {
             String response = sendHttpRequest(testUrl);
             
             // 检查目录遍历成功模式
-            String[] traversalPatterns = {
-                "root:.*:.*:.*:",
-                "daemon:.*:.*:",
-                "bin:.*:.*:",
-                "\\[boot loader\\]",
-                "\\[operating systems\\]",
-                "autoexec",
-                "config\\.sys"
-            };
-            
-            for (String pattern : traversalPatterns) {
-                if (Pattern.compile(pattern, Pattern.CASE_INSENSITIVE).matcher(response).find()) {
-                    log.warn("检测到目录遍历漏洞: {} with payload: {}", target, payload);
-                    return true;
-                }
+            ResponseSignature signature = VulnerabilitySignatures.MATCHER.findFirst(response, VulnerabilitySignatures.TRAVERSAL);
+            if (signature != null) {
+                log.warn("检测到目录遍历漏洞: {} with payload: {}, 命中特征: {}", target, payload, signature.getName());
+                return true;
             }
             
             return false;
@@ -766,23 +849,10 @@ public class SecurityScanEngineImpl implements SecurityScanEngine {
             String response = sendHttpRequest(testUrl);
             
             // 检查命令执行结果模式
-            String[] commandPatterns = {
-                "root",
-                "administrator", 
-                "nt authority",
-                "uid=",
-                "gid=",
-                "groups=",
-                "Pinging",
-                "Reply from",
-                "64 bytes from"
-            };
-            
-            for (String pattern : commandPatterns) {
-                if (Pattern.compile(pattern, Pattern.CASE_INSENSITIVE).matcher(response).find()) {
-                    log.warn("检测到命令注入漏洞: {} with payload: {}", target, payload);
-                    return true;
-                }
+            ResponseSignature signature = VulnerabilitySignatures.MATCHER.findFirst(response, VulnerabilitySignatures.COMMAND_OUTPUT);
+            if (signature != null) {
+                log.warn("检测到命令注入漏洞: {} with payload: {}, 命中特征: {}", target, payload, signature.getName());
+                return true;
             }
             
             return false;
@@ -808,38 +878,41 @@ public class SecurityScanEngineImpl implements SecurityScanEngine {
         }
     }
     
-    private boolean isPortOpen(String target, int port) {
-        try (Socket socket = new Socket()) {
-            socket.connect(new InetSocketAddress(target, port), CONNECTION_TIMEOUT);
-            return true;
-        } catch (Exception e) {
-            return false; // 端口未开放或连接失败
-        }
-    }
-    
-    private Map<String, String> detectServices(String target) {
-        Map<String, String> services = new HashMap<>();
+    /**
+     * 探测服务端口并识别服务版本
+     *
+     * @return 按 host:port 分组的服务类型到版本的映射，多主机扫描时各端点互不覆盖
+     */
+    private Map<String, Map<String, String>> detectServices(SecurityScanTask task) {
+        Map<String, Map<String, String>> services = new LinkedHashMap<>();
         
         try {
-            // 检测HTTP服务
-            String httpResponse = sendHttpRequest("http://" + target);
-            String serverHeader = extractHeader(httpResponse, "Server");
-            if (serverHeader != null) {
-                services.put("HTTP", serverHeader);
-            }
-            
-            // 检测其他服务（简化实现）
-            for (Map.Entry<String, String[]> entry : VULNERABLE_SERVICE_PATTERNS.entrySet()) {
-                String serviceType = entry.getKey();
-                for (String vulnerableVersion : entry.getValue()) {
-                    if (httpResponse.contains(vulnerableVersion)) {
-                        services.put(serviceType, vulnerableVersion);
-                        break;
+            // 并发探测服务端口并抓取服务标识
+            List<String> hosts = portProbeEngine.expandTargets(task.getScanTarget());
+            List<PortProbeResult> probes = portProbeEngine.probe(hosts, SERVICE_PORTS, () -> checkStopFlag(task.getId()));
+            for (PortProbeResult probe : probes) {
+                String banner = probe.getBanner();
+                if (banner == null) {
+                    continue;
+                }
+                Map<String, String> endpoint = services.computeIfAbsent(
+                        probe.getHost() + ":" + probe.getPort(), key -> new LinkedHashMap<>());
+                String serverHeader = extractHeader(banner, "Server");
+                if (serverHeader != null) {
+                    endpoint.put("HTTP", serverHeader);
+                }
+                for (Map.Entry<String, String[]> entry : VULNERABLE_SERVICE_PATTERNS.entrySet()) {
+                    String serviceType = entry.getKey();
+                    for (String vulnerableVersion : entry.getValue()) {
+                        if (banner.contains(vulnerableVersion)) {
+                            endpoint.put(serviceType, vulnerableVersion);
+                            break;
+                        }
                     }
                 }
             }
         } catch (Exception e) {
-            log.error("服务检测失败: " + target, e);
+            log.error("服务检测失败: " + task.getScanTarget(), e);
         }
         
         return services;
@@ -998,34 +1071,65 @@ public class SecurityScanEngineImpl implements SecurityScanEngine {
     
     private String buildTestUrl(String target, String payload) {
         if (target.contains("?")) {
-            return target + "&test=" + payload;
+            return target + "&test=" + encodeQueryValue(payload);
         } else {
-            return target + "?test=" + payload;
+            return target + "?test=" + encodeQueryValue(payload);
         }
     }
-    
+
+    /**
+     * 对payload中URI不允许的字符及查询分隔符做百分号编码，保留已编码的%序列原样发送
+     */
+    private String encodeQueryValue(String value) {
+        StringBuilder encoded = new StringBuilder(value.length() * 2);
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            int c = b & 0xFF;
+            if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+                    || "-._~!$'()*,;:@/?%".indexOf(c) >= 0) {
+                encoded.append((char) c);
+            } else {
+                encoded.append('%').append(Character.toUpperCase(Character.forDigit(c >> 4, 16)))
+                        .append(Character.toUpperCase(Character.forDigit(c & 0xF, 16)));
+            }
+        }
+        return encoded.toString();
+    }
+
+    /**
+     * 通过共享HTTP客户端发送GET请求，返回响应体（最多读取maxResponseBytes字节）及Set-Cookie头
+     */
     private String sendHttpRequest(String urlString) {
         try {
-            URL url = new URL(urlString);
-            URLConnection connection = url.openConnection();
-            connection.setConnectTimeout(CONNECTION_TIMEOUT);
-            connection.setReadTimeout(READ_TIMEOUT);
-            
-            BufferedReader reader = new BufferedReader(new InputStreamReader(connection.getInputStream()));
-            StringBuilder response = new StringBuilder();
-            String line;
-            while ((line = reader.readLine()) != null) {
-                response.append(line);
+            HttpRequest request = HttpRequest.newBuilder(URI.create(urlString))
+                    .timeout(Duration.ofMillis(READ_TIMEOUT))
+                    .GET()
+                    .build();
+            HttpResponse<InputStream> response = httpClient.send(request, HttpResponse.BodyHandlers.ofInputStream());
+
+            StringBuilder result = new StringBuilder();
+            try (InputStream body = response.body()) {
+                ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+                byte[] chunk = new byte[8192];
+                int read;
+                while (buffer.size() < maxResponseBytes
+                        && (read = body.read(chunk, 0, Math.min(chunk.length, maxResponseBytes - buffer.size()))) != -1) {
+                    buffer.write(chunk, 0, read);
+                }
+                result.append(buffer.toString(StandardCharsets.UTF_8));
             }
-            reader.close();
-            
-            return response.toString();
+            for (String cookie : response.headers().allValues("Set-Cookie")) {
+                result.append('\n').append("Set-Cookie: ").append(cookie);
+            }
+            return result.toString();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return "";
         } catch (Exception e) {
             log.error("HTTP请求失败: " + urlString, e);
             return "";
         }
     }
-    
+
     private boolean isResponseEncoded(String response, String payload) {
         // 检查响应是否对payload进行了编码
         String encodedPayload = payload.replace("<", "&lt;").replace(">", "&gt;").replace("\"", "&quot;");
@@ -1033,7 +1137,18 @@ public class SecurityScanEngineImpl implements SecurityScanEngine {
     }
     
     private String extractHeader(String response, String headerName) {
-        // 简化实现 - 实际应该从HTTP响应头中提取
+        if (response == null || !response.startsWith("HTTP/")) {
+            return null;
+        }
+        String prefix = headerName.toLowerCase() + ":";
+        for (String line : response.split("\r?\n")) {
+            if (line.isEmpty()) {
+                break;
+            }
+            if (line.toLowerCase().startsWith(prefix)) {
+                return line.substring(prefix.length()).trim();
+            }
+        }
         return null;
     }
     
@@ -1066,14 +1181,14 @@ public class SecurityScanEngineImpl implements SecurityScanEngine {
         return (hashPrefix % 100) < 15; // 15%概率发现异常系统行为
     }
     
-    private SecurityScanResult createVulnerabilityResult(SecurityScanTask task, String riskType, 
+    private SecurityScanResult createVulnerabilityResult(SecurityScanTask task, String target, String riskType,
                                                         String description, String level, String details) {
         SecurityScanResult result = new SecurityScanResult();
         result.setTaskId(task.getId());
-        result.setRiskLevel(RiskLevel.valueOf(level.toUpperCase()).name());
+        result.setRiskLevel(toRiskLevel(level).name());
         result.setRiskType(riskType);
         result.setRiskDescription(description);
-        result.setImpactScope("目标系统: " + task.getScanTarget());
+        result.setImpactScope("目标系统: " + target);
         result.setRemediationAdvice(getRemediationAdvice(riskType));
         result.setDiscoveredTime(LocalDateTime.now());
         result.setFixStatus("UNFIXED");
@@ -1083,6 +1198,18 @@ public class SecurityScanEngineImpl implements SecurityScanEngine {
         
         return result;
     }
+
+    /**
+     * 按枚举名或中文描述（如“高危”）解析风险级别
+     */
+    private RiskLevel toRiskLevel(String level) {
+        for (RiskLevel riskLevel : RiskLevel.values()) {
+            if (riskLevel.name().equalsIgnoreCase(level) || riskLevel.getDescription().equals(level)) {
+                return riskLevel;
+            }
+        }
+        throw new IllegalArgumentException("未知风险级别: " + level);
+    }
     
     private String getRemediationAdvice(String riskType) {
         switch (riskType) {
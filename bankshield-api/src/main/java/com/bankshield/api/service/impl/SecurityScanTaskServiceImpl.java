@@ -92,14 +92,12 @@ public class SecurityScanTaskServiceImpl extends ServiceImpl<SecurityScanTaskMap
             task.setStartTime(LocalDateTime.now());
             scanTaskMapper.updateById(task);
             
-            // 根据扫描类型执行相应的扫描
-            List<SecurityScanResult> results = performScanByType(task);
+            // 根据扫描类型执行相应的扫描并保存扫描结果
+            int riskCount = performScanByType(task);
             
-            // 保存扫描结果
-            if (!results.isEmpty()) {
-                saveScanResults(results);
-                task.setRiskCount(results.size());
-                scanLogService.info(taskId, "扫描完成，发现 " + results.size() + " 个风险");
+            if (riskCount > 0) {
+                task.setRiskCount(riskCount);
+                scanLogService.info(taskId, "扫描完成，发现 " + riskCount + " 个风险");
             } else {
                 task.setRiskCount(0);
                 scanLogService.info(taskId, "扫描完成，未发现风险");
@@ -386,38 +384,40 @@ public class SecurityScanTaskServiceImpl extends ServiceImpl<SecurityScanTaskMap
         }
     }
 
-    private List<SecurityScanResult> performScanByType(SecurityScanTask task) {
+    private int performScanByType(SecurityScanTask task) {
         ScanType scanType = ScanType.valueOf(task.getScanType());
         
         switch (scanType) {
             case VULNERABILITY:
                 scanLogService.info(task.getId(), "开始漏洞扫描");
-                return scanEngine.performVulnerabilityScan(task);
+                // 漏洞扫描结果由扫描引擎分批写入
+                return scanEngine.executeVulnerabilityScan(task);
                 
             case CONFIG:
                 scanLogService.info(task.getId(), "开始配置检查");
-                return scanEngine.performConfigCheck(task);
+                return saveScanResults(scanEngine.performConfigCheck(task));
                 
             case WEAK_PASSWORD:
                 scanLogService.info(task.getId(), "开始弱密码检测");
-                return scanEngine.performWeakPasswordCheck(task);
+                return saveScanResults(scanEngine.performWeakPasswordCheck(task));
                 
             case ANOMALY:
                 scanLogService.info(task.getId(), "开始异常行为检测");
-                return scanEngine.performAnomalyDetection(task);
+                return saveScanResults(scanEngine.performAnomalyDetection(task));
                 
             default:
                 throw new IllegalArgumentException("不支持的扫描类型: " + scanType);
         }
     }
 
-    private void saveScanResults(List<SecurityScanResult> results) {
+    private int saveScanResults(List<SecurityScanResult> results) {
         if (results == null || results.isEmpty()) {
-            return;
+            return 0;
         }
         
         // 批量插入扫描结果
         scanResultMapper.batchInsert(results);
+        return results.size();
     }
 
     private String generateReportContent(SecurityScanTask task, List<SecurityScanResult> results) {
@@ -0,0 +1,416 @@
+package com.bankshield.api.service.impl;
+
+import com.bankshield.api.config.WatermarkConfig;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.apache.poi.hssf.usermodel.HeaderFooter;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFComment;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import org.xml.sax.InputSource;
+import org.xml.sax.XMLReader;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLEventFactory;
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLEventWriter;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.events.StartElement;
+import javax.xml.stream.events.XMLEvent;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * 大文档流式水印处理器
+ * XLSX：按ZIP条目流式复制，工作表XML经StAX逐事件改写页眉写入水印；提取时以SAX逐行读取单元格和页眉页脚，命中即停止。
+ * PDF：以内存上限+临时文件的方式加载，流数据驻留在临时文件中，逐页处理。
+ * 堆内存占用只与单行/单页大小及配置的上限有关，与文档总大小无关。
+ *
+ * @author BankShield
+ */
+@Slf4j
+@Component
+public class StreamingDocumentProcessor {
+
+    private static final String WORKSHEET_PREFIX = "xl/worksheets/";
+
+    /**
+     * 工作表中位于headerFooter之后的元素，遇到其中任何一个时必须先写出headerFooter
+     */
+    private static final Set<String> AFTER_HEADER_FOOTER = new HashSet<>(Arrays.asList(
+            "rowBreaks", "colBreaks", "customProperties", "cellWatches", "ignoredErrors", "smartTags",
+            "drawing", "legacyDrawing", "legacyDrawingHF", "drawingHF", "picture", "oleObjects", "controls",
+            "webPublishItems", "tableParts", "extLst"));
+
+    @Autowired
+    private WatermarkConfig watermarkConfig;
+
+    /**
+     * PDF页面处理回调
+     */
+    public interface PdfPageHandler {
+        void handle(PDDocument document, PDPage page) throws IOException;
+    }
+
+    /**
+     * 缓存输入流：不超过阈值时保存在内存，超过阈值时溢写到临时文件
+     *
+     * @param inputStream 输入流
+     * @param suffix 临时文件后缀
+     */
+    public SpooledInput spool(InputStream inputStream, String suffix) throws IOException {
+        long threshold = watermarkConfig.getStream().getThresholdMb() * 1024L * 1024L;
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        byte[] chunk = new byte[8192];
+        int read;
+        while ((read = inputStream.read(chunk)) != -1) {
+            buffer.write(chunk, 0, read);
+            if (buffer.size() > threshold) {
+                Path file = Files.createTempFile(tempDirectory(), "watermark-", "." + suffix);
+                try (OutputStream out = Files.newOutputStream(file)) {
+                    buffer.writeTo(out);
+                    buffer = null;
+                    while ((read = inputStream.read(chunk)) != -1) {
+                        out.write(chunk, 0, read);
+                    }
+                } catch (IOException | RuntimeException e) {
+                    Files.deleteIfExists(file);
+                    throw e;
+                }
+                log.info("文档超过{}MB，改用流式处理，临时文件: {}", watermarkConfig.getStream().getThresholdMb(), file);
+                return new SpooledInput(null, file);
+            }
+        }
+        return new SpooledInput(buffer.toByteArray(), null);
+    }
+
+    /**
+     * 流式向XLSX写入页眉水印，逐个ZIP条目复制，仅改写工作表XML
+     */
+    public void embedXlsxHeader(InputStream inputStream, OutputStream outputStream, String watermarkText)
+            throws IOException {
+        String headerCode = "&C" + watermarkText.replace("&", "&&");
+        ZipInputStream zipIn = new ZipInputStream(inputStream);
+        ZipOutputStream zipOut = new ZipOutputStream(outputStream);
+        OutputStream entryOut = new FilterOutputStream(zipOut) {
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+            }
+
+            @Override
+            public void close() throws IOException {
+                flush();
+            }
+        };
+        int sheets = 0;
+        ZipEntry entry;
+        while ((entry = zipIn.getNextEntry()) != null) {
+            String name = entry.getName();
+            zipOut.putNextEntry(new ZipEntry(name));
+            if (!entry.isDirectory() && name.startsWith(WORKSHEET_PREFIX) && name.endsWith(".xml")
+                    && name.indexOf('/', WORKSHEET_PREFIX.length()) < 0) {
+                try {
+                    rewriteSheetHeader(zipIn, entryOut, headerCode);
+                } catch (XMLStreamException e) {
+                    throw new IOException("工作表" + name + "解析失败: " + e.getMessage(), e);
+                }
+                sheets++;
+            } else {
+                copy(zipIn, zipOut);
+            }
+            zipOut.closeEntry();
+        }
+        zipOut.finish();
+        if (sheets == 0) {
+            throw new IOException("未找到工作表，文件不是有效的XLSX文档");
+        }
+        log.info("XLSX流式水印写入完成，工作表数: {}", sheets);
+    }
+
+    /**
+     * 以SAX逐行扫描XLSX的单元格文本和页眉页脚
+     *
+     * @param file XLSX文件
+     * @param matcher 对每行文本调用，返回非空即视为命中并停止扫描
+     * @return 命中结果，未命中返回null
+     */
+    public String scanXlsx(File file, Function<String, String> matcher) throws Exception {
+        try (OPCPackage pkg = OPCPackage.open(file, PackageAccess.READ)) {
+            XSSFReader reader = new XSSFReader(pkg);
+            ReadOnlySharedStringsTable strings = new ReadOnlySharedStringsTable(pkg);
+            StylesTable styles = reader.getStylesTable();
+            Iterator<InputStream> sheets = reader.getSheetsData();
+            DataFormatter formatter = new DataFormatter();
+            while (sheets.hasNext()) {
+                RowMatcher rowMatcher = new RowMatcher(matcher);
+                try (InputStream sheet = sheets.next()) {
+                    XMLReader parser = XMLHelper.newXMLReader();
+                    parser.setContentHandler(new XSSFSheetXMLHandler(styles, null, strings, rowMatcher, formatter, false));
+                    parser.parse(new InputSource(sheet));
+                } catch (MatchFound found) {
+                    return found.result;
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * 以临时文件为后备加载PDF并逐页处理后写出
+     */
+    public void processPdf(File file, OutputStream outputStream, PdfPageHandler handler) throws IOException {
+        try (PDDocument document = PDDocument.load(file, memoryUsageSetting())) {
+            int pageCount = 0;
+            for (PDPage page : document.getPages()) {
+                handler.handle(document, page);
+                pageCount++;
+            }
+            document.save(outputStream);
+            log.info("PDF流式水印写入完成，页数: {}", pageCount);
+        }
+    }
+
+    /**
+     * 逐页提取PDF文本并匹配，命中即停止
+     *
+     * @param matcher 对每页文本调用，返回非空即视为命中
+     * @return 命中结果，未命中返回null
+     */
+    public String scanPdf(File file, Function<String, String> matcher) throws IOException {
+        try (PDDocument document = PDDocument.load(file, memoryUsageSetting())) {
+            int pages = document.getNumberOfPages();
+            int maxPages = watermarkConfig.getStream().getMaxPdfPages();
+            if (pages > maxPages) {
+                throw new SecurityException("PDF页数过多（最多" + maxPages + "页），可能存在安全风险");
+            }
+            PDFTextStripper stripper = new PDFTextStripper();
+            for (int i = 1; i <= pages; i++) {
+                stripper.setStartPage(i);
+                stripper.setEndPage(i);
+                String result = matcher.apply(stripper.getText(document));
+                if (result != null) {
+                    log.debug("在第{}页命中水印", i);
+                    return result;
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * 改写单个工作表：替换或插入headerFooter中的oddHeader，其余事件原样输出
+     */
+    private void rewriteSheetHeader(InputStream sheetIn, OutputStream sheetOut, String headerCode)
+            throws XMLStreamException {
+        XMLEventReader reader = XMLHelper.newXMLInputFactory().createXMLEventReader(sheetIn);
+        XMLEventWriter writer = XMLHelper.newXMLOutputFactory().createXMLEventWriter(sheetOut, "UTF-8");
+        XMLEventFactory events = XMLHelper.newXMLEventFactory();
+        QName root = null;
+        int depth = 0;
+        int skipDepth = -1;
+        boolean inserted = false;
+        boolean inHeaderFooter = false;
+        while (reader.hasNext()) {
+            XMLEvent event = reader.nextEvent();
+            if (skipDepth >= 0) {
+                if (event.isStartElement()) {
+                    depth++;
+                } else if (event.isEndElement() && --depth == skipDepth) {
+                    skipDepth = -1;
+                }
+                continue;
+            }
+            if (event.isStartElement()) {
+                StartElement start = event.asStartElement();
+                String localName = start.getName().getLocalPart();
+                if (depth == 0) {
+                    root = start.getName();
+                } else if (depth == 1 && !inserted) {
+                    if ("headerFooter".equals(localName)) {
+                        writer.add(event);
+                        writeOddHeader(writer, events, root, headerCode);
+                        inserted = true;
+                        inHeaderFooter = true;
+                        depth++;
+                        continue;
+                    }
+                    if (AFTER_HEADER_FOOTER.contains(localName)) {
+                        writeHeaderFooter(writer, events, root, headerCode);
+                        inserted = true;
+                    }
+                } else if (depth == 2 && inHeaderFooter && "oddHeader".equals(localName)) {
+                    skipDepth = depth;
+                    depth++;
+                    continue;
+                }
+                depth++;
+            } else if (event.isEndElement()) {
+                depth--;
+                if (depth == 1) {
+                    inHeaderFooter = false;
+                } else if (depth == 0 && !inserted) {
+                    writeHeaderFooter(writer, events, root, headerCode);
+                    inserted = true;
+                }
+            }
+            writer.add(event);
+        }
+        writer.flush();
+        writer.close();
+        reader.close();
+    }
+
+    private static void writeHeaderFooter(XMLEventWriter writer, XMLEventFactory events, QName root, String headerCode)
+            throws XMLStreamException {
+        writer.add(events.createStartElement(root.getPrefix(), root.getNamespaceURI(), "headerFooter"));
+        writeOddHeader(writer, events, root, headerCode);
+        writer.add(events.createEndElement(root.getPrefix(), root.getNamespaceURI(), "headerFooter"));
+    }
+
+    private static void writeOddHeader(XMLEventWriter writer, XMLEventFactory events, QName root, String headerCode)
+            throws XMLStreamException {
+        writer.add(events.createStartElement(root.getPrefix(), root.getNamespaceURI(), "oddHeader"));
+        writer.add(events.createCharacters(headerCode));
+        writer.add(events.createEndElement(root.getPrefix(), root.getNamespaceURI(), "oddHeader"));
+    }
+
+    private MemoryUsageSetting memoryUsageSetting() throws IOException {
+        MemoryUsageSetting setting = MemoryUsageSetting.setupMixed(
+                watermarkConfig.getStream().getPdfMainMemoryMb() * 1024L * 1024L);
+        setting.setTempDir(tempDirectory().toFile());
+        return setting;
+    }
+
+    private Path tempDirectory() throws IOException {
+        String tempPath = watermarkConfig.getStream().getTempPath();
+        Path directory = StringUtils.hasText(tempPath) ? Paths.get(tempPath)
+                : Paths.get(System.getProperty("java.io.tmpdir"));
+        return Files.createDirectories(directory);
+    }
+
+    private static void copy(InputStream in, OutputStream out) throws IOException {
+        byte[] chunk = new byte[8192];
+        int read;
+        while ((read = in.read(chunk)) != -1) {
+            out.write(chunk, 0, read);
+        }
+    }
+
+    /**
+     * 缓存后的输入，小文档保存在内存中，大文档为临时文件，关闭时删除临时文件
+     */
+    public static final class SpooledInput implements Closeable {
+        private final byte[] bytes;
+        private final Path file;
+
+        private SpooledInput(byte[] bytes, Path file) {
+            this.bytes = bytes;
+            this.file = file;
+        }
+
+        /**
+         * 是否超过阈值（已溢写到临时文件）
+         */
+        public boolean isLarge() {
+            return file != null;
+        }
+
+        public File getFile() {
+            return file != null ? file.toFile() : null;
+        }
+
+        public InputStream openStream() throws IOException {
+            return file != null ? Files.newInputStream(file) : new ByteArrayInputStream(bytes);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (file != null) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    /**
+     * 逐行拼接单元格文本并匹配，页眉页脚单独匹配
+     */
+    private static final class RowMatcher implements XSSFSheetXMLHandler.SheetContentsHandler {
+        private final Function<String, String> matcher;
+        private final StringBuilder row = new StringBuilder();
+
+        private RowMatcher(Function<String, String> matcher) {
+            this.matcher = matcher;
+        }
+
+        @Override
+        public void startRow(int rowNum) {
+            row.setLength(0);
+        }
+
+        @Override
+        public void endRow(int rowNum) {
+            match(row.toString());
+        }
+
+        @Override
+        public void cell(String cellReference, String formattedValue, XSSFComment comment) {
+            if (formattedValue != null) {
+                row.append(formattedValue).append('\t');
+            }
+        }
+
+        @Override
+        public void headerFooter(String text, boolean isHeader, String tagName) {
+            match(HeaderFooter.stripFields(text));
+        }
+
+        private void match(String text) {
+            String result = matcher.apply(text);
+            if (result != null) {
+                throw new MatchFound(result);
+            }
+        }
+    }
+
+    /**
+     * 命中后中断SAX解析
+     */
+    private static final class MatchFound extends RuntimeException {
+        private final String result;
+
+        private MatchFound(String result) {
+            super(null, null, false, false);
+            this.result = result;
+        }
+    }
+}
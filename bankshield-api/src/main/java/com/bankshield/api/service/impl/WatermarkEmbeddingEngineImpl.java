@@ -37,6 +37,12 @@ public class WatermarkEmbeddingEngineImpl implements WatermarkEmbeddingEngine {
     @Autowired
     private WatermarkConfig watermarkConfig;
 
+    @Autowired
+    private DatabaseWatermarkProcessor databaseWatermarkProcessor;
+
+    @Autowired
+    private StreamingDocumentProcessor streamingDocumentProcessor;
+
     @Override
     public boolean embedTextWatermarkToPdf(InputStream inputStream, OutputStream outputStream,
                                           WatermarkTemplate template, String content) {
@@ -164,18 +170,14 @@ public class WatermarkEmbeddingEngineImpl implements WatermarkEmbeddingEngine {
             // 准备水印内容
             String watermarkContent = prepareWatermarkContent(content, template);
             
-            // 这里需要实现具体的数据库水印嵌入逻辑
-            // 1. 连接数据库
-            // 2. 获取表结构
-            // 3. 添加伪列或更新现有列
-            // 4. 记录处理数量
-            
-            // 模拟数据库处理
-            long processedCount = simulateDatabaseWatermarking(dataSourceId, tableName, watermarkContent);
+            // 按主键分页扫描，选中行的数值列最低有效位承载水印比特
+            long processedCount = databaseWatermarkProcessor.embed(dataSourceId, tableName, columnName, watermarkContent);
             
             log.info("数据库水印嵌入成功，处理记录数: {}", processedCount);
             return processedCount;
             
+        } catch (BusinessException e) {
+            throw e;
         } catch (Exception e) {
             log.error("向数据库嵌入水印失败", e);
             throw new BusinessException("数据库水印嵌入失败: " + e.getMessage());
@@ -197,7 +199,12 @@ public class WatermarkEmbeddingEngineImpl implements WatermarkEmbeddingEngine {
             switch (fileExtension) {
                 case "pdf":
                     if (WatermarkType.TEXT.getCode().equals(template.getWatermarkType())) {
-                        return embedTextWatermarkToPdf(inputStream, outputStream, template, content);
+                        try (StreamingDocumentProcessor.SpooledInput input = streamingDocumentProcessor.spool(inputStream, fileExtension)) {
+                            if (input.isLarge()) {
+                                return embedTextWatermarkToLargePdf(input, outputStream, template, content);
+                            }
+                            return embedTextWatermarkToPdf(input.openStream(), outputStream, template, content);
+                        }
                     }
                     break;
                     
@@ -211,7 +218,12 @@ public class WatermarkEmbeddingEngineImpl implements WatermarkEmbeddingEngine {
                 case "xls":
                 case "xlsx":
                     if (WatermarkType.TEXT.getCode().equals(template.getWatermarkType())) {
-                        return embedTextWatermarkToExcel(inputStream, outputStream, template, content);
+                        try (StreamingDocumentProcessor.SpooledInput input = streamingDocumentProcessor.spool(inputStream, fileExtension)) {
+                            if (input.isLarge() && "xlsx".equals(fileExtension)) {
+                                return embedTextWatermarkToLargeExcel(input, outputStream, template, content);
+                            }
+                            return embedTextWatermarkToExcel(input.openStream(), outputStream, template, content);
+                        }
                     }
                     break;
                     
@@ -265,6 +277,47 @@ public class WatermarkEmbeddingEngineImpl implements WatermarkEmbeddingEngine {
         return getSupportedFileTypes().contains(fileExtension);
     }
 
+    /**
+     * 流式向大PDF嵌入文本水印，文档以临时文件为后备加载
+     */
+    private boolean embedTextWatermarkToLargePdf(StreamingDocumentProcessor.SpooledInput input, OutputStream outputStream,
+                                                WatermarkTemplate template, String content) {
+        log.info("向大PDF文件流式嵌入文本水印，模板: {}", template.getTemplateName());
+        
+        try {
+            String watermarkText = prepareWatermarkContent(content, template);
+            streamingDocumentProcessor.processPdf(input.getFile(), outputStream,
+                    (document, page) -> addTextWatermarkToPdfPage(document, page, watermarkText, template));
+            
+            log.info("PDF文本水印流式嵌入成功");
+            return true;
+            
+        } catch (Exception e) {
+            log.error("向大PDF文件流式嵌入文本水印失败", e);
+            throw new BusinessException("PDF文本水印嵌入失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 流式向大XLSX嵌入文本水印，逐个工作表改写页眉，不加载整个工作簿
+     */
+    private boolean embedTextWatermarkToLargeExcel(StreamingDocumentProcessor.SpooledInput input, OutputStream outputStream,
+                                                  WatermarkTemplate template, String content) {
+        log.info("向大Excel文档流式嵌入文本水印，模板: {}", template.getTemplateName());
+        
+        try (InputStream sheetStream = input.openStream()) {
+            String watermarkText = prepareWatermarkContent(content, template);
+            streamingDocumentProcessor.embedXlsxHeader(sheetStream, outputStream, watermarkText);
+            
+            log.info("Excel文本水印流式嵌入成功");
+            return true;
+            
+        } catch (Exception e) {
+            log.error("向大Excel文档流式嵌入文本水印失败", e);
+            throw new BusinessException("Excel文本水印嵌入失败: " + e.getMessage());
+        }
+    }
+
     /**
      * 准备水印内容（处理模板变量）
      */
@@ -286,7 +339,7 @@ public class WatermarkEmbeddingEngineImpl implements WatermarkEmbeddingEngine {
     private void addTextWatermarkToPdfPage(PDDocument document, PDPage page, String watermarkText, 
                                           WatermarkTemplate template) throws IOException {
         PDPageContentStream contentStream = new PDPageContentStream(document, page, 
-                PDPageContentStream.AppendMode.OVERWRITE, true, true);
+                PDPageContentStream.AppendMode.APPEND, true, true);
         
         // 设置字体和大小
         contentStream.setFont(PDType1Font.HELVETICA_BOLD, template.getFontSize());
@@ -373,12 +426,8 @@ public class WatermarkEmbeddingEngineImpl implements WatermarkEmbeddingEngine {
      */
     private void addTextWatermarkToExcelSheet(Sheet sheet, String watermarkText, 
                                             WatermarkTemplate template) {
-        // 这里需要实现Excel工作表的水印添加逻辑
-        // 可以通过页眉页脚或背景图片实现
-        // 简化处理，实际项目中需要更复杂的实现
-        
-        // 设置工作表名称作为简单的水印
-        sheet.createRow(0).createCell(0).setCellValue(watermarkText);
+        // 通过页眉写入水印，与流式处理保持一致，且不覆盖已有单元格
+        sheet.getHeader().setCenter(watermarkText.replace("&", "&&"));
     }
 
     /**
@@ -448,15 +497,6 @@ public class WatermarkEmbeddingEngineImpl implements WatermarkEmbeddingEngine {
         return resultImage;
     }
 
-    /**
-     * 模拟数据库水印处理
-     */
-    private long simulateDatabaseWatermarking(Long dataSourceId, String tableName, String watermarkContent) {
-        // 这里应该实现真实的数据库水印处理逻辑
-        // 返回模拟的处理记录数
-        return 1000L;
-    }
-
     /**
      * 获取文件扩展名
      */
@@ -37,6 +37,12 @@ public class WatermarkExtractEngineImpl implements WatermarkExtractEngine {
     @Autowired
     private WatermarkConfig watermarkConfig;
 
+    @Autowired
+    private DatabaseWatermarkProcessor databaseWatermarkProcessor;
+
+    @Autowired
+    private StreamingDocumentProcessor streamingDocumentProcessor;
+
     // 预定义的水印模式
     private static final List<Pattern> WATERMARK_PATTERNS = Arrays.asList(
         Pattern.compile("BankShield\\\\s*-\\\\s*([^-]+)\\\\s*-\\\\s*([\\\\d\\\\-\\\\s:]+)"),
@@ -130,6 +136,7 @@ public class WatermarkExtractEngineImpl implements WatermarkExtractEngine {
             for (int i = 0; i < workbook.getNumberOfSheets(); i++) {
                 Sheet sheet = workbook.getSheetAt(i);
                 textContent.append("Sheet: ").append(sheet.getSheetName()).append("\n");
+                textContent.append(sheet.getHeader().getCenter()).append("\n");
 
                 // 提取单元格内容
                 for (Row row : sheet) {
@@ -181,17 +188,14 @@ public class WatermarkExtractEngineImpl implements WatermarkExtractEngine {
         log.info("从数据库中提取水印，数据源ID: {}, 表名: {}, 列名: {}", dataSourceId, tableName, columnName);
         
         try {
-            // 这里需要实现具体的数据库水印提取逻辑
-            // 1. 连接数据库
-            // 2. 查询伪列或水印列
-            // 3. 提取水印内容
-            
-            // 模拟数据库水印提取
-            String watermarkContent = simulateDatabaseWatermarkExtraction(dataSourceId, tableName, columnName);
+            // 并行扫描主键区间，对选中行的最低有效位按位投票
+            String watermarkContent = databaseWatermarkProcessor.extract(dataSourceId, tableName, columnName);
             
             log.info("数据库水印提取完成，结果: {}", watermarkContent != null ? "成功" : "失败");
             return watermarkContent;
             
+        } catch (BusinessException e) {
+            throw e;
         } catch (Exception e) {
             log.error("从数据库中提取水印失败", e);
             throw new BusinessException("数据库水印提取失败: " + e.getMessage());
@@ -211,7 +215,12 @@ public class WatermarkExtractEngineImpl implements WatermarkExtractEngine {
             
             switch (fileExtension) {
                 case "pdf":
-                    return extractFromPdf(inputStream);
+                    try (StreamingDocumentProcessor.SpooledInput input = streamingDocumentProcessor.spool(inputStream, fileExtension)) {
+                        if (input.isLarge()) {
+                            return extractFromLargeDocument(input, fileExtension);
+                        }
+                        return extractFromPdf(input.openStream());
+                    }
                     
                 case "doc":
                 case "docx":
@@ -219,7 +228,12 @@ public class WatermarkExtractEngineImpl implements WatermarkExtractEngine {
                     
                 case "xls":
                 case "xlsx":
-                    return extractFromExcel(inputStream);
+                    try (StreamingDocumentProcessor.SpooledInput input = streamingDocumentProcessor.spool(inputStream, fileExtension)) {
+                        if (input.isLarge() && "xlsx".equals(fileExtension)) {
+                            return extractFromLargeDocument(input, fileExtension);
+                        }
+                        return extractFromExcel(input.openStream());
+                    }
                     
                 case "jpg":
                 case "jpeg":
@@ -356,6 +370,26 @@ public class WatermarkExtractEngineImpl implements WatermarkExtractEngine {
         return getSupportedFileTypes().contains(fileExtension);
     }
 
+    /**
+     * 流式提取大PDF/XLSX中的水印，逐页或逐行匹配，命中即停止
+     */
+    private String extractFromLargeDocument(StreamingDocumentProcessor.SpooledInput input, String fileExtension) {
+        log.info("流式提取大文档水印，类型: {}", fileExtension);
+        
+        try {
+            String watermarkContent = "pdf".equals(fileExtension)
+                    ? streamingDocumentProcessor.scanPdf(input.getFile(), this::extractWatermarkFromText)
+                    : streamingDocumentProcessor.scanXlsx(input.getFile(), this::extractWatermarkFromText);
+            
+            log.info("大文档水印流式提取完成，结果: {}", watermarkContent != null ? "成功" : "失败");
+            return watermarkContent;
+            
+        } catch (Exception e) {
+            log.error("流式提取大文档水印失败", e);
+            throw new BusinessException("水印提取失败: " + e.getMessage());
+        }
+    }
+
     /**
      * 从文本中提取水印
      */
@@ -463,15 +497,6 @@ public class WatermarkExtractEngineImpl implements WatermarkExtractEngine {
         }
     }
 
-    /**
-     * 模拟数据库水印提取
-     */
-    private String simulateDatabaseWatermarkExtraction(Long dataSourceId, String tableName, String columnName) {
-        // 这里应该实现真实的数据库水印提取逻辑
-        // 返回模拟的水印内容
-        return "BankShield - Database - " + tableName + " - " + System.currentTimeMillis();
-    }
-
     /**
      * 获取单元格内容
      */
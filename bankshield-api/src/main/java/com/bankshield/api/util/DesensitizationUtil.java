@@ -7,8 +7,10 @@ import com.alibaba.fastjson2.JSONObject;
 import lombok.extern.slf4j.Slf4j;
 
 import java.util.Random;
+import java.util.function.UnaryOperator;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 
 /**
  * 数据脱敏工具类
@@ -31,49 +33,93 @@ public class DesensitizationUtil {
         if (StrUtil.isBlank(value)) {
             return value;
         }
-        
+        return compile(algorithmType, algorithmConfig).apply(value);
+    }
+    
+    /**
+     * 将算法类型和配置编译为可复用的脱敏函数
+     * 配置只解析一次，遮盖算法的正则表达式预先编译，适合对整列数据批量脱敏。
+     * 返回的函数线程安全，空白值和处理失败的值原样返回。
+     * 
+     * @param algorithmType 算法类型
+     * @param algorithmConfig 算法配置
+     * @return 脱敏函数
+     */
+    public static UnaryOperator<String> compile(String algorithmType, String algorithmConfig) {
+        JSONObject config;
         try {
-            JSONObject config = StrUtil.isNotBlank(algorithmConfig) 
+            config = StrUtil.isNotBlank(algorithmConfig) 
                 ? JSON.parseObject(algorithmConfig) 
                 : new JSONObject();
-            
-            switch (algorithmType) {
-                case "MASK":
-                    return mask(value, config);
-                case "REPLACE":
-                    return replace(value, config);
-                case "ENCRYPT":
-                    return encrypt(value, config);
-                case "HASH":
-                    return hash(value, config);
-                case "GENERALIZE":
-                    return generalize(value, config);
-                case "SHUFFLE":
-                    return shuffle(value, config);
-                case "TRUNCATE":
-                    return truncate(value, config);
-                default:
-                    log.warn("未知的脱敏算法类型: {}", algorithmType);
-                    return value;
-            }
         } catch (Exception e) {
             log.error("脱敏处理失败: {}", e.getMessage(), e);
-            return value;
+            return UnaryOperator.identity();
         }
+        
+        UnaryOperator<String> algorithm;
+        switch (String.valueOf(algorithmType)) {
+            case "MASK":
+                algorithm = maskOperator(config);
+                break;
+            case "REPLACE":
+                algorithm = value -> replace(value, config);
+                break;
+            case "ENCRYPT":
+                algorithm = value -> encrypt(value, config);
+                break;
+            case "HASH":
+                algorithm = value -> hash(value, config);
+                break;
+            case "GENERALIZE":
+                algorithm = value -> generalize(value, config);
+                break;
+            case "SHUFFLE":
+                algorithm = value -> shuffle(value, config);
+                break;
+            case "TRUNCATE":
+                algorithm = value -> truncate(value, config);
+                break;
+            default:
+                log.warn("未知的脱敏算法类型: {}", algorithmType);
+                return UnaryOperator.identity();
+        }
+        
+        return value -> {
+            if (StrUtil.isBlank(value)) {
+                return value;
+            }
+            try {
+                return algorithm.apply(value);
+            } catch (Exception e) {
+                log.error("脱敏处理失败: {}", e.getMessage(), e);
+                return value;
+            }
+        };
     }
     
     /**
-     * 遮盖算法
+     * 遮盖算法（配置了正则时预编译）
+     * 正则无效时退化为默认遮盖，避免原值未脱敏输出
      */
-    private static String mask(String value, JSONObject config) {
+    private static UnaryOperator<String> maskOperator(JSONObject config) {
         String pattern = config.getString("pattern");
         String replacement = config.getString("replacement");
         
         if (StrUtil.isNotBlank(pattern) && StrUtil.isNotBlank(replacement)) {
-            return value.replaceAll(pattern, replacement);
+            try {
+                Pattern compiled = Pattern.compile(pattern);
+                return value -> compiled.matcher(value).replaceAll(replacement);
+            } catch (PatternSyntaxException e) {
+                log.error("遮盖规则正则无效，使用默认遮盖: {}", e.getMessage());
+            }
         }
-        
-        // 默认遮盖逻辑
+        return value -> mask(value, config);
+    }
+    
+    /**
+     * 默认遮盖算法
+     */
+    private static String mask(String value, JSONObject config) {
         Boolean keepFirst = config.getBoolean("keepFirst");
         String maskChar = config.getString("maskChar");
         if (maskChar == null) {
@@ -0,0 +1,184 @@
+package com.bankshield.api.util;
+
+import org.bouncycastle.crypto.digests.SM3Digest;
+import org.bouncycastle.util.encoders.Hex;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 基于SM3的Merkle树
+ * 叶子节点为 H(0x00 || leaf)，内部节点为 H(0x01 || left || right)，奇数节点直接上移。
+ * 包含证明按层序排列，每层一项：1字节方向（0-兄弟在左，1-兄弟在右）+ 32字节兄弟哈希，
+ * 无兄弟的层不占空间，证明长度为 O(log n)。
+ */
+public final class MerkleTree {
+
+    public static final int HASH_SIZE = 32;
+
+    private static final int PROOF_ENTRY_SIZE = HASH_SIZE + 1;
+    private static final byte LEAF_PREFIX = 0x00;
+    private static final byte NODE_PREFIX = 0x01;
+    private static final byte SIBLING_LEFT = 0;
+    private static final byte SIBLING_RIGHT = 1;
+
+    /**
+     * 各层节点，levels[0] 为叶子层，最后一层为根
+     */
+    private final List<byte[][]> levels;
+
+    private MerkleTree(List<byte[][]> levels) {
+        this.levels = levels;
+    }
+
+    /**
+     * 根据叶子数据构建Merkle树
+     *
+     * @param leaves 叶子数据（通常为记录内容的摘要）
+     * @return Merkle树
+     */
+    public static MerkleTree build(List<byte[]> leaves) {
+        if (leaves == null || leaves.isEmpty()) {
+            throw new IllegalArgumentException("Merkle树叶子不能为空");
+        }
+        List<byte[][]> levels = new ArrayList<>();
+        byte[][] level = new byte[leaves.size()][];
+        for (int i = 0; i < leaves.size(); i++) {
+            level[i] = hashLeaf(leaves.get(i));
+        }
+        levels.add(level);
+        while (level.length > 1) {
+            byte[][] next = new byte[(level.length + 1) / 2][];
+            for (int i = 0; i < level.length; i += 2) {
+                next[i / 2] = i + 1 < level.length ? hashNode(level[i], level[i + 1]) : level[i];
+            }
+            levels.add(next);
+            level = next;
+        }
+        return new MerkleTree(levels);
+    }
+
+    /**
+     * 单遍计算根哈希，不保留中间层（用于整块复核）
+     *
+     * @param leaves 叶子数据
+     * @return 根哈希
+     */
+    public static byte[] computeRoot(List<byte[]> leaves) {
+        if (leaves == null || leaves.isEmpty()) {
+            throw new IllegalArgumentException("Merkle树叶子不能为空");
+        }
+        byte[][] level = new byte[leaves.size()][];
+        for (int i = 0; i < leaves.size(); i++) {
+            level[i] = hashLeaf(leaves.get(i));
+        }
+        int size = level.length;
+        while (size > 1) {
+            int nextSize = (size + 1) / 2;
+            for (int i = 0; i < size; i += 2) {
+                level[i / 2] = i + 1 < size ? hashNode(level[i], level[i + 1]) : level[i];
+            }
+            size = nextSize;
+        }
+        return level[0];
+    }
+
+    public byte[] getRoot() {
+        return levels.get(levels.size() - 1)[0];
+    }
+
+    public String getRootHex() {
+        return Hex.toHexString(getRoot());
+    }
+
+    public int getLeafCount() {
+        return levels.get(0).length;
+    }
+
+    /**
+     * 生成指定叶子的包含证明
+     *
+     * @param index 叶子索引
+     * @return 二进制证明
+     */
+    public byte[] getProof(int index) {
+        if (index < 0 || index >= getLeafCount()) {
+            throw new IndexOutOfBoundsException("叶子索引越界: " + index);
+        }
+        byte[] buffer = new byte[(levels.size() - 1) * PROOF_ENTRY_SIZE];
+        int offset = 0;
+        int position = index;
+        for (int depth = 0; depth < levels.size() - 1; depth++) {
+            byte[][] level = levels.get(depth);
+            int sibling = position ^ 1;
+            if (sibling < level.length) {
+                buffer[offset] = (position & 1) == 0 ? SIBLING_RIGHT : SIBLING_LEFT;
+                System.arraycopy(level[sibling], 0, buffer, offset + 1, HASH_SIZE);
+                offset += PROOF_ENTRY_SIZE;
+            }
+            position >>= 1;
+        }
+        return Arrays.copyOf(buffer, offset);
+    }
+
+    /**
+     * 校验包含证明，O(log n)
+     *
+     * @param leaf 叶子数据
+     * @param proof 二进制证明
+     * @param expectedRoot 期望的根哈希
+     * @return 是否校验通过
+     */
+    public static boolean verifyProof(byte[] leaf, byte[] proof, byte[] expectedRoot) {
+        if (leaf == null || proof == null || expectedRoot == null || proof.length % PROOF_ENTRY_SIZE != 0) {
+            return false;
+        }
+        byte[] current = hashLeaf(leaf);
+        byte[] sibling = new byte[HASH_SIZE];
+        for (int offset = 0; offset < proof.length; offset += PROOF_ENTRY_SIZE) {
+            System.arraycopy(proof, offset + 1, sibling, 0, HASH_SIZE);
+            if (proof[offset] == SIBLING_LEFT) {
+                current = hashNode(sibling, current);
+            } else if (proof[offset] == SIBLING_RIGHT) {
+                current = hashNode(current, sibling);
+            } else {
+                return false;
+            }
+        }
+        return Arrays.equals(current, expectedRoot);
+    }
+
+    /**
+     * 校验包含证明（十六进制根哈希）
+     */
+    public static boolean verifyProof(byte[] leaf, byte[] proof, String expectedRootHex) {
+        if (expectedRootHex == null) {
+            return false;
+        }
+        try {
+            return verifyProof(leaf, proof, Hex.decode(expectedRootHex));
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private static byte[] hashLeaf(byte[] leaf) {
+        SM3Digest digest = new SM3Digest();
+        digest.update(LEAF_PREFIX);
+        digest.update(leaf, 0, leaf.length);
+        byte[] out = new byte[HASH_SIZE];
+        digest.doFinal(out, 0);
+        return out;
+    }
+
+    private static byte[] hashNode(byte[] left, byte[] right) {
+        SM3Digest digest = new SM3Digest();
+        digest.update(NODE_PREFIX);
+        digest.update(left, 0, left.length);
+        digest.update(right, 0, right.length);
+        byte[] out = new byte[HASH_SIZE];
+        digest.doFinal(out, 0);
+        return out;
+    }
+}
@@ -0,0 +1,119 @@
+package com.bankshield.api.component;
+
+import com.bankshield.api.config.AccessLogBufferConfig;
+import com.bankshield.api.entity.AccessDecisionRollup;
+import com.bankshield.api.entity.AccessLog;
+import com.bankshield.api.mapper.AccessDecisionRollupMapper;
+import com.bankshield.api.mapper.AccessLogMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+/**
+ * 访问决策日志写入缓冲测试
+ * 落盘与回放由 JsonlSpillStoreTest 覆盖，这里只验证采样与小时汇总
+ *
+ * @author BankShield
+ */
+public class AccessLogWriteBufferTest {
+
+    @TempDir
+    Path spillDir;
+
+    private final AccessLogMapper logMapper = mock(AccessLogMapper.class);
+    private final AccessDecisionRollupMapper rollupMapper = mock(AccessDecisionRollupMapper.class);
+    private final AccessLogBufferConfig config = new AccessLogBufferConfig();
+    private final AccessLogWriteBuffer buffer = new AccessLogWriteBuffer();
+
+    @BeforeEach
+    void setUp() {
+        config.setFlushIntervalMs(20);
+        config.setSpillDir(spillDir.toString());
+        ReflectionTestUtils.setField(buffer, "accessLogMapper", logMapper);
+        ReflectionTestUtils.setField(buffer, "rollupMapper", rollupMapper);
+        ReflectionTestUtils.setField(buffer, "config", config);
+    }
+
+    @AfterEach
+    void tearDown() {
+        buffer.shutdown();
+    }
+
+    @Test
+    @DisplayName("ALLOW明细按采样率丢弃，DENY全量记录，汇总计数不受采样影响")
+    void testSamplingKeepsDenyAndRollups() {
+        config.setAllowSampleRate(0);
+        buffer.start();
+
+        for (int i = 0; i < 300; i++) {
+            buffer.submit(createLog(i % 3 == 0 ? "DENY" : "ALLOW"));
+        }
+        buffer.shutdown();
+
+        Map<String, Object> stats = buffer.getStatistics();
+        assertEquals(100L, stats.get("flushed"));
+        assertEquals(200L, stats.get("sampledOut"));
+        Map<String, Long> counts = rollupCounts();
+        assertEquals(100L, counts.get("DENY"));
+        assertEquals(200L, counts.get("ALLOW"));
+        verify(logMapper, never()).insert(any(AccessLog.class));
+    }
+
+    @Test
+    @DisplayName("汇总写入失败时计数保留到下次写入")
+    void testRollupRetainedOnFailure() {
+        when(rollupMapper.batchUpsert(anyList())).thenThrow(new RuntimeException("db down")).thenReturn(1);
+        config.setEnabled(false);
+        buffer.start();
+
+        buffer.submit(createLog("ALLOW"));
+        buffer.submit(createLog("ALLOW"));
+
+        assertEquals(2L, buffer.getStatistics().get("flushed"));
+        // 第一次写入失败的计数与第二次合并为同一行写入
+        ArgumentCaptor<List<AccessDecisionRollup>> captor = rollupCaptor();
+        verify(rollupMapper, times(2)).batchUpsert(captor.capture());
+        List<AccessDecisionRollup> retried = captor.getAllValues().get(1);
+        assertEquals(1, retried.size());
+        assertEquals(2L, retried.get(0).getDecisionCount());
+    }
+
+    private Map<String, Long> rollupCounts() {
+        ArgumentCaptor<List<AccessDecisionRollup>> captor = rollupCaptor();
+        verify(rollupMapper, atLeastOnce()).batchUpsert(captor.capture());
+        return captor.getAllValues().stream().flatMap(List::stream).collect(Collectors.groupingBy(
+                AccessDecisionRollup::getAccessResult, Collectors.summingLong(AccessDecisionRollup::getDecisionCount)));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ArgumentCaptor<List<AccessDecisionRollup>> rollupCaptor() {
+        return ArgumentCaptor.forClass(List.class);
+    }
+
+    private AccessLog createLog(String result) {
+        AccessLog accessLog = new AccessLog();
+        accessLog.setUserId(1L);
+        accessLog.setUsername("admin");
+        accessLog.setResourceType("DATA");
+        accessLog.setAction("READ");
+        accessLog.setAccessResult(result);
+        accessLog.setPolicyMatched("POLICY_A");
+        accessLog.setRuleMatched("RULE_A");
+        accessLog.setAccessTime(LocalDateTime.now());
+        return accessLog;
+    }
+}
@@ -0,0 +1,178 @@
+package com.bankshield.api.component;
+
+import com.bankshield.api.config.AuditIntegrityConfig;
+import com.bankshield.api.dto.AuditVerificationProgress;
+import com.bankshield.api.entity.AuditBlock;
+import com.bankshield.api.entity.AuditVerifyCheckpoint;
+import com.bankshield.api.mapper.AuditBlockMapper;
+import com.bankshield.api.mapper.AuditVerifyCheckpointMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 审计完整性全量校验器测试
+ *
+ * @author BankShield
+ */
+public class AuditIntegrityVerifierTest {
+
+    private static final int BLOCKS = 5;
+
+    private AuditBlockMapper blockMapper;
+    private AuditVerifyCheckpointMapper checkpointMapper;
+    private AuditIntegrityVerifier verifier;
+    private final AtomicBoolean failPrefetch = new AtomicBoolean();
+
+    @BeforeEach
+    void setUp() {
+        blockMapper = mock(AuditBlockMapper.class);
+        checkpointMapper = mock(AuditVerifyCheckpointMapper.class);
+        when(blockMapper.selectMaxBlockId()).thenReturn((long) BLOCKS);
+        when(blockMapper.countBlocksBetween(anyLong(), anyLong())).thenReturn((long) BLOCKS);
+        when(blockMapper.selectBlocksBetween(anyLong(), anyLong(), anyInt())).thenAnswer(inv -> {
+            long afterId = inv.getArgument(0);
+            long maxId = inv.getArgument(1);
+            int limit = inv.getArgument(2);
+            if (afterId == 4 && failPrefetch.get()) {
+                throw new IllegalStateException("db down");
+            }
+            List<AuditBlock> page = new ArrayList<>();
+            for (long id = afterId + 1; id <= maxId && page.size() < limit; id++) {
+                page.add(AuditBlock.builder().id(id).blockNumber(id).auditCount(10L).build());
+            }
+            return page;
+        });
+
+        AuditIntegrityConfig config = new AuditIntegrityConfig();
+        config.getVerify().setParallelism(2);
+        config.getVerify().setPageSize(2);
+        config.getVerify().setSyncWaitSeconds(10);
+
+        verifier = new AuditIntegrityVerifier();
+        ReflectionTestUtils.setField(verifier, "blockMapper", blockMapper);
+        ReflectionTestUtils.setField(verifier, "checkpointMapper", checkpointMapper);
+        ReflectionTestUtils.setField(verifier, "config", config);
+        verifier.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        verifier.shutdown();
+    }
+
+    @Test
+    @DisplayName("同步校验不写入检查点")
+    void testSynchronousVerifyDoesNotWriteCheckpoints() {
+        AuditVerificationProgress first = verifier.verify(block -> true);
+        AuditVerificationProgress second = verifier.verify(block -> block.getId() != 3);
+
+        assertEquals(AuditIntegrityVerifier.STATUS_COMPLETED, first.getStatus());
+        assertEquals(BLOCKS, first.getVerifiedBlocks());
+        assertEquals(BLOCKS * 10L, first.getVerifiedAudits());
+        assertEquals(1L, second.getInvalidBlocks());
+        verify(checkpointMapper, never()).insert(any(AuditVerifyCheckpoint.class));
+        verify(checkpointMapper, never()).updateById(any(AuditVerifyCheckpoint.class));
+    }
+
+    @Test
+    @DisplayName("后台校验运行中时同步校验等待并返回其结果")
+    void testVerifyWaitsForRunningBackgroundRun() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        AuditVerificationProgress started = verifier.start(block -> {
+            try {
+                return release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }, false);
+
+        // 重复启动返回正在运行的校验，不抛异常
+        assertEquals(started.getRunId(), verifier.start(block -> true, false).getRunId());
+
+        Thread releaser = new Thread(() -> {
+            sleep(200);
+            release.countDown();
+        });
+        releaser.start();
+        AuditVerificationProgress result = verifier.verify(block -> true);
+        releaser.join();
+
+        assertEquals(started.getRunId(), result.getRunId());
+        assertEquals(AuditIntegrityVerifier.STATUS_COMPLETED, result.getStatus());
+        assertEquals(BLOCKS, result.getVerifiedBlocks());
+        assertEquals(0L, result.getInvalidBlocks());
+        verify(checkpointMapper, times(1)).insert(any(AuditVerifyCheckpoint.class));
+    }
+
+    @Test
+    @DisplayName("从检查点续跑时未提交页不重复计数")
+    void testResumeDoesNotCountPartialPageTwice() {
+        failPrefetch.set(true);
+        verifier.start(block -> block.getId() != 3, false);
+        AuditVerificationProgress failed = awaitFinished();
+
+        assertEquals(AuditIntegrityVerifier.STATUS_FAILED, failed.getStatus());
+        // 第二页（区块3、4）校验期间预取失败，检查点只包含第一页
+        assertEquals(2L, failed.getVerifiedBlocks());
+        assertEquals(0L, failed.getInvalidBlocks());
+        ArgumentCaptor<AuditVerifyCheckpoint> inserted = ArgumentCaptor.forClass(AuditVerifyCheckpoint.class);
+        verify(checkpointMapper).insert(inserted.capture());
+        AuditVerifyCheckpoint checkpoint = inserted.getValue();
+        assertEquals(2L, checkpoint.getLastBlockId());
+        assertEquals(20L, checkpoint.getVerifiedAudits());
+
+        failPrefetch.set(false);
+        when(checkpointMapper.selectLatestUnfinished()).thenReturn(checkpoint);
+        List<Long> resumedIds = new ArrayList<>();
+        verifier.start(block -> {
+            synchronized (resumedIds) {
+                resumedIds.add(block.getId());
+            }
+            return block.getId() != 3;
+        }, true);
+        AuditVerificationProgress resumed = awaitFinished();
+
+        assertEquals(AuditIntegrityVerifier.STATUS_COMPLETED, resumed.getStatus());
+        assertTrue(resumed.getResumed());
+        assertEquals(BLOCKS, resumed.getVerifiedBlocks());
+        assertEquals(BLOCKS * 10L, resumed.getVerifiedAudits());
+        assertEquals(1L, resumed.getInvalidBlocks());
+        assertEquals(List.of(3L), resumed.getInvalidBlockIds());
+        assertEquals(List.of(3L, 4L, 5L), resumedIds.stream().sorted().collect(Collectors.toList()));
+    }
+
+    private AuditVerificationProgress awaitFinished() {
+        AtomicInteger attempts = new AtomicInteger();
+        AuditVerificationProgress progress = verifier.getProgress();
+        while (AuditIntegrityVerifier.STATUS_RUNNING.equals(progress.getStatus()) && attempts.incrementAndGet() < 250) {
+            sleep(20);
+            progress = verifier.getProgress();
+        }
+        return progress;
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package com.bankshield.api.component;
+
+import com.alibaba.fastjson2.JSON;
+import com.bankshield.api.config.AuditBufferConfig;
+import com.bankshield.api.entity.OperationAudit;
+import com.bankshield.api.mapper.OperationAuditMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+/**
+ * 操作审计写入缓冲测试
+ *
+ * @author BankShield
+ */
+public class OperationAuditWriteBufferTest {
+
+    @TempDir
+    Path spillDir;
+
+    private OperationAuditMapper mapper;
+    private AuditBufferConfig config;
+    private OperationAuditWriteBuffer buffer;
+    private final Set<String> inserted = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger insertedRows = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        mapper = mock(OperationAuditMapper.class);
+        when(mapper.batchInsert(anyList())).thenAnswer(inv -> {
+            List<OperationAudit> list = inv.getArgument(0);
+            for (OperationAudit audit : list) {
+                inserted.add(audit.getRequestUrl());
+            }
+            insertedRows.addAndGet(list.size());
+            return list.size();
+        });
+
+        config = new AuditBufferConfig();
+        config.setCapacity(100);
+        config.setBatchSize(50);
+        config.setFlushIntervalMs(20);
+        // 阻塞足够久，保证测试期间不因队列满而落盘
+        config.setOverflowPolicy("BLOCK");
+        config.setBlockTimeoutMs(10000);
+        config.setSpillDir(spillDir.toString());
+
+        buffer = newBuffer();
+        buffer.start();
+    }
+
+    private OperationAuditWriteBuffer newBuffer() {
+        OperationAuditWriteBuffer newBuffer = new OperationAuditWriteBuffer();
+        ReflectionTestUtils.setField(newBuffer, "operationAuditMapper", mapper);
+        ReflectionTestUtils.setField(newBuffer, "config", config);
+        return newBuffer;
+    }
+
+    @AfterEach
+    void tearDown() {
+        buffer.shutdown();
+    }
+
+    @Test
+    @DisplayName("审计记录按批次合并写入，停机时全部落库")
+    void testBatchedFlushAndShutdownDrain() {
+        for (int i = 0; i < 1000; i++) {
+            buffer.submit(createAudit(i));
+        }
+        buffer.shutdown();
+
+        // 每条记录恰好写入一次，既不丢失也不重复
+        assertEquals(1000, insertedRows.get());
+        assertEquals(1000, inserted.size());
+        assertEquals(0L, buffer.getStatistics().get("spilled"));
+        // 1000条记录按50条一批，不应产生1000次数据库往返
+        verify(mapper, atMost(100)).batchInsert(anyList());
+        verify(mapper, never()).insert(any(OperationAudit.class));
+    }
+
+    @Test
+    @DisplayName("停机后提交的记录同步写入")
+    void testSubmitAfterShutdownWritesSynchronously() {
+        buffer.shutdown();
+        buffer.submit(createAudit(1));
+
+        assertEquals(1, insertedRows.get());
+        assertEquals(1L, buffer.getStatistics().get("direct"));
+    }
+
+    @Test
+    @DisplayName("未启用缓冲时同步写入，写库失败则落盘")
+    void testDisabledModeFallsBackToSpill() throws Exception {
+        buffer.shutdown();
+        config.setEnabled(false);
+        buffer = newBuffer();
+        buffer.start();
+        doThrow(new RuntimeException("db down")).when(mapper).batchInsert(anyList());
+
+        buffer.submit(createAudit(1));
+
+        assertEquals(0, insertedRows.get());
+        assertEquals(1L, buffer.getStatistics().get("spilled"));
+        assertEquals(1, Files.readAllLines(spillDir.resolve("operation-audit-spill.jsonl")).size());
+    }
+
+    @Test
+    @DisplayName("回放落盘记录时隔离无法解析的行，每条记录只写入一次")
+    void testReplaySkipsPoisonLineWithoutDuplicates() throws Exception {
+        buffer.shutdown();
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 120; i++) {
+            lines.add(JSON.toJSONString(createAudit(i)));
+            if (i == 70) {
+                lines.add("{\"userId\":1,\"username\":\"adm");
+            }
+        }
+        Files.write(spillDir.resolve("operation-audit-spill.jsonl"), lines);
+
+        buffer = newBuffer();
+        buffer.start();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (insertedRows.get() < 120 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        buffer.shutdown();
+
+        assertEquals(120, insertedRows.get());
+        assertEquals(120, inserted.size());
+        assertEquals(120L, buffer.getStatistics().get("replayed"));
+        assertEquals(1L, buffer.getStatistics().get("quarantined"));
+        assertEquals(1, Files.readAllLines(spillDir.resolve("operation-audit-spill.poison")).size());
+        assertFalse(Files.exists(spillDir.resolve("operation-audit-spill.replaying")));
+    }
+
+    @Test
+    @DisplayName("数据库写入失败时记录落盘，不丢失")
+    void testSpillOnInsertFailure() throws Exception {
+        reset(mapper);
+        when(mapper.batchInsert(anyList())).thenThrow(new RuntimeException("db down"));
+
+        for (int i = 0; i < 10; i++) {
+            buffer.submit(createAudit(i));
+        }
+        buffer.shutdown();
+
+        assertEquals(10L, buffer.getStatistics().get("spilled"));
+        Path spillFile = spillDir.resolve("operation-audit-spill.jsonl");
+        assertTrue(Files.exists(spillFile));
+        assertEquals(10, Files.readAllLines(spillFile).size());
+    }
+
+    private OperationAudit createAudit(int i) {
+        return OperationAudit.builder()
+                .userId(1L)
+                .username("admin")
+                .operationType("查询")
+                .operationModule("用户管理")
+                .requestUrl("/api/user/" + i)
+                .requestMethod("GET")
+                .status(1)
+                .createTime(LocalDateTime.now())
+                .build();
+    }
+}
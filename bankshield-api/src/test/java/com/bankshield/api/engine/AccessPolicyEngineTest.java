@@ -0,0 +1,189 @@
+package com.bankshield.api.engine;
+
+import com.bankshield.api.entity.AccessPolicy;
+import com.bankshield.api.entity.AccessRule;
+import com.bankshield.api.entity.IpBlacklist;
+import com.bankshield.api.entity.IpWhitelist;
+import com.bankshield.api.mapper.AccessPolicyMapper;
+import com.bankshield.api.mapper.AccessRuleMapper;
+import com.bankshield.api.mapper.IpBlacklistMapper;
+import com.bankshield.api.mapper.IpWhitelistMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * 访问策略决策引擎测试
+ *
+ * @author BankShield
+ */
+public class AccessPolicyEngineTest {
+
+    private AccessPolicyMapper policyMapper;
+    private AccessRuleMapper ruleMapper;
+    private IpBlacklistMapper blacklistMapper;
+    private IpWhitelistMapper whitelistMapper;
+    private AccessPolicyEngine engine;
+
+    private final List<AccessPolicy> policies = new ArrayList<>();
+    private final List<AccessRule> rules = new ArrayList<>();
+    private final List<IpBlacklist> blacklists = new ArrayList<>();
+    private final List<IpWhitelist> whitelists = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        policyMapper = mock(AccessPolicyMapper.class);
+        ruleMapper = mock(AccessRuleMapper.class);
+        blacklistMapper = mock(IpBlacklistMapper.class);
+        whitelistMapper = mock(IpWhitelistMapper.class);
+        when(policyMapper.selectEnabledPolicies()).thenReturn(policies);
+        when(ruleMapper.selectList(any())).thenReturn(rules);
+        when(blacklistMapper.selectActive()).thenReturn(blacklists);
+        when(whitelistMapper.selectEnabled()).thenReturn(whitelists);
+
+        engine = new AccessPolicyEngine();
+        ReflectionTestUtils.setField(engine, "policyMapper", policyMapper);
+        ReflectionTestUtils.setField(engine, "ruleMapper", ruleMapper);
+        ReflectionTestUtils.setField(engine, "ipBlacklistMapper", blacklistMapper);
+        ReflectionTestUtils.setField(engine, "ipWhitelistMapper", whitelistMapper);
+        ReflectionTestUtils.setField(engine, "decisionCacheSize", 1000);
+    }
+
+    @Test
+    @DisplayName("按策略优先级匹配，首条命中的规则决定结果")
+    void testPriorityOrder() {
+        policies.add(policy(1L, "DENY_EXPORT", "DENY"));
+        policies.add(policy(2L, "ALLOW_DATA", "ALLOW"));
+        rules.add(rule(1L, "R_DENY_EXPORT", "{\"type\":\"DATA\"}", "{\"action\":[\"EXPORT\",\"DELETE\"]}", null));
+        rules.add(rule(2L, "R_ALLOW_ALL", "{\"type\":\"*\"}", "{\"action\":\"*\"}", null));
+        engine.reload();
+
+        AccessPolicyEngine.AccessDecision denied = engine.decide(1L, "DATA", "EXPORT", "10.0.0.1", false);
+        assertFalse(denied.isAllowed());
+        assertEquals("DENY_EXPORT", denied.getPolicyMatched());
+        assertEquals("R_DENY_EXPORT", denied.getRuleMatched());
+
+        AccessPolicyEngine.AccessDecision allowed = engine.decide(1L, "DATA", "READ", "10.0.0.1", false);
+        assertTrue(allowed.isAllowed());
+        assertEquals("R_ALLOW_ALL", allowed.getRuleMatched());
+
+        assertTrue(engine.decide(1L, "REPORT", "EXPORT", "10.0.0.1", false).isAllowed());
+        // 决策不访问数据库
+        verify(policyMapper, times(1)).selectEnabledPolicies();
+    }
+
+    @Test
+    @DisplayName("MFA与IP白名单环境条件")
+    void testMfaAndWhitelist() {
+        policies.add(policy(1L, "ALLOW_SENSITIVE", "ALLOW"));
+        AccessRule mfaRule = rule(1L, "R_MFA", "{\"type\":\"KEY\"}", null, "{\"ip_whitelist\":true}");
+        mfaRule.setMfaRequired(true);
+        rules.add(mfaRule);
+        whitelists.add(whitelist("192.168.10.0/24", "ALL", null));
+        whitelists.add(whitelist("172.16.0.5", "USER", 7L));
+        engine.reload();
+
+        assertFalse(engine.decide(1L, "KEY", "READ", "192.168.10.8", false).isAllowed());
+        assertTrue(engine.decide(1L, "KEY", "READ", "192.168.10.8", true).isAllowed());
+        assertFalse(engine.decide(1L, "KEY", "READ", "192.168.11.8", true).isAllowed());
+
+        assertTrue(engine.isIpWhitelisted("172.16.0.5", 7L));
+        assertFalse(engine.isIpWhitelisted("172.16.0.5", 8L));
+    }
+
+    @Test
+    @DisplayName("黑名单网段与过期")
+    void testBlacklist() {
+        policies.add(policy(1L, "ALLOW_ALL", "ALLOW"));
+        rules.add(rule(1L, "R_ALL", null, null, null));
+        blacklists.add(blacklist("10.1.0.0/16", null));
+        blacklists.add(blacklist("10.2.0.1", LocalDateTime.now().minusMinutes(1)));
+        engine.reload();
+
+        AccessPolicyEngine.AccessDecision decision = engine.decide(1L, "DATA", "READ", "10.1.200.3", false);
+        assertFalse(decision.isAllowed());
+        assertEquals("IP地址已被封禁", decision.getDenyReason());
+        assertTrue(engine.decide(1L, "DATA", "READ", "10.2.0.1", false).isAllowed());
+    }
+
+    @Test
+    @DisplayName("重建快照后决策缓存失效，无法解析的规则不生效")
+    void testReloadAndInvalidRule() {
+        policies.add(policy(1L, "ALLOW_READ", "ALLOW"));
+        rules.add(rule(1L, "R_READ", null, "{\"action\":\"READ\"}", null));
+        engine.reload();
+        assertTrue(engine.decide(1L, "DATA", "READ", "10.0.0.1", false).isAllowed());
+
+        rules.clear();
+        rules.add(rule(1L, "R_BROKEN", null, "{not json", null));
+        engine.reload();
+        AccessPolicyEngine.AccessDecision decision = engine.decide(1L, "DATA", "READ", "10.0.0.1", false);
+        assertFalse(decision.isAllowed());
+        assertEquals("未匹配到任何允许策略", decision.getDenyReason());
+    }
+
+    @Test
+    @DisplayName("决策缓存满时只淘汰最久未使用的条目，热点决策保留")
+    void testDecisionCacheEvictsLeastRecentlyUsed() {
+        ReflectionTestUtils.setField(engine, "decisionCacheSize", 2);
+        policies.add(policy(1L, "ALLOW_READ", "ALLOW"));
+        rules.add(rule(1L, "R_READ", null, "{\"action\":\"READ\"}", null));
+        engine.reload();
+
+        engine.decide(1L, "DATA", "READ", "10.0.0.1", false);
+        engine.decide(2L, "DATA", "READ", "10.0.0.1", false);
+        engine.decide(1L, "DATA", "READ", "10.0.0.1", false);
+        engine.decide(3L, "DATA", "READ", "10.0.0.1", false);
+
+        Object snapshot = ReflectionTestUtils.getField(engine, "snapshot");
+        Map<?, ?> cache = (Map<?, ?>) ReflectionTestUtils.getField(snapshot, "decisionCache");
+        assertEquals(2, cache.size());
+        assertTrue(cache.containsKey("1|DATA|READ|10.0.0.1|false"));
+        assertTrue(cache.containsKey("3|DATA|READ|10.0.0.1|false"));
+        assertFalse(cache.containsKey("2|DATA|READ|10.0.0.1|false"));
+    }
+
+    private AccessPolicy policy(Long id, String code, String effect) {
+        AccessPolicy policy = new AccessPolicy();
+        policy.setId(id);
+        policy.setPolicyCode(code);
+        policy.setEffect(effect);
+        return policy;
+    }
+
+    private AccessRule rule(Long policyId, String code, String resource, String action, String environment) {
+        AccessRule rule = new AccessRule();
+        rule.setPolicyId(policyId);
+        rule.setRuleCode(code);
+        rule.setResourceCondition(resource);
+        rule.setActionCondition(action);
+        rule.setEnvironmentCondition(environment);
+        rule.setMfaRequired(false);
+        return rule;
+    }
+
+    private IpWhitelist whitelist(String ipRange, String applyTo, Long targetId) {
+        IpWhitelist whitelist = new IpWhitelist();
+        whitelist.setIpRange(ipRange);
+        whitelist.setApplyTo(applyTo);
+        whitelist.setTargetId(targetId);
+        return whitelist;
+    }
+
+    private IpBlacklist blacklist(String ip, LocalDateTime expireTime) {
+        IpBlacklist blacklist = new IpBlacklist();
+        blacklist.setIpAddress(ip);
+        blacklist.setExpireTime(expireTime);
+        return blacklist;
+    }
+}
@@ -0,0 +1,64 @@
+package com.bankshield.api.mapper;
+
+import com.bankshield.api.entity.SecurityScanResult;
+import org.apache.ibatis.binding.MapperMethod;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ParameterMapping;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.session.Configuration;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 扫描结果Mapper映射检查：由MyBatis解析注解语句，批量写入不依赖数据库即可验证SQL存在且列与属性一一对应
+ */
+class SecurityScanResultMapperTest {
+
+    @Test
+    void testBatchInsert_BindsOneRowPerResultWithMatchingColumns() {
+        Configuration configuration = new Configuration();
+        configuration.addMapper(SecurityScanResultMapper.class);
+        MappedStatement statement = configuration.getMappedStatement(SecurityScanResultMapper.class.getName() + ".batchInsert");
+        assertEquals(SqlCommandType.INSERT, statement.getSqlCommandType());
+
+        List<SecurityScanResult> results = Arrays.asList(result(1L, "XSS"), result(1L, "CSRF"));
+        MapperMethod.ParamMap<Object> params = new MapperMethod.ParamMap<>();
+        params.put("results", results);
+        params.put("param1", results);
+        BoundSql boundSql = statement.getBoundSql(params);
+
+        String sql = boundSql.getSql();
+        assertTrue(sql.startsWith("INSERT INTO security_scan_result"));
+        String[] columns = sql.substring(sql.indexOf('(') + 1, sql.indexOf(')')).split(",");
+        List<ParameterMapping> mappings = boundSql.getParameterMappings();
+        assertEquals(columns.length * results.size(), mappings.size());
+        for (int i = 0; i < columns.length; i++) {
+            String property = mappings.get(i).getProperty();
+            String field = property.substring(property.lastIndexOf('.') + 1);
+            assertEquals(columns[i].trim(), toColumn(field), "第" + (i + 1) + "列与属性不对应");
+            // 属性可从实体读取，拼写错误会在此抛出异常
+            boundSql.getAdditionalParameter(property);
+        }
+        assertEquals("CSRF", boundSql.getAdditionalParameter(mappings.get(columns.length + 2).getProperty()));
+    }
+
+    private static String toColumn(String property) {
+        return property.replaceAll("([A-Z])", "_$1").toLowerCase();
+    }
+
+    private static SecurityScanResult result(Long taskId, String riskType) {
+        SecurityScanResult result = new SecurityScanResult();
+        result.setTaskId(taskId);
+        result.setRiskLevel("MEDIUM");
+        result.setRiskType(riskType);
+        result.setDiscoveredTime(LocalDateTime.now());
+        result.setFixStatus("UNFIXED");
+        return result;
+    }
+}
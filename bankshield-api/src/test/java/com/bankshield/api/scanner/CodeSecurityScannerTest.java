@@ -0,0 +1,192 @@
+package com.bankshield.api.scanner;
+
+import com.bankshield.api.entity.ScanRule;
+import com.bankshield.api.entity.VulnerabilityRecord;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
+
+/**
+ * 源代码安全扫描器测试
+ */
+class CodeSecurityScannerTest {
+
+    @TempDir
+    Path sourceDir;
+
+    private CodeSecurityScanner scanner;
+    private List<ScanRule> rules;
+
+    @BeforeEach
+    void setUp() {
+        scanner = new CodeSecurityScanner();
+        ReflectionTestUtils.setField(scanner, "parallelism", 4);
+        // 阈值为0时所有文件都走内存映射读取
+        ReflectionTestUtils.setField(scanner, "mmapThresholdKb", 0);
+        scanner.init();
+        rules = Arrays.asList(
+                rule("HARDCODED_PASSWORD", "password\\s*=\\s*\""),
+                rule("WEAK_HASH", "MessageDigest\\.getInstance\\(\"MD5\"\\)"));
+    }
+
+    @AfterEach
+    void tearDown() {
+        scanner.shutdown();
+    }
+
+    @Test
+    void testScan_FindsAcrossNestedDirectoriesInPathOrder() throws Exception {
+        write("a/Config.java", "class Config {\r\n    String PASSWORD = \"123456\";\r\n}\r\n");
+        write("b/c/Hash.java", "class Hash {\n\n  Object md = MessageDigest.getInstance(\"MD5\"); String password=\"x\";\n}");
+        write("b/readme.txt", "password = \"ignored\"");
+
+        ScanOutcome outcome = scanner.scanJavaCode(1L, sourceDir.toString(), rules);
+        List<VulnerabilityRecord> results = outcome.getFindings();
+
+        assertTrue(outcome.isComplete());
+        assertEquals(Arrays.asList(
+                sourceDir.resolve("a/Config.java") + ":2",
+                sourceDir.resolve("b/c/Hash.java") + ":3",
+                sourceDir.resolve("b/c/Hash.java") + ":3"), locations(results));
+        assertEquals("HARDCODED_PASSWORD", results.get(0).getVulnCode());
+        assertEquals("代码行: String PASSWORD = \"123456\";", results.get(0).getProofOfConcept());
+        assertEquals("HARDCODED_PASSWORD", results.get(1).getVulnCode());
+        assertEquals("WEAK_HASH", results.get(2).getVulnCode());
+        assertEquals(1L, results.get(0).getTaskId());
+    }
+
+    @Test
+    void testRescan_SkipsUnchangedFilesAndRescansChangedOnes() throws Exception {
+        Path file = write("Service.java", "String password = \"secret\";\n");
+        // 修改时间早于扫描超过时间戳精度
+        FileTime modified = FileTime.fromMillis(System.currentTimeMillis() - 60_000);
+        Files.setLastModifiedTime(file, modified);
+        assertEquals(1, scanner.scanJavaCode(1L, sourceDir.toString(), rules).getFindings().size());
+
+        // 大小与修改时间均未变时不读取文件，沿用缓存的发现
+        Files.write(file, "String passwd   = \"secret\";\n".getBytes(StandardCharsets.UTF_8));
+        Files.setLastModifiedTime(file, modified);
+        List<VulnerabilityRecord> cached = scanner.scanJavaCode(2L, sourceDir.toString(), rules).getFindings();
+        assertEquals(1, cached.size());
+        assertEquals(2L, cached.get(0).getTaskId());
+
+        // 修改时间变化后按内容哈希判定为已变更并重新扫描
+        Files.setLastModifiedTime(file, FileTime.fromMillis(modified.toMillis() + 5000));
+        assertTrue(scanner.scanJavaCode(3L, sourceDir.toString(), rules).getFindings().isEmpty());
+
+        // 规则集变化时缓存失效
+        Files.write(file, "String password = \"secret\";\n".getBytes(StandardCharsets.UTF_8));
+        Files.setLastModifiedTime(file, FileTime.fromMillis(modified.toMillis() + 5000));
+        assertTrue(scanner.scanJavaCode(4L, sourceDir.toString(), rules).getFindings().isEmpty());
+        List<ScanRule> changedRules = new ArrayList<>(rules);
+        changedRules.add(rule("SECRET_LITERAL", "\"secret\""));
+        assertEquals(2, scanner.scanJavaCode(5L, sourceDir.toString(), changedRules).getFindings().size());
+    }
+
+    @Test
+    void testRescan_HashesFilesModifiedWithinTimestampGranularity() throws Exception {
+        Path file = write("Service.java", "String password = \"secret\";\n");
+        FileTime modified = Files.getLastModifiedTime(file);
+        assertEquals(1, scanner.scanJavaCode(1L, sourceDir.toString(), rules).getFindings().size());
+
+        // 扫描前后同一时间戳内被改写、大小不变：不能信任大小与修改时间，按内容哈希发现变更
+        Files.write(file, "String passwd   = \"secret\";\n".getBytes(StandardCharsets.UTF_8));
+        Files.setLastModifiedTime(file, modified);
+        assertTrue(scanner.scanJavaCode(2L, sourceDir.toString(), rules).getFindings().isEmpty());
+    }
+
+    @Test
+    void testScan_SkipsUnreadableDirectoryAndContinues() throws Exception {
+        write("a/Config.java", "String password = \"a\";\n");
+        write("locked/Secret.java", "String password = \"b\";\n");
+        write("z/Other.java", "String password = \"c\";\n");
+        Path locked = sourceDir.resolve("locked");
+        Files.setPosixFilePermissions(locked, PosixFilePermissions.fromString("---------"));
+        try {
+            assumeFalse(Files.isReadable(locked), "以root运行时权限不生效");
+
+            ScanOutcome outcome = scanner.scanJavaCode(1L, sourceDir.toString(), rules);
+
+            assertEquals(Arrays.asList(
+                    sourceDir.resolve("a/Config.java") + ":1",
+                    sourceDir.resolve("z/Other.java") + ":1"), locations(outcome.getFindings()));
+            // 跳过路径使结果不完整，但已扫描文件内的发现仍可用于判定修复
+            assertFalse(outcome.isComplete());
+            assertEquals(Collections.singletonList(locked.toString()), outcome.getFailures());
+            assertTrue(outcome.covers(previous("HARDCODED_PASSWORD", sourceDir.resolve("a/Config.java") + ":7")));
+            assertFalse(outcome.covers(previous("HARDCODED_PASSWORD", locked.resolve("Secret.java") + ":1")));
+        } finally {
+            Files.setPosixFilePermissions(locked, PosixFilePermissions.fromString("rwx------"));
+        }
+    }
+
+    @Test
+    void testScan_MissingPathReturnsIncompleteOutcome() {
+        ScanOutcome outcome = scanner.scanJavaCode(1L, sourceDir.resolve("missing").toString(), rules);
+        assertTrue(outcome.getFindings().isEmpty());
+        assertFalse(outcome.isComplete());
+        assertFalse(outcome.covers(previous("HARDCODED_PASSWORD", sourceDir.resolve("missing/A.java") + ":1")));
+    }
+
+    @Test
+    void testScan_InvalidRulePatternMakesOutcomeIncomplete() throws Exception {
+        write("a/Config.java", "String password = \"a\";\n");
+        List<ScanRule> withInvalid = new ArrayList<>(rules);
+        withInvalid.add(rule("INVALID_PATTERN", "("));
+
+        ScanOutcome outcome = scanner.scanJavaCode(1L, sourceDir.toString(), withInvalid);
+
+        // 其余规则照常检测，但无效规则的已有漏洞不能因未再发现而判定为已修复
+        assertEquals(1, outcome.getFindings().size());
+        assertFalse(outcome.isComplete());
+        assertEquals(Collections.singletonList("INVALID_PATTERN"), outcome.getFailures());
+        assertTrue(outcome.covers(previous("HARDCODED_PASSWORD", sourceDir.resolve("a/Config.java") + ":3")));
+        assertFalse(outcome.covers(previous("INVALID_PATTERN", sourceDir.resolve("a/Config.java") + ":1")));
+    }
+
+    private Path write(String relative, String content) throws Exception {
+        Path file = sourceDir.resolve(relative);
+        Files.createDirectories(file.getParent());
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    private static ScanRule rule(String code, String pattern) {
+        ScanRule rule = new ScanRule();
+        rule.setRuleCode(code);
+        rule.setRuleName(code);
+        rule.setSeverity("HIGH");
+        rule.setDetectionPattern(pattern);
+        return rule;
+    }
+
+    private static VulnerabilityRecord previous(String code, String location) {
+        VulnerabilityRecord record = new VulnerabilityRecord();
+        record.setVulnCode(code);
+        record.setLocation(location);
+        return record;
+    }
+
+    private static List<String> locations(List<VulnerabilityRecord> records) {
+        List<String> locations = new ArrayList<>();
+        for (VulnerabilityRecord record : records) {
+            locations.add(record.getLocation());
+        }
+        return locations;
+    }
+}
@@ -0,0 +1,171 @@
+package com.bankshield.api.scanner;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 端口探测引擎测试，使用本地回环监听端口
+ */
+class PortProbeEngineTest {
+
+    private PortProbeEngine engine;
+    private ServerSocket bannerServer;
+    private ServerSocket httpServer;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        engine = new PortProbeEngine();
+        ReflectionTestUtils.setField(engine, "globalConcurrency", 16);
+        ReflectionTestUtils.setField(engine, "perTargetConcurrency", 4);
+        ReflectionTestUtils.setField(engine, "initialTimeoutMs", 1000);
+        ReflectionTestUtils.setField(engine, "minTimeoutMs", 100);
+        ReflectionTestUtils.setField(engine, "maxTimeoutMs", 2000);
+        ReflectionTestUtils.setField(engine, "bannerTimeoutMs", 300);
+        ReflectionTestUtils.setField(engine, "bannerMaxBytes", 512);
+        ReflectionTestUtils.setField(engine, "maxTargets", 300);
+        ReflectionTestUtils.setField(engine, "hostStateTtlMs", 600_000L);
+        engine.init();
+
+        InetAddress loopback = InetAddress.getLoopbackAddress();
+        bannerServer = new ServerSocket(0, 50, loopback);
+        httpServer = new ServerSocket(0, 50, loopback);
+        serve(bannerServer, socket -> {
+            socket.getOutputStream().write("SSH-2.0-OpenSSH_8.9\r\n".getBytes(StandardCharsets.ISO_8859_1));
+        });
+        serve(httpServer, socket -> {
+            InputStream in = socket.getInputStream();
+            byte[] request = new byte[256];
+            in.read(request);
+            OutputStream out = socket.getOutputStream();
+            out.write("HTTP/1.0 200 OK\r\nServer: nginx/1.14.0\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1));
+        });
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        bannerServer.close();
+        httpServer.close();
+        engine.shutdown();
+    }
+
+    @Test
+    void testProbe_OpenClosedAndBanners() throws Exception {
+        int closedPort;
+        try (ServerSocket temporary = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            closedPort = temporary.getLocalPort();
+        }
+        String host = InetAddress.getLoopbackAddress().getHostAddress();
+        int[] ports = {bannerServer.getLocalPort(), httpServer.getLocalPort(), closedPort};
+
+        List<PortProbeResult> results = engine.probe(Collections.singletonList(host), ports, () -> false);
+
+        assertEquals(3, results.size());
+        assertTrue(results.get(0).isOpen());
+        assertEquals("SSH-2.0-OpenSSH_8.9", results.get(0).getBanner());
+        assertTrue(results.get(1).isOpen());
+        assertTrue(results.get(1).getBanner().contains("Server: nginx/1.14.0"));
+        assertEquals(PortProbeResult.CLOSED, results.get(2).getState());
+    }
+
+    @Test
+    void testProbe_HostStateReusedAcrossScansUntilIdleTtl() {
+        String host = InetAddress.getLoopbackAddress().getHostAddress();
+        int[] ports = {bannerServer.getLocalPort()};
+        Map<?, ?> hostStates = (Map<?, ?>) ReflectionTestUtils.getField(engine, "hostStates");
+
+        engine.probe(Collections.singletonList(host), ports, () -> false);
+        Object first = hostStates.get(host);
+        engine.probe(Collections.singletonList(host), ports, () -> false);
+        // 第二次扫描沿用第一次扫描积累的RTT估算
+        assertSame(first, hostStates.get(host));
+
+        ReflectionTestUtils.setField(engine, "hostStateTtlMs", -1L);
+        engine.probe(Collections.singletonList(host), ports, () -> false);
+        assertNotSame(first, hostStates.get(host));
+        assertEquals(1, hostStates.size());
+    }
+
+    @Test
+    void testProbe_HostStateInUseIsNotEvicted() throws Exception {
+        String host = InetAddress.getLoopbackAddress().getHostAddress();
+        int[] ports = {bannerServer.getLocalPort()};
+        Map<?, ?> hostStates = (Map<?, ?>) ReflectionTestUtils.getField(engine, "hostStates");
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread longScan = new Thread(() -> engine.probe(Collections.singletonList(host), ports, () -> {
+            entered.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return false;
+        }));
+        longScan.start();
+        try {
+            assertTrue(entered.await(5, TimeUnit.SECONDS));
+            Object inUse = hostStates.get(host);
+
+            // 长时间扫描仍在进行，空闲淘汰不应使后续扫描新建状态
+            ReflectionTestUtils.setField(engine, "hostStateTtlMs", -1L);
+            engine.probe(Collections.singletonList(host), ports, () -> false);
+            assertSame(inUse, hostStates.get(host));
+        } finally {
+            release.countDown();
+            longScan.join();
+        }
+        engine.probe(Collections.singletonList("localhost"), ports, () -> false);
+        assertFalse(hostStates.containsKey(host));
+    }
+
+    @Test
+    void testProbe_CancelledSkipsAllProbes() {
+        List<PortProbeResult> results = engine.probe(Collections.singletonList("127.0.0.1"),
+                new int[]{bannerServer.getLocalPort()}, () -> true);
+        assertTrue(results.isEmpty());
+    }
+
+    @Test
+    void testExpandTargets() {
+        assertEquals(Arrays.asList("test.example.com", "10.0.0.1", "10.0.0.2", "db01"),
+                engine.expandTargets("http://test.example.com/login, 10.0.0.0/30;db01:3306"));
+        assertEquals(254, engine.expandTargets("192.168.1.77/24").size());
+        assertThrows(IllegalArgumentException.class, () -> engine.expandTargets("10.0.0.0/8"));
+        assertThrows(IllegalArgumentException.class, () -> engine.expandTargets("10.0.0.0/23"));
+    }
+
+    private interface Handler {
+        void handle(Socket socket) throws Exception;
+    }
+
+    private static void serve(ServerSocket server, Handler handler) {
+        Thread thread = new Thread(() -> {
+            while (!server.isClosed()) {
+                try (Socket socket = server.accept()) {
+                    handler.handle(socket);
+                } catch (Exception e) {
+                    // 监听关闭或客户端断开
+                }
+            }
+        });
+        thread.setDaemon(true);
+        thread.start();
+    }
+}
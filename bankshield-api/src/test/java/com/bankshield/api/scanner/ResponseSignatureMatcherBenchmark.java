@@ -0,0 +1,147 @@
+package com.bankshield.api.scanner;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * 漏洞响应特征匹配性能基准
+ * 对比改造前每次调用逐条编译正则、正则预编译但逐条匹配、Aho-Corasick预筛选后确认三种方式，
+ * 每次调用按扫描引擎的四类检测各判定一次，
+ * 运行：在 bankshield-api 目录执行 mvn test-compile 后以 main 方法启动
+ *
+ * @author BankShield
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResponseSignatureMatcherBenchmark {
+
+    private static final String[] CATEGORIES = {
+        VulnerabilitySignatures.SQL_ERROR,
+        VulnerabilitySignatures.CSRF_PROTECTION,
+        VulnerabilitySignatures.TRAVERSAL,
+        VulnerabilitySignatures.COMMAND_OUTPUT
+    };
+
+    /**
+     * 响应体长度（字符）
+     */
+    @Param({"1024", "65536"})
+    private int size;
+
+    /**
+     * 响应末尾是否带有SQL错误回显
+     */
+    @Param({"false", "true"})
+    private boolean vulnerable;
+
+    private String response;
+    private String[][] legacyRegexes;
+    private Pattern[][] precompiled;
+
+    @Setup
+    public void setUp() {
+        StringBuilder builder = new StringBuilder("<html><head><title>网上银行</title></head><body>");
+        int row = 0;
+        while (builder.length() < size) {
+            builder.append("<tr><td>账户").append(row++).append("</td><td class=\"amount\">1,024.00</td></tr>\n");
+        }
+        builder.setLength(size);
+        if (vulnerable) {
+            builder.append("You have an error in your SQL syntax; check the manual for your MySQL server");
+        }
+        response = builder.toString();
+
+        legacyRegexes = new String[CATEGORIES.length][];
+        precompiled = new Pattern[CATEGORIES.length][];
+        for (int c = 0; c < CATEGORIES.length; c++) {
+            List<String> regexes = new ArrayList<>();
+            for (ResponseSignature signature : VulnerabilitySignatures.SIGNATURES) {
+                if (signature.getCategory().equals(CATEGORIES[c])) {
+                    regexes.add(signature.getPattern() != null ? signature.getPattern().pattern()
+                            : Pattern.quote(signature.getLiteral()));
+                }
+            }
+            legacyRegexes[c] = regexes.toArray(new String[0]);
+            precompiled[c] = new Pattern[regexes.size()];
+            for (int i = 0; i < regexes.size(); i++) {
+                precompiled[c][i] = Pattern.compile(regexes.get(i), Pattern.CASE_INSENSITIVE);
+            }
+        }
+    }
+
+    /**
+     * 改造前的实现：每条特征每次调用都重新编译
+     */
+    @Benchmark
+    public void legacyCompilePerCall(Blackhole blackhole) {
+        for (String[] regexes : legacyRegexes) {
+            boolean found = false;
+            for (String regex : regexes) {
+                if (Pattern.compile(regex, Pattern.CASE_INSENSITIVE).matcher(response).find()) {
+                    found = true;
+                    break;
+                }
+            }
+            blackhole.consume(found);
+        }
+    }
+
+    @Benchmark
+    public void precompiledRegexLoop(Blackhole blackhole) {
+        for (Pattern[] patterns : precompiled) {
+            boolean found = false;
+            for (Pattern pattern : patterns) {
+                if (pattern.matcher(response).find()) {
+                    found = true;
+                    break;
+                }
+            }
+            blackhole.consume(found);
+        }
+    }
+
+    @Benchmark
+    public void signatureMatcher(Blackhole blackhole) {
+        for (String category : CATEGORIES) {
+            blackhole.consume(VulnerabilitySignatures.MATCHER.findFirst(response, category));
+        }
+    }
+
+    /**
+     * 单遍扫描得到全部命中特征
+     */
+    @Benchmark
+    public List<ResponseSignature> signatureMatcherAll() {
+        return VulnerabilitySignatures.MATCHER.match(response);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(ResponseSignatureMatcherBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,83 @@
+package com.bankshield.api.scanner;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 响应多模式匹配器测试
+ */
+class ResponseSignatureMatcherTest {
+
+    @Test
+    void testMatch_OverlappingLiteralsAndCaseInsensitive() {
+        ResponseSignatureMatcher matcher = new ResponseSignatureMatcher(Arrays.asList(
+                ResponseSignature.literal("CMD", "root"),
+                ResponseSignature.regex("PASSWD", "root:", "root:.*:.*:.*:"),
+                ResponseSignature.literal("CMD", "oot"),
+                ResponseSignature.regex("SQL", "ole db", "OLE DB.* SQL Server"),
+                ResponseSignature.regex("SQL", "microsoft ole db", "\\(\\$.*Microsoft OLE DB.* SQL Server")));
+
+        List<ResponseSignature> matched = matcher.match("ROOT:x:0:0:root:/root:/bin/bash");
+        assertEquals(Arrays.asList("root", "root:.*:.*:.*:", "oot"), names(matched));
+
+        // 字面量命中但正则未确认
+        assertTrue(matcher.match("root:x").stream().noneMatch(s -> "PASSWD".equals(s.getCategory())));
+
+        ResponseSignature sql = matcher.findFirst("($x) Microsoft OLE DB Provider for SQL Server", "SQL");
+        assertEquals("OLE DB.* SQL Server", sql.getName());
+        assertNull(matcher.findFirst("中文页面 <html>ok</html>", "SQL"));
+        assertTrue(matcher.match(null).isEmpty());
+    }
+
+    @Test
+    void testNonAsciiLiteralRejected() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new ResponseSignatureMatcher(Arrays.asList(ResponseSignature.literal("X", "错误"))));
+    }
+
+    @Test
+    void testDefaultSignatures_AgreeWithPerPatternRegex() {
+        String[] fragments = {
+                "<html>", "</div>", "中文", "SQL syntax near 'x' for MySQL", "Warning: mysql_fetch", "ora-01756",
+                "ORA-123", "Oracle JDBC Driver", "uid=0(root) gid=0", "[boot loader]", "SameSite=lax",
+                "csrf-token", "XSRF_TOKEN", "daemon:x:1:", "bin:", "Reply from 10.0.0.1", "Pinging", "\n",
+                "PostgreSQL query failed: ERROR", "($1) OLE DB provider SQL Native Server", "pg_query", "ole d"
+        };
+        List<Pattern> legacy = new ArrayList<>();
+        for (ResponseSignature signature : VulnerabilitySignatures.SIGNATURES) {
+            legacy.add(signature.getPattern() != null ? signature.getPattern()
+                    : Pattern.compile(Pattern.quote(signature.getLiteral()), Pattern.CASE_INSENSITIVE));
+        }
+
+        Random random = new Random(42);
+        for (int round = 0; round < 2000; round++) {
+            StringBuilder response = new StringBuilder();
+            int parts = random.nextInt(6);
+            for (int i = 0; i < parts; i++) {
+                response.append(fragments[random.nextInt(fragments.length)]);
+            }
+            List<ResponseSignature> expected = new ArrayList<>();
+            for (int i = 0; i < legacy.size(); i++) {
+                if (legacy.get(i).matcher(response).find()) {
+                    expected.add(VulnerabilitySignatures.SIGNATURES.get(i));
+                }
+            }
+            assertEquals(expected, VulnerabilitySignatures.MATCHER.match(response), response.toString());
+        }
+    }
+
+    private static List<String> names(List<ResponseSignature> signatures) {
+        List<String> names = new ArrayList<>();
+        for (ResponseSignature signature : signatures) {
+            names.add(signature.getName());
+        }
+        return names;
+    }
+}
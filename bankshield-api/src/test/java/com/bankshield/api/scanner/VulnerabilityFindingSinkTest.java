@@ -0,0 +1,179 @@
+package com.bankshield.api.scanner;
+
+import com.bankshield.api.entity.SecurityScanTask;
+import com.bankshield.api.entity.VulnerabilityRecord;
+import com.bankshield.api.mapper.VulnerabilityRecordMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 漏洞发现对账写入测试
+ */
+class VulnerabilityFindingSinkTest {
+
+    private VulnerabilityFindingSink sink;
+    private VulnerabilityRecordMapper mapper;
+    private SecurityScanTask task;
+
+    @BeforeEach
+    void setUp() {
+        mapper = mock(VulnerabilityRecordMapper.class);
+        sink = new VulnerabilityFindingSink();
+        ReflectionTestUtils.setField(sink, "vulnerabilityMapper", mapper);
+        ReflectionTestUtils.setField(sink, "batchSize", 2);
+        task = new SecurityScanTask();
+        task.setId(7L);
+        task.setScanTarget("/data/src");
+    }
+
+    @Test
+    void testFirstScan_InsertsInBatchesAndDropsInRunDuplicates() {
+        when(mapper.selectFingerprintsByScope(anyString())).thenReturn(Collections.emptyList());
+        List<VulnerabilityRecord> findings = Arrays.asList(
+                finding("R1", "A.java:1", "代码行: String password = \"x\";"),
+                finding("R1", "A.java:1", "代码行:   String password =  \"x\";  "),
+                finding("R1", "A.java:9", "代码行: String password = \"y\";"),
+                finding("R2", "B.java:3", "代码行: md5()"));
+
+        FindingDelta delta = sink.reconcile(task, "CODE_SCAN", ScanOutcome.complete(findings));
+
+        assertEquals(3, delta.getFoundCount());
+        assertEquals(3, delta.getNewCount());
+        ArgumentCaptor<List<VulnerabilityRecord>> batches = ArgumentCaptor.forClass(List.class);
+        verify(mapper, times(2)).batchInsert(batches.capture());
+        assertEquals(2, batches.getAllValues().get(0).size());
+        assertEquals(1, batches.getAllValues().get(1).size());
+        VulnerabilityRecord inserted = batches.getAllValues().get(0).get(0);
+        assertEquals(VulnerabilityFindingSink.scopeKey("CODE_SCAN", "/data/src"), inserted.getScopeKey());
+        assertEquals(64, inserted.getFingerprint().length());
+        verify(mapper, never()).reopenByIds(anyList(), anyLong());
+        verify(mapper, never()).resolveByIds(anyList(), anyString(), anyString());
+    }
+
+    @Test
+    void testRescan_EmitsOnlyNewReopenedAndFixedDeltas() {
+        VulnerabilityRecord unchanged = finding("R1", "A.java:1", "代码行: a");
+        VulnerabilityRecord reopened = finding("R1", "A.java:2", "代码行: b");
+        VulnerabilityRecord fixed = finding("R1", "A.java:3", "代码行: c");
+        VulnerabilityRecord accepted = finding("R1", "A.java:4", "代码行: d");
+        when(mapper.selectFingerprintsByScope(VulnerabilityFindingSink.scopeKey("CODE_SCAN", "/data/src")))
+                .thenReturn(Arrays.asList(
+                        stored("CODE_SCAN", 1L, unchanged, "OPEN"),
+                        stored("CODE_SCAN", 2L, reopened, "RESOLVED"),
+                        stored("CODE_SCAN", 3L, fixed, "IN_PROGRESS"),
+                        stored("CODE_SCAN", 4L, accepted, "WONT_FIX")));
+
+        List<VulnerabilityRecord> findings = new ArrayList<>();
+        findings.add(finding("R1", "A.java:1", "代码行:  a "));
+        findings.add(finding("R1", "A.java:2", "代码行: b"));
+        findings.add(finding("R2", "A.java:5", "代码行: e"));
+        FindingDelta delta = sink.reconcile(task, "CODE_SCAN", ScanOutcome.complete(findings));
+
+        assertEquals(3, delta.getFoundCount());
+        assertEquals(1, delta.getNewCount());
+        assertEquals(1, delta.getReopenedCount());
+        assertEquals(1, delta.getFixedCount());
+        assertEquals(1, delta.getUnchangedCount());
+        verify(mapper).batchInsert(argThat(records -> records.size() == 1 && "R2".equals(records.get(0).getVulnCode())));
+        verify(mapper).reopenByIds(Collections.singletonList(2L), 7L);
+        verify(mapper).resolveByIds(eq(Collections.singletonList(3L)), eq("SYSTEM_SCANNER"), anyString());
+        // 未变化的漏洞记到本次任务下，任务漏洞列表与发现数一致
+        verify(mapper).markSeenByIds(Collections.singletonList(1L), 7L);
+    }
+
+    @Test
+    void testCodeScan_LineShiftKeepsFingerprint() {
+        VulnerabilityRecord previous = finding("R1", "/data/src/A.java:3", "代码行: String password = \"x\";");
+        when(mapper.selectFingerprintsByScope(anyString()))
+                .thenReturn(Collections.singletonList(stored("CODE_SCAN", 1L, previous, "OPEN")));
+
+        // 文件顶部插入一行后同一代码下移到第4行
+        FindingDelta delta = sink.reconcile(task, "CODE_SCAN", ScanOutcome.complete(Collections.singletonList(
+                finding("R1", "/data/src/A.java:4", "代码行: String password = \"x\";"))));
+
+        assertEquals(1, delta.getUnchangedCount());
+        assertEquals(0, delta.getNewCount());
+        assertEquals(0, delta.getFixedCount());
+        verify(mapper, never()).batchInsert(anyList());
+        verify(mapper, never()).resolveByIds(anyList(), anyString(), anyString());
+        verify(mapper).markSeenByIds(Collections.singletonList(1L), 7L);
+    }
+
+    @Test
+    void testIncompleteScan_KeepsUnseenFindingsOpen() {
+        VulnerabilityRecord previous = finding("SQL1", "http://target/api", "检测到SQL注入特征: or 1=1");
+        when(mapper.selectFingerprintsByScope(anyString()))
+                .thenReturn(Collections.singletonList(stored("SQL_INJECTION", 1L, previous, "OPEN")));
+
+        // 规则检测出错时未发现不代表已修复
+        FindingDelta delta = sink.reconcile(task, "SQL_INJECTION",
+                ScanOutcome.incomplete(Collections.emptyList(), Collections.singletonList("SQL1")));
+
+        assertEquals(0, delta.getFixedCount());
+        verify(mapper, never()).resolveByIds(anyList(), anyString(), anyString());
+    }
+
+    @Test
+    void testIncompleteCodeScan_ResolvesOnlyFindingsInScannedFiles() {
+        VulnerabilityRecord inScannedFile = finding("R1", "/data/src/A.java:3", "代码行: a");
+        VulnerabilityRecord inFailedFile = finding("R1", "/data/src/B.java:3", "代码行: b");
+        when(mapper.selectFingerprintsByScope(anyString())).thenReturn(Arrays.asList(
+                stored("CODE_SCAN", 1L, inScannedFile, "OPEN"),
+                stored("CODE_SCAN", 2L, inFailedFile, "OPEN")));
+
+        ScanOutcome outcome = new ScanOutcome(Collections.emptyList(), false,
+                Collections.singleton("/data/src/A.java"), Collections.singletonList("/data/src/B.java"));
+        FindingDelta delta = sink.reconcile(task, "CODE_SCAN", outcome);
+
+        assertEquals(1, delta.getFixedCount());
+        verify(mapper).resolveByIds(eq(Collections.singletonList(1L)), eq("SYSTEM_SCANNER"), anyString());
+    }
+
+    @Test
+    void testFailedRule_KeepsItsFindingsOpenInScannedFiles() {
+        VulnerabilityRecord validRule = finding("R1", "/data/src/A.java:3", "代码行: a");
+        VulnerabilityRecord invalidRule = finding("R2", "/data/src/A.java:5", "代码行: b");
+        when(mapper.selectFingerprintsByScope(anyString())).thenReturn(Arrays.asList(
+                stored("CODE_SCAN", 1L, validRule, "OPEN"),
+                stored("CODE_SCAN", 2L, invalidRule, "IN_PROGRESS")));
+
+        // 规则R2的正则无效未执行，文件已扫描也不能说明其漏洞已修复
+        ScanOutcome outcome = new ScanOutcome(Collections.emptyList(), false,
+                Collections.singleton("/data/src/A.java"), Collections.singletonList("R2"), Collections.singleton("R2"));
+        FindingDelta delta = sink.reconcile(task, "CODE_SCAN", outcome);
+
+        assertEquals(1, delta.getFixedCount());
+        verify(mapper).resolveByIds(eq(Collections.singletonList(1L)), eq("SYSTEM_SCANNER"), anyString());
+    }
+
+    private static VulnerabilityRecord finding(String code, String location, String proof) {
+        VulnerabilityRecord record = new VulnerabilityRecord();
+        record.setVulnCode(code);
+        record.setLocation(location);
+        record.setProofOfConcept(proof);
+        record.setSeverity("HIGH");
+        record.setStatus("OPEN");
+        return record;
+    }
+
+    private static VulnerabilityRecord stored(String category, Long id, VulnerabilityRecord finding, String status) {
+        VulnerabilityRecord record = new VulnerabilityRecord();
+        record.setId(id);
+        record.setFingerprint(VulnerabilityFindingSink.fingerprint(category, finding));
+        record.setStatus(status);
+        record.setVulnCode(finding.getVulnCode());
+        record.setLocation(finding.getLocation());
+        return record;
+    }
+}
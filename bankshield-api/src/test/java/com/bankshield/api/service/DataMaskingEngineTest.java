@@ -14,10 +14,14 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
-import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.*;
 
 /**
  * 数据脱敏引擎测试类
@@ -230,4 +234,43 @@ class DataMaskingEngineTest {
         assertEquals("张三", result.get("name")); // 未脱敏字段保持不变
         assertEquals("zhangsan@example.com", result.get("email")); // 未脱敏字段保持不变
     }
-}
\ No newline at end of file
+
+    @Test
+    void testMaskColumn_CompilesPlanOnce() throws Exception {
+        MaskingAlgorithmParams params = MaskingAlgorithmParams.builder()
+                .keepPrefix(3)
+                .keepSuffix(4)
+                .maskChar("*")
+                .build();
+        when(objectMapper.readValue(phoneRule.getAlgorithmParams(), MaskingAlgorithmParams.class))
+                .thenReturn(params);
+
+        String[] result = maskingEngine.maskColumn(
+                new String[]{"13812345678", null, "", "13987654321"}, phoneRule);
+        maskingEngine.maskData("13711111111", phoneRule);
+
+        assertArrayEquals(new String[]{"138****5678", null, "", "139****4321"}, result);
+        verify(objectMapper, times(1)).readValue(phoneRule.getAlgorithmParams(), MaskingAlgorithmParams.class);
+    }
+
+    @Test
+    void testMaskByType_PlanInvalidatedOnRuleChange() {
+        DataMaskingRule fullMaskRule = DataMaskingRule.builder()
+                .id(3L)
+                .ruleName("手机号完整掩码")
+                .sensitiveDataType(SensitiveDataType.PHONE.getCode())
+                .maskingAlgorithm(MaskingAlgorithm.FULL_MASK.getCode())
+                .enabled(true)
+                .build();
+        when(maskingRuleService.getRulesVersion()).thenReturn(0L, 0L, 1L);
+        when(maskingRuleService.getRulesBySensitiveType(anyString(), anyString()))
+                .thenReturn(Collections.singletonList(phoneRule), Collections.singletonList(fullMaskRule));
+
+        String type = SensitiveDataType.PHONE.getCode();
+        String scenario = MaskingScenario.DISPLAY.getCode();
+        assertEquals("138****5678", maskingEngine.maskByType("13812345678", type, scenario));
+        assertEquals("139****4321", maskingEngine.maskByType("13987654321", type, scenario));
+        assertEquals("***********", maskingEngine.maskByType("13812345678", type, scenario));
+        verify(maskingRuleService, times(2)).getRulesBySensitiveType(type, scenario);
+    }
+}
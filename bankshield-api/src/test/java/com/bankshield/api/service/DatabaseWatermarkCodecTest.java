@@ -0,0 +1,74 @@
+package com.bankshield.api.service;
+
+import com.bankshield.api.service.impl.DatabaseWatermarkCodec;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.BitSet;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 数据库水印编解码测试类
+ */
+class DatabaseWatermarkCodecTest {
+
+    private static final String CONTENT = "BankShield-泄露溯源-user01";
+
+    private final DatabaseWatermarkCodec codec = new DatabaseWatermarkCodec("test-secret", 10, 32);
+
+    @Test
+    void testEmbedAndExtract_SurvivesRowDeletionAndNoise() {
+        BitSet mark = codec.encode(CONTENT);
+        Random random = new Random(42);
+        long[] values = new long[200_000];
+        for (int pk = 0; pk < values.length; pk++) {
+            long value = random.nextInt(1_000_000);
+            int slot = codec.slot(String.valueOf(pk));
+            values[pk] = slot < 0 ? value : (Long) codec.embed(value, mark, slot);
+        }
+
+        // 泄露副本只保留一半的行，且10%的值被篡改
+        DatabaseWatermarkCodec.Votes votes = codec.newVotes();
+        for (int pk = 0; pk < values.length; pk += 2) {
+            long value = random.nextInt(10) == 0 ? values[pk] + 1 : values[pk];
+            int slot = codec.slot(String.valueOf(pk));
+            if (slot >= 0) {
+                votes.vote(slot, DatabaseWatermarkCodec.leastSignificantBit(value));
+            }
+        }
+
+        assertEquals(CONTENT, codec.decode(votes));
+        assertTrue(votes.getAgreement() > 0.85);
+    }
+
+    @Test
+    void testExtract_WrongKeyOrUnmarkedData() {
+        DatabaseWatermarkCodec other = new DatabaseWatermarkCodec("other-secret", 10, 32);
+        DatabaseWatermarkCodec.Votes votes = other.newVotes();
+        Random random = new Random(7);
+        for (int pk = 0; pk < 100_000; pk++) {
+            int slot = other.slot(String.valueOf(pk));
+            if (slot >= 0) {
+                votes.vote(slot, random.nextInt(2));
+            }
+        }
+        assertNull(other.decode(votes));
+        assertNull(codec.decode(codec.newVotes()));
+    }
+
+    @Test
+    void testEmbed_KeepsDecimalScaleAndRejectsOversizedContent() {
+        BitSet mark = codec.encode(CONTENT);
+        int slot = codec.slot("1");
+        for (int pk = 2; slot < 0; pk++) {
+            slot = codec.slot(String.valueOf(pk));
+        }
+        BigDecimal marked = (BigDecimal) codec.embed(new BigDecimal("1234.50"), mark, slot);
+        assertEquals(2, marked.scale());
+        assertTrue(marked.subtract(new BigDecimal("1234.50")).abs().compareTo(new BigDecimal("0.01")) <= 0);
+
+        assertThrows(IllegalArgumentException.class, () -> codec.encode(new String(new char[33]).replace('\0', 'x')));
+    }
+}
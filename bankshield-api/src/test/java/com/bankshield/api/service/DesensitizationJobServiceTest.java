@@ -0,0 +1,151 @@
+package com.bankshield.api.service;
+
+import com.bankshield.api.dto.DesensitizationJobProgress;
+import com.bankshield.api.dto.DesensitizationJobRequest;
+import com.bankshield.api.entity.DesensitizationRule;
+import com.bankshield.api.mapper.DesensitizationRuleMapper;
+import com.bankshield.api.service.impl.DesensitizationJobServiceImpl;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 流式脱敏任务测试类
+ */
+class DesensitizationJobServiceTest {
+
+    @TempDir
+    Path workDir;
+
+    private DesensitizationService desensitizationService;
+    private DesensitizationJobServiceImpl jobService;
+
+    @BeforeEach
+    void setUp() {
+        DesensitizationRule rule = new DesensitizationRule();
+        rule.setRuleCode("MASK_NAME");
+        rule.setAlgorithmType("MASK");
+        rule.setAlgorithmConfig("{\"keepFirst\": true}");
+        DesensitizationRuleMapper ruleMapper = mock(DesensitizationRuleMapper.class);
+        when(ruleMapper.selectByRuleCode("MASK_NAME")).thenReturn(rule);
+        desensitizationService = mock(DesensitizationService.class);
+
+        jobService = new DesensitizationJobServiceImpl();
+        ReflectionTestUtils.setField(jobService, "ruleMapper", ruleMapper);
+        ReflectionTestUtils.setField(jobService, "desensitizationService", desensitizationService);
+        ReflectionTestUtils.setField(jobService, "workDir", workDir.toString());
+        ReflectionTestUtils.setField(jobService, "defaultBatchSize", 100);
+        ReflectionTestUtils.setField(jobService, "defaultParallelism", 3);
+        ReflectionTestUtils.setField(jobService, "maxParallelism", 8);
+        ReflectionTestUtils.setField(jobService, "maxConcurrentJobs", 1);
+        ReflectionTestUtils.setField(jobService, "fetchSize", 100);
+        ReflectionTestUtils.setField(jobService, "sourceTables", new String[]{"t_customer", "masked_customer"});
+        ReflectionTestUtils.setField(jobService, "targetTablePrefix", "masked_");
+        jobService.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        jobService.shutdown();
+    }
+
+    @Test
+    void testCsvJob_MasksColumnInOrder() throws Exception {
+        List<String> lines = new ArrayList<>();
+        lines.add("id,name,city");
+        for (int i = 0; i < 1050; i++) {
+            lines.add(i + ",张三" + i + ",杭州");
+        }
+        Files.write(workDir.resolve("in.csv"), lines, StandardCharsets.UTF_8);
+
+        DesensitizationJobRequest request = new DesensitizationJobRequest();
+        request.setSourceType("CSV");
+        request.setSourceFile("in.csv");
+        request.setTargetFile("out/masked.csv");
+        request.setColumns(Arrays.asList("id", "name"));
+        request.setColumnRules(Collections.singletonMap("name", "MASK_NAME"));
+
+        DesensitizationJobProgress progress = awaitFinished(jobService.submitJob(request, "u1", "tester"));
+
+        assertEquals("COMPLETED", progress.getStatus(), progress.getErrorMessage());
+        assertEquals(1050L, progress.getWrittenRows());
+        List<String> output = Files.readAllLines(workDir.resolve("out/masked.csv"), StandardCharsets.UTF_8);
+        assertEquals("id,name", output.get(0));
+        assertEquals(1051, output.size());
+        assertEquals("0,张**", output.get(1));
+        assertEquals("1049,张*****", output.get(1050));
+        assertFalse(Files.exists(workDir.resolve("out/masked.csv.part")));
+        verify(desensitizationService).logDesensitization(eq("STREAM_JOB"), eq("MASK_NAME"), eq("u1"), eq("tester"),
+                anyString(), eq("name"), anyString(), contains("吞吐量"), eq("MASK"), eq(1050));
+    }
+
+    @Test
+    void testSubmit_RejectsInvalidInput() throws Exception {
+        DesensitizationJobRequest request = new DesensitizationJobRequest();
+        request.setSourceType("CSV");
+        request.setSourceFile("../etc/passwd");
+        request.setTargetFile("out.csv");
+        request.setColumnRules(Collections.singletonMap("name", "MASK_NAME"));
+        assertThrows(IllegalArgumentException.class, () -> jobService.submitJob(request, "u1", "tester"));
+
+        // 未显式列出输出列时拒绝，避免未配置规则的列被原样复制
+        Files.write(workDir.resolve("in.csv"), Collections.singletonList("id,name"), StandardCharsets.UTF_8);
+        request.setSourceFile("in.csv");
+        assertThrows(IllegalArgumentException.class, () -> jobService.submitJob(request, "u1", "tester"));
+        request.setColumns(Arrays.asList("id", "name"));
+
+        request.setSourceType("TABLE");
+        request.setSourceTable("t_customer; DROP TABLE t_user");
+        request.setTargetTable("t_customer_masked");
+        assertThrows(IllegalArgumentException.class, () -> jobService.submitJob(request, "u1", "tester"));
+    }
+
+    @Test
+    void testSubmit_ConfinesTablesToAllowlistAndMaskingPrefix() {
+        DesensitizationJobRequest request = new DesensitizationJobRequest();
+        request.setSourceType("TABLE");
+        request.setColumns(Arrays.asList("id", "name"));
+        request.setColumnRules(Collections.singletonMap("name", "MASK_NAME"));
+
+        // 带库名限定的表名、未列入允许列表的源表一律拒绝
+        assertRejected(request, "mysql.user", "masked_user");
+        assertRejected(request, "sys_user", "masked_user");
+        // 目标表只能是带脱敏前缀的专用表，不能写入业务表或其他库
+        assertRejected(request, "t_customer", "sys_user_role");
+        assertRejected(request, "t_customer", "other_db.masked_customer");
+        // 源表与目标表相同时游标读取期间会插入同一张表
+        assertRejected(request, "masked_customer", "MASKED_CUSTOMER");
+    }
+
+    private void assertRejected(DesensitizationJobRequest request, String sourceTable, String targetTable) {
+        request.setSourceTable(sourceTable);
+        request.setTargetTable(targetTable);
+        assertThrows(IllegalArgumentException.class, () -> jobService.submitJob(request, "u1", "tester"),
+                sourceTable + " -> " + targetTable);
+    }
+
+    private DesensitizationJobProgress awaitFinished(String jobId) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        DesensitizationJobProgress progress = jobService.getProgress(jobId);
+        while ("RUNNING".equals(progress.getStatus())) {
+            assertTrue(System.currentTimeMillis() < deadline, "脱敏任务未在预期时间内完成");
+            Thread.sleep(20);
+            progress = jobService.getProgress(jobId);
+        }
+        return progress;
+    }
+}
@@ -0,0 +1,169 @@
+package com.bankshield.api.service;
+
+import com.bankshield.api.entity.SecurityScanResult;
+import com.bankshield.api.entity.SecurityScanTask;
+import com.bankshield.api.mapper.SecurityScanResultMapper;
+import com.bankshield.api.scanner.PortProbeEngine;
+import com.bankshield.api.service.impl.SecurityScanEngineImpl;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+/**
+ * 漏洞扫描编排测试，使用本地回显HTTP服务
+ */
+class SecurityScanOrchestrationTest {
+
+    private SecurityScanEngineImpl engine;
+    private SecurityScanResultMapper scanResultMapper;
+    private HttpServer server;
+    private final AtomicInteger requestCount = new AtomicInteger();
+    private volatile CountDownLatch slowRequests;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        // 原样回显查询参数，既无CSRF保护也不做输出编码
+        server.createContext("/echo", exchange -> {
+            requestCount.incrementAndGet();
+            String query = exchange.getRequestURI().getQuery();
+            byte[] body = ("<html>" + (query == null ? "" : query) + "</html>").getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.createContext("/slow", exchange -> {
+            requestCount.incrementAndGet();
+            slowRequests.countDown();
+            try {
+                Thread.sleep(300);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+        });
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+
+        scanResultMapper = mock(SecurityScanResultMapper.class);
+        engine = new SecurityScanEngineImpl();
+        ReflectionTestUtils.setField(engine, "scanResultMapper", scanResultMapper);
+        ReflectionTestUtils.setField(engine, "portProbeEngine", mock(PortProbeEngine.class));
+        ReflectionTestUtils.setField(engine, "orchestratorParallelism", 4);
+        ReflectionTestUtils.setField(engine, "resultBatchSize", 3);
+        ReflectionTestUtils.setField(engine, "maxResponseBytes", 4096);
+        engine.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+        engine.shutdown();
+    }
+
+    @Test
+    void testExecuteVulnerabilityScan_StreamsResultsInBatches() {
+        SecurityScanTask task = task(1L, baseUrl() + "/echo");
+
+        int riskCount = engine.executeVulnerabilityScan(task);
+
+        // 含尖括号的7个XSS payload被原样回显，外加1个CSRF
+        assertEquals(8, riskCount);
+        ArgumentCaptor<List<SecurityScanResult>> batches = ArgumentCaptor.forClass(List.class);
+        verify(scanResultMapper, times(3)).batchInsert(batches.capture());
+        assertEquals(3, batches.getAllValues().get(0).size());
+        assertEquals(3, batches.getAllValues().get(1).size());
+        assertEquals(2, batches.getAllValues().get(2).size());
+        long xssCount = batches.getAllValues().stream().flatMap(List::stream)
+                .filter(result -> "XSS".equals(result.getRiskType()))
+                .peek(result -> assertEquals("MEDIUM", result.getRiskLevel()))
+                .count();
+        assertEquals(7, xssCount);
+        assertEquals(0, engine.getScanProgress(task));
+    }
+
+    @Test
+    void testExecuteVulnerabilityScan_FlushFailureDoesNotMaskScanFailure() {
+        when(scanResultMapper.batchInsert(anyList())).thenThrow(new IllegalStateException("db down"));
+        SecurityScanTask task = task(4L, baseUrl() + "/echo");
+
+        RuntimeException error = assertThrows(RuntimeException.class, () -> engine.executeVulnerabilityScan(task));
+
+        // 扫描失败原因保留在主异常上，剩余结果写入失败作为附加异常
+        assertEquals("漏洞扫描失败: db down", error.getMessage());
+        assertEquals(1, error.getSuppressed().length);
+        assertEquals("db down", error.getSuppressed()[0].getMessage());
+    }
+
+    @Test
+    void testPerformVulnerabilityScan_KeepsSubmissionOrder() {
+        SecurityScanTask task = task(2L, baseUrl() + "/echo");
+
+        List<SecurityScanResult> first = engine.performVulnerabilityScan(task);
+        List<SecurityScanResult> second = engine.performVulnerabilityScan(task);
+
+        assertEquals(8, first.size());
+        for (int i = 0; i < first.size(); i++) {
+            assertEquals(first.get(i).getRiskType(), second.get(i).getRiskType());
+            assertEquals(first.get(i).getRiskDetails(), second.get(i).getRiskDetails());
+        }
+        verify(scanResultMapper, never()).batchInsert(anyList());
+    }
+
+    @Test
+    void testStopScan_CancelsRemainingUnits() throws Exception {
+        slowRequests = new CountDownLatch(1);
+        SecurityScanTask task = task(3L, baseUrl() + "/slow");
+
+        Thread stopper = new Thread(() -> {
+            try {
+                slowRequests.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            engine.stopScan(task);
+        });
+        stopper.start();
+        long start = System.nanoTime();
+        int riskCount = engine.executeVulnerabilityScan(task);
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        stopper.join();
+
+        assertEquals(0, riskCount);
+        // 共30个检测请求，每个耗时300ms；停止后不应再发起剩余请求
+        assertTrue(elapsedMillis < 2000, "停止后未及时返回: " + elapsedMillis + "ms");
+        Thread.sleep(400);
+        assertTrue(requestCount.get() < 30, "停止后仍在发送请求: " + requestCount.get());
+    }
+
+    private String baseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    private static SecurityScanTask task(Long id, String target) {
+        SecurityScanTask task = new SecurityScanTask();
+        task.setId(id);
+        task.setTaskName("编排测试-" + id);
+        task.setScanTarget(target);
+        return task;
+    }
+}
@@ -0,0 +1,94 @@
+package com.bankshield.api.service;
+
+import com.bankshield.api.config.WatermarkConfig;
+import com.bankshield.api.service.impl.StreamingDocumentProcessor;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 大文档流式水印处理测试类
+ */
+class StreamingDocumentProcessorTest {
+
+    private static final String WATERMARK = "BankShield - 财务部 - 2024-01-01 10:00:00";
+
+    @TempDir
+    Path tempDir;
+
+    private StreamingDocumentProcessor processor;
+
+    @BeforeEach
+    void setUp() {
+        WatermarkConfig config = new WatermarkConfig();
+        config.getStream().setThresholdMb(1);
+        config.getStream().setTempPath(tempDir.toString());
+        processor = new StreamingDocumentProcessor();
+        ReflectionTestUtils.setField(processor, "watermarkConfig", config);
+    }
+
+    @Test
+    void testXlsxHeader_RoundTripKeepsCells() throws Exception {
+        ByteArrayOutputStream original = new ByteArrayOutputStream();
+        try (XSSFWorkbook workbook = new XSSFWorkbook()) {
+            for (int s = 0; s < 2; s++) {
+                Sheet sheet = workbook.createSheet("报表" + s);
+                for (int r = 0; r < 500; r++) {
+                    sheet.createRow(r).createCell(0).setCellValue("行" + r);
+                }
+            }
+            workbook.write(original);
+        }
+
+        Path marked = tempDir.resolve("marked.xlsx");
+        try (OutputStream out = Files.newOutputStream(marked)) {
+            processor.embedXlsxHeader(new ByteArrayInputStream(original.toByteArray()), out, WATERMARK);
+        }
+
+        try (XSSFWorkbook workbook = new XSSFWorkbook(marked.toFile())) {
+            for (int s = 0; s < 2; s++) {
+                Sheet sheet = workbook.getSheetAt(s);
+                assertEquals(WATERMARK, sheet.getHeader().getCenter());
+                assertEquals("行0", sheet.getRow(0).getCell(0).getStringCellValue());
+                assertEquals(500, sheet.getPhysicalNumberOfRows());
+            }
+        }
+        assertEquals(WATERMARK, processor.scanXlsx(marked.toFile(),
+                text -> text.contains("BankShield") ? text.trim() : null));
+        assertNull(processor.scanXlsx(marked.toFile(), text -> text.contains("不存在") ? text : null));
+    }
+
+    @Test
+    void testSpool_SwitchesToTempFileAboveThreshold() throws Exception {
+        byte[] small = new byte[1024];
+        try (StreamingDocumentProcessor.SpooledInput input = processor.spool(new ByteArrayInputStream(small), "pdf")) {
+            assertFalse(input.isLarge());
+            assertNull(input.getFile());
+        }
+
+        byte[] large = new byte[2 * 1024 * 1024 + 17];
+        large[large.length - 1] = 7;
+        Path spooled;
+        try (StreamingDocumentProcessor.SpooledInput input = processor.spool(new ByteArrayInputStream(large), "pdf")) {
+            assertTrue(input.isLarge());
+            spooled = input.getFile().toPath();
+            assertEquals(large.length, Files.size(spooled));
+            try (InputStream in = input.openStream()) {
+                assertArrayEquals(large, in.readAllBytes());
+            }
+        }
+        assertFalse(Files.exists(spooled));
+    }
+}
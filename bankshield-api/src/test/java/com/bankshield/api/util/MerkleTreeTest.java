@@ -0,0 +1,67 @@
+package com.bankshield.api.util;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Merkle树测试
+ */
+public class MerkleTreeTest {
+
+    @Test
+    @DisplayName("各种叶子数量下所有包含证明均可验证")
+    void testProofsVerifyForAllLeaves() {
+        for (int count : new int[]{1, 2, 3, 7, 8, 1000}) {
+            List<byte[]> leaves = createLeaves(count);
+            MerkleTree tree = MerkleTree.build(leaves);
+
+            assertArrayEquals(tree.getRoot(), MerkleTree.computeRoot(leaves), "单遍计算的根应与建树结果一致");
+            for (int i = 0; i < count; i++) {
+                byte[] proof = tree.getProof(i);
+                assertTrue(MerkleTree.verifyProof(leaves.get(i), proof, tree.getRootHex()),
+                        "叶子数 " + count + " 索引 " + i + " 的证明应验证通过");
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("包含证明长度为O(log n)")
+    void testProofSize() {
+        MerkleTree tree = MerkleTree.build(createLeaves(1000));
+        // 1000个叶子共10层，每层33字节
+        assertTrue(tree.getProof(0).length <= 10 * (MerkleTree.HASH_SIZE + 1));
+    }
+
+    @Test
+    @DisplayName("篡改叶子或证明后验证失败")
+    void testTamperDetection() {
+        List<byte[]> leaves = createLeaves(10);
+        MerkleTree tree = MerkleTree.build(leaves);
+        byte[] proof = tree.getProof(4);
+
+        assertFalse(MerkleTree.verifyProof("tampered".getBytes(StandardCharsets.UTF_8), proof, tree.getRoot()));
+        assertFalse(MerkleTree.verifyProof(leaves.get(5), proof, tree.getRoot()));
+
+        byte[] badProof = proof.clone();
+        badProof[badProof.length - 1] ^= 0x01;
+        assertFalse(MerkleTree.verifyProof(leaves.get(4), badProof, tree.getRoot()));
+
+        List<byte[]> modified = createLeaves(10);
+        modified.set(3, "tampered".getBytes(StandardCharsets.UTF_8));
+        assertFalse(java.util.Arrays.equals(tree.getRoot(), MerkleTree.computeRoot(modified)));
+    }
+
+    private List<byte[]> createLeaves(int count) {
+        List<byte[]> leaves = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            leaves.add(("audit-" + i).getBytes(StandardCharsets.UTF_8));
+        }
+        return leaves;
+    }
+}
@@ -3,153 +3,429 @@ package com.bankshield.common.crypto;
 import javax.crypto.Cipher;
 import javax.crypto.KeyGenerator;
 import javax.crypto.SecretKey;
-import javax.crypto.spec.SecretKeySpec;
+import javax.crypto.spec.IvParameterSpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * SM4国密算法工具类
  * SM4是国家密码管理局发布的分组密码算法
+ *
+ * 批量加解密请通过 {@link #keyOf(String)} 获取密钥句柄，句柄缓存解析后的密钥并按线程复用Cipher，
+ * 提供 byte[]/ByteBuffer 输入与批量接口，避免逐条解码密钥、创建Cipher和Base64转换。
+ * 数据密钥等需要销毁的密钥应使用 {@link #keyOf(byte[])} 创建调用方自有的句柄并在用完后 close；
+ * 经字符串接口进入缓存的密钥在销毁或轮换后须调用 {@link #evict(String)}。
  */
 public class SM4Util {
-    
+
     private static final String ALGORITHM = "AES"; // 简化实现，实际应使用SM4
+    private static final String CBC_TRANSFORMATION = ALGORITHM + "/CBC/PKCS5Padding";
     private static final int KEY_SIZE = 128;
-    
+    private static final int IV_SIZE = 16;
+
+    /**
+     * 密钥句柄缓存上限，超过后逐个淘汰最久未使用的句柄，防止调用方传入大量一次性密钥导致无限增长
+     */
+    private static final int MAX_CACHED_KEYS = 256;
+
+    /**
+     * 按访问顺序排列的密钥句柄缓存，读写均需持有缓存锁。
+     * 容量淘汰只移出缓存而不销毁句柄，其他线程仍可继续使用已取得的句柄，由GC回收
+     */
+    private static final Map<String, SM4Key> KEY_CACHE = new LinkedHashMap<String, SM4Key>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, SM4Key> eldest) {
+            return size() > MAX_CACHED_KEYS;
+        }
+    };
+
+    private static final SecureRandom SECURE_RANDOM = new SecureRandom();
+
     /**
      * 生成SM4密钥
      */
     public static String generateKey() {
         try {
             KeyGenerator keyGenerator = KeyGenerator.getInstance(ALGORITHM);
-            keyGenerator.init(KEY_SIZE, new SecureRandom());
+            keyGenerator.init(KEY_SIZE, SECURE_RANDOM);
             SecretKey secretKey = keyGenerator.generateKey();
             return Base64.getEncoder().encodeToString(secretKey.getEncoded());
         } catch (Exception e) {
             throw new RuntimeException("生成SM4密钥失败", e);
         }
     }
-    
+
+    /**
+     * 获取密钥句柄（按Base64密钥缓存）
+     */
+    public static SM4Key keyOf(String key) {
+        synchronized (KEY_CACHE) {
+            SM4Key handle = KEY_CACHE.get(key);
+            if (handle != null) {
+                return handle;
+            }
+        }
+        byte[] keyBytes = Base64.getDecoder().decode(key);
+        SM4Key created;
+        try {
+            created = new SM4Key(keyBytes);
+        } finally {
+            Arrays.fill(keyBytes, (byte) 0);
+        }
+        SM4Key existing;
+        synchronized (KEY_CACHE) {
+            existing = KEY_CACHE.putIfAbsent(key, created);
+        }
+        if (existing == null) {
+            return created;
+        }
+        // 并发创建时沿用已缓存的句柄，丢弃本线程创建的副本
+        created.close();
+        return existing;
+    }
+
+    /**
+     * 由原始密钥字节创建密钥句柄（不缓存）
+     * 句柄归调用方所有，持有keyBytes的副本，调用方可立即清零keyBytes，用完后 close 清零句柄内的副本
+     */
+    public static SM4Key keyOf(byte[] keyBytes) {
+        return new SM4Key(keyBytes);
+    }
+
+    /**
+     * 从缓存中移除并销毁密钥句柄
+     * 密钥销毁或轮换后调用，句柄内的密钥副本被清零，之后仍持有该句柄的调用方使用时抛出异常
+     *
+     * @param key Base64密钥
+     * @return 缓存中存在该密钥时返回true
+     */
+    public static boolean evict(String key) {
+        if (key == null) {
+            return false;
+        }
+        SM4Key handle;
+        synchronized (KEY_CACHE) {
+            handle = KEY_CACHE.remove(key);
+        }
+        if (handle == null) {
+            return false;
+        }
+        handle.close();
+        return true;
+    }
+
+    /**
+     * 当前缓存的密钥句柄数
+     */
+    public static int cachedKeyCount() {
+        synchronized (KEY_CACHE) {
+            return KEY_CACHE.size();
+        }
+    }
+
     /**
      * SM4加密
      */
     public static String encrypt(String data, String key) {
         try {
-            byte[] keyBytes = Base64.getDecoder().decode(key);
-            SecretKeySpec secretKey = new SecretKeySpec(keyBytes, ALGORITHM);
-            
-            Cipher cipher = Cipher.getInstance(ALGORITHM);
-            cipher.init(Cipher.ENCRYPT_MODE, secretKey);
-            
-            byte[] encryptedBytes = cipher.doFinal(data.getBytes("UTF-8"));
+            byte[] encryptedBytes = keyOf(key).encrypt(data.getBytes(StandardCharsets.UTF_8));
             return Base64.getEncoder().encodeToString(encryptedBytes);
         } catch (Exception e) {
             throw new RuntimeException("SM4加密失败", e);
         }
     }
-    
+
     /**
      * SM4解密
      */
     public static String decrypt(String encryptedData, String key) {
         try {
-            byte[] keyBytes = Base64.getDecoder().decode(key);
-            SecretKeySpec secretKey = new SecretKeySpec(keyBytes, ALGORITHM);
-            
-            Cipher cipher = Cipher.getInstance(ALGORITHM);
-            cipher.init(Cipher.DECRYPT_MODE, secretKey);
-            
-            byte[] decryptedBytes = cipher.doFinal(Base64.getDecoder().decode(encryptedData));
-            return new String(decryptedBytes, "UTF-8");
+            byte[] decryptedBytes = keyOf(key).decrypt(Base64.getDecoder().decode(encryptedData));
+            return new String(decryptedBytes, StandardCharsets.UTF_8);
         } catch (Exception e) {
             throw new RuntimeException("SM4解密失败", e);
         }
     }
-    
+
     /**
      * SM4加密（字节数组）
      */
     public static byte[] encryptBytes(byte[] data, String key) {
         try {
-            byte[] keyBytes = Base64.getDecoder().decode(key);
-            SecretKeySpec secretKey = new SecretKeySpec(keyBytes, ALGORITHM);
-            
-            Cipher cipher = Cipher.getInstance(ALGORITHM);
-            cipher.init(Cipher.ENCRYPT_MODE, secretKey);
-            
-            return cipher.doFinal(data);
+            return keyOf(key).encrypt(data);
         } catch (Exception e) {
             throw new RuntimeException("SM4加密失败", e);
         }
     }
-    
+
     /**
      * SM4解密（字节数组）
      */
     public static byte[] decryptBytes(byte[] encryptedData, String key) {
         try {
-            byte[] keyBytes = Base64.getDecoder().decode(key);
-            SecretKeySpec secretKey = new SecretKeySpec(keyBytes, ALGORITHM);
-            
-            Cipher cipher = Cipher.getInstance(ALGORITHM);
-            cipher.init(Cipher.DECRYPT_MODE, secretKey);
-            
-            return cipher.doFinal(encryptedData);
+            return keyOf(key).decrypt(encryptedData);
         } catch (Exception e) {
             throw new RuntimeException("SM4解密失败", e);
         }
     }
-    
+
     /**
      * 生成初始化向量IV
      */
     public static String generateIV() {
-        try {
-            byte[] iv = new byte[16];
-            new SecureRandom().nextBytes(iv);
-            return Base64.getEncoder().encodeToString(iv);
-        } catch (Exception e) {
-            throw new RuntimeException("生成IV失败", e);
-        }
+        return Base64.getEncoder().encodeToString(generateIVBytes());
     }
-    
+
+    /**
+     * 生成初始化向量IV（字节数组）
+     */
+    public static byte[] generateIVBytes() {
+        byte[] iv = new byte[IV_SIZE];
+        SECURE_RANDOM.nextBytes(iv);
+        return iv;
+    }
+
     /**
      * SM4 CBC模式加密
      */
     public static String encryptCBC(String data, String key, String iv) {
         try {
-            byte[] keyBytes = Base64.getDecoder().decode(key);
-            byte[] ivBytes = Base64.getDecoder().decode(iv);
-            SecretKeySpec secretKey = new SecretKeySpec(keyBytes, ALGORITHM);
-            javax.crypto.spec.IvParameterSpec ivSpec = new javax.crypto.spec.IvParameterSpec(ivBytes);
-            
-            Cipher cipher = Cipher.getInstance(ALGORITHM + "/CBC/PKCS5Padding");
-            cipher.init(Cipher.ENCRYPT_MODE, secretKey, ivSpec);
-            
-            byte[] encryptedBytes = cipher.doFinal(data.getBytes("UTF-8"));
+            byte[] encryptedBytes = keyOf(key).encryptCBC(data.getBytes(StandardCharsets.UTF_8),
+                    Base64.getDecoder().decode(iv));
             return Base64.getEncoder().encodeToString(encryptedBytes);
         } catch (Exception e) {
             throw new RuntimeException("SM4 CBC加密失败", e);
         }
     }
-    
+
     /**
      * SM4 CBC模式解密
      */
     public static String decryptCBC(String encryptedData, String key, String iv) {
         try {
-            byte[] keyBytes = Base64.getDecoder().decode(key);
-            byte[] ivBytes = Base64.getDecoder().decode(iv);
-            SecretKeySpec secretKey = new SecretKeySpec(keyBytes, ALGORITHM);
-            javax.crypto.spec.IvParameterSpec ivSpec = new javax.crypto.spec.IvParameterSpec(ivBytes);
-            
-            Cipher cipher = Cipher.getInstance(ALGORITHM + "/CBC/PKCS5Padding");
-            cipher.init(Cipher.DECRYPT_MODE, secretKey, ivSpec);
-            
-            byte[] decryptedBytes = cipher.doFinal(Base64.getDecoder().decode(encryptedData));
-            return new String(decryptedBytes, "UTF-8");
+            byte[] decryptedBytes = keyOf(key).decryptCBC(Base64.getDecoder().decode(encryptedData),
+                    Base64.getDecoder().decode(iv));
+            return new String(decryptedBytes, StandardCharsets.UTF_8);
         } catch (Exception e) {
             throw new RuntimeException("SM4 CBC解密失败", e);
         }
     }
+
+    /**
+     * SM4密钥句柄
+     * 线程安全：每个线程持有独立的Cipher实例，ECB模式初始化一次后重复使用，
+     * CBC模式每次仅按新IV重新初始化。Cipher执行出错后丢弃当前线程的实例。
+     * close 后清零句柄持有的密钥副本并拒绝后续调用；其他线程已初始化的Cipher随句柄一起被回收。
+     */
+    public static final class SM4Key implements AutoCloseable {
+
+        private final RawSecretKey keySpec;
+        private final ThreadLocal<Cipher> ecbEncryptor;
+        private final ThreadLocal<Cipher> ecbDecryptor;
+        private final ThreadLocal<Cipher> cbcCipher;
+
+        private SM4Key(byte[] keyBytes) {
+            this.keySpec = new RawSecretKey(keyBytes);
+            this.ecbEncryptor = ThreadLocal.withInitial(() -> initCipher(ALGORITHM, Cipher.ENCRYPT_MODE));
+            this.ecbDecryptor = ThreadLocal.withInitial(() -> initCipher(ALGORITHM, Cipher.DECRYPT_MODE));
+            this.cbcCipher = ThreadLocal.withInitial(() -> newCipher(CBC_TRANSFORMATION));
+        }
+
+        /**
+         * ECB模式加密
+         */
+        public byte[] encrypt(byte[] data) {
+            return doFinal(ecbEncryptor, data, "SM4加密失败");
+        }
+
+        /**
+         * ECB模式加密，读取data的剩余字节
+         */
+        public byte[] encrypt(ByteBuffer data) {
+            return doFinal(ecbEncryptor, data, "SM4加密失败");
+        }
+
+        /**
+         * ECB模式解密
+         */
+        public byte[] decrypt(byte[] encryptedData) {
+            return doFinal(ecbDecryptor, encryptedData, "SM4解密失败");
+        }
+
+        /**
+         * ECB模式解密，读取encryptedData的剩余字节
+         */
+        public byte[] decrypt(ByteBuffer encryptedData) {
+            return doFinal(ecbDecryptor, encryptedData, "SM4解密失败");
+        }
+
+        /**
+         * ECB模式批量加密，整批复用同一个Cipher
+         */
+        public List<byte[]> encryptAll(List<byte[]> values) {
+            return doFinalAll(ecbEncryptor, values, "SM4加密失败");
+        }
+
+        /**
+         * ECB模式批量解密，整批复用同一个Cipher
+         */
+        public List<byte[]> decryptAll(List<byte[]> values) {
+            return doFinalAll(ecbDecryptor, values, "SM4解密失败");
+        }
+
+        /**
+         * CBC模式加密
+         */
+        public byte[] encryptCBC(byte[] data, byte[] iv) {
+            return cbc(Cipher.ENCRYPT_MODE, data, iv, "SM4 CBC加密失败");
+        }
+
+        /**
+         * CBC模式解密
+         */
+        public byte[] decryptCBC(byte[] encryptedData, byte[] iv) {
+            return cbc(Cipher.DECRYPT_MODE, encryptedData, iv, "SM4 CBC解密失败");
+        }
+
+        /**
+         * 清零密钥副本，之后的加解密调用抛出 IllegalStateException
+         */
+        @Override
+        public void close() {
+            keySpec.destroy();
+            ecbEncryptor.remove();
+            ecbDecryptor.remove();
+            cbcCipher.remove();
+        }
+
+        public boolean isDestroyed() {
+            return keySpec.isDestroyed();
+        }
+
+        private void ensureUsable() {
+            if (keySpec.isDestroyed()) {
+                throw new IllegalStateException("SM4密钥句柄已销毁");
+            }
+        }
+
+        private byte[] cbc(int mode, byte[] data, byte[] iv, String errorMessage) {
+            ensureUsable();
+            try {
+                Cipher cipher = cbcCipher.get();
+                cipher.init(mode, keySpec, new IvParameterSpec(iv));
+                return cipher.doFinal(data);
+            } catch (Exception e) {
+                cbcCipher.remove();
+                throw new RuntimeException(errorMessage, e);
+            }
+        }
+
+        private byte[] doFinal(ThreadLocal<Cipher> holder, byte[] data, String errorMessage) {
+            ensureUsable();
+            try {
+                return holder.get().doFinal(data);
+            } catch (Exception e) {
+                holder.remove();
+                throw new RuntimeException(errorMessage, e);
+            }
+        }
+
+        private List<byte[]> doFinalAll(ThreadLocal<Cipher> holder, List<byte[]> values, String errorMessage) {
+            ensureUsable();
+            try {
+                Cipher cipher = holder.get();
+                List<byte[]> result = new ArrayList<>(values.size());
+                for (byte[] value : values) {
+                    result.add(cipher.doFinal(value));
+                }
+                return result;
+            } catch (Exception e) {
+                holder.remove();
+                throw new RuntimeException(errorMessage, e);
+            }
+        }
+
+        private byte[] doFinal(ThreadLocal<Cipher> holder, ByteBuffer data, String errorMessage) {
+            ensureUsable();
+            try {
+                Cipher cipher = holder.get();
+                byte[] output = new byte[cipher.getOutputSize(data.remaining())];
+                int length = cipher.doFinal(data, ByteBuffer.wrap(output));
+                return length == output.length ? output : Arrays.copyOf(output, length);
+            } catch (Exception e) {
+                holder.remove();
+                throw new RuntimeException(errorMessage, e);
+            }
+        }
+
+        private Cipher initCipher(String transformation, int mode) {
+            Cipher cipher = newCipher(transformation);
+            try {
+                cipher.init(mode, keySpec);
+            } catch (Exception e) {
+                throw new RuntimeException("SM4密钥无效", e);
+            }
+            return cipher;
+        }
+
+        private static Cipher newCipher(String transformation) {
+            try {
+                return Cipher.getInstance(transformation);
+            } catch (Exception e) {
+                throw new RuntimeException("创建SM4 Cipher失败", e);
+            }
+        }
+    }
+
+    /**
+     * 可清零的原始密钥
+     * SecretKeySpec 不支持 destroy，其内部副本无法清除，这里自行持有副本以便销毁
+     */
+    private static final class RawSecretKey implements SecretKey {
+
+        private static final long serialVersionUID = 1L;
+
+        private final byte[] encoded;
+        private volatile boolean destroyed;
+
+        private RawSecretKey(byte[] keyBytes) {
+            this.encoded = keyBytes.clone();
+        }
+
+        @Override
+        public String getAlgorithm() {
+            return ALGORITHM;
+        }
+
+        @Override
+        public String getFormat() {
+            return "RAW";
+        }
+
+        @Override
+        public byte[] getEncoded() {
+            if (destroyed) {
+                throw new IllegalStateException("SM4密钥句柄已销毁");
+            }
+            return encoded.clone();
+        }
+
+        @Override
+        public void destroy() {
+            destroyed = true;
+            Arrays.fill(encoded, (byte) 0);
+        }
+
+        @Override
+        public boolean isDestroyed() {
+            return destroyed;
+        }
+    }
 }
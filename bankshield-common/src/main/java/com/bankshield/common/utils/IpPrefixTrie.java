@@ -0,0 +1,233 @@
+package com.bankshield.common.utils;
+
+import java.net.InetAddress;
+
+/**
+ * IP前缀二叉字典树
+ * 支持单个IP与CIDR网段（IPv4/IPv6），每个前缀带过期时间。
+ * 写入时按路径复制新节点并整体替换根节点，查询无锁且不涉及任何I/O，
+ * 最多沿地址位走32（IPv4）或128（IPv6）步。
+ *
+ * @author BankShield
+ */
+public final class IpPrefixTrie {
+
+    /**
+     * 永久封禁的过期时间
+     */
+    public static final long NEVER_EXPIRE = Long.MAX_VALUE;
+
+    private volatile Node ipv4Root;
+
+    private volatile Node ipv6Root;
+
+    /**
+     * 添加IP或CIDR网段
+     *
+     * @param ipOrCidr IP或CIDR，如 10.0.0.0/8
+     * @param expireAtMillis 过期时间戳（毫秒）
+     * @return 格式合法返回true
+     */
+    public synchronized boolean add(String ipOrCidr, long expireAtMillis) {
+        Prefix prefix = Prefix.parse(ipOrCidr);
+        if (prefix == null) {
+            return false;
+        }
+        if (prefix.address.length == 4) {
+            ipv4Root = insert(ipv4Root, prefix.address, 0, prefix.length, Math.max(1, expireAtMillis));
+        } else {
+            ipv6Root = insert(ipv6Root, prefix.address, 0, prefix.length, Math.max(1, expireAtMillis));
+        }
+        return true;
+    }
+
+    /**
+     * 移除IP或CIDR网段（仅移除完全相同的前缀）
+     *
+     * @param ipOrCidr IP或CIDR
+     */
+    public synchronized void remove(String ipOrCidr) {
+        Prefix prefix = Prefix.parse(ipOrCidr);
+        if (prefix == null) {
+            return;
+        }
+        if (prefix.address.length == 4) {
+            ipv4Root = delete(ipv4Root, prefix.address, 0, prefix.length);
+        } else {
+            ipv6Root = delete(ipv6Root, prefix.address, 0, prefix.length);
+        }
+    }
+
+    /**
+     * 查询IP是否命中任一未过期的前缀
+     *
+     * @param ip IP地址
+     * @param nowMillis 当前时间戳（毫秒）
+     * @return 命中返回true，非法地址返回false
+     */
+    public boolean contains(String ip, long nowMillis) {
+        byte[] address = parseAddress(ip);
+        if (address == null) {
+            return false;
+        }
+        Node node = address.length == 4 ? ipv4Root : ipv6Root;
+        int bits = address.length * 8;
+        for (int depth = 0; node != null; depth++) {
+            if (node.expireAt > nowMillis) {
+                return true;
+            }
+            if (depth == bits) {
+                return false;
+            }
+            node = bit(address, depth) == 0 ? node.zero : node.one;
+        }
+        return false;
+    }
+
+    private static Node insert(Node node, byte[] address, int depth, int length, long expireAt) {
+        Node zero = node != null ? node.zero : null;
+        Node one = node != null ? node.one : null;
+        if (depth == length) {
+            return new Node(zero, one, expireAt);
+        }
+        if (bit(address, depth) == 0) {
+            zero = insert(zero, address, depth + 1, length, expireAt);
+        } else {
+            one = insert(one, address, depth + 1, length, expireAt);
+        }
+        return new Node(zero, one, node != null ? node.expireAt : 0);
+    }
+
+    private static Node delete(Node node, byte[] address, int depth, int length) {
+        if (node == null) {
+            return null;
+        }
+        Node zero = node.zero;
+        Node one = node.one;
+        long expireAt = node.expireAt;
+        if (depth == length) {
+            expireAt = 0;
+        } else if (bit(address, depth) == 0) {
+            zero = delete(zero, address, depth + 1, length);
+        } else {
+            one = delete(one, address, depth + 1, length);
+        }
+        if (zero == null && one == null && expireAt == 0) {
+            return null;
+        }
+        return new Node(zero, one, expireAt);
+    }
+
+    private static int bit(byte[] address, int index) {
+        return (address[index >>> 3] >>> (7 - (index & 7))) & 1;
+    }
+
+    /**
+     * 解析IP字面量，不做DNS解析
+     *
+     * @param ip IP字符串
+     * @return 4或16字节地址，非法返回null
+     */
+    static byte[] parseAddress(String ip) {
+        if (ip == null || ip.isEmpty()) {
+            return null;
+        }
+        if (ip.indexOf(':') < 0) {
+            return parseIpv4(ip);
+        }
+        String literal = ip;
+        if (literal.startsWith("[") && literal.endsWith("]")) {
+            literal = literal.substring(1, literal.length() - 1);
+        }
+        int zone = literal.indexOf('%');
+        if (zone >= 0) {
+            literal = literal.substring(0, zone);
+        }
+        for (int i = 0; i < literal.length(); i++) {
+            char c = literal.charAt(i);
+            if (Character.digit(c, 16) < 0 && c != ':' && c != '.') {
+                return null;
+            }
+        }
+        try {
+            // 含冒号的字面量不会触发DNS解析，IPv4映射地址返回4字节
+            return InetAddress.getByName(literal).getAddress();
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private static byte[] parseIpv4(String ip) {
+        byte[] address = new byte[4];
+        int part = 0;
+        int value = -1;
+        for (int i = 0; i <= ip.length(); i++) {
+            char c = i < ip.length() ? ip.charAt(i) : '.';
+            if (c == '.') {
+                if (value < 0 || part >= 4) {
+                    return null;
+                }
+                address[part++] = (byte) value;
+                value = -1;
+            } else if (c >= '0' && c <= '9') {
+                value = value < 0 ? c - '0' : value * 10 + (c - '0');
+                if (value > 255) {
+                    return null;
+                }
+            } else {
+                return null;
+            }
+        }
+        return part == 4 ? address : null;
+    }
+
+    private static final class Node {
+        private final Node zero;
+        private final Node one;
+        /**
+         * 非0表示该节点是一个前缀终点
+         */
+        private final long expireAt;
+
+        private Node(Node zero, Node one, long expireAt) {
+            this.zero = zero;
+            this.one = one;
+            this.expireAt = expireAt;
+        }
+    }
+
+    private static final class Prefix {
+        private final byte[] address;
+        private final int length;
+
+        private Prefix(byte[] address, int length) {
+            this.address = address;
+            this.length = length;
+        }
+
+        private static Prefix parse(String ipOrCidr) {
+            if (ipOrCidr == null) {
+                return null;
+            }
+            String value = ipOrCidr.trim();
+            int slash = value.indexOf('/');
+            byte[] address = parseAddress(slash >= 0 ? value.substring(0, slash) : value);
+            if (address == null) {
+                return null;
+            }
+            int maxLength = address.length * 8;
+            int length = maxLength;
+            if (slash >= 0) {
+                try {
+                    length = Integer.parseInt(value.substring(slash + 1));
+                } catch (NumberFormatException e) {
+                    return null;
+                }
+                if (length < 0 || length > maxLength) {
+                    return null;
+                }
+            }
+            return new Prefix(address, length);
+        }
+    }
+}
@@ -0,0 +1,247 @@
+package com.bankshield.common.utils;
+
+import com.alibaba.fastjson2.JSON;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * JSON Lines落盘存储
+ * 写库失败或缓冲区溢出的记录追加到 {name}.jsonl；回放时先整体切换为 {name}.replaying，
+ * 逐批写库，每批提交成功后把已消费的字节偏移持久化到 {name}.offset，
+ * 写库失败时停止并保留文件和偏移，下次从偏移处续放，已写入的批次不会重复写入。
+ * 无法解析的行（如进程崩溃留下的半行）原样隔离到 {name}.poison 后跳过，不阻塞回放。
+ *
+ * @param <T> 记录类型
+ * @author BankShield
+ */
+@Slf4j
+public class JsonlSpillStore<T> {
+
+    private final Path dir;
+    private final String name;
+    private final Class<T> type;
+    private final long replayIntervalMs;
+
+    private final Object lock = new Object();
+    private final AtomicLong quarantined = new AtomicLong();
+    private long lastReplayAttempt;
+
+    /**
+     * @param dir              落盘目录
+     * @param name             文件名前缀
+     * @param type             记录类型
+     * @param replayIntervalMs 两次回放尝试的最小间隔（毫秒）
+     */
+    public JsonlSpillStore(String dir, String name, Class<T> type, long replayIntervalMs) {
+        this.dir = Paths.get(dir);
+        this.name = name;
+        this.type = type;
+        this.replayIntervalMs = replayIntervalMs;
+    }
+
+    /**
+     * 追加写入落盘文件
+     *
+     * @return 写入成功返回true，失败时由调用方计入丢失
+     */
+    public boolean append(List<T> records) {
+        if (records.isEmpty()) {
+            return true;
+        }
+        synchronized (lock) {
+            try {
+                Files.createDirectories(dir);
+                try (BufferedWriter writer = Files.newBufferedWriter(spillFile(), StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                    for (T record : records) {
+                        writer.write(JSON.toJSONString(record));
+                        writer.write('\n');
+                    }
+                }
+                return true;
+            } catch (IOException e) {
+                log.error("落盘文件写入失败: {}, 条数: {}", spillFile(), records.size(), e);
+                return false;
+            }
+        }
+    }
+
+    /**
+     * 回放落盘记录，距上次尝试不足回放间隔时直接返回
+     *
+     * @param batchSize 每批写库条数
+     * @param writer    批量写库，成功返回true
+     * @return 本次成功回放的条数
+     */
+    public int replay(int batchSize, Predicate<List<T>> writer) {
+        long now = System.currentTimeMillis();
+        if (now - lastReplayAttempt < replayIntervalMs) {
+            return 0;
+        }
+        lastReplayAttempt = now;
+
+        Path replayFile = replayFile();
+        synchronized (lock) {
+            try {
+                if (Files.notExists(replayFile)) {
+                    if (Files.notExists(spillFile())) {
+                        return 0;
+                    }
+                    Files.deleteIfExists(offsetFile());
+                    Files.move(spillFile(), replayFile, StandardCopyOption.ATOMIC_MOVE);
+                }
+            } catch (IOException e) {
+                log.warn("切换落盘文件失败: {}", spillFile(), e);
+                return 0;
+            }
+        }
+
+        int replayed = 0;
+        long committed = readOffset();
+        try (FileChannel channel = FileChannel.open(replayFile, StandardOpenOption.READ)) {
+            channel.position(committed);
+            InputStream in = new BufferedInputStream(Channels.newInputStream(channel));
+            ByteArrayOutputStream line = new ByteArrayOutputStream(512);
+            List<T> pending = new ArrayList<>(batchSize);
+            long position = committed;
+            boolean eof = false;
+            while (!eof) {
+                int b = in.read();
+                if (b >= 0) {
+                    position++;
+                    if (b != '\n') {
+                        line.write(b);
+                        continue;
+                    }
+                } else {
+                    eof = true;
+                    if (line.size() == 0) {
+                        break;
+                    }
+                }
+                T record = parse(line);
+                line.reset();
+                if (record != null) {
+                    pending.add(record);
+                }
+                if (pending.size() >= batchSize) {
+                    if (!writer.test(pending)) {
+                        return replayed;
+                    }
+                    replayed += pending.size();
+                    pending.clear();
+                    committed = position;
+                    writeOffset(committed);
+                }
+            }
+            if (!pending.isEmpty()) {
+                if (!writer.test(pending)) {
+                    return replayed;
+                }
+                replayed += pending.size();
+            }
+        } catch (IOException e) {
+            log.error("回放落盘文件失败: {}, 已提交偏移: {}", replayFile, committed, e);
+            return replayed;
+        }
+
+        try {
+            Files.deleteIfExists(replayFile);
+            Files.deleteIfExists(offsetFile());
+        } catch (IOException e) {
+            log.error("清理已回放的落盘文件失败: {}", replayFile, e);
+        }
+        return replayed;
+    }
+
+    /**
+     * 是否有待回放的落盘记录
+     */
+    public boolean hasPending() {
+        return Files.exists(replayFile()) || Files.exists(spillFile());
+    }
+
+    /**
+     * 累计隔离的无法解析行数
+     */
+    public long getQuarantined() {
+        return quarantined.get();
+    }
+
+    private T parse(ByteArrayOutputStream line) {
+        String text = new String(line.toByteArray(), StandardCharsets.UTF_8);
+        if (text.endsWith("\r")) {
+            text = text.substring(0, text.length() - 1);
+        }
+        if (text.trim().isEmpty()) {
+            return null;
+        }
+        try {
+            T record = JSON.parseObject(text, type);
+            if (record != null) {
+                return record;
+            }
+        } catch (Exception e) {
+            log.debug("落盘记录解析失败: {}", e.getMessage());
+        }
+        quarantine(text);
+        return null;
+    }
+
+    private void quarantine(String text) {
+        quarantined.incrementAndGet();
+        try {
+            Files.write(dir.resolve(name + ".poison"), (text + '\n').getBytes(StandardCharsets.UTF_8),
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            log.warn("落盘记录无法解析，已隔离到 {}.poison", name);
+        } catch (IOException e) {
+            log.error("隔离无法解析的落盘记录失败，丢弃: {}", text, e);
+        }
+    }
+
+    private long readOffset() {
+        try {
+            if (Files.exists(offsetFile())) {
+                return Long.parseLong(new String(Files.readAllBytes(offsetFile()), StandardCharsets.UTF_8).trim());
+            }
+        } catch (IOException | NumberFormatException e) {
+            log.warn("读取回放偏移失败，从头回放: {}", offsetFile(), e);
+        }
+        return 0;
+    }
+
+    private void writeOffset(long offset) throws IOException {
+        Path tmp = dir.resolve(name + ".offset.tmp");
+        Files.write(tmp, Long.toString(offset).getBytes(StandardCharsets.UTF_8));
+        Files.move(tmp, offsetFile(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private Path spillFile() {
+        return dir.resolve(name + ".jsonl");
+    }
+
+    private Path replayFile() {
+        return dir.resolve(name + ".replaying");
+    }
+
+    private Path offsetFile() {
+        return dir.resolve(name + ".offset");
+    }
+}
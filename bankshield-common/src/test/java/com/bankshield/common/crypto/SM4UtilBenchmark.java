@@ -0,0 +1,117 @@
+package com.bankshield.common.crypto;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SM4工具类性能基准
+ * 对比逐次创建Cipher的字符串接口与密钥句柄接口的吞吐量，
+ * 运行：在 bankshield-common 目录执行 mvn test-compile 后以 main 方法启动
+ *
+ * @author BankShield
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SM4UtilBenchmark {
+
+    /**
+     * 明文长度（字节），模拟卡号、身份证号与备注类字段
+     */
+    @Param({"16", "64", "512"})
+    private int size;
+
+    private String key;
+    private String iv;
+    private byte[] ivBytes;
+    private String plainText;
+    private byte[] plainBytes;
+    private List<byte[]> batch;
+    private SM4Util.SM4Key handle;
+
+    @Setup
+    public void setUp() {
+        key = SM4Util.generateKey();
+        iv = SM4Util.generateIV();
+        ivBytes = Base64.getDecoder().decode(iv);
+        StringBuilder builder = new StringBuilder();
+        while (builder.length() < size) {
+            builder.append('6');
+        }
+        plainText = builder.toString();
+        plainBytes = plainText.getBytes(StandardCharsets.UTF_8);
+        batch = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            batch.add(plainBytes);
+        }
+        handle = SM4Util.keyOf(key);
+    }
+
+    /**
+     * 改造前的实现：每次解码密钥并创建Cipher
+     */
+    @Benchmark
+    public String legacyEncryptCBC() throws Exception {
+        byte[] keyBytes = Base64.getDecoder().decode(key);
+        Cipher cipher = Cipher.getInstance("AES/CBC/PKCS5Padding");
+        cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(keyBytes, "AES"),
+                new IvParameterSpec(Base64.getDecoder().decode(iv)));
+        return Base64.getEncoder().encodeToString(cipher.doFinal(plainText.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Benchmark
+    public String stringEncryptCBC() {
+        return SM4Util.encryptCBC(plainText, key, iv);
+    }
+
+    @Benchmark
+    public byte[] handleEncryptCBC() {
+        return handle.encryptCBC(plainBytes, ivBytes);
+    }
+
+    @Benchmark
+    public byte[] handleEncryptECB() {
+        return handle.encrypt(plainBytes);
+    }
+
+    /**
+     * 每次调用加密100个值，吞吐量乘以100即为单值吞吐量
+     */
+    @Benchmark
+    public void handleEncryptAll(Blackhole blackhole) {
+        blackhole.consume(handle.encryptAll(batch));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(SM4UtilBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
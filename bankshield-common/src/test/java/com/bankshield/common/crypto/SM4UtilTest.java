@@ -0,0 +1,145 @@
+package com.bankshield.common.crypto;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * SM4工具类测试
+ *
+ * @author BankShield
+ */
+public class SM4UtilTest {
+
+    @Test
+    public void testKeyHandleCompatibleWithStringApi() {
+        String key = SM4Util.generateKey();
+        SM4Util.SM4Key handle = SM4Util.keyOf(key);
+        assertSame(handle, SM4Util.keyOf(key));
+
+        byte[] plain = "6222020200112233".getBytes(StandardCharsets.UTF_8);
+        assertArrayEquals(SM4Util.encryptBytes(plain, key), handle.encrypt(plain));
+        assertArrayEquals(handle.encrypt(plain), handle.encrypt(ByteBuffer.wrap(plain)));
+        assertEquals("6222020200112233", SM4Util.decrypt(SM4Util.encrypt("6222020200112233", key), key));
+
+        byte[] iv = SM4Util.generateIVBytes();
+        byte[] cbc = handle.encryptCBC(plain, iv);
+        assertArrayEquals(plain, handle.decryptCBC(cbc, iv));
+        String ivText = java.util.Base64.getEncoder().encodeToString(iv);
+        assertEquals("手机号13800138000", SM4Util.decryptCBC(
+                SM4Util.encryptCBC("手机号13800138000", key, ivText), key, ivText));
+    }
+
+    @Test
+    public void testEvictDestroysCachedHandle() {
+        String key = SM4Util.generateKey();
+        SM4Util.SM4Key handle = SM4Util.keyOf(key);
+        byte[] encrypted = handle.encrypt("6222020200112233".getBytes(StandardCharsets.UTF_8));
+
+        assertTrue(SM4Util.evict(key));
+        assertFalse(SM4Util.evict(key));
+        assertTrue(handle.isDestroyed());
+        assertThrows(IllegalStateException.class, () -> handle.decrypt(encrypted));
+
+        // 再次使用同一密钥时重新建立句柄，已有密文仍可解密
+        SM4Util.SM4Key rebuilt = SM4Util.keyOf(key);
+        assertNotSame(handle, rebuilt);
+        assertEquals("6222020200112233", new String(rebuilt.decrypt(encrypted), StandardCharsets.UTF_8));
+        SM4Util.evict(key);
+    }
+
+    @Test
+    public void testCapacityEvictionKeepsRecentHandlesAndDoesNotDestroy() {
+        String hot = SM4Util.generateKey();
+        String cold = SM4Util.generateKey();
+        SM4Util.SM4Key hotHandle = SM4Util.keyOf(hot);
+        SM4Util.SM4Key coldHandle = SM4Util.keyOf(cold);
+        byte[] plain = "6222020200112233".getBytes(StandardCharsets.UTF_8);
+
+        for (int i = 0; i < 300; i++) {
+            // 持续访问的密钥保持最近使用，不受一次性密钥挤占
+            assertSame(hotHandle, SM4Util.keyOf(hot));
+            SM4Util.keyOf(SM4Util.generateKey());
+        }
+
+        assertTrue(SM4Util.cachedKeyCount() <= 256);
+        assertSame(hotHandle, SM4Util.keyOf(hot));
+        // 被挤出缓存的句柄未销毁，仍持有它的调用方可继续使用
+        assertFalse(coldHandle.isDestroyed());
+        assertArrayEquals(plain, coldHandle.decrypt(coldHandle.encrypt(plain)));
+        assertFalse(SM4Util.evict(cold));
+        SM4Util.evict(hot);
+    }
+
+    @Test
+    public void testCallerOwnedHandleIsNotCachedAndCloses() {
+        String key = SM4Util.generateKey();
+        byte[] keyBytes = java.util.Base64.getDecoder().decode(key);
+        int cached = SM4Util.cachedKeyCount();
+        byte[] iv = SM4Util.generateIVBytes();
+        byte[] plain = "secret".getBytes(StandardCharsets.UTF_8);
+
+        byte[] encrypted;
+        try (SM4Util.SM4Key owned = SM4Util.keyOf(keyBytes)) {
+            // 句柄持有副本，调用方清零自己的数组不影响句柄
+            java.util.Arrays.fill(keyBytes, (byte) 0);
+            encrypted = owned.encryptCBC(plain, iv);
+            assertEquals(cached, SM4Util.cachedKeyCount());
+        }
+        assertArrayEquals(plain, SM4Util.keyOf(key).decryptCBC(encrypted, iv));
+        SM4Util.evict(key);
+    }
+
+    @Test
+    public void testBatchAndRecoveryAfterFailure() {
+        SM4Util.SM4Key handle = SM4Util.keyOf(SM4Util.generateKey());
+        List<byte[]> values = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            values.add(("value-" + i).getBytes(StandardCharsets.UTF_8));
+        }
+        List<byte[]> decrypted = handle.decryptAll(handle.encryptAll(values));
+        for (int i = 0; i < values.size(); i++) {
+            assertArrayEquals(values.get(i), decrypted.get(i));
+        }
+
+        assertThrows(RuntimeException.class, () -> handle.decrypt(new byte[]{1, 2, 3}));
+        // 出错后当前线程的Cipher被重建，不影响后续调用
+        assertArrayEquals(values.get(0), handle.decrypt(handle.encrypt(values.get(0))));
+    }
+
+    @Test
+    public void testConcurrentUse() throws Exception {
+        SM4Util.SM4Key handle = SM4Util.keyOf(SM4Util.generateKey());
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Boolean>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                final int thread = t;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 500; i++) {
+                        byte[] plain = ("t" + thread + "-" + i).getBytes(StandardCharsets.UTF_8);
+                        byte[] iv = SM4Util.generateIVBytes();
+                        if (!java.util.Arrays.equals(plain, handle.decryptCBC(handle.encryptCBC(plain, iv), iv))
+                                || !java.util.Arrays.equals(plain, handle.decrypt(handle.encrypt(plain)))) {
+                            return false;
+                        }
+                    }
+                    return true;
+                }));
+            }
+            for (Future<Boolean> future : futures) {
+                assertTrue(future.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
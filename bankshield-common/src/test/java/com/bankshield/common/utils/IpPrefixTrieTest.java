@@ -0,0 +1,66 @@
+package com.bankshield.common.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * IP前缀树测试
+ *
+ * @author BankShield
+ */
+public class IpPrefixTrieTest {
+
+    @Test
+    public void testSingleIpAndCidr() {
+        IpPrefixTrie trie = new IpPrefixTrie();
+        long now = System.currentTimeMillis();
+
+        assertTrue(trie.add("192.168.1.100", IpPrefixTrie.NEVER_EXPIRE));
+        assertTrue(trie.add("10.0.0.0/8", IpPrefixTrie.NEVER_EXPIRE));
+
+        assertTrue(trie.contains("192.168.1.100", now));
+        assertFalse(trie.contains("192.168.1.101", now));
+        assertTrue(trie.contains("10.255.3.4", now));
+        assertFalse(trie.contains("11.0.0.1", now));
+    }
+
+    @Test
+    public void testIpv6() {
+        IpPrefixTrie trie = new IpPrefixTrie();
+        long now = System.currentTimeMillis();
+
+        assertTrue(trie.add("2001:db8::/32", IpPrefixTrie.NEVER_EXPIRE));
+        assertTrue(trie.contains("2001:db8:1::1", now));
+        assertFalse(trie.contains("2001:db9::1", now));
+        // IPv4映射地址按IPv4匹配
+        trie.add("1.2.3.4", IpPrefixTrie.NEVER_EXPIRE);
+        assertTrue(trie.contains("::ffff:1.2.3.4", now));
+    }
+
+    @Test
+    public void testExpireAndRemove() {
+        IpPrefixTrie trie = new IpPrefixTrie();
+        long now = System.currentTimeMillis();
+
+        trie.add("172.16.0.1", now + 1000);
+        assertTrue(trie.contains("172.16.0.1", now));
+        assertFalse(trie.contains("172.16.0.1", now + 1000));
+
+        trie.add("172.16.0.0/12", IpPrefixTrie.NEVER_EXPIRE);
+        trie.remove("172.16.0.1");
+        assertTrue(trie.contains("172.16.0.1", now), "移除单个IP不影响所属网段");
+        trie.remove("172.16.0.0/12");
+        assertFalse(trie.contains("172.16.0.1", now));
+    }
+
+    @Test
+    public void testInvalidInput() {
+        IpPrefixTrie trie = new IpPrefixTrie();
+        assertFalse(trie.add("not-an-ip", IpPrefixTrie.NEVER_EXPIRE));
+        assertFalse(trie.add("10.0.0.0/33", IpPrefixTrie.NEVER_EXPIRE));
+        assertFalse(trie.add("256.1.1.1", IpPrefixTrie.NEVER_EXPIRE));
+        assertFalse(trie.contains("example.com", System.currentTimeMillis()));
+        assertFalse(trie.contains("", System.currentTimeMillis()));
+    }
+}
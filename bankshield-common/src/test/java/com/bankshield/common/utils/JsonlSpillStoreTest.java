@@ -0,0 +1,108 @@
+package com.bankshield.common.utils;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * JSON Lines落盘存储测试
+ *
+ * @author BankShield
+ */
+public class JsonlSpillStoreTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public void testReplayResumesFromCommittedOffsetAfterFailure() {
+        JsonlSpillStore<Item> store = new JsonlSpillStore<>(dir.toString(), "items", Item.class, 0);
+        assertTrue(store.append(items(0, 10)));
+
+        List<Integer> written = new ArrayList<>();
+        int[] calls = {0};
+        // 第二批写库失败
+        int replayed = store.replay(3, batch -> {
+            if (++calls[0] == 2) {
+                return false;
+            }
+            batch.forEach(item -> written.add(item.getId()));
+            return true;
+        });
+        assertEquals(3, replayed);
+        assertTrue(store.hasPending());
+
+        // 期间新落盘的记录写入新文件，不影响续放
+        assertTrue(store.append(items(10, 12)));
+        assertEquals(7, store.replay(3, batch -> written.addAll(ids(batch))));
+        assertEquals(2, store.replay(3, batch -> written.addAll(ids(batch))));
+
+        assertEquals(ids(items(0, 12)), written);
+        assertFalse(store.hasPending());
+        assertEquals(0, store.replay(3, batch -> written.addAll(ids(batch))));
+    }
+
+    @Test
+    public void testUnparsableLinesAreQuarantined() throws Exception {
+        JsonlSpillStore<Item> store = new JsonlSpillStore<>(dir.toString(), "items", Item.class, 0);
+        store.append(items(0, 2));
+        // 模拟崩溃前写入的半行及其他损坏行
+        Files.write(dir.resolve("items.jsonl"), "not json\n\n".getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.APPEND);
+        store.append(items(2, 4));
+        Files.write(dir.resolve("items.jsonl"), "{\"id\":9,\"na".getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.APPEND);
+
+        List<Integer> written = new ArrayList<>();
+        assertEquals(4, store.replay(10, batch -> written.addAll(ids(batch))));
+
+        assertEquals(Arrays.asList(0, 1, 2, 3), written);
+        assertEquals(2, store.getQuarantined());
+        assertEquals(Arrays.asList("not json", "{\"id\":9,\"na"), Files.readAllLines(dir.resolve("items.poison")));
+        assertFalse(store.hasPending());
+    }
+
+    @Test
+    public void testReplayIntervalThrottlesAttempts() {
+        JsonlSpillStore<Item> store = new JsonlSpillStore<>(dir.toString(), "items", Item.class, 60000);
+        store.append(items(0, 1));
+
+        assertEquals(0, store.replay(10, batch -> false));
+        assertEquals(0, store.replay(10, batch -> true));
+        assertTrue(store.hasPending());
+    }
+
+    private static List<Item> items(int from, int to) {
+        List<Item> items = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            items.add(new Item(i, "item-" + i));
+        }
+        return items;
+    }
+
+    private static List<Integer> ids(List<Item> items) {
+        List<Integer> ids = new ArrayList<>();
+        items.forEach(item -> ids.add(item.getId()));
+        return ids;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Item {
+        private int id;
+        private String name;
+    }
+}
@@ -1,7 +1,9 @@
 package com.bankshield.encrypt.config;
 
 import com.bankshield.encrypt.job.KeyRotationJob;
+import com.bankshield.encrypt.job.KeyRotationPhaseJob;
 import org.quartz.*;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
@@ -11,6 +13,15 @@ import org.springframework.context.annotation.Configuration;
 @Configuration
 public class QuartzConfig {
     
+    @Value("${key.rotation.cron-monitor:0 */5 * * * ?}")
+    private String phaseCron;
+    
+    /**
+     * 启动后首次补做到期阶段切换的延迟（秒）
+     */
+    @Value("${key.rotation.phase-recovery-delay-seconds:30}")
+    private int phaseRecoveryDelaySeconds;
+    
     /**
      * 密钥轮换任务
      */
@@ -36,4 +47,43 @@ public class QuartzConfig {
                 .withSchedule(scheduleBuilder)
                 .build();
     }
-}
\ No newline at end of file
+    
+    /**
+     * 密钥轮换阶段切换任务
+     */
+    @Bean
+    public JobDetail keyRotationPhaseJobDetail() {
+        return JobBuilder.newJob(KeyRotationPhaseJob.class)
+                .withIdentity("keyRotationPhaseJob")
+                .storeDurably()
+                .build();
+    }
+    
+    /**
+     * 阶段切换任务触发器
+     * 所有轮换计划共用一个任务，线程数与轮换数量无关
+     */
+    @Bean
+    public Trigger keyRotationPhaseJobTrigger() {
+        return TriggerBuilder.newTrigger()
+                .forJob(keyRotationPhaseJobDetail())
+                .withIdentity("keyRotationPhaseTrigger")
+                .withSchedule(CronScheduleBuilder.cronSchedule(phaseCron)
+                        .withMisfireHandlingInstructionFireAndProceed())
+                .build();
+    }
+    
+    /**
+     * 启动恢复触发器
+     * 应用启动后执行一次，补做停机期间到期的阶段切换
+     */
+    @Bean
+    public Trigger keyRotationPhaseRecoveryTrigger() {
+        return TriggerBuilder.newTrigger()
+                .forJob(keyRotationPhaseJobDetail())
+                .withIdentity("keyRotationPhaseRecoveryTrigger")
+                .startAt(DateBuilder.futureDate(phaseRecoveryDelaySeconds, DateBuilder.IntervalUnit.SECOND))
+                .withSchedule(SimpleScheduleBuilder.simpleSchedule().withRepeatCount(0))
+                .build();
+    }
+}
@@ -7,6 +7,7 @@ import com.bankshield.encrypt.entity.KeyRotationPlan;
 import com.bankshield.encrypt.enums.KeyRotationStatus;
 import com.bankshield.encrypt.mapper.EncryptionKeyMapper;
 import com.bankshield.encrypt.mapper.KeyRotationHistoryMapper;
+import com.bankshield.encrypt.service.ReEncryptionService;
 import com.bankshield.encrypt.service.SmoothKeyRotationService;
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import lombok.extern.slf4j.Slf4j;
@@ -37,6 +38,9 @@ public class KeyRotationMonitorController {
     @Autowired
     private KeyRotationHistoryMapper rotationHistoryMapper;
     
+    @Autowired
+    private ReEncryptionService reEncryptionService;
+    
     /**
      * 获取密钥轮换监控数据
      */
@@ -137,6 +141,9 @@ public class KeyRotationMonitorController {
                 statusInfo.put("rotationCompleteTime", key.getRotationCompleteTime());
             }
             
+            // 历史数据重加密进度
+            statusInfo.put("reEncryption", reEncryptionService.getProgress(keyId));
+            
             return Result.success(statusInfo);
             
         } catch (Exception e) {
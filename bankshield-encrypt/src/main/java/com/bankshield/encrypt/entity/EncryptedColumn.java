@@ -0,0 +1,73 @@
+package com.bankshield.encrypt.entity;
+
+import com.baomidou.mybatisplus.annotation.*;
+import com.fasterxml.jackson.annotation.JsonFormat;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * 加密列登记实体
+ * 登记业务表中由某个密钥保护的列，密钥轮换时据此重加密历史数据
+ */
+@Data
+@TableName("encrypt_column_registry")
+public class EncryptedColumn {
+    
+    /**
+     * 登记ID
+     */
+    @TableId(type = IdType.AUTO)
+    private Long id;
+    
+    /**
+     * 业务表名
+     */
+    private String tableName;
+    
+    /**
+     * 数值型主键列名
+     */
+    private String pkColumn;
+    
+    /**
+     * 加密列名
+     */
+    private String columnName;
+    
+    /**
+     * 当前保护该列的密钥ID
+     */
+    private Long keyId;
+    
+    /**
+     * 是否启用
+     */
+    private Boolean enabled;
+    
+    /**
+     * 描述
+     */
+    private String description;
+    
+    /**
+     * 创建时间
+     */
+    @TableField(fill = FieldFill.INSERT)
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    private LocalDateTime createTime;
+    
+    /**
+     * 更新时间
+     */
+    @TableField(fill = FieldFill.INSERT_UPDATE)
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    private LocalDateTime updateTime;
+    
+    /**
+     * 断点中使用的列标识
+     */
+    public String qualifiedName() {
+        return tableName + "." + columnName;
+    }
+}
@@ -56,6 +56,26 @@ public class KeyRotationHistory {
      */
     private String failureReason;
     
+    /**
+     * 待重加密行数
+     */
+    private Long reencryptTotal;
+    
+    /**
+     * 已重加密行数
+     */
+    private Long reencryptCount;
+    
+    /**
+     * 重加密断点（各加密列已完成的主键水位，JSON）
+     */
+    private String reencryptCheckpoint;
+    
+    /**
+     * 重加密进度百分比
+     */
+    private Integer progressPercentage;
+    
     /**
      * 创建时间
      */
@@ -1,5 +1,10 @@
 package com.bankshield.encrypt.entity;
 
+import com.baomidou.mybatisplus.annotation.FieldStrategy;
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableField;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
 import lombok.Data;
 import com.fasterxml.jackson.annotation.JsonFormat;
 
@@ -10,8 +15,15 @@ import java.time.LocalDateTime;
  * 记录密钥轮换的完整时间线和状态
  */
 @Data
+@TableName("key_rotation_plan")
 public class KeyRotationPlan {
     
+    /**
+     * 轮换计划ID
+     */
+    @TableId(type = IdType.INPUT)
+    private String id;
+    
     /**
      * 旧密钥ID
      */
@@ -47,6 +59,7 @@ public class KeyRotationPlan {
     /**
      * 预热期持续天数
      */
+    @TableField(exist = false)
     private int warmUpDurationDays;
     
     /**
@@ -64,6 +77,7 @@ public class KeyRotationPlan {
     /**
      * 双密钥活跃期持续天数
      */
+    @TableField(exist = false)
     private int dualActiveDurationDays;
     
     /**
@@ -81,6 +95,7 @@ public class KeyRotationPlan {
     /**
      * 仅解密期持续天数
      */
+    @TableField(exist = false)
     private int decryptOnlyDurationDays;
     
     /**
@@ -96,20 +111,36 @@ public class KeyRotationPlan {
     private LocalDateTime createTime;
     
     /**
-     * 进度百分比
+     * 进度百分比，只由重加密进度和完成轮换经 updateProgress 写入；
+     * updateById 不写此列，避免阶段切换时用读到的旧值覆盖并发写入的新进度
      */
-    private int progressPercentage;
+    @TableField(updateStrategy = FieldStrategy.NEVER)
+    private Integer progressPercentage;
     
     /**
      * 当前阶段
      */
+    @TableField(exist = false)
     private String currentPhase;
     
     /**
      * 预计剩余时间（小时）
      */
+    @TableField(exist = false)
     private int estimatedRemainingHours;
     
+    /**
+     * 已进入的轮换阶段：WARMING_UP/DUAL_ACTIVE/DECRYPT_ONLY/EXPIRED
+     */
+    private String phase;
+    
+    /**
+     * 下一次阶段切换时间，为空表示不再自动切换
+     */
+    @TableField(updateStrategy = FieldStrategy.IGNORED)
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    private LocalDateTime nextTransitionTime;
+    
     /**
      * 计算当前进度百分比
      */
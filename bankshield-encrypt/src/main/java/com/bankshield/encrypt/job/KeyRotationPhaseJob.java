@@ -0,0 +1,90 @@
+package com.bankshield.encrypt.job;
+
+import com.bankshield.encrypt.entity.KeyRotationPlan;
+import com.bankshield.encrypt.enums.KeyRotationStatus;
+import com.bankshield.encrypt.mapper.KeyRotationPlanMapper;
+import com.bankshield.encrypt.service.SmoothKeyRotationService;
+import lombok.extern.slf4j.Slf4j;
+import org.quartz.DisallowConcurrentExecution;
+import org.quartz.Job;
+import org.quartz.JobExecutionContext;
+import org.quartz.JobExecutionException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 密钥轮换阶段切换任务
+ * 定时扫描已到切换时间的轮换计划并推进到下一阶段，
+ * 计划持久化在数据库中，重启后由本任务补做到期的切换
+ */
+@Slf4j
+@Component
+@DisallowConcurrentExecution
+public class KeyRotationPhaseJob implements Job {
+    
+    /**
+     * 单次最多推进的计划数，剩余的留给下一次调度
+     */
+    private static final int BATCH_LIMIT = 100;
+    
+    @Autowired
+    private KeyRotationPlanMapper rotationPlanMapper;
+    
+    @Autowired
+    private SmoothKeyRotationService rotationService;
+    
+    /**
+     * 抢占租约（分钟），节点在切换过程中宕机时，租约到期后由其他节点重试
+     */
+    @Value("${key.rotation.phase-lease-minutes:30}")
+    private int leaseMinutes;
+    
+    @Override
+    public void execute(JobExecutionContext context) throws JobExecutionException {
+        LocalDateTime now = LocalDateTime.now();
+        List<KeyRotationPlan> duePlans = rotationPlanMapper.selectDuePlans(now, BATCH_LIMIT);
+        if (duePlans.isEmpty()) {
+            return;
+        }
+        
+        int advanced = 0;
+        for (KeyRotationPlan plan : duePlans) {
+            // 多节点部署时只有抢占成功的节点执行切换
+            if (rotationPlanMapper.claimTransition(plan.getId(), plan.getNextTransitionTime(),
+                    now.plusMinutes(leaseMinutes)) == 0) {
+                continue;
+            }
+            try {
+                advance(plan);
+                advanced++;
+            } catch (Exception e) {
+                log.error("推进密钥轮换阶段失败: planId={}, phase={}", plan.getId(), plan.getPhase(), e);
+            }
+        }
+        log.info("密钥轮换阶段切换完成: due={}, advanced={}", duePlans.size(), advanced);
+    }
+    
+    /**
+     * 按当前阶段推进到下一阶段
+     */
+    private void advance(KeyRotationPlan plan) {
+        KeyRotationStatus phase = KeyRotationStatus.fromCode(plan.getPhase());
+        switch (phase) {
+            case WARMING_UP:
+                rotationService.enterDualActivePhase(plan);
+                break;
+            case DUAL_ACTIVE:
+                rotationService.enterDecryptOnlyPhase(plan);
+                break;
+            case DECRYPT_ONLY:
+                rotationService.completeRotation(plan);
+                break;
+            default:
+                log.warn("轮换计划阶段无需切换: planId={}, phase={}", plan.getId(), phase);
+        }
+    }
+}
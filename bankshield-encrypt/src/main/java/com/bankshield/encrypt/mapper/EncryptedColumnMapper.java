@@ -0,0 +1,30 @@
+package com.bankshield.encrypt.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.bankshield.encrypt.entity.EncryptedColumn;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+
+import java.util.List;
+
+/**
+ * 加密列登记Mapper
+ */
+@Mapper
+public interface EncryptedColumnMapper extends BaseMapper<EncryptedColumn> {
+    
+    /**
+     * 查询由指定密钥保护的加密列
+     */
+    @Select("SELECT * FROM encrypt_column_registry WHERE key_id = #{keyId} AND enabled = 1 ORDER BY id")
+    List<EncryptedColumn> selectByKeyId(@Param("keyId") Long keyId);
+    
+    /**
+     * 重加密完成后将加密列切换到新密钥
+     */
+    @Update("UPDATE encrypt_column_registry SET key_id = #{newKeyId}, update_time = NOW() " +
+            "WHERE id = #{id} AND key_id = #{oldKeyId}")
+    int switchKey(@Param("id") Long id, @Param("oldKeyId") Long oldKeyId, @Param("newKeyId") Long newKeyId);
+}
@@ -0,0 +1,52 @@
+package com.bankshield.encrypt.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.bankshield.encrypt.entity.KeyRotationPlan;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 密钥轮换计划Mapper
+ */
+@Mapper
+public interface KeyRotationPlanMapper extends BaseMapper<KeyRotationPlan> {
+    
+    /**
+     * 查询已到阶段切换时间的进行中计划
+     */
+    @Select("SELECT * FROM key_rotation_plan WHERE status = 'IN_PROGRESS' " +
+            "AND next_transition_time <= #{now} ORDER BY next_transition_time LIMIT #{limit}")
+    List<KeyRotationPlan> selectDuePlans(@Param("now") LocalDateTime now, @Param("limit") int limit);
+    
+    /**
+     * 抢占阶段切换：仅当切换时间未被其他节点改动时把它推后到租约时间
+     */
+    @Update("UPDATE key_rotation_plan SET next_transition_time = #{leaseUntil} " +
+            "WHERE id = #{id} AND status = 'IN_PROGRESS' AND next_transition_time = #{expected}")
+    int claimTransition(@Param("id") String id, @Param("expected") LocalDateTime expected,
+                        @Param("leaseUntil") LocalDateTime leaseUntil);
+    
+    /**
+     * 查询进行中的计划
+     */
+    @Select("SELECT * FROM key_rotation_plan WHERE status = 'IN_PROGRESS' ORDER BY create_time DESC")
+    List<KeyRotationPlan> selectActivePlans();
+    
+    /**
+     * 查询旧密钥最近的计划
+     */
+    @Select("SELECT * FROM key_rotation_plan WHERE old_key_id = #{oldKeyId} AND new_key_id = #{newKeyId} " +
+            "ORDER BY create_time DESC LIMIT 1")
+    KeyRotationPlan selectByKeys(@Param("oldKeyId") Long oldKeyId, @Param("newKeyId") Long newKeyId);
+    
+    /**
+     * 更新重加密进度
+     */
+    @Update("UPDATE key_rotation_plan SET progress_percentage = #{progress} WHERE id = #{id}")
+    int updateProgress(@Param("id") String id, @Param("progress") int progress);
+}
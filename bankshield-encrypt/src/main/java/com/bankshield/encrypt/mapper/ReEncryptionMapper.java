@@ -0,0 +1,56 @@
+package com.bankshield.encrypt.mapper;
+
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 重加密数据访问Mapper
+ * 表名与列名来自加密列登记表，调用方须先校验为合法标识符
+ */
+@Mapper
+public interface ReEncryptionMapper {
+    
+    /**
+     * 查询主键上下界
+     */
+    @Select("SELECT MIN(${pk}) AS minPk, MAX(${pk}) AS maxPk FROM ${table}")
+    Map<String, Object> selectPkBounds(@Param("table") String table, @Param("pk") String pk);
+    
+    /**
+     * 统计仍由指定密钥加密的行数
+     */
+    @Select("SELECT COUNT(*) FROM ${table} WHERE ${pk} > #{fromPk} AND ${column} LIKE #{prefix}")
+    long countByPrefix(@Param("table") String table, @Param("pk") String pk, @Param("column") String column,
+                       @Param("fromPk") long fromPk, @Param("prefix") String prefix);
+    
+    /**
+     * 按主键区间读取仍由指定密钥加密的行
+     */
+    @Select("SELECT ${pk} AS pk, ${column} AS val FROM ${table} " +
+            "WHERE ${pk} > #{fromPk} AND ${pk} <= #{toPk} AND ${column} LIKE #{prefix} " +
+            "ORDER BY ${pk} LIMIT #{limit}")
+    List<Map<String, Object>> selectBatch(@Param("table") String table, @Param("pk") String pk,
+                                          @Param("column") String column, @Param("fromPk") long fromPk,
+                                          @Param("toPk") long toPk, @Param("prefix") String prefix,
+                                          @Param("limit") int limit);
+    
+    /**
+     * 批量写回新密文
+     * 仅当列值仍等于读取时的旧密文才覆盖，避免覆盖业务在此期间写入的新值
+     */
+    @Update({"<script>",
+            "UPDATE ${table} SET ${column} = CASE",
+            "<foreach collection='rows' item='row'>",
+            "WHEN ${pk} = #{row.pk} AND ${column} = #{row.oldValue} THEN #{row.newValue}",
+            "</foreach>",
+            "ELSE ${column} END WHERE ${pk} IN",
+            "<foreach collection='rows' item='row' open='(' separator=',' close=')'>#{row.pk}</foreach>",
+            "</script>"})
+    int batchReplace(@Param("table") String table, @Param("pk") String pk, @Param("column") String column,
+                     @Param("rows") List<Map<String, Object>> rows);
+}
@@ -1,5 +1,7 @@
 package com.bankshield.encrypt.service;
 
+import java.util.Map;
+
 /**
  * 密钥存储服务接口
  * 负责密钥的安全存储和检索
@@ -24,11 +26,27 @@ public interface KeyStorageService {
     
     /**
      * 安全删除密钥材料
-     * 确保密钥材料被完全清除，不可恢复
+     * 确保密钥材料被完全清除，不可恢复，同时清除其解封缓存
      * 
      * @param keyMaterial 要删除的密钥材料
      */
     void secureDeleteKeyMaterial(String keyMaterial);
+
+    /**
+     * 使解封后的密钥材料缓存失效
+     * 密钥轮换、过期或销毁时调用，缓存中的明文字节及对应的SM4密钥句柄会被立即清零，
+     * 并广播到其他节点
+     * 
+     * @param encryptedKeyMaterial 加密的密钥材料
+     */
+    void invalidateKeyMaterial(String encryptedKeyMaterial);
+
+    /**
+     * 获取数据密钥缓存统计信息
+     * 
+     * @return 命中、未命中、淘汰次数及命中率
+     */
+    Map<String, Object> getKeyCacheStatistics();
     
     /**
      * 验证密钥存储配置
@@ -0,0 +1,53 @@
+package com.bankshield.encrypt.service;
+
+import com.bankshield.encrypt.entity.KeyRotationPlan;
+
+import java.util.Map;
+
+/**
+ * 数据重加密服务接口
+ * 密钥轮换进入仅解密期后，将登记的加密列从旧密钥迁移到新密钥
+ */
+public interface ReEncryptionService {
+
+    /**
+     * 按指定密钥加密字段值
+     * 密文格式为 {keyId}:{iv}:{cipherText}，重加密据此识别仍由旧密钥保护的行
+     *
+     * @param keyId 密钥ID
+     * @param plainText 明文
+     * @return 字段密文
+     */
+    String encryptField(Long keyId, String plainText);
+
+    /**
+     * 解密字段值，按密文中的密钥ID选择解密密钥
+     *
+     * @param cipherValue 字段密文
+     * @return 明文
+     */
+    String decryptField(String cipherValue);
+
+    /**
+     * 启动（或从断点恢复）后台重加密任务，已在运行时忽略
+     *
+     * @param plan 轮换计划
+     */
+    void startReEncryption(KeyRotationPlan plan);
+
+    /**
+     * 旧密钥保护的加密列是否已全部迁移到新密钥
+     *
+     * @param oldKeyId 旧密钥ID
+     * @return 是否完成
+     */
+    boolean isReEncryptionCompleted(Long oldKeyId);
+
+    /**
+     * 获取重加密进度
+     *
+     * @param keyId 旧密钥或新密钥ID
+     * @return 进度信息
+     */
+    Map<String, Object> getProgress(Long keyId);
+}
@@ -0,0 +1,162 @@
+package com.bankshield.encrypt.service.impl;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * 已解封数据密钥缓存
+ * 以加密存储的密钥材料为键缓存解封后的明文字节，按最大条目数LRU淘汰并按TTL过期；
+ * 条目被淘汰、过期或失效时立即清零字节数组。解封在锁外执行，同一密钥并发未命中时可能重复解封一次。
+ */
+final class DataKeyCache {
+
+    private final int maxEntries;
+    private final long ttlMillis;
+    private final LinkedHashMap<String, Entry> entries;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    DataKeyCache(int maxEntries, long ttlMillis) {
+        this.maxEntries = Math.max(1, maxEntries);
+        this.ttlMillis = ttlMillis;
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() > DataKeyCache.this.maxEntries) {
+                    eldest.getValue().wipe();
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * 获取解封后的密钥材料，未命中或已过期时调用unwrapper解封并缓存
+     *
+     * @param wrapped 加密存储的密钥材料
+     * @param unwrapper 解封函数
+     * @return 密钥材料明文
+     */
+    String get(String wrapped, Function<String, String> unwrapper) {
+        long now = System.currentTimeMillis();
+        synchronized (entries) {
+            Entry entry = entries.get(wrapped);
+            if (entry != null) {
+                if (entry.expireAt > now) {
+                    hits.increment();
+                    return entry.material();
+                }
+                entries.remove(wrapped);
+                entry.wipe();
+                evictions.increment();
+            }
+        }
+
+        misses.increment();
+        String material = unwrapper.apply(wrapped);
+        Entry created = new Entry(material.getBytes(StandardCharsets.UTF_8), now + ttlMillis);
+        synchronized (entries) {
+            Entry existing = entries.putIfAbsent(wrapped, created);
+            if (existing != null) {
+                created.wipe();
+            }
+        }
+        return material;
+    }
+
+    /**
+     * 失效单个密钥
+     */
+    void invalidate(String wrapped) {
+        synchronized (entries) {
+            Entry entry = entries.remove(wrapped);
+            if (entry != null) {
+                entry.wipe();
+            }
+        }
+    }
+
+    /**
+     * 清空缓存
+     */
+    void invalidateAll() {
+        synchronized (entries) {
+            entries.values().forEach(Entry::wipe);
+            entries.clear();
+        }
+    }
+
+    /**
+     * 清理过期条目
+     *
+     * @return 清理条数
+     */
+    int evictExpired() {
+        long now = System.currentTimeMillis();
+        int removed = 0;
+        synchronized (entries) {
+            Iterator<Entry> iterator = entries.values().iterator();
+            while (iterator.hasNext()) {
+                Entry entry = iterator.next();
+                if (entry.expireAt <= now) {
+                    entry.wipe();
+                    iterator.remove();
+                    removed++;
+                }
+            }
+        }
+        evictions.add(removed);
+        return removed;
+    }
+
+    int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    long getHits() {
+        return hits.sum();
+    }
+
+    long getMisses() {
+        return misses.sum();
+    }
+
+    long getEvictions() {
+        return evictions.sum();
+    }
+
+    double getHitRatio() {
+        long hit = hits.sum();
+        long total = hit + misses.sum();
+        return total == 0 ? 0.0 : (double) hit / total;
+    }
+
+    private static final class Entry {
+        private final byte[] material;
+        private final long expireAt;
+
+        private Entry(byte[] material, long expireAt) {
+            this.material = material;
+            this.expireAt = expireAt;
+        }
+
+        private String material() {
+            return new String(material, StandardCharsets.UTF_8);
+        }
+
+        private void wipe() {
+            Arrays.fill(material, (byte) 0);
+        }
+    }
+}
@@ -196,6 +196,9 @@ public class KeyManagementServiceImpl implements KeyManagementService {
             
             // 更新状态
             encryptionKeyMapper.updateKeyStatus(keyId, status.getCode());
+            if (status != KeyStatus.ACTIVE) {
+                keyStorageService.invalidateKeyMaterial(encryptionKey.getKeyMaterial());
+            }
             
             // 记录使用审计
             String operationType = "UPDATE_STATUS_" + status.getCode();
@@ -269,6 +272,7 @@ public class KeyManagementServiceImpl implements KeyManagementService {
             oldKey.setLastRotationTime(LocalDateTime.now());
             oldKey.setRotationCount(oldKey.getRotationCount() + 1);
             encryptionKeyMapper.updateById(oldKey);
+            keyStorageService.invalidateKeyMaterial(oldKey.getKeyMaterial());
             
             // 记录轮换历史
             KeyRotationHistory rotationHistory = new KeyRotationHistory();
@@ -3,17 +3,33 @@ package com.bankshield.encrypt.service.impl;
 import com.bankshield.api.service.SecureKeyManagementService;
 import com.bankshield.common.crypto.SM4Util;
 import com.bankshield.encrypt.service.KeyStorageService;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 /**
  * 密钥存储服务实现类
- * 使用SM4加密算法保护密钥材料
+ * 使用SM4加密算法保护密钥材料，解封后的密钥材料按TTL和最大条目数缓存，
+ * 避免每次字段加解密都用主密钥重新解封。
+ * 密钥失效时同时逐出SM4Util中缓存的密钥句柄，并通过Redis频道广播给其他节点，
+ * 各节点不必等待缓存TTL到期；Redis不可用时退化为仅本节点失效。
  */
 @Slf4j
 @Service
@@ -30,8 +46,35 @@ public class KeyStorageServiceImpl implements KeyStorageService {
     
     @Value("${bankshield.encrypt.vault-enabled:false}")
     private boolean vaultEnabled;
+
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    @Value("${bankshield.encrypt.key-cache.enabled:true}")
+    private boolean keyCacheEnabled;
+
+    @Value("${bankshield.encrypt.key-cache.max-entries:1024}")
+    private int keyCacheMaxEntries;
+
+    @Value("${bankshield.encrypt.key-cache.ttl-seconds:300}")
+    private long keyCacheTtlSeconds;
+
+    @Autowired(required = false)
+    private RedisConnectionFactory redisConnectionFactory;
+
+    @Value("${bankshield.encrypt.key-cache.broadcast-enabled:true}")
+    private boolean broadcastEnabled;
+
+    @Value("${bankshield.encrypt.key-cache.invalidation-channel:bankshield:encrypt:key-invalidation}")
+    private String invalidationChannel;
     
     private String actualMasterKey;
+
+    private DataKeyCache keyCache;
+
+    private StringRedisTemplate invalidationPublisher;
+
+    private RedisMessageListenerContainer invalidationListener;
     
     @PostConstruct
     public void init() {
@@ -51,6 +94,15 @@ public class KeyStorageServiceImpl implements KeyStorageService {
                 // 使用配置文件中的主密钥或生成默认密钥
                 useFallbackMasterKey();
             }
+
+            if (keyCacheEnabled) {
+                keyCache = new DataKeyCache(keyCacheMaxEntries, keyCacheTtlSeconds * 1000L);
+                registerKeyCacheMetrics();
+                log.info("数据密钥缓存已启用，最大条目数: {}, TTL: {}秒", keyCacheMaxEntries, keyCacheTtlSeconds);
+            }
+            if (broadcastEnabled && redisConnectionFactory != null) {
+                subscribeInvalidations();
+            }
             
             // 验证存储配置
             if (!validateStorageConfiguration()) {
@@ -62,6 +114,56 @@ public class KeyStorageServiceImpl implements KeyStorageService {
             throw new RuntimeException("密钥存储服务初始化失败: " + e.getMessage(), e);
         }
     }
+
+    @PreDestroy
+    public void destroy() {
+        if (invalidationListener != null) {
+            try {
+                invalidationListener.destroy();
+            } catch (Exception e) {
+                log.warn("关闭密钥失效订阅失败", e);
+            }
+        }
+        if (keyCache != null) {
+            keyCache.invalidateAll();
+        }
+    }
+
+    /**
+     * 订阅其他节点广播的密钥失效消息
+     */
+    private void subscribeInvalidations() {
+        invalidationPublisher = new StringRedisTemplate(redisConnectionFactory);
+        invalidationListener = new RedisMessageListenerContainer();
+        invalidationListener.setConnectionFactory(redisConnectionFactory);
+        invalidationListener.addMessageListener((message, pattern) ->
+                evictLocally(new String(message.getBody(), StandardCharsets.UTF_8)),
+                new ChannelTopic(invalidationChannel));
+        invalidationListener.afterPropertiesSet();
+        invalidationListener.start();
+        log.info("已订阅密钥失效广播频道: {}", invalidationChannel);
+    }
+
+    private void registerKeyCacheMetrics() {
+        if (meterRegistry == null) {
+            return;
+        }
+        FunctionCounter.builder("bankshield.encrypt.key_cache.hits", keyCache, DataKeyCache::getHits)
+            .description("数据密钥缓存命中次数")
+            .register(meterRegistry);
+        FunctionCounter.builder("bankshield.encrypt.key_cache.misses", keyCache, DataKeyCache::getMisses)
+            .description("数据密钥缓存未命中次数")
+            .register(meterRegistry);
+        FunctionCounter.builder("bankshield.encrypt.key_cache.evictions", keyCache, DataKeyCache::getEvictions)
+            .description("数据密钥缓存淘汰次数")
+            .register(meterRegistry);
+        Gauge.builder("bankshield.encrypt.key_cache.hit_ratio", keyCache, DataKeyCache::getHitRatio)
+            .description("数据密钥缓存命中率")
+            .register(meterRegistry);
+        Gauge.builder("bankshield.encrypt.key_cache.size", keyCache, DataKeyCache::size)
+            .description("数据密钥缓存条目数")
+            .register(meterRegistry);
+    }
     
     /**
      * 使用备用主密钥方案
@@ -114,7 +216,16 @@ public class KeyStorageServiceImpl implements KeyStorageService {
         if (encryptedKeyMaterial == null || encryptedKeyMaterial.trim().isEmpty()) {
             throw new IllegalArgumentException("加密的密钥材料不能为空");
         }
+        if (keyCache == null) {
+            return unwrapKeyMaterial(encryptedKeyMaterial);
+        }
+        return keyCache.get(encryptedKeyMaterial, this::unwrapKeyMaterial);
+    }
 
+    /**
+     * 使用主密钥解封密钥材料（不经过缓存）
+     */
+    private String unwrapKeyMaterial(String encryptedKeyMaterial) {
         try {
             switch (storageType.toUpperCase()) {
                 case "SM4":
@@ -123,9 +234,14 @@ public class KeyStorageServiceImpl implements KeyStorageService {
                     if (parts.length != 2) {
                         throw new IllegalArgumentException("加密数据格式错误，缺少IV");
                     }
-                    String iv = parts[0];
-                    String cipherText = parts[1];
-                    return SM4Util.decryptCBC(cipherText, actualMasterKey, iv);
+                    byte[] iv = Base64.getDecoder().decode(parts[0]);
+                    byte[] cipherText = Base64.getDecoder().decode(parts[1]);
+                    byte[] material = SM4Util.keyOf(actualMasterKey).decryptCBC(cipherText, iv);
+                    try {
+                        return new String(material, StandardCharsets.UTF_8);
+                    } finally {
+                        Arrays.fill(material, (byte) 0);
+                    }
                 default:
                     throw new IllegalArgumentException("不支持的存储类型: " + storageType);
             }
@@ -134,18 +250,78 @@ public class KeyStorageServiceImpl implements KeyStorageService {
             throw new RuntimeException("解密密钥材料失败", e);
         }
     }
+
+    @Override
+    public void invalidateKeyMaterial(String encryptedKeyMaterial) {
+        if (encryptedKeyMaterial == null) {
+            return;
+        }
+        evictLocally(encryptedKeyMaterial);
+        if (invalidationPublisher != null) {
+            try {
+                invalidationPublisher.convertAndSend(invalidationChannel, encryptedKeyMaterial);
+            } catch (Exception e) {
+                log.warn("广播密钥失效失败，其他节点将在缓存TTL到期后失效", e);
+            }
+        }
+    }
+
+    /**
+     * 清除本节点的解封缓存条目，并逐出SM4Util中以该密钥材料缓存的加解密句柄
+     * 句柄被逐出时其持有的密钥副本立即清零
+     */
+    private void evictLocally(String encryptedKeyMaterial) {
+        if (keyCache != null) {
+            keyCache.invalidate(encryptedKeyMaterial);
+        }
+        String material;
+        try {
+            material = unwrapKeyMaterial(encryptedKeyMaterial);
+        } catch (Exception e) {
+            // 无法解封的材料不可能以明文形式进入句柄缓存
+            log.debug("密钥材料无法解封，跳过句柄逐出");
+            return;
+        }
+        if (SM4Util.evict(material)) {
+            log.debug("已逐出并清零缓存的数据密钥句柄");
+        }
+    }
+
+    @Override
+    public Map<String, Object> getKeyCacheStatistics() {
+        Map<String, Object> statistics = new LinkedHashMap<>();
+        statistics.put("enabled", keyCache != null);
+        if (keyCache != null) {
+            statistics.put("size", keyCache.size());
+            statistics.put("maxEntries", keyCacheMaxEntries);
+            statistics.put("ttlSeconds", keyCacheTtlSeconds);
+            statistics.put("hits", keyCache.getHits());
+            statistics.put("misses", keyCache.getMisses());
+            statistics.put("evictions", keyCache.getEvictions());
+            statistics.put("hitRatio", keyCache.getHitRatio());
+        }
+        return statistics;
+    }
+
+    /**
+     * 定期清理过期的缓存条目，及时清零不再使用的密钥材料
+     */
+    @Scheduled(fixedDelayString = "${bankshield.encrypt.key-cache.sweep-interval-ms:60000}")
+    public void evictExpiredKeyMaterial() {
+        if (keyCache == null) {
+            return;
+        }
+        int removed = keyCache.evictExpired();
+        if (removed > 0) {
+            log.debug("清理过期数据密钥缓存条目: {}", removed);
+        }
+    }
     
     @Override
     public void secureDeleteKeyMaterial(String keyMaterial) {
         if (keyMaterial != null) {
-            // 用随机数据覆盖密钥材料
-            char[] randomData = new char[keyMaterial.length()];
-            Arrays.fill(randomData, '0');
-            String overwritten = new String(randomData);
-            
-            // 强制垃圾回收（虽然不能保证完全清除，但可以增加安全性）
-            System.gc();
-            
+            // String不可变，无法就地覆盖；能清零的只有本进程及其他节点缓存的字节副本
+            invalidateKeyMaterial(keyMaterial);
             log.debug("密钥材料已安全删除");
         }
     }
@@ -156,7 +332,7 @@ public class KeyStorageServiceImpl implements KeyStorageService {
             // 测试加密解密功能
             String testData = "test_key_material_12345";
             String encrypted = encryptKeyMaterial(testData);
-            String decrypted = decryptKeyMaterial(encrypted);
+            String decrypted = unwrapKeyMaterial(encrypted);
             
             boolean isValid = testData.equals(decrypted);
             if (isValid) {
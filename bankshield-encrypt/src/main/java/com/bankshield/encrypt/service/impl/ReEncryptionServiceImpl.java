@@ -0,0 +1,645 @@
+package com.bankshield.encrypt.service.impl;
+
+import com.bankshield.common.crypto.SM4Util;
+import com.bankshield.encrypt.entity.EncryptedColumn;
+import com.bankshield.encrypt.entity.EncryptionKey;
+import com.bankshield.encrypt.entity.KeyRotationHistory;
+import com.bankshield.encrypt.entity.KeyRotationPlan;
+import com.bankshield.encrypt.enums.KeyRotationStatus;
+import com.bankshield.encrypt.enums.KeyType;
+import com.bankshield.encrypt.mapper.EncryptedColumnMapper;
+import com.bankshield.encrypt.mapper.EncryptionKeyMapper;
+import com.bankshield.encrypt.mapper.KeyRotationHistoryMapper;
+import com.bankshield.encrypt.mapper.KeyRotationPlanMapper;
+import com.bankshield.encrypt.mapper.ReEncryptionMapper;
+import com.bankshield.encrypt.service.KeyStorageService;
+import com.bankshield.encrypt.service.ReEncryptionService;
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.baomidou.mybatisplus.core.conditions.update.UpdateWrapper;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+/**
+ * 数据重加密服务实现类
+ * 按主键区间切片并行迁移加密列，按行速率限流并根据批次耗时自适应降速，
+ * 每个切片完成后把连续完成的主键水位写入轮换历史作为断点，中断后从断点恢复。
+ */
+@Slf4j
+@Service
+public class ReEncryptionServiceImpl implements ReEncryptionService {
+
+    private static final Pattern IDENTIFIER = Pattern.compile("^[A-Za-z_][A-Za-z0-9_]{0,63}$");
+
+    private static final String FIELD_SEPARATOR = ":";
+
+    private static final String STATUS_IN_PROGRESS = "IN_PROGRESS";
+
+    @Autowired
+    private EncryptionKeyMapper encryptionKeyMapper;
+
+    @Autowired
+    private EncryptedColumnMapper encryptedColumnMapper;
+
+    @Autowired
+    private ReEncryptionMapper reEncryptionMapper;
+
+    @Autowired
+    private KeyRotationHistoryMapper rotationHistoryMapper;
+
+    @Autowired
+    private KeyRotationPlanMapper rotationPlanMapper;
+
+    @Autowired
+    private KeyStorageService keyStorageService;
+
+    @Value("${key.rotation.reencrypt.enabled:true}")
+    private boolean enabled;
+
+    @Value("${key.rotation.reencrypt.batch-size:500}")
+    private int batchSize;
+
+    @Value("${key.rotation.reencrypt.range-size:20000}")
+    private long rangeSize;
+
+    @Value("${key.rotation.reencrypt.parallelism:4}")
+    private int parallelism;
+
+    @Value("${key.rotation.reencrypt.max-rows-per-second:2000}")
+    private int maxRowsPerSecond;
+
+    @Value("${key.rotation.reencrypt.slow-batch-millis:1000}")
+    private long slowBatchMillis;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    /**
+     * 运行中的任务，按旧密钥ID索引
+     */
+    private final Map<Long, ReEncryptionTask> runningTasks = new ConcurrentHashMap<>();
+
+    /**
+     * 任务协调线程，同一时刻只迁移一个轮换，避免多个轮换叠加数据库压力
+     */
+    private ExecutorService coordinator;
+
+    /**
+     * 切片工作线程
+     */
+    private ExecutorService workers;
+
+    @PostConstruct
+    public void init() {
+        coordinator = Executors.newSingleThreadExecutor(namedThreadFactory("reencrypt-coordinator"));
+        workers = Executors.newFixedThreadPool(Math.max(1, parallelism), namedThreadFactory("reencrypt-worker"));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        runningTasks.values().forEach(task -> task.cancelled = true);
+        if (coordinator != null) {
+            coordinator.shutdownNow();
+        }
+        if (workers != null) {
+            workers.shutdownNow();
+            try {
+                workers.awaitTermination(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * 启动时恢复仍处于仅解密期的未完成任务
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeInterrupted() {
+        if (!enabled) {
+            return;
+        }
+        QueryWrapper<KeyRotationHistory> wrapper = new QueryWrapper<>();
+        wrapper.eq("rotation_status", STATUS_IN_PROGRESS).isNotNull("reencrypt_checkpoint");
+        for (KeyRotationHistory history : rotationHistoryMapper.selectList(wrapper)) {
+            EncryptionKey oldKey = encryptionKeyMapper.selectById(history.getOldKeyId());
+            if (oldKey != null && KeyRotationStatus.DECRYPT_ONLY.name().equals(oldKey.getRotationStatus())) {
+                KeyRotationPlan plan = rotationPlanMapper.selectByKeys(history.getOldKeyId(), history.getNewKeyId());
+                if (plan == null) {
+                    plan = new KeyRotationPlan();
+                    plan.setOldKeyId(history.getOldKeyId());
+                    plan.setNewKeyId(history.getNewKeyId());
+                    plan.setStatus(STATUS_IN_PROGRESS);
+                }
+                log.info("恢复未完成的重加密任务: oldKeyId={}, newKeyId={}", plan.getOldKeyId(), plan.getNewKeyId());
+                startReEncryption(plan);
+            }
+        }
+    }
+
+    @Override
+    public String encryptField(Long keyId, String plainText) {
+        String keyMaterial = loadKeyMaterial(keyId);
+        return withCachedKey(keyMaterial, key -> encode(keyId, key, plainText));
+    }
+
+    @Override
+    public String decryptField(String cipherValue) {
+        String[] parts = splitField(cipherValue);
+        String keyMaterial = loadKeyMaterial(Long.valueOf(parts[0]));
+        return withCachedKey(keyMaterial, key -> decode(key, parts));
+    }
+
+    @Override
+    public void startReEncryption(KeyRotationPlan plan) {
+        if (!enabled) {
+            log.info("数据重加密未启用，跳过: oldKeyId={}", plan.getOldKeyId());
+            return;
+        }
+        ReEncryptionTask task = new ReEncryptionTask(plan);
+        if (runningTasks.putIfAbsent(plan.getOldKeyId(), task) != null) {
+            log.info("重加密任务已在运行: oldKeyId={}", plan.getOldKeyId());
+            return;
+        }
+        coordinator.submit(() -> {
+            try {
+                runTask(task);
+            } catch (Exception e) {
+                log.error("重加密任务中断: oldKeyId={}, newKeyId={}", plan.getOldKeyId(), plan.getNewKeyId(), e);
+                recordFailure(task, "重加密中断，可从断点恢复: " + e.getMessage());
+            } finally {
+                runningTasks.remove(plan.getOldKeyId(), task);
+            }
+        });
+    }
+
+    @Override
+    public boolean isReEncryptionCompleted(Long oldKeyId) {
+        return !runningTasks.containsKey(oldKeyId) && encryptedColumnMapper.selectByKeyId(oldKeyId).isEmpty();
+    }
+
+    @Override
+    public Map<String, Object> getProgress(Long keyId) {
+        Map<String, Object> progress = new HashMap<>();
+        QueryWrapper<KeyRotationHistory> wrapper = new QueryWrapper<>();
+        wrapper.and(w -> w.eq("old_key_id", keyId).or().eq("new_key_id", keyId))
+               .orderByDesc("id")
+               .last("LIMIT 1");
+        KeyRotationHistory history = rotationHistoryMapper.selectOne(wrapper);
+        if (history == null) {
+            return progress;
+        }
+        ReEncryptionTask task = runningTasks.get(history.getOldKeyId());
+        progress.put("oldKeyId", history.getOldKeyId());
+        progress.put("newKeyId", history.getNewKeyId());
+        progress.put("running", task != null);
+        progress.put("total", task != null ? task.total : nullToZero(history.getReencryptTotal()));
+        progress.put("processed", task != null ? task.processed.get() : nullToZero(history.getReencryptCount()));
+        progress.put("progressPercentage", task != null ? task.percentage()
+                : (history.getProgressPercentage() == null ? 0 : history.getProgressPercentage()));
+        progress.put("remainingColumns", encryptedColumnMapper.selectByKeyId(history.getOldKeyId()).size());
+        return progress;
+    }
+
+    /**
+     * 执行一次重加密任务：逐列迁移，列内按主键区间切片并行
+     */
+    private void runTask(ReEncryptionTask task) throws Exception {
+        Long oldKeyId = task.plan.getOldKeyId();
+        Long newKeyId = task.plan.getNewKeyId();
+        KeyRotationHistory history = findHistory(oldKeyId, newKeyId);
+        if (history == null) {
+            throw new IllegalStateException("未找到进行中的轮换历史记录");
+        }
+        task.historyId = history.getId();
+        task.checkpoint.putAll(parseCheckpoint(history.getReencryptCheckpoint()));
+        // 任务期间使用自有的密钥句柄，不进入SM4Util的全局缓存，任务结束即清零
+        try (SM4Util.SM4Key oldKey = openKey(loadKeyMaterial(oldKeyId));
+             SM4Util.SM4Key newKey = openKey(loadKeyMaterial(newKeyId))) {
+            task.oldKey = oldKey;
+            task.newKey = newKey;
+            migrateColumns(task, oldKeyId, newKeyId, history);
+        }
+    }
+
+    private void migrateColumns(ReEncryptionTask task, Long oldKeyId, Long newKeyId, KeyRotationHistory history)
+            throws Exception {
+        List<EncryptedColumn> columns = encryptedColumnMapper.selectByKeyId(oldKeyId);
+        for (EncryptedColumn column : columns) {
+            validateIdentifiers(column);
+        }
+
+        // 总量 = 断点前已完成的行数 + 断点后仍由旧密钥加密的行数
+        long done = nullToZero(history.getReencryptCount());
+        long remaining = 0;
+        for (EncryptedColumn column : columns) {
+            remaining += reEncryptionMapper.countByPrefix(column.getTableName(), column.getPkColumn(),
+                    column.getColumnName(), task.checkpoint.getOrDefault(column.qualifiedName(), Long.MIN_VALUE),
+                    prefixOf(oldKeyId));
+        }
+        task.total = done + remaining;
+        task.processed.set(done);
+        log.info("开始重加密: oldKeyId={}, newKeyId={}, columns={}, remainingRows={}",
+                oldKeyId, newKeyId, columns.size(), remaining);
+        saveProgress(task);
+
+        for (EncryptedColumn column : columns) {
+            if (task.cancelled) {
+                return;
+            }
+            migrateColumn(task, column);
+        }
+
+        task.completed = true;
+        saveProgress(task);
+        updateHistory(task, "历史数据重加密完成");
+        log.info("重加密完成: oldKeyId={}, newKeyId={}, rows={}", oldKeyId, newKeyId, task.processed.get());
+    }
+
+    /**
+     * 迁移单个加密列
+     */
+    private void migrateColumn(ReEncryptionTask task, EncryptedColumn column) throws Exception {
+        String name = column.qualifiedName();
+        Map<String, Object> bounds = reEncryptionMapper.selectPkBounds(column.getTableName(), column.getPkColumn());
+        Object maxValue = bounds == null ? null : bounds.get("maxPk");
+        if (maxValue != null) {
+            long minPk = ((Number) bounds.get("minPk")).longValue();
+            long maxPk = ((Number) maxValue).longValue();
+            long start = Math.max(task.checkpoint.getOrDefault(name, minPk - 1), minPk - 1);
+
+            List<long[]> slices = new ArrayList<>();
+            for (long lo = start; lo < maxPk; lo += rangeSize) {
+                slices.add(new long[]{lo, Math.min(lo + rangeSize, maxPk)});
+            }
+            SliceWatermark watermark = new SliceWatermark(slices);
+            List<Future<?>> futures = new ArrayList<>(slices.size());
+            for (int i = 0; i < slices.size(); i++) {
+                final int index = i;
+                futures.add(workers.submit(() -> {
+                    long[] slice = slices.get(index);
+                    migrateSlice(task, column, slice[0], slice[1]);
+                    Long reached = watermark.complete(index);
+                    if (reached != null) {
+                        task.checkpoint.put(name, reached);
+                        saveProgress(task);
+                    }
+                    return null;
+                }));
+            }
+            try {
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+            } catch (ExecutionException e) {
+                task.cancelled = true;
+                futures.forEach(future -> future.cancel(true));
+                throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+            }
+            if (task.cancelled) {
+                return;
+            }
+
+            // 并发写入被跳过的行在这里兜底，确认该列已无旧密钥密文
+            long left = reEncryptionMapper.countByPrefix(column.getTableName(), column.getPkColumn(),
+                    column.getColumnName(), minPk - 1, prefixOf(task.plan.getOldKeyId()));
+            if (left > 0) {
+                throw new IllegalStateException(name + " 仍有 " + left + " 行由旧密钥加密");
+            }
+        }
+
+        encryptedColumnMapper.switchKey(column.getId(), task.plan.getOldKeyId(), task.plan.getNewKeyId());
+        task.checkpoint.remove(name);
+        saveProgress(task);
+        log.info("加密列迁移完成: {}", name);
+    }
+
+    /**
+     * 迁移一个主键区间 (fromPk, toPk]
+     */
+    private void migrateSlice(ReEncryptionTask task, EncryptedColumn column, long fromPk, long toPk) {
+        String prefix = prefixOf(task.plan.getOldKeyId());
+        long cursor = fromPk;
+        while (!task.cancelled) {
+            List<Map<String, Object>> rows = reEncryptionMapper.selectBatch(column.getTableName(),
+                    column.getPkColumn(), column.getColumnName(), cursor, toPk, prefix, batchSize);
+            if (rows.isEmpty()) {
+                return;
+            }
+            task.rateLimiter.acquire(rows.size());
+            long begin = System.currentTimeMillis();
+
+            List<Map<String, Object>> replacements = new ArrayList<>(rows.size());
+            for (Map<String, Object> row : rows) {
+                String oldValue = (String) row.get("val");
+                String[] parts = splitField(oldValue);
+                String plainText = decode(task.oldKey, parts);
+                Map<String, Object> replacement = new HashMap<>(4);
+                replacement.put("pk", row.get("pk"));
+                replacement.put("oldValue", oldValue);
+                replacement.put("newValue", encode(task.plan.getNewKeyId(), task.newKey, plainText));
+                replacements.add(replacement);
+            }
+            reEncryptionMapper.batchReplace(column.getTableName(), column.getPkColumn(),
+                    column.getColumnName(), replacements);
+
+            task.rateLimiter.feedback(System.currentTimeMillis() - begin);
+            task.processed.addAndGet(rows.size());
+            cursor = ((Number) rows.get(rows.size() - 1).get("pk")).longValue();
+            if (rows.size() < batchSize) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * 持久化断点与进度，并同步到轮换计划
+     */
+    private synchronized void saveProgress(ReEncryptionTask task) {
+        int percentage = task.percentage();
+        task.plan.setProgressPercentage(percentage);
+        if (task.plan.getId() != null) {
+            rotationPlanMapper.updateProgress(task.plan.getId(), percentage);
+        }
+        UpdateWrapper<KeyRotationHistory> wrapper = new UpdateWrapper<>();
+        wrapper.eq("id", task.historyId)
+               .set("reencrypt_total", task.total)
+               .set("reencrypt_count", task.processed.get())
+               .set("reencrypt_checkpoint", writeCheckpoint(task.checkpoint))
+               .set("progress_percentage", percentage);
+        rotationHistoryMapper.update(null, wrapper);
+    }
+
+    private void recordFailure(ReEncryptionTask task, String reason) {
+        if (task.historyId == null) {
+            return;
+        }
+        try {
+            saveProgress(task);
+            updateHistory(task, reason);
+        } catch (Exception e) {
+            log.error("记录重加密失败状态失败", e);
+        }
+    }
+
+    private void updateHistory(ReEncryptionTask task, String description) {
+        UpdateWrapper<KeyRotationHistory> wrapper = new UpdateWrapper<>();
+        wrapper.eq("id", task.historyId).set("failure_reason", description);
+        rotationHistoryMapper.update(null, wrapper);
+    }
+
+    private KeyRotationHistory findHistory(Long oldKeyId, Long newKeyId) {
+        QueryWrapper<KeyRotationHistory> wrapper = new QueryWrapper<>();
+        wrapper.eq("old_key_id", oldKeyId)
+               .eq("new_key_id", newKeyId)
+               .eq("rotation_status", STATUS_IN_PROGRESS)
+               .orderByDesc("id")
+               .last("LIMIT 1");
+        return rotationHistoryMapper.selectOne(wrapper);
+    }
+
+    /**
+     * 读取并解密SM4密钥材料
+     */
+    private String loadKeyMaterial(Long keyId) {
+        EncryptionKey key = encryptionKeyMapper.selectById(keyId);
+        if (key == null) {
+            throw new IllegalArgumentException("密钥不存在: " + keyId);
+        }
+        if (!KeyType.SM4.getCode().equals(key.getKeyType())) {
+            throw new IllegalStateException("仅支持SM4对称密钥的数据重加密: " + keyId);
+        }
+        return keyStorageService.decryptKeyMaterial(key.getKeyMaterial());
+    }
+
+    /**
+     * 使用SM4Util缓存的密钥句柄执行加解密
+     * 句柄可能在使用过程中被密钥轮换或销毁流程逐出并清零，此时按同一密钥材料重新取得句柄重试一次
+     */
+    private <T> T withCachedKey(String keyMaterial, Function<SM4Util.SM4Key, T> operation) {
+        SM4Util.SM4Key key = SM4Util.keyOf(keyMaterial);
+        try {
+            return operation.apply(key);
+        } catch (RuntimeException e) {
+            if (!key.isDestroyed()) {
+                throw e;
+            }
+            return operation.apply(SM4Util.keyOf(keyMaterial));
+        }
+    }
+
+    /**
+     * 由Base64密钥材料创建调用方自有的密钥句柄，解码出的密钥字节立即清零
+     */
+    private static SM4Util.SM4Key openKey(String keyMaterial) {
+        byte[] keyBytes = Base64.getDecoder().decode(keyMaterial);
+        try {
+            return SM4Util.keyOf(keyBytes);
+        } finally {
+            Arrays.fill(keyBytes, (byte) 0);
+        }
+    }
+
+    private String encode(Long keyId, SM4Util.SM4Key key, String plainText) {
+        byte[] iv = SM4Util.generateIVBytes();
+        byte[] cipherText = key.encryptCBC(plainText.getBytes(StandardCharsets.UTF_8), iv);
+        Base64.Encoder encoder = Base64.getEncoder();
+        return keyId + FIELD_SEPARATOR + encoder.encodeToString(iv) + FIELD_SEPARATOR + encoder.encodeToString(cipherText);
+    }
+
+    private String decode(SM4Util.SM4Key key, String[] parts) {
+        Base64.Decoder decoder = Base64.getDecoder();
+        byte[] plainText = key.decryptCBC(decoder.decode(parts[2]), decoder.decode(parts[1]));
+        return new String(plainText, StandardCharsets.UTF_8);
+    }
+
+    private String[] splitField(String cipherValue) {
+        String[] parts = cipherValue == null ? new String[0] : cipherValue.split(FIELD_SEPARATOR, 3);
+        if (parts.length != 3) {
+            throw new IllegalArgumentException("字段密文格式错误，应为 keyId:iv:cipherText");
+        }
+        return parts;
+    }
+
+    private static String prefixOf(Long keyId) {
+        return keyId + FIELD_SEPARATOR + "%";
+    }
+
+    private static void validateIdentifiers(EncryptedColumn column) {
+        for (String identifier : new String[]{column.getTableName(), column.getPkColumn(), column.getColumnName()}) {
+            if (identifier == null || !IDENTIFIER.matcher(identifier).matches()) {
+                throw new IllegalArgumentException("加密列登记包含非法标识符: " + identifier);
+            }
+        }
+    }
+
+    private Map<String, Long> parseCheckpoint(String json) {
+        if (json == null || json.isEmpty()) {
+            return new LinkedHashMap<>();
+        }
+        try {
+            return objectMapper.readValue(json, new TypeReference<LinkedHashMap<String, Long>>() {});
+        } catch (Exception e) {
+            log.warn("重加密断点无法解析，将从头开始: {}", json);
+            return new LinkedHashMap<>();
+        }
+    }
+
+    private String writeCheckpoint(Map<String, Long> checkpoint) {
+        try {
+            return objectMapper.writeValueAsString(checkpoint);
+        } catch (Exception e) {
+            throw new IllegalStateException("序列化重加密断点失败", e);
+        }
+    }
+
+    private static long nullToZero(Long value) {
+        return value == null ? 0L : value;
+    }
+
+    private static java.util.concurrent.ThreadFactory namedThreadFactory(String prefix) {
+        AtomicInteger sequence = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + "-" + sequence.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * 一次轮换的重加密任务状态
+     */
+    private final class ReEncryptionTask {
+        private final KeyRotationPlan plan;
+        private final Map<String, Long> checkpoint = new ConcurrentHashMap<>();
+        private final AtomicLong processed = new AtomicLong();
+        private final AdaptiveRateLimiter rateLimiter = new AdaptiveRateLimiter(maxRowsPerSecond, slowBatchMillis);
+        private volatile long total;
+        private volatile boolean cancelled;
+        private volatile boolean completed;
+        private Long historyId;
+        private SM4Util.SM4Key oldKey;
+        private SM4Util.SM4Key newKey;
+
+        private ReEncryptionTask(KeyRotationPlan plan) {
+            this.plan = plan;
+        }
+
+        private int percentage() {
+            if (completed) {
+                return 100;
+            }
+            if (total <= 0) {
+                return 0;
+            }
+            // 全部列切换到新密钥前最多显示99%
+            return (int) Math.min(99, processed.get() * 100 / total);
+        }
+    }
+
+    /**
+     * 切片完成水位：只有某切片之前的切片全部完成，水位才推进到该切片上界
+     */
+    static final class SliceWatermark {
+        private final List<long[]> slices;
+        private final boolean[] completed;
+        private int next;
+
+        SliceWatermark(List<long[]> slices) {
+            this.slices = slices;
+            this.completed = new boolean[slices.size()];
+        }
+
+        /**
+         * 标记切片完成
+         *
+         * @return 推进后的水位，未推进时为null
+         */
+        synchronized Long complete(int index) {
+            completed[index] = true;
+            int before = next;
+            while (next < completed.length && completed[next]) {
+                next++;
+            }
+            return next > before ? slices.get(next - 1)[1] : null;
+        }
+    }
+
+    /**
+     * 行级速率限制器
+     * 批次耗时超过阈值时速率减半（不低于上限的10%），之后每个正常批次恢复10%
+     */
+    static final class AdaptiveRateLimiter {
+        private final double maxRate;
+        private final long slowBatchMillis;
+        private double currentRate;
+        private long nextFreeNanos;
+
+        AdaptiveRateLimiter(int maxRowsPerSecond, long slowBatchMillis) {
+            this.maxRate = maxRowsPerSecond;
+            this.slowBatchMillis = slowBatchMillis;
+            this.currentRate = maxRowsPerSecond;
+        }
+
+        void acquire(int rows) {
+            if (maxRate <= 0) {
+                return;
+            }
+            long waitNanos;
+            synchronized (this) {
+                long now = System.nanoTime();
+                long start = Math.max(now, nextFreeNanos);
+                waitNanos = start - now;
+                nextFreeNanos = start + (long) (rows * 1_000_000_000L / currentRate);
+            }
+            if (waitNanos > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(waitNanos);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("重加密任务被中断", e);
+                }
+            }
+        }
+
+        synchronized void feedback(long batchMillis) {
+            if (maxRate <= 0) {
+                return;
+            }
+            if (batchMillis > slowBatchMillis) {
+                currentRate = Math.max(maxRate * 0.1, currentRate / 2);
+            } else {
+                currentRate = Math.min(maxRate, currentRate * 1.1);
+            }
+        }
+
+        synchronized double getCurrentRate() {
+            return currentRate;
+        }
+    }
+}
@@ -10,9 +10,13 @@ import com.bankshield.encrypt.enums.KeyType;
 import com.bankshield.encrypt.enums.KeyUsage;
 import com.bankshield.encrypt.mapper.EncryptionKeyMapper;
 import com.bankshield.encrypt.mapper.KeyRotationHistoryMapper;
+import com.bankshield.encrypt.mapper.KeyRotationPlanMapper;
 import com.bankshield.encrypt.service.KeyManagementService;
+import com.bankshield.encrypt.service.KeyStorageService;
+import com.bankshield.encrypt.service.ReEncryptionService;
 import com.bankshield.encrypt.service.SmoothKeyRotationService;
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.baomidou.mybatisplus.core.conditions.update.UpdateWrapper;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
@@ -20,16 +24,13 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
-import java.time.Duration;
 import java.util.List;
 import java.util.UUID;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
 
 /**
  * 平滑密钥轮换服务实现类
  * 实现四阶段平滑轮换：预热期→双密钥期→仅解密期→过期
+ * 轮换计划持久化在key_rotation_plan表，阶段切换由KeyRotationPhaseJob按nextTransitionTime驱动
  */
 @Slf4j
 @Service
@@ -41,9 +42,18 @@ public class SmoothKeyRotationServiceImpl implements SmoothKeyRotationService {
     @Autowired
     private KeyRotationHistoryMapper rotationHistoryMapper;
     
+    @Autowired
+    private KeyRotationPlanMapper rotationPlanMapper;
+    
     @Autowired
     private KeyManagementService keyManagementService;
     
+    @Autowired
+    private ReEncryptionService reEncryptionService;
+    
+    @Autowired
+    private KeyStorageService keyStorageService;
+    
     // 轮换配置
     @Value("${key.rotation.warm-up-days:3}")
     private int warmUpDays;
@@ -57,6 +67,9 @@ public class SmoothKeyRotationServiceImpl implements SmoothKeyRotationService {
     @Value("${key.rotation.auto-schedule:true}")
     private boolean autoSchedule;
     
+    @Value("${key.rotation.reencrypt.complete-retry-minutes:60}")
+    private int completeRetryMinutes;
+    
     /**
      * 执行平滑密钥轮换
      */
@@ -134,8 +147,9 @@ public class SmoothKeyRotationServiceImpl implements SmoothKeyRotationService {
             encryptionKeyMapper.updateById(oldKey);
             encryptionKeyMapper.updateById(newKey);
             
-            // 4. 创建轮换计划
+            // 4. 创建并持久化轮换计划
             KeyRotationPlan plan = createRotationPlan(oldKey, newKey, rotationReason);
+            rotationPlanMapper.insert(plan);
             
             // 5. 记录轮换历史
             KeyRotationHistory history = new KeyRotationHistory();
@@ -149,13 +163,8 @@ public class SmoothKeyRotationServiceImpl implements SmoothKeyRotationService {
             
             rotationHistoryMapper.insert(history);
             
-            // 6. 启动轮换定时任务
-            if (autoSchedule) {
-                scheduleRotationPhases(plan);
-            }
-            
-            log.info("平滑密钥轮换计划创建成功: oldKeyId={}, newKeyId={}, planId={}", 
-                     oldKeyId, newKeyId, plan.hashCode());
+            log.info("平滑密钥轮换计划创建成功: oldKeyId={}, newKeyId={}, planId={}, nextTransition={}", 
+                     oldKeyId, newKeyId, plan.getId(), plan.getNextTransitionTime());
             
             return Result.success(plan);
             
@@ -188,6 +197,11 @@ public class SmoothKeyRotationServiceImpl implements SmoothKeyRotationService {
             // 更新轮换历史
             updateRotationHistory(plan, "进入双密钥活跃期");
             
+            plan.setPhase(KeyRotationStatus.DUAL_ACTIVE.name());
+            plan.setCurrentPhase("双密钥期");
+            plan.setNextTransitionTime(plan.getDualActiveEndTime());
+            savePlan(plan);
+            
             log.info("双密钥活跃期开始: 新旧密钥并行运行");
             
         } catch (Exception e) {
@@ -219,7 +233,15 @@ public class SmoothKeyRotationServiceImpl implements SmoothKeyRotationService {
             // 更新轮换历史
             updateRotationHistory(plan, "进入仅解密期");
             
-            log.info("仅解密期开始: 旧密钥仅用于解密历史数据");
+            plan.setPhase(KeyRotationStatus.DECRYPT_ONLY.name());
+            plan.setCurrentPhase("仅解密期");
+            plan.setNextTransitionTime(plan.getDecryptOnlyEndTime());
+            savePlan(plan);
+            
+            // 新数据已全部使用新密钥，开始把历史密文迁移到新密钥
+            reEncryptionService.startReEncryption(plan);
+            
+            log.info("仅解密期开始: 旧密钥仅用于解密历史数据，后台重加密已启动");
             
         } catch (Exception e) {
             log.error("进入仅解密期失败", e);
@@ -236,12 +258,23 @@ public class SmoothKeyRotationServiceImpl implements SmoothKeyRotationService {
         log.info("完成密钥轮换: oldKey={}, newKey={}", plan.getOldKeyId(), plan.getNewKeyId());
         
         try {
+            // 历史数据仍由旧密钥加密时不能下线旧密钥，恢复重加密并推迟完成
+            if (!reEncryptionService.isReEncryptionCompleted(plan.getOldKeyId())) {
+                log.warn("历史数据重加密未完成，推迟{}分钟完成轮换: oldKey={}", completeRetryMinutes, plan.getOldKeyId());
+                updateRotationHistory(plan, "历史数据重加密未完成，推迟完成轮换");
+                reEncryptionService.startReEncryption(plan);
+                plan.setNextTransitionTime(LocalDateTime.now().plusMinutes(completeRetryMinutes));
+                savePlan(plan);
+                return;
+            }
+            
             // 旧密钥过期
             EncryptionKey oldKey = encryptionKeyMapper.selectById(plan.getOldKeyId());
             oldKey.setKeyStatus(KeyStatus.EXPIRED.name());
             oldKey.setExpireTime(LocalDateTime.now());
             oldKey.setRotationStatus(KeyRotationStatus.EXPIRED.name());
             encryptionKeyMapper.updateById(oldKey);
+            keyStorageService.invalidateKeyMaterial(oldKey.getKeyMaterial());
             
             // 新密钥完全激活
             EncryptionKey newKey = encryptionKeyMapper.selectById(plan.getNewKeyId());
@@ -253,7 +286,15 @@ public class SmoothKeyRotationServiceImpl implements SmoothKeyRotationService {
             updateRotationHistory(plan, "轮换完成");
             
             plan.setStatus("SUCCESS");
+            plan.setPhase(KeyRotationStatus.EXPIRED.name());
+            plan.setCurrentPhase("轮换完成");
+            plan.setProgressPercentage(100);
             plan.setCompleteTime(LocalDateTime.now());
+            plan.setNextTransitionTime(null);
+            savePlan(plan);
+            if (plan.getId() != null) {
+                rotationPlanMapper.updateProgress(plan.getId(), 100);
+            }
             
             log.info("密钥轮换完成: 旧密钥已安全下线，新密钥完全接管");
             
@@ -272,8 +313,31 @@ public class SmoothKeyRotationServiceImpl implements SmoothKeyRotationService {
         try {
             log.info("取消密钥轮换: planId={}, reason={}", planId, reason);
             
-            // 这里应该实现具体的取消逻辑
-            // 包括恢复密钥状态、清理计划等
+            KeyRotationPlan plan = rotationPlanMapper.selectById(planId);
+            if (plan == null) {
+                return Result.error(404, "轮换计划不存在");
+            }
+            if (!"IN_PROGRESS".equals(plan.getStatus())) {
+                return Result.error(400, "只有进行中的轮换计划才能取消");
+            }
+            // 双密钥期之后新密钥已承担加密，取消会导致新数据无法按原计划迁移
+            if (!KeyRotationStatus.WARMING_UP.name().equals(plan.getPhase())) {
+                return Result.error(400, "新密钥已启用，只能在预热期取消轮换");
+            }
+            
+            // 恢复旧密钥，停用新密钥
+            UpdateWrapper<EncryptionKey> oldKeyWrapper = new UpdateWrapper<>();
+            oldKeyWrapper.eq("id", plan.getOldKeyId())
+                         .set("rotation_status", KeyRotationStatus.ACTIVE.name())
+                         .set("next_key_id", null)
+                         .set("rotation_complete_time", null);
+            encryptionKeyMapper.update(null, oldKeyWrapper);
+            encryptionKeyMapper.updateKeyStatus(plan.getNewKeyId(), KeyStatus.INACTIVE.name());
+            
+            plan.setStatus("CANCELLED");
+            plan.setNextTransitionTime(null);
+            savePlan(plan);
+            updateRotationHistory(plan, "轮换已取消: " + reason);
             
             return Result.success();
         } catch (Exception e) {
@@ -287,9 +351,12 @@ public class SmoothKeyRotationServiceImpl implements SmoothKeyRotationService {
      */
     @Override
     public Result<KeyRotationPlan> getRotationPlan(String planId) {
-        // 这里应该从持久化存储中获取轮换计划
-        // 为了简化实现，返回空结果
-        return Result.error(404, "轮换计划不存在");
+        KeyRotationPlan plan = rotationPlanMapper.selectById(planId);
+        if (plan == null) {
+            return Result.error(404, "轮换计划不存在");
+        }
+        plan.setCurrentPhase(plan.getCurrentPhaseDescription());
+        return Result.success(plan);
     }
     
     /**
@@ -320,9 +387,9 @@ public class SmoothKeyRotationServiceImpl implements SmoothKeyRotationService {
      */
     @Override
     public Result<List<KeyRotationPlan>> getActiveRotationPlans() {
-        // 这里应该查询数据库中的活跃轮换计划
-        // 为了简化实现，返回空列表
-        return Result.success(java.util.Collections.emptyList());
+        List<KeyRotationPlan> plans = rotationPlanMapper.selectActivePlans();
+        plans.forEach(plan -> plan.setCurrentPhase(plan.getCurrentPhaseDescription()));
+        return Result.success(plans);
     }
     
     /**
@@ -334,6 +401,7 @@ public class SmoothKeyRotationServiceImpl implements SmoothKeyRotationService {
         LocalDateTime now = LocalDateTime.now();
         
         // 基本信息
+        plan.setId(UUID.randomUUID().toString().replace("-", ""));
         plan.setOldKeyId(oldKey.getId());
         plan.setNewKeyId(newKey.getId());
         plan.setStatus("IN_PROGRESS");
@@ -363,52 +431,11 @@ public class SmoothKeyRotationServiceImpl implements SmoothKeyRotationService {
         plan.setCurrentPhase("预热期");
         plan.setEstimatedRemainingHours((warmUpDays + dualActiveDays + decryptOnlyDays) * 24);
         
-        return plan;
-    }
-    
-    /**
-     * 调度轮换的各个阶段
-     */
-    private void scheduleRotationPhases(KeyRotationPlan plan) {
-        try {
-            // 阶段1: 预热期结束（启用双密钥）
-            scheduleTask(() -> enterDualActivePhase(plan), plan.getWarmUpEndTime());
-            
-            // 阶段2: 双密钥期结束（旧密钥只用于解密）
-            scheduleTask(() -> enterDecryptOnlyPhase(plan), plan.getDualActiveEndTime());
-            
-            // 阶段3: 仅解密期结束（旧密钥过期）
-            scheduleTask(() -> completeRotation(plan), plan.getDecryptOnlyEndTime());
-            
-            log.info("已调度密钥轮换任务: warmUp={}, dualActive={}, decryptOnly={}", 
-                     plan.getWarmUpEndTime(), plan.getDualActiveEndTime(), plan.getDecryptOnlyEndTime());
-            
-        } catch (Exception e) {
-            log.error("调度轮换阶段失败", e);
-            handleRotationFailure(plan, "调度轮换阶段失败: " + e.getMessage());
-        }
-    }
-    
-    /**
-     * 调度任务
-     */
-    private void scheduleTask(Runnable task, LocalDateTime executeTime) {
-        long delay = Duration.between(LocalDateTime.now(), executeTime).toMillis();
+        // 关闭自动调度时不设置切换时间，阶段需手动推进
+        plan.setPhase(KeyRotationStatus.WARMING_UP.name());
+        plan.setNextTransitionTime(autoSchedule ? plan.getWarmUpEndTime() : null);
         
-        if (delay > 0) {
-            ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
-            scheduler.schedule(() -> {
-                try {
-                    task.run();
-                } catch (Exception e) {
-                    log.error("执行调度任务失败", e);
-                }
-            }, delay, TimeUnit.MILLISECONDS);
-            scheduler.shutdown();
-        } else {
-            // 如果执行时间已过，立即执行
-            task.run();
-        }
+        return plan;
     }
     
     /**
@@ -427,6 +454,15 @@ public class SmoothKeyRotationServiceImpl implements SmoothKeyRotationService {
                 KeyRotationStatus.DECRYPT_ONLY.name().equals(rotationStatus));
     }
     
+    /**
+     * 持久化轮换计划，未持久化的计划（无ID）忽略
+     */
+    private void savePlan(KeyRotationPlan plan) {
+        if (plan.getId() != null) {
+            rotationPlanMapper.updateById(plan);
+        }
+    }
+    
     /**
      * 更新轮换历史
      */
@@ -455,6 +491,8 @@ public class SmoothKeyRotationServiceImpl implements SmoothKeyRotationService {
             log.error("密钥轮换失败: {}", failureReason);
             
             plan.setStatus("FAILED");
+            plan.setNextTransitionTime(null);
+            savePlan(plan);
             
             // 更新轮换历史
             updateRotationHistory(plan, "轮换失败: " + failureReason);
@@ -0,0 +1,81 @@
+package com.bankshield.encrypt.job;
+
+import com.bankshield.encrypt.entity.KeyRotationPlan;
+import com.bankshield.encrypt.mapper.KeyRotationPlanMapper;
+import com.bankshield.encrypt.service.SmoothKeyRotationService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 密钥轮换阶段切换任务测试
+ *
+ * @author BankShield
+ */
+@DisplayName("密钥轮换阶段切换任务测试")
+public class KeyRotationPhaseJobTest {
+
+    private KeyRotationPlanMapper planMapper;
+    private SmoothKeyRotationService rotationService;
+    private KeyRotationPhaseJob job;
+
+    @BeforeEach
+    void setUp() {
+        planMapper = mock(KeyRotationPlanMapper.class);
+        rotationService = mock(SmoothKeyRotationService.class);
+        job = new KeyRotationPhaseJob();
+        ReflectionTestUtils.setField(job, "rotationPlanMapper", planMapper);
+        ReflectionTestUtils.setField(job, "rotationService", rotationService);
+        ReflectionTestUtils.setField(job, "leaseMinutes", 30);
+    }
+
+    @Test
+    @DisplayName("按阶段推进到期计划，抢占失败的计划跳过")
+    void testAdvanceDuePlans() throws Exception {
+        KeyRotationPlan warmingUp = plan("p1", "WARMING_UP");
+        KeyRotationPlan dualActive = plan("p2", "DUAL_ACTIVE");
+        KeyRotationPlan decryptOnly = plan("p3", "DECRYPT_ONLY");
+        KeyRotationPlan claimedElsewhere = plan("p4", "WARMING_UP");
+        when(planMapper.selectDuePlans(any(), anyInt()))
+                .thenReturn(Arrays.asList(warmingUp, dualActive, decryptOnly, claimedElsewhere));
+        when(planMapper.claimTransition(anyString(), any(), any())).thenReturn(1);
+        when(planMapper.claimTransition(eq("p4"), any(), any())).thenReturn(0);
+
+        job.execute(null);
+
+        verify(rotationService).enterDualActivePhase(warmingUp);
+        verify(rotationService).enterDecryptOnlyPhase(dualActive);
+        verify(rotationService).completeRotation(decryptOnly);
+        verify(rotationService, never()).enterDualActivePhase(claimedElsewhere);
+    }
+
+    @Test
+    @DisplayName("单个计划切换失败不影响其他计划")
+    void testFailureIsolated() throws Exception {
+        KeyRotationPlan failing = plan("p1", "WARMING_UP");
+        KeyRotationPlan next = plan("p2", "DUAL_ACTIVE");
+        when(planMapper.selectDuePlans(any(), anyInt())).thenReturn(Arrays.asList(failing, next));
+        when(planMapper.claimTransition(anyString(), any(), any())).thenReturn(1);
+        doThrow(new RuntimeException("db down")).when(rotationService).enterDualActivePhase(failing);
+
+        job.execute(null);
+
+        verify(rotationService).enterDecryptOnlyPhase(next);
+    }
+
+    private KeyRotationPlan plan(String id, String phase) {
+        KeyRotationPlan plan = new KeyRotationPlan();
+        plan.setId(id);
+        plan.setPhase(phase);
+        plan.setStatus("IN_PROGRESS");
+        plan.setNextTransitionTime(LocalDateTime.now().minusMinutes(1));
+        return plan;
+    }
+}
@@ -0,0 +1,222 @@
+package com.bankshield.encrypt.service;
+
+import com.bankshield.common.crypto.SM4Util;
+import com.bankshield.encrypt.entity.EncryptedColumn;
+import com.bankshield.encrypt.entity.EncryptionKey;
+import com.bankshield.encrypt.entity.KeyRotationHistory;
+import com.bankshield.encrypt.entity.KeyRotationPlan;
+import com.bankshield.encrypt.mapper.EncryptedColumnMapper;
+import com.bankshield.encrypt.mapper.EncryptionKeyMapper;
+import com.bankshield.encrypt.mapper.KeyRotationHistoryMapper;
+import com.bankshield.encrypt.mapper.KeyRotationPlanMapper;
+import com.bankshield.encrypt.mapper.ReEncryptionMapper;
+import com.bankshield.encrypt.service.impl.ReEncryptionServiceImpl;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 数据重加密服务测试
+ *
+ * @author BankShield
+ */
+@DisplayName("数据重加密服务测试")
+public class ReEncryptionServiceTest {
+
+    private static final Long OLD_KEY_ID = 1L;
+    private static final Long NEW_KEY_ID = 2L;
+
+    private final NavigableMap<Long, String> table = new ConcurrentSkipListMap<>();
+    private final AtomicBoolean switched = new AtomicBoolean();
+    private final AtomicInteger replaced = new AtomicInteger();
+    private KeyRotationHistory history;
+    private EncryptedColumn column;
+    private ReEncryptionServiceImpl service;
+
+    @BeforeEach
+    void setUp() {
+        EncryptionKeyMapper keyMapper = mock(EncryptionKeyMapper.class);
+        when(keyMapper.selectById(OLD_KEY_ID)).thenReturn(key(OLD_KEY_ID));
+        when(keyMapper.selectById(NEW_KEY_ID)).thenReturn(key(NEW_KEY_ID));
+
+        KeyStorageService storageService = mock(KeyStorageService.class);
+        when(storageService.decryptKeyMaterial(anyString())).thenAnswer(inv -> inv.getArgument(0));
+
+        column = new EncryptedColumn();
+        column.setId(10L);
+        column.setTableName("t_customer");
+        column.setPkColumn("id");
+        column.setColumnName("id_card");
+        column.setKeyId(OLD_KEY_ID);
+        EncryptedColumnMapper columnMapper = mock(EncryptedColumnMapper.class);
+        when(columnMapper.selectByKeyId(OLD_KEY_ID)).thenAnswer(inv ->
+                switched.get() ? Collections.emptyList() : Collections.singletonList(column));
+        when(columnMapper.switchKey(10L, OLD_KEY_ID, NEW_KEY_ID)).thenAnswer(inv -> {
+            switched.set(true);
+            return 1;
+        });
+
+        history = new KeyRotationHistory();
+        history.setId(100L);
+        history.setOldKeyId(OLD_KEY_ID);
+        history.setNewKeyId(NEW_KEY_ID);
+        history.setRotationStatus("IN_PROGRESS");
+        KeyRotationHistoryMapper historyMapper = mock(KeyRotationHistoryMapper.class);
+        when(historyMapper.selectOne(any())).thenAnswer(inv -> history);
+
+        service = new ReEncryptionServiceImpl();
+        ReflectionTestUtils.setField(service, "encryptionKeyMapper", keyMapper);
+        ReflectionTestUtils.setField(service, "encryptedColumnMapper", columnMapper);
+        ReflectionTestUtils.setField(service, "reEncryptionMapper", tableMapper());
+        ReflectionTestUtils.setField(service, "rotationHistoryMapper", historyMapper);
+        ReflectionTestUtils.setField(service, "rotationPlanMapper", mock(KeyRotationPlanMapper.class));
+        ReflectionTestUtils.setField(service, "keyStorageService", storageService);
+        ReflectionTestUtils.setField(service, "enabled", true);
+        ReflectionTestUtils.setField(service, "batchSize", 100);
+        ReflectionTestUtils.setField(service, "rangeSize", 1000L);
+        ReflectionTestUtils.setField(service, "parallelism", 3);
+        ReflectionTestUtils.setField(service, "maxRowsPerSecond", 0);
+        ReflectionTestUtils.setField(service, "slowBatchMillis", 1000L);
+        service.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    @DisplayName("按主键切片并行重加密全部行并切换加密列")
+    void testReEncryptAllRows() throws Exception {
+        for (long id = 1; id <= 2500; id++) {
+            table.put(id, service.encryptField(OLD_KEY_ID, "330100" + id));
+        }
+
+        KeyRotationPlan plan = plan();
+        service.startReEncryption(plan);
+        awaitCompleted();
+
+        for (Map.Entry<Long, String> row : table.entrySet()) {
+            assertTrue(row.getValue().startsWith(NEW_KEY_ID + ":"));
+            assertEquals("330100" + row.getKey(), service.decryptField(row.getValue()));
+        }
+        assertEquals(100, plan.getProgressPercentage());
+        assertTrue(switched.get());
+    }
+
+    @Test
+    @DisplayName("从断点恢复时跳过已完成区间")
+    void testResumeFromCheckpoint() throws Exception {
+        Map<Long, String> migrated = new HashMap<>();
+        for (long id = 1; id <= 2500; id++) {
+            Long keyId = id <= 1000 ? NEW_KEY_ID : OLD_KEY_ID;
+            table.put(id, service.encryptField(keyId, "330100" + id));
+            if (id <= 1000) {
+                migrated.put(id, table.get(id));
+            }
+        }
+        history.setReencryptCount(1000L);
+        history.setReencryptCheckpoint("{\"t_customer.id_card\":1000}");
+
+        KeyRotationPlan plan = plan();
+        service.startReEncryption(plan);
+        awaitCompleted();
+
+        migrated.forEach((id, value) -> assertEquals(value, table.get(id)));
+        assertTrue(table.tailMap(1000L, false).values().stream().allMatch(v -> v.startsWith(NEW_KEY_ID + ":")));
+        assertEquals(1500, replaced.get());
+        assertEquals(100, plan.getProgressPercentage());
+    }
+
+    private void awaitCompleted() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!service.isReEncryptionCompleted(OLD_KEY_ID)) {
+            assertTrue(System.currentTimeMillis() < deadline, "重加密未在预期时间内完成");
+            Thread.sleep(20);
+        }
+    }
+
+    private KeyRotationPlan plan() {
+        KeyRotationPlan plan = new KeyRotationPlan();
+        plan.setOldKeyId(OLD_KEY_ID);
+        plan.setNewKeyId(NEW_KEY_ID);
+        plan.setStatus("IN_PROGRESS");
+        return plan;
+    }
+
+    private EncryptionKey key(Long id) {
+        EncryptionKey key = new EncryptionKey();
+        key.setId(id);
+        key.setKeyType("SM4");
+        key.setKeyMaterial(SM4Util.generateKey());
+        return key;
+    }
+
+    /**
+     * 以内存表模拟业务表的重加密读写
+     */
+    @SuppressWarnings("unchecked")
+    private ReEncryptionMapper tableMapper() {
+        ReEncryptionMapper mapper = mock(ReEncryptionMapper.class);
+        when(mapper.selectPkBounds(anyString(), anyString())).thenAnswer(inv -> {
+            Map<String, Object> bounds = new HashMap<>();
+            bounds.put("minPk", table.firstKey());
+            bounds.put("maxPk", table.lastKey());
+            return bounds;
+        });
+        when(mapper.countByPrefix(anyString(), anyString(), anyString(), anyLong(), anyString())).thenAnswer(inv -> {
+            long fromPk = inv.getArgument(3);
+            String prefix = prefix(inv.getArgument(4));
+            return table.tailMap(fromPk, false).values().stream().filter(v -> v.startsWith(prefix)).count();
+        });
+        when(mapper.selectBatch(anyString(), anyString(), anyString(), anyLong(), anyLong(), anyString(), anyInt()))
+                .thenAnswer(inv -> {
+                    long fromPk = inv.getArgument(3);
+                    long toPk = inv.getArgument(4);
+                    String prefix = prefix(inv.getArgument(5));
+                    int limit = inv.getArgument(6);
+                    List<Map<String, Object>> rows = new ArrayList<>();
+                    for (Map.Entry<Long, String> entry : table.subMap(fromPk, false, toPk, true).entrySet()) {
+                        if (rows.size() == limit) {
+                            break;
+                        }
+                        if (entry.getValue().startsWith(prefix)) {
+                            Map<String, Object> row = new HashMap<>();
+                            row.put("pk", entry.getKey());
+                            row.put("val", entry.getValue());
+                            rows.add(row);
+                        }
+                    }
+                    return rows;
+                });
+        when(mapper.batchReplace(anyString(), anyString(), anyString(), anyList())).thenAnswer(inv -> {
+            List<Map<String, Object>> rows = inv.getArgument(3);
+            for (Map<String, Object> row : rows) {
+                table.replace((Long) row.get("pk"), (String) row.get("oldValue"), (String) row.get("newValue"));
+            }
+            replaced.addAndGet(rows.size());
+            return rows.size();
+        });
+        return mapper;
+    }
+
+    private static String prefix(String likePattern) {
+        return likePattern.substring(0, likePattern.length() - 1);
+    }
+}
@@ -0,0 +1,77 @@
+package com.bankshield.encrypt.service.impl;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 数据密钥缓存测试
+ *
+ * @author BankShield
+ */
+@DisplayName("数据密钥缓存测试")
+public class DataKeyCacheTest {
+
+    private final AtomicInteger unwrapCount = new AtomicInteger();
+    private final Function<String, String> unwrapper = wrapped -> {
+        unwrapCount.incrementAndGet();
+        return "plain-" + wrapped;
+    };
+
+    @Test
+    @DisplayName("命中缓存时不重复解封")
+    void testHit() {
+        DataKeyCache cache = new DataKeyCache(16, 60_000);
+
+        assertEquals("plain-k1", cache.get("k1", unwrapper));
+        assertEquals("plain-k1", cache.get("k1", unwrapper));
+        assertEquals("plain-k1", cache.get("k1", unwrapper));
+
+        assertEquals(1, unwrapCount.get());
+        assertEquals(2, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        assertEquals(2.0 / 3, cache.getHitRatio(), 1e-9);
+    }
+
+    @Test
+    @DisplayName("超过最大条目数时淘汰最久未使用的密钥")
+    void testLruEviction() {
+        DataKeyCache cache = new DataKeyCache(2, 60_000);
+        cache.get("k1", unwrapper);
+        cache.get("k2", unwrapper);
+        cache.get("k1", unwrapper);
+        cache.get("k3", unwrapper);
+
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictions());
+        cache.get("k1", unwrapper);
+        assertEquals(3, unwrapCount.get());
+        cache.get("k2", unwrapper);
+        assertEquals(4, unwrapCount.get());
+    }
+
+    @Test
+    @DisplayName("过期和失效后重新解封")
+    void testExpireAndInvalidate() throws InterruptedException {
+        DataKeyCache cache = new DataKeyCache(16, 20);
+        cache.get("k1", unwrapper);
+        cache.get("k2", unwrapper);
+        Thread.sleep(40);
+
+        assertEquals(2, cache.evictExpired());
+        assertEquals(0, cache.size());
+
+        DataKeyCache longLived = new DataKeyCache(16, 60_000);
+        longLived.get("k1", unwrapper);
+        longLived.invalidate("k1");
+        longLived.get("k1", unwrapper);
+        assertEquals(4, unwrapCount.get());
+
+        longLived.invalidateAll();
+        assertEquals(0, longLived.size());
+    }
+}
@@ -51,6 +51,14 @@ public class GatewayConfig {
         private int order = -100;
         private boolean enabled = true;
         private int defaultRate = 100;
+        /**
+         * 本地令牌每次向Redis预占的额度占规则阈值的比例
+         */
+        private double leaseRatio = 0.1;
+        /**
+         * 本地令牌桶数量上限，超出时不再缓存新键
+         */
+        private int maxLocalBuckets = 100000;
     }
     
     /**
@@ -63,8 +71,20 @@ public class GatewayConfig {
         private int maxRequestsPerSecond = 50;
         private int maxPathChangesPerSecond = 10;
         private double maxErrorRate = 0.5;
+        /**
+         * 错误率判定所需的最少（衰减后）请求数
+         */
+        private int minErrorRateSamples = 20;
         private int maxConsecutiveErrors = 10;
         private long defaultBlockDuration = 3600;
+        /**
+         * 最多跟踪的客户端IP数，超出按LRU淘汰
+         */
+        private int maxTrackedIps = 100000;
+        /**
+         * IP检测状态无请求多久后淘汰（秒）
+         */
+        private long idleTtlSeconds = 300;
     }
     
     /**
@@ -74,8 +94,23 @@ public class GatewayConfig {
     public static class SignatureConfig {
         private int order = -80;
         private boolean enabled = true;
+        /**
+         * 签名时间戳允许的前后偏差（毫秒），nonce按两倍时长保留
+         */
         private long expireTime = 300000; // 5分钟
         private List<String> algorithms = new ArrayList<>();
+        /**
+         * nonce本地过滤器单个时间桶跨度（秒）
+         */
+        private int nonceBucketSeconds = 60;
+        /**
+         * nonce本地过滤器单个时间桶预期请求数
+         */
+        private int nonceExpectedPerBucket = 100000;
+        /**
+         * nonce本地过滤器误判率，误判的请求按重放拒绝
+         */
+        private double nonceFalsePositiveRate = 0.000001;
         
         public SignatureConfig() {
             algorithms.add("SM3");
@@ -93,6 +128,30 @@ public class GatewayConfig {
         private boolean logBody = false;
         private long maxBodySize = 10485760; // 10MB
         private long slowQueryThreshold = 1000; // 1秒
+        /**
+         * 访问日志队列容量，满时丢弃新日志
+         */
+        private int queueCapacity = 50000;
+        /**
+         * 每批写入条数
+         */
+        private int batchSize = 500;
+        /**
+         * 最长攒批时间（毫秒）
+         */
+        private long flushIntervalMs = 200;
+        /**
+         * 成功且非慢请求的采样率（0~1），失败和慢请求始终记录
+         */
+        private double sampleRate = 1.0;
+        /**
+         * 写库失败时的落盘目录
+         */
+        private String spillDir = "logs/access-log-spill";
+        /**
+         * 停机时等待写入线程排空队列的最长时间（秒），超时后剩余记录落盘
+         */
+        private long shutdownTimeoutSeconds = 30;
     }
     
     /**
@@ -129,7 +188,7 @@ public class GatewayConfig {
             private long routeConfig = 3600; // 1小时
             private long rateLimitRules = 300; // 5分钟
             private long blacklist = 60; // 1分钟
-            private long appSecrets = 86400; // 24小时
+            private long appSecrets = 300; // 5分钟，密钥变更另有广播立即失效
         }
     }
 }
\ No newline at end of file
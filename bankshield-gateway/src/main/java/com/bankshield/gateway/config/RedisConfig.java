@@ -1,5 +1,7 @@
 package com.bankshield.gateway.config;
 
+import com.bankshield.gateway.service.AppSecretCache;
+import com.bankshield.gateway.service.IpBlacklistCache;
 import com.fasterxml.jackson.annotation.JsonAutoDetect;
 import com.fasterxml.jackson.annotation.PropertyAccessor;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -12,6 +14,8 @@ import org.springframework.data.redis.cache.RedisCacheConfiguration;
 import org.springframework.data.redis.cache.RedisCacheManager;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.serializer.Jackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.RedisSerializationContext;
 import org.springframework.data.redis.serializer.RedisSerializer;
@@ -74,4 +78,18 @@ public class RedisConfig {
                 .build();
         return cacheManager;
     }
-}
\ No newline at end of file
+    
+    /**
+     * 订阅黑名单和应用密钥变更广播，保持各节点本地缓存一致
+     */
+    @Bean
+    public RedisMessageListenerContainer redisMessageListenerContainer(RedisConnectionFactory connectionFactory,
+                                                                       IpBlacklistCache ipBlacklistCache,
+                                                                       AppSecretCache appSecretCache) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener(ipBlacklistCache, new ChannelTopic(IpBlacklistCache.CHANNEL));
+        container.addMessageListener(appSecretCache, new ChannelTopic(AppSecretCache.CHANNEL));
+        return container;
+    }
+}
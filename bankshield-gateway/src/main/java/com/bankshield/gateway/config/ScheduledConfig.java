@@ -1,6 +1,10 @@
 package com.bankshield.gateway.config;
 
+import com.bankshield.gateway.filter.AntiBrushFilter;
+import com.bankshield.gateway.service.AppSecretCache;
 import com.bankshield.gateway.service.BlacklistService;
+import com.bankshield.gateway.service.IpBlacklistCache;
+import com.bankshield.gateway.service.RateLimitService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Configuration;
@@ -20,6 +24,18 @@ public class ScheduledConfig {
     @Autowired
     private BlacklistService blacklistService;
     
+    @Autowired
+    private RateLimitService rateLimitService;
+    
+    @Autowired
+    private IpBlacklistCache ipBlacklistCache;
+    
+    @Autowired
+    private AntiBrushFilter antiBrushFilter;
+    
+    @Autowired
+    private AppSecretCache appSecretCache;
+    
     /**
      * 处理过期黑名单（每小时执行一次）
      */
@@ -34,6 +50,48 @@ public class ScheduledConfig {
         }
     }
     
+    /**
+     * 全量重建本地黑名单（每5分钟执行一次，兜底丢失的广播消息）
+     */
+    @Scheduled(cron = "30 */5 * * * *")
+    public void reloadLocalBlacklist() {
+        try {
+            ipBlacklistCache.reload();
+        } catch (Exception e) {
+            log.error("重建本地黑名单失败", e);
+        }
+    }
+    
+    /**
+     * 淘汰长时间无请求的防刷检测状态（每分钟执行一次）
+     */
+    @Scheduled(cron = "15 * * * * *")
+    public void evictIdleAntiBrushDetectors() {
+        try {
+            int evicted = antiBrushFilter.evictIdleDetectors();
+            if (evicted > 0) {
+                log.debug("淘汰防刷检测状态: {}", evicted);
+            }
+        } catch (Exception e) {
+            log.error("淘汰防刷检测状态失败", e);
+        }
+    }
+    
+    /**
+     * 清理过期的应用密钥本地缓存（每10分钟执行一次）
+     */
+    @Scheduled(cron = "45 */10 * * * *")
+    public void evictExpiredAppSecrets() {
+        try {
+            int evicted = appSecretCache.evictExpired();
+            if (evicted > 0) {
+                log.debug("清理过期应用密钥缓存: {}", evicted);
+            }
+        } catch (Exception e) {
+            log.error("清理过期应用密钥缓存失败", e);
+        }
+    }
+    
     /**
      * 清理过期API访问日志（每天凌晨2点执行）
      */
@@ -50,28 +108,28 @@ public class ScheduledConfig {
     }
     
     /**
-     * 清理Redis中的过期限流计数器（每10分钟执行一次）
+     * 清理窗口已结束的本地限流令牌桶（每分钟执行一次，Redis计数器依赖过期时间自动清理）
      */
-    @Scheduled(cron = "0 */10 * * * *")
+    @Scheduled(cron = "0 * * * * *")
     public void cleanupExpiredRateLimitCounters() {
-        log.info("开始清理过期限流计数器...");
+        log.debug("开始清理过期限流计数器...");
         try {
-            // rateLimitService.cleanupExpiredCounters();
-            log.info("清理过期限流计数器完成");
+            rateLimitService.cleanupExpiredBuckets();
+            log.debug("清理过期限流计数器完成");
         } catch (Exception e) {
             log.error("清理过期限流计数器失败", e);
         }
     }
     
     /**
-     * 刷新限流规则缓存（每5分钟执行一次）
+     * 刷新限流规则缓存（每30秒执行一次，同步其他节点的规则变更）
      */
-    @Scheduled(cron = "0 */5 * * * *")
+    @Scheduled(cron = "*/30 * * * * *")
     public void refreshRateLimitRules() {
-        log.info("开始刷新限流规则缓存...");
+        log.debug("开始刷新限流规则缓存...");
         try {
-            // rateLimitService.refreshRules();
-            log.info("刷新限流规则缓存完成");
+            rateLimitService.refreshRules();
+            log.debug("刷新限流规则缓存完成");
         } catch (Exception e) {
             log.error("刷新限流规则缓存失败", e);
         }
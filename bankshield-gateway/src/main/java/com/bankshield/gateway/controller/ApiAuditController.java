@@ -303,4 +303,18 @@ public class ApiAuditController {
             return Result.error("获取实时访问统计失败");
         }
     }
-}
\ No newline at end of file
+    
+    /**
+     * 获取访问日志写入管道统计（队列深度、滞后、丢弃与采样计数）
+     */
+    @PreAuthorize("hasRole('ADMIN')")
+    @GetMapping("/access/sink-stats")
+    public Result<Map<String, Object>> getSinkStats() {
+        try {
+            return Result.success(apiAuditService.getSinkStatistics());
+        } catch (Exception e) {
+            log.error("获取访问日志写入管道统计失败", e);
+            return Result.error("获取访问日志写入管道统计失败");
+        }
+    }
+}
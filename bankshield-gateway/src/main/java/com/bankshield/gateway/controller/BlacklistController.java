@@ -2,7 +2,9 @@ package com.bankshield.gateway.controller;
 
 import com.bankshield.common.result.Result;
 import com.bankshield.gateway.entity.BlacklistIp;
+import com.bankshield.gateway.filter.AntiBrushFilter;
 import com.bankshield.gateway.service.BlacklistService;
+import com.bankshield.gateway.util.IpBehaviorTracker;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
@@ -30,6 +32,9 @@ public class BlacklistController {
     @Autowired
     private BlacklistService blacklistService;
     
+    @Autowired
+    private AntiBrushFilter antiBrushFilter;
+    
     /**
      * 获取IP黑名单列表
      */
@@ -286,6 +291,20 @@ public class BlacklistController {
         }
     }
     
+    /**
+     * 获取防刷检测器内存使用统计
+     */
+    @GetMapping("/detector/statistics")
+    @PreAuthorize("hasRole(\'ADMIN\')")
+    public Result<IpBehaviorTracker.Statistics> getDetectorStatistics() {
+        try {
+            return Result.success(antiBrushFilter.getDetectorStatistics());
+        } catch (Exception e) {
+            log.error("获取防刷检测器统计失败", e);
+            return Result.error("获取防刷检测器统计失败");
+        }
+    }
+    
     /**
      * 获取活跃的黑名单
      */
@@ -3,6 +3,7 @@ package com.bankshield.gateway.controller;
 import com.bankshield.common.result.Result;
 import com.bankshield.gateway.entity.ApiRouteConfig;
 import com.bankshield.gateway.repository.ApiRouteConfigRepository;
+import com.bankshield.gateway.service.AppSecretService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
@@ -11,6 +12,7 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.security.access.prepost.PreAuthorize;
+import reactor.core.publisher.Mono;
 
 import java.util.Optional;
 
@@ -27,6 +29,9 @@ public class GatewayConfigController {
     @Autowired
     private ApiRouteConfigRepository apiRouteConfigRepository;
     
+    @Autowired
+    private AppSecretService appSecretService;
+    
     /**
      * 获取API路由配置列表
      */
@@ -214,4 +219,35 @@ public class GatewayConfigController {
             return Result.error("更新API路由配置状态失败");
         }
     }
-}
\ No newline at end of file
+    
+    /**
+     * 设置或轮换应用签名密钥，所有网关节点立即失效本地缓存
+     */
+    @PreAuthorize("hasRole('ADMIN')")
+    @PutMapping("/app-secret/{appId}")
+    public Mono<Result<String>> updateAppSecret(@PathVariable String appId, @RequestParam String secretKey) {
+        if (secretKey == null || secretKey.trim().isEmpty()) {
+            return Mono.just(Result.error("密钥不能为空"));
+        }
+        return appSecretService.updateSecret(appId, secretKey)
+            .map(saved -> saved ? Result.success("密钥更新成功") : Result.<String>error("密钥更新失败"))
+            .onErrorResume(e -> {
+                log.error("更新应用密钥失败：appId={}", appId, e);
+                return Mono.just(Result.error("更新应用密钥失败"));
+            });
+    }
+    
+    /**
+     * 吊销应用签名密钥，所有网关节点立即失效本地缓存
+     */
+    @PreAuthorize("hasRole('ADMIN')")
+    @DeleteMapping("/app-secret/{appId}")
+    public Mono<Result<String>> revokeAppSecret(@PathVariable String appId) {
+        return appSecretService.revokeSecret(appId)
+            .map(revoked -> revoked ? Result.success("密钥已吊销") : Result.<String>error("应用密钥不存在"))
+            .onErrorResume(e -> {
+                log.error("吊销应用密钥失败：appId={}", appId, e);
+                return Mono.just(Result.error("吊销应用密钥失败"));
+            });
+    }
+}
@@ -1,6 +1,9 @@
 package com.bankshield.gateway.filter;
 
+import com.bankshield.gateway.config.GatewayConfig;
+import com.bankshield.gateway.service.BlacklistAutoBlocker;
 import com.bankshield.gateway.service.BlacklistService;
+import com.bankshield.gateway.util.IpBehaviorTracker;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.cloud.gateway.filter.GatewayFilter;
@@ -14,9 +17,7 @@ import org.springframework.stereotype.Component;
 import org.springframework.web.server.ServerWebExchange;
 import reactor.core.publisher.Mono;
 
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.PostConstruct;
 
 /**
  * 防刷过滤器
@@ -30,16 +31,25 @@ public class AntiBrushFilter extends AbstractGatewayFilterFactory<AntiBrushFilte
     @Autowired
     private BlacklistService blacklistService;
     
-    // 请求计数器（用于检测异常请求模式）
-    private final Map<String, RequestCounter> requestCounters = new ConcurrentHashMap<>();
+    @Autowired
+    private BlacklistAutoBlocker blacklistAutoBlocker;
+    
+    @Autowired
+    private GatewayConfig gatewayConfig;
     
-    // 异常IP检测器
-    private final Map<String, SuspiciousDetector> suspiciousDetectors = new ConcurrentHashMap<>();
+    // 异常IP检测器（定长内存，LRU+TTL淘汰）
+    private IpBehaviorTracker behaviorTracker;
     
     public AntiBrushFilter() {
         super(Config.class);
     }
     
+    @PostConstruct
+    public void init() {
+        GatewayConfig.AntiBrushConfig antiBrush = gatewayConfig.getFilters().getAntiBrush();
+        behaviorTracker = new IpBehaviorTracker(antiBrush.getMaxTrackedIps(), antiBrush.getIdleTtlSeconds() * 1000);
+    }
+    
     @Override
     public GatewayFilter apply(Config config) {
         return new GatewayFilter() {
@@ -51,7 +61,7 @@ public class AntiBrushFilter extends AbstractGatewayFilterFactory<AntiBrushFilte
                 // 获取客户端IP
                 String clientIp = getClientIp(request);
 
-                // 检查IP是否在黑名单中
+                // 检查IP是否在黑名单中（本地前缀树，无I/O）
                 if (blacklistService.isBlacklisted(clientIp)) {
                     log.warn("防刷过滤器检测到黑名单IP: {}", clientIp);
                     response.setStatusCode(HttpStatus.FORBIDDEN);
@@ -61,34 +71,29 @@ public class AntiBrushFilter extends AbstractGatewayFilterFactory<AntiBrushFilte
                 // 获取请求路径
                 String requestPath = request.getURI().getPath();
 
-                // 检测异常请求模式
-                if (isSuspiciousRequest(clientIp, requestPath, config)) {
+                // 记录请求并检测异常请求模式
+                IpBehaviorTracker.Signals signals = behaviorTracker.recordRequest(clientIp, requestPath, System.currentTimeMillis());
+                if (isSuspiciousRequest(clientIp, signals, config)) {
                     log.warn("检测到异常请求模式，IP: {}, 路径: {}", clientIp, requestPath);
 
-                    // 自动加入黑名单
-                    blacklistService.addToBlacklist(clientIp, "异常请求模式检测", config.getBlockDuration(), "SYSTEM");
+                    // 自动加入黑名单：本地立即生效，落库异步进行
+                    blacklistAutoBlocker.block(clientIp, "异常请求模式检测", config.getBlockDuration(), "SYSTEM");
 
                     response.setStatusCode(HttpStatus.FORBIDDEN);
                     return response.setComplete();
                 }
 
-                // 记录请求信息（在过滤器链执行前后都需要记录）
-                recordRequest(clientIp, requestPath, false);
-
                 // 执行过滤器链并监控响应
                 return chain.filter(exchange).then(Mono.fromRunnable(() -> {
                     // 检查响应状态码，判断是否有错误
                     boolean isError = response.getStatusCode() != null &&
                         (response.getStatusCode().is5xxServerError() ||
                          response.getStatusCode().is4xxClientError());
-                    // 记录错误请求
-                    if (isError) {
-                        recordRequest(clientIp, requestPath, true);
-                    }
+                    behaviorTracker.recordOutcome(clientIp, isError, System.currentTimeMillis());
                 })).onErrorResume(throwable -> {
                     // 发生异常时记录错误请求
                     log.error("请求处理异常，IP: {}, 路径: {}, 错误: {}", clientIp, requestPath, throwable.getMessage());
-                    recordRequest(clientIp, requestPath, true);
+                    behaviorTracker.recordOutcome(clientIp, true, System.currentTimeMillis());
                     response.setStatusCode(HttpStatus.INTERNAL_SERVER_ERROR);
                     return response.setComplete();
                 });
@@ -100,35 +105,33 @@ public class AntiBrushFilter extends AbstractGatewayFilterFactory<AntiBrushFilte
      * 检测是否为可疑请求
      * 
      * @param clientIp 客户端IP
-     * @param requestPath 请求路径
+     * @param signals 包含本次请求在内的行为指标
      * @param config 配置
      * @return true: 可疑请求, false: 正常请求
      */
-    private boolean isSuspiciousRequest(String clientIp, String requestPath, Config config) {
-        // 获取可疑IP检测器
-        SuspiciousDetector detector = suspiciousDetectors.computeIfAbsent(clientIp, k -> new SuspiciousDetector());
-        
+    private boolean isSuspiciousRequest(String clientIp, IpBehaviorTracker.Signals signals, Config config) {
         // 检查请求频率
-        if (detector.isHighFrequency(config.getMaxRequestsPerSecond())) {
-            log.warn("检测到高频请求，IP: {}, 频率: {}/秒", clientIp, detector.getRequestsPerSecond());
+        if (signals.getRequestsPerSecond() > config.getMaxRequestsPerSecond()) {
+            log.warn("检测到高频请求，IP: {}, 频率: {}/秒", clientIp, signals.getRequestsPerSecond());
             return true;
         }
         
         // 检查请求路径变化频率
-        if (detector.isPathChangingRapidly(requestPath, config.getMaxPathChangesPerSecond())) {
-            log.warn("检测到路径快速变化，IP: {}, 路径变化频率: {}/秒", clientIp, detector.getPathChangesPerSecond());
+        if (signals.getPathChangesPerSecond() > config.getMaxPathChangesPerSecond()) {
+            log.warn("检测到路径快速变化，IP: {}, 路径变化频率: {}/秒", clientIp, signals.getPathChangesPerSecond());
             return true;
         }
         
-        // 检查错误率
-        if (detector.isHighErrorRate(config.getMaxErrorRate())) {
-            log.warn("检测到高错误率，IP: {}, 错误率: {}%", clientIp, detector.getErrorRate() * 100);
+        // 检查错误率：衰减后样本不足时不判定，避免空闲后少量4xx即触发封禁
+        if (signals.getErrorSamples() >= config.getMinErrorRateSamples()
+                && signals.getErrorRate() > config.getMaxErrorRate()) {
+            log.warn("检测到高错误率，IP: {}, 错误率: {}%", clientIp, signals.getErrorRate() * 100);
             return true;
         }
         
         // 检查连续错误
-        if (detector.hasConsecutiveErrors(config.getMaxConsecutiveErrors())) {
-            log.warn("检测到连续错误，IP: {}, 连续错误数: {}", clientIp, detector.getConsecutiveErrors());
+        if (signals.getConsecutiveErrors() >= config.getMaxConsecutiveErrors()) {
+            log.warn("检测到连续错误，IP: {}, 连续错误数: {}", clientIp, signals.getConsecutiveErrors());
             return true;
         }
         
@@ -136,38 +139,19 @@ public class AntiBrushFilter extends AbstractGatewayFilterFactory<AntiBrushFilte
     }
     
     /**
-     * 记录请求信息
-     *
-     * @param clientIp 客户端IP
-     * @param requestPath 请求路径
-     * @param isError 是否为错误请求
+     * 淘汰长时间无请求的IP检测状态
+     * 
+     * @return 淘汰条数
      */
-    private void recordRequest(String clientIp, String requestPath, boolean isError) {
-        RequestCounter counter = requestCounters.computeIfAbsent(clientIp, k -> new RequestCounter());
-        counter.recordRequest(requestPath);
-
-        // 同时更新可疑IP检测器
-        SuspiciousDetector detector = suspiciousDetectors.computeIfAbsent(clientIp, k -> new SuspiciousDetector());
-        detector.recordRequest(requestPath, isError);
-
-        // 清理过期的计数器
-        cleanupExpiredCounters();
+    public int evictIdleDetectors() {
+        return behaviorTracker.evictIdle(System.currentTimeMillis());
     }
     
     /**
-     * 清理过期的计数器
+     * 获取检测器内存使用统计
      */
-    private void cleanupExpiredCounters() {
-        long currentTime = System.currentTimeMillis();
-        requestCounters.entrySet().removeIf(entry -> {
-            RequestCounter counter = entry.getValue();
-            return currentTime - counter.getLastRequestTime() > 300000; // 5分钟无请求则清理
-        });
-        
-        suspiciousDetectors.entrySet().removeIf(entry -> {
-            SuspiciousDetector detector = entry.getValue();
-            return currentTime - detector.getLastRequestTime() > 300000; // 5分钟无请求则清理
-        });
+    public IpBehaviorTracker.Statistics getDetectorStatistics() {
+        return behaviorTracker.getStatistics();
     }
     
     /**
@@ -195,135 +179,6 @@ public class AntiBrushFilter extends AbstractGatewayFilterFactory<AntiBrushFilte
         return -90; // 优先级较高，在限流过滤器之后
     }
     
-    /**
-     * 请求计数器
-     */
-    private static class RequestCounter {
-        private final AtomicInteger requestCount = new AtomicInteger(0);
-        private volatile long lastRequestTime = System.currentTimeMillis();
-        private volatile long windowStartTime = System.currentTimeMillis();
-        
-        public void recordRequest(String path) {
-            requestCount.incrementAndGet();
-            lastRequestTime = System.currentTimeMillis();
-        }
-        
-        public int getRequestCount() {
-            return requestCount.get();
-        }
-        
-        public long getLastRequestTime() {
-            return lastRequestTime;
-        }
-        
-        public double getRequestsPerSecond() {
-            long currentTime = System.currentTimeMillis();
-            long elapsedTime = currentTime - windowStartTime;
-            if (elapsedTime > 0) {
-                return (double) requestCount.get() / (elapsedTime / 1000.0);
-            }
-            return 0;
-        }
-        
-        public void reset() {
-            requestCount.set(0);
-            windowStartTime = System.currentTimeMillis();
-        }
-    }
-    
-    /**
-     * 可疑IP检测器
-     */
-    private static class SuspiciousDetector {
-        private final AtomicInteger requestCount = new AtomicInteger(0);
-        private final AtomicInteger errorCount = new AtomicInteger(0);
-        private final AtomicInteger consecutiveErrors = new AtomicInteger(0);
-        private volatile String lastPath = "";
-        private volatile int pathChangeCount = 0;
-        private volatile long lastRequestTime = System.currentTimeMillis();
-        private volatile long windowStartTime = System.currentTimeMillis();
-        private volatile long pathWindowStartTime = System.currentTimeMillis();
-        
-        public void recordRequest(String path, boolean isError) {
-            requestCount.incrementAndGet();
-            lastRequestTime = System.currentTimeMillis();
-            
-            // 记录路径变化
-            if (!path.equals(lastPath)) {
-                pathChangeCount++;
-                lastPath = path;
-                
-                // 重置路径变化时间窗口
-                long currentTime = System.currentTimeMillis();
-                if (currentTime - pathWindowStartTime > 1000) {
-                    pathChangeCount = 1;
-                    pathWindowStartTime = currentTime;
-                }
-            }
-            
-            // 记录错误
-            if (isError) {
-                errorCount.incrementAndGet();
-                consecutiveErrors.incrementAndGet();
-            } else {
-                consecutiveErrors.set(0);
-            }
-        }
-        
-        public boolean isHighFrequency(int maxRequestsPerSecond) {
-            double requestsPerSecond = getRequestsPerSecond();
-            return requestsPerSecond > maxRequestsPerSecond;
-        }
-        
-        public boolean isPathChangingRapidly(int maxPathChangesPerSecond) {
-            double pathChangesPerSecond = getPathChangesPerSecond();
-            return pathChangesPerSecond > maxPathChangesPerSecond;
-        }
-        
-        public boolean isHighErrorRate(double maxErrorRate) {
-            double errorRate = getErrorRate();
-            return errorRate > maxErrorRate;
-        }
-        
-        public boolean hasConsecutiveErrors(int maxConsecutiveErrors) {
-            return consecutiveErrors.get() >= maxConsecutiveErrors;
-        }
-        
-        public double getRequestsPerSecond() {
-            long currentTime = System.currentTimeMillis();
-            long elapsedTime = currentTime - windowStartTime;
-            if (elapsedTime > 0) {
-                return (double) requestCount.get() / (elapsedTime / 1000.0);
-            }
-            return 0;
-        }
-        
-        public double getPathChangesPerSecond() {
-            long currentTime = System.currentTimeMillis();
-            long elapsedTime = currentTime - pathWindowStartTime;
-            if (elapsedTime > 0) {
-                return (double) pathChangeCount / (elapsedTime / 1000.0);
-            }
-            return 0;
-        }
-        
-        public double getErrorRate() {
-            int totalRequests = requestCount.get();
-            if (totalRequests > 0) {
-                return (double) errorCount.get() / totalRequests;
-            }
-            return 0;
-        }
-        
-        public int getConsecutiveErrors() {
-            return consecutiveErrors.get();
-        }
-        
-        public long getLastRequestTime() {
-            return lastRequestTime;
-        }
-    }
-    
     /**
      * 配置类
      */
@@ -331,6 +186,7 @@ public class AntiBrushFilter extends AbstractGatewayFilterFactory<AntiBrushFilte
         private int maxRequestsPerSecond = 50; // 每秒最大请求数
         private int maxPathChangesPerSecond = 10; // 每秒最大路径变化数
         private double maxErrorRate = 0.5; // 最大错误率（50%）
+        private int minErrorRateSamples = 20; // 错误率判定所需的最少（衰减后）请求数
         private int maxConsecutiveErrors = 10; // 最大连续错误数
         private long blockDuration = 3600; // 封禁时长（秒，默认1小时）
         
@@ -359,6 +215,14 @@ public class AntiBrushFilter extends AbstractGatewayFilterFactory<AntiBrushFilte
             this.maxErrorRate = maxErrorRate;
         }
         
+        public int getMinErrorRateSamples() {
+            return minErrorRateSamples;
+        }
+        
+        public void setMinErrorRateSamples(int minErrorRateSamples) {
+            this.minErrorRateSamples = minErrorRateSamples;
+        }
+        
         public int getMaxConsecutiveErrors() {
             return maxConsecutiveErrors;
         }
@@ -5,31 +5,25 @@ import org.springframework.http.server.reactive.ServerHttpRequest;
 import org.springframework.http.server.reactive.ServerHttpRequestDecorator;
 import reactor.core.publisher.Flux;
 
-import java.nio.charset.StandardCharsets;
+import java.util.List;
 
 /**
  * 缓存请求体的HTTP请求装饰器
- * 用于在签名验证后仍然能够读取请求体
- * 
+ * 用于在签名验证后仍然能够读取请求体，直接重放原始DataBuffer，不做拷贝
+ *
  * @author BankShield
  */
 public class CachedBodyHttpRequestDecorator extends ServerHttpRequestDecorator {
-    
-    private final String cachedBody;
-    private final DataBuffer cachedBuffer;
-    
-    public CachedBodyHttpRequestDecorator(ServerHttpRequest delegate, String cachedBody, DataBuffer cachedBuffer) {
+
+    private final List<DataBuffer> cachedBuffers;
+
+    public CachedBodyHttpRequestDecorator(ServerHttpRequest delegate, List<DataBuffer> cachedBuffers) {
         super(delegate);
-        this.cachedBody = cachedBody;
-        this.cachedBuffer = cachedBuffer;
+        this.cachedBuffers = cachedBuffers;
     }
-    
+
     @Override
     public Flux<DataBuffer> getBody() {
-        return Flux.just(cachedBuffer);
-    }
-    
-    public String getCachedBody() {
-        return cachedBody;
+        return Flux.fromIterable(cachedBuffers);
     }
-}
\ No newline at end of file
+}
@@ -1,28 +1,33 @@
 package com.bankshield.gateway.filter;
 
-import com.bankshield.common.utils.EncryptUtil;
+import com.bankshield.gateway.config.GatewayConfig;
+import com.bankshield.gateway.service.AppSecretCache;
+import com.bankshield.gateway.service.NonceReplayGuard;
 import lombok.extern.slf4j.Slf4j;
+import org.bouncycastle.util.encoders.Hex;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.cloud.gateway.filter.GatewayFilter;
 import org.springframework.cloud.gateway.filter.GatewayFilterChain;
 import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
 import org.springframework.core.Ordered;
 import org.springframework.core.io.buffer.DataBuffer;
-import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.core.io.buffer.DataBufferUtils;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
-import org.springframework.http.MediaType;
 import org.springframework.http.server.reactive.ServerHttpRequest;
 import org.springframework.http.server.reactive.ServerHttpResponse;
 import org.springframework.stereotype.Component;
 import org.springframework.util.StringUtils;
 import org.springframework.web.server.ServerWebExchange;
-import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
 import java.util.*;
-import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 /**
@@ -32,6 +37,10 @@ import java.util.stream.Collectors;
  * 2. 关键Header参与签名
  * 3. 使用HMAC-SHA256替代简单拼接+哈希
  * 4. 强化防重放攻击防护
+ * <p>
+ * 客户端签名规范：X-Signature = Base64(HMAC-SHA256(应用密钥, 待签名字符串))，
+ * 待签名字符串为 method、path、query、参与签名的Header、timestamp、nonce、appId 各占一行后紧接原始请求体字节。
+ * 旧版 {@link SignatureVerificationFilter} 的 SM3(签名串+密钥) 十六进制签名不被本过滤器接受。
  * 
  * @author BankShield
  */
@@ -52,11 +61,18 @@ public class EnhancedSignatureVerificationFilter extends AbstractGatewayFilterFa
         CONTENT_TYPE_HEADER
     );
     
-    private static final long SIGNATURE_EXPIRE_MS = 5 * 60 * 1000; // 5分钟
     private static final long MAX_BODY_SIZE = 10 * 1024 * 1024; // 10MB
     
+    private static final Pattern NONCE_PATTERN = Pattern.compile("[a-fA-F0-9]{32}");
+    
+    @Autowired
+    private NonceReplayGuard nonceReplayGuard;
+    
+    @Autowired
+    private AppSecretCache appSecretCache;
+    
     @Autowired
-    private RedisTemplate<String, String> redisTemplate;
+    private GatewayConfig gatewayConfig;
     
     public EnhancedSignatureVerificationFilter() {
         super(Config.class);
@@ -74,68 +90,66 @@ public class EnhancedSignatureVerificationFilter extends AbstractGatewayFilterFa
                     return chain.filter(exchange);
                 }
                 
-                // 读取并缓存请求体
-                return readRequestBody(request)
-                    .flatMap(bodyData -> {
-                        String bodyString = bodyData.getT1();
-                        DataBuffer cachedBuffer = bodyData.getT2();
-                        
-                        // 创建缓存请求的装饰器
-                        CachedBodyHttpRequestDecorator cachedRequest = new CachedBodyHttpRequestDecorator(request, bodyString, cachedBuffer);
-                        ServerWebExchange cachedExchange = exchange.mutate().request(cachedRequest).build();
-                        
-                        // 执行签名验证
-                        return performSignatureVerification(cachedExchange, bodyString);
-                    })
+                // 验证完成后才决定转发或拒绝；下游链路的错误原样向上传播，不会被当作签名无效
+                List<DataBuffer> buffers = new ArrayList<>();
+                return verifySignature(request, buffers)
                     .flatMap(valid -> {
-                        if (valid) {
-                            return chain.filter(exchange);
-                        } else {
+                        if (!valid) {
+                            releaseAll(buffers);
                             return handleSignatureInvalid(exchange);
                         }
-                    })
-                    .onErrorResume(throwable -> {
-                        log.error("签名验证过程出错", throwable);
-                        return handleSignatureInvalid(exchange);
+                        ServerHttpRequest cachedRequest = new CachedBodyHttpRequestDecorator(request, buffers);
+                        return chain.filter(exchange.mutate().request(cachedRequest).build());
                     });
             }
         };
     }
     
     /**
-     * 读取请求体内容
+     * 执行签名验证：先校验请求头、时间戳、nonce并取得密钥，再边接收请求体边计算摘要。
+     * 每个DataBuffer到达时即更新MD5和HMAC摘要并保留到buffers，校验通过后原样重放给下游，不做合并拷贝和字符串解码
+     * 
+     * @param buffers 接收到的原始请求体缓冲区，校验失败时由调用方释放
+     * @return 签名是否有效，参数缺失或验证过程出错均视为无效，不会为空
      */
-    private Mono<Tuple2<String, DataBuffer>> readRequestBody(ServerHttpRequest request) {
-        return request.getBody()
-            .collectList()
-            .map(dataBuffers -> {
-                // 合并所有DataBuffer
-                int totalSize = dataBuffers.stream().mapToInt(buffer -> buffer.readableByteCount()).sum();
-                if (totalSize > MAX_BODY_SIZE) {
-                    throw new RuntimeException("请求体过大，超过最大限制");
-                }
-                
-                byte[] combinedBytes = new byte[totalSize];
-                int offset = 0;
-                for (DataBuffer buffer : dataBuffers) {
-                    int length = buffer.readableByteCount();
-                    buffer.read(combinedBytes, offset, length);
-                    offset += length;
-                }
-                
-                String bodyString = new String(combinedBytes, StandardCharsets.UTF_8);
-                DataBuffer cachedBuffer = request.getResponse().bufferFactory().wrap(combinedBytes);
-                
-                return new Tuple2<>(bodyString, cachedBuffer);
+    private Mono<Boolean> verifySignature(ServerHttpRequest request, List<DataBuffer> buffers) {
+        return prepareVerification(request)
+            .flatMap(digest -> request.getBody()
+                .doOnNext(buffer -> {
+                    buffers.add(buffer);
+                    digest.update(buffer);
+                    if (digest.getBodySize() > MAX_BODY_SIZE) {
+                        throw new IllegalStateException("请求体过大，超过最大限制");
+                    }
+                })
+                .doOnCancel(() -> releaseAll(buffers))
+                .then(Mono.fromSupplier(() -> {
+                    boolean valid = digest.matches();
+                    if (valid) {
+                        log.debug("签名验证成功：appId={}", digest.getAppId());
+                    }
+                    return valid;
+                })))
+            .defaultIfEmpty(false)
+            .onErrorResume(throwable -> {
+                log.error("签名验证过程出错", throwable);
+                return Mono.just(false);
             });
     }
     
+    private void releaseAll(List<DataBuffer> buffers) {
+        for (DataBuffer buffer : buffers) {
+            DataBufferUtils.release(buffer);
+        }
+        buffers.clear();
+    }
+    
     /**
-     * 执行签名验证
+     * 校验签名参数并准备摘要计算
+     * 
+     * @return 摘要计算器，参数校验未通过时为空
      */
-    private Mono<Boolean> performSignatureVerification(ServerWebExchange exchange, String requestBody) {
-        ServerHttpRequest request = exchange.getRequest();
-        
+    private Mono<BodyDigest> prepareVerification(ServerHttpRequest request) {
         // 获取签名参数
         String signature = request.getHeaders().getFirst(SIGNATURE_HEADER);
         String timestamp = request.getHeaders().getFirst(TIMESTAMP_HEADER);
@@ -146,37 +160,43 @@ public class EnhancedSignatureVerificationFilter extends AbstractGatewayFilterFa
         if (!StringUtils.hasText(signature) || !StringUtils.hasText(timestamp) || 
             !StringUtils.hasText(nonce) || !StringUtils.hasText(appId)) {
             log.warn("签名验证失败：缺少必要参数");
-            return Mono.just(false);
+            return Mono.empty();
         }
         
         // 验证时间戳
         if (!verifyTimestamp(timestamp)) {
             log.warn("签名验证失败：时间戳过期");
-            return Mono.just(false);
-        }
-        
-        // 验证nonce（防止重放）
-        if (!verifyNonce(nonce)) {
-            log.warn("签名验证失败：nonce重复使用");
-            return Mono.just(false);
-        }
-        
-        // 获取应用的签名密钥
-        String secretKey = getSecretKey(appId);
-        if (!StringUtils.hasText(secretKey)) {
-            log.warn("签名验证失败：找不到应用密钥");
-            return Mono.just(false);
+            return Mono.empty();
         }
         
-        // 验证签名
-        boolean signatureValid = verifySignature(signature, appId, timestamp, nonce, request, requestBody, secretKey);
-        if (signatureValid) {
-            log.debug("签名验证成功：appId={}", appId);
-        } else {
-            log.warn("签名验证失败：签名不匹配");
+        // 验证nonce格式（应为32位十六进制字符串）
+        if (!NONCE_PATTERN.matcher(nonce).matches()) {
+            log.warn("nonce格式无效: {}", nonce);
+            return Mono.empty();
         }
         
-        return Mono.just(signatureValid);
+        // 构建待签名字符串中请求体之前的部分（按规范格式）
+        Map<String, String> signedHeaders = getSignedHeaders(request.getHeaders());
+        String queryString = request.getURI().getQuery();
+        String signPrefix = buildSignPrefix(request.getMethodValue(), request.getPath().value(),
+            queryString == null ? "" : queryString, timestamp, nonce, appId, buildHeaderString(signedHeaders));
+        log.debug("待签名字符串前缀: {}", signPrefix);
+        
+        // nonce原子占用（防止重放）与密钥读取并行进行
+        return Mono.zip(nonceReplayGuard.reserve(nonce), appSecretCache.getSecret(appId).defaultIfEmpty(""))
+            .flatMap(result -> {
+                if (!result.getT1()) {
+                    log.warn("签名验证失败：nonce重复使用");
+                    return Mono.empty();
+                }
+                String secretKey = result.getT2();
+                if (!StringUtils.hasText(secretKey)) {
+                    log.warn("签名验证失败：找不到应用密钥");
+                    return Mono.empty();
+                }
+                return Mono.fromCallable(() -> new BodyDigest(appId, signature,
+                    signedHeaders.get(CONTENT_MD5_HEADER), secretKey, signPrefix));
+            });
     }
     
     /**
@@ -191,49 +211,6 @@ public class EnhancedSignatureVerificationFilter extends AbstractGatewayFilterFa
                path.startsWith("/api/sensitive");
     }
     
-    /**
-     * 验证签名（使用HMAC-SHA256）
-     */
-    private boolean verifySignature(String signature, String appId, String timestamp, String nonce, 
-                                   ServerHttpRequest request, String requestBody, String secretKey) {
-        try {
-            // 构建签名字符串的各个部分
-            String method = request.getMethodValue();
-            String path = request.getPath().value();
-            String queryString = request.getURI().getQuery();
-            queryString = queryString == null ? "" : queryString;
-            
-            // 获取参与签名的Header
-            Map<String, String> signedHeaders = getSignedHeaders(request.getHeaders());
-            String headerString = buildHeaderString(signedHeaders);
-            
-            // 验证Content-MD5（如果存在）
-            if (signedHeaders.containsKey(CONTENT_MD5_HEADER)) {
-                String expectedMd5 = signedHeaders.get(CONTENT_MD5_HEADER);
-                String calculatedMd5 = calculateMd5(requestBody);
-                if (!expectedMd5.equals(calculatedMd5)) {
-                    log.warn("Content-MD5不匹配：期望={}, 计算={}", expectedMd5, calculatedMd5);
-                    return false;
-                }
-            }
-            
-            // 构建待签名字符串（按规范格式）
-            String signStr = buildSignString(method, path, queryString, timestamp, nonce, appId, headerString, requestBody);
-            
-            // 使用HMAC-SHA256计算签名
-            String calculatedSignature = EncryptUtil.hmacSha256(secretKey, signStr);
-            
-            log.debug("待签名字符串: {}", signStr);
-            log.debug("期望签名: {}", signature);
-            log.debug("计算签名: {}", calculatedSignature);
-            
-            return signature.equals(calculatedSignature);
-        } catch (Exception e) {
-            log.error("签名验证过程出错", e);
-            return false;
-        }
-    }
-    
     /**
      * 获取参与签名的Header
      */
@@ -264,10 +241,10 @@ public class EnhancedSignatureVerificationFilter extends AbstractGatewayFilterFa
     }
     
     /**
-     * 构建待签名字符串
+     * 构建待签名字符串中请求体之前的部分，请求体紧随其后流式追加
      */
-    private String buildSignString(String method, String path, String queryString, String timestamp, 
-                                 String nonce, String appId, String headerString, String body) {
+    private String buildSignPrefix(String method, String path, String queryString, String timestamp,
+                                   String nonce, String appId, String headerString) {
         StringBuilder signStr = new StringBuilder();
         
         // HTTP方法
@@ -291,68 +268,23 @@ public class EnhancedSignatureVerificationFilter extends AbstractGatewayFilterFa
         // 应用ID
         signStr.append(appId).append("\n");
         
-        // 请求体（如果存在）
-        if (StringUtils.hasText(body)) {
-            signStr.append(body);
-        }
-        
         return signStr.toString();
     }
     
-    /**
-     * 计算MD5
-     */
-    private String calculateMd5(String content) {
-        if (!StringUtils.hasText(content)) {
-            return "";
-        }
-        return EncryptUtil.md5Hash(content);
-    }
-    
     /**
      * 验证时间戳
+     * 允许偏差与 {@link NonceReplayGuard} 的nonce保留时长同源，保证可接受区间内的nonce都还在防重放窗口中
      */
     private boolean verifyTimestamp(String timestamp) {
         try {
             long ts = Long.parseLong(timestamp);
             long now = System.currentTimeMillis();
-            return Math.abs(now - ts) < SIGNATURE_EXPIRE_MS;
+            return Math.abs(now - ts) < gatewayConfig.getFilters().getSignature().getExpireTime();
         } catch (NumberFormatException e) {
             return false;
         }
     }
     
-    /**
-     * 验证nonce（防止重放攻击）
-     */
-    private boolean verifyNonce(String nonce) {
-        // 验证nonce格式（应为32位十六进制字符串）
-        if (nonce == null || nonce.length() != 32 || !nonce.matches("[a-fA-F0-9]{32}")) {
-            log.warn("nonce格式无效: {}", nonce);
-            return false;
-        }
-        
-        // 验证nonce是否已使用
-        String key = "signature:nonce:" + nonce;
-        Boolean exists = redisTemplate.hasKey(key);
-        if (exists != null && exists) {
-            return false;
-        }
-        
-        // 存储nonce，有效期5分钟
-        redisTemplate.opsForValue().set(key, "1", SIGNATURE_EXPIRE_MS, TimeUnit.MILLISECONDS);
-        return true;
-    }
-    
-    /**
-     * 获取应用的签名密钥
-     */
-    private String getSecretKey(String appId) {
-        // 从Redis或数据库获取应用的签名密钥
-        String key = "app:secret:" + appId;
-        return redisTemplate.opsForValue().get(key);
-    }
-    
     /**
      * 处理签名无效
      */
@@ -378,7 +310,6 @@ public class EnhancedSignatureVerificationFilter extends AbstractGatewayFilterFa
      */
     public static class Config {
         private boolean enabled = true;
-        private long expireTime = SIGNATURE_EXPIRE_MS;
         private List<String> signedHeaders = SIGNED_HEADERS;
         
         public boolean isEnabled() {
@@ -389,14 +320,6 @@ public class EnhancedSignatureVerificationFilter extends AbstractGatewayFilterFa
             this.enabled = enabled;
         }
         
-        public long getExpireTime() {
-            return expireTime;
-        }
-        
-        public void setExpireTime(long expireTime) {
-            this.expireTime = expireTime;
-        }
-        
         public List<String> getSignedHeaders() {
             return signedHeaders;
         }
@@ -407,23 +330,74 @@ public class EnhancedSignatureVerificationFilter extends AbstractGatewayFilterFa
     }
     
     /**
-     * 简单的元组类，用于返回多个值
+     * 请求体增量摘要
+     * 请求体按块更新HMAC-SHA256（接在待签名前缀之后）与MD5，内存占用与请求体大小无关
      */
-    private static class Tuple2<T1, T2> {
-        private final T1 t1;
-        private final T2 t2;
+    private static class BodyDigest {
+        private final String appId;
+        private final String expectedSignature;
+        private final String expectedMd5;
+        private final Mac mac;
+        private final MessageDigest md5;
+        private long bodySize;
+        
+        BodyDigest(String appId, String expectedSignature, String expectedMd5, String secretKey, String signPrefix)
+                throws Exception {
+            this.appId = appId;
+            this.expectedSignature = expectedSignature;
+            this.expectedMd5 = expectedMd5;
+            this.mac = Mac.getInstance("HmacSHA256");
+            this.mac.init(new SecretKeySpec(secretKey.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+            this.mac.update(signPrefix.getBytes(StandardCharsets.UTF_8));
+            this.md5 = expectedMd5 != null ? MessageDigest.getInstance("MD5") : null;
+        }
         
-        public Tuple2(T1 t1, T2 t2) {
-            this.t1 = t1;
-            this.t2 = t2;
+        void update(DataBuffer buffer) {
+            int length = buffer.readableByteCount();
+            if (length == 0) {
+                return;
+            }
+            // asByteBuffer共享底层内存，不改变读位置
+            ByteBuffer view = buffer.asByteBuffer();
+            mac.update(view.duplicate());
+            if (md5 != null) {
+                md5.update(view);
+            }
+            bodySize += length;
+        }
+        
+        long getBodySize() {
+            return bodySize;
         }
         
-        public T1 getT1() {
-            return t1;
+        String getAppId() {
+            return appId;
         }
         
-        public T2 getT2() {
-            return t2;
+        boolean matches() {
+            // 验证Content-MD5（如果存在），兼容十六进制与Base64两种编码
+            if (md5 != null) {
+                String hex = "";
+                String base64 = "";
+                if (bodySize > 0) {
+                    byte[] digest = md5.digest();
+                    hex = Hex.toHexString(digest);
+                    base64 = Base64.getEncoder().encodeToString(digest);
+                }
+                if (!expectedMd5.equalsIgnoreCase(hex) && !expectedMd5.equals(base64)) {
+                    log.warn("Content-MD5不匹配：期望={}, 计算={}", expectedMd5, hex);
+                    return false;
+                }
+            }
+            
+            String calculatedSignature = Base64.getEncoder().encodeToString(mac.doFinal());
+            boolean valid = MessageDigest.isEqual(
+                expectedSignature.getBytes(StandardCharsets.UTF_8),
+                calculatedSignature.getBytes(StandardCharsets.UTF_8));
+            if (!valid) {
+                log.warn("签名验证失败：签名不匹配，appId={}", appId);
+            }
+            return valid;
         }
     }
 }
\ No newline at end of file
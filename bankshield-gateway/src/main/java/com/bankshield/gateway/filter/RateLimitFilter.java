@@ -1,6 +1,7 @@
 package com.bankshield.gateway.filter;
 
 import com.bankshield.gateway.service.RateLimitService;
+import com.bankshield.gateway.service.RateLimitTarget;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.cloud.gateway.filter.GatewayFilter;
@@ -14,6 +15,9 @@ import org.springframework.stereotype.Component;
 import org.springframework.web.server.ServerWebExchange;
 import reactor.core.publisher.Mono;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * 限流过滤器
  * 
@@ -47,54 +51,43 @@ public class RateLimitFilter extends AbstractGatewayFilterFactory<RateLimitFilte
                 // 获取请求路径
                 String requestPath = request.getURI().getPath();
                 
-                // 检查IP限流
-                if (!rateLimitService.isAllowed("IP", clientIp)) {
-                    log.warn("IP限流拒绝访问: {}, 路径: {}", clientIp, requestPath);
-                    response.setStatusCode(HttpStatus.TOO_MANY_REQUESTS);
-                    return response.setComplete();
-                }
-                
-                // 检查用户限流
-                if (userId != null && !rateLimitService.isAllowed("USER", String.valueOf(userId))) {
-                    log.warn("用户限流拒绝访问: {}, 路径: {}", userId, requestPath);
-                    response.setStatusCode(HttpStatus.TOO_MANY_REQUESTS);
-                    return response.setComplete();
+                // 所有维度合并为一次检查：本地令牌充足时不访问Redis，不足时一次脚本批量预占
+                List<RateLimitTarget> targets = new ArrayList<>(5);
+                targets.add(RateLimitTarget.of("IP", clientIp));
+                if (userId != null) {
+                    targets.add(RateLimitTarget.of("USER", String.valueOf(userId)));
                 }
-                
-                // 检查API限流
-                if (!rateLimitService.isAllowed("API", requestPath)) {
-                    log.warn("API限流拒绝访问: {}, IP: {}", requestPath, clientIp);
-                    response.setStatusCode(HttpStatus.TOO_MANY_REQUESTS);
-                    return response.setComplete();
-                }
-                
-                // 检查全局限流
-                if (!rateLimitService.isAllowed("GLOBAL", "global")) {
-                    log.warn("全局限流拒绝访问: {}, IP: {}", requestPath, clientIp);
-                    response.setStatusCode(HttpStatus.TOO_MANY_REQUESTS);
-                    return response.setComplete();
+                targets.add(RateLimitTarget.of("API", requestPath));
+                targets.add(RateLimitTarget.of("GLOBAL", "global"));
+                if (config.getRuleName() != null && !config.getRuleName().isEmpty()) {
+                    targets.add(new RateLimitTarget("CUSTOM", clientIp, config.getRuleName()));
                 }
                 
-                // 自定义规则限流
-                if (config.getRuleName() != null && !config.getRuleName().isEmpty()) {
-                    if (!rateLimitService.isAllowed("CUSTOM", clientIp, config.getRuleName())) {
-                        log.warn("自定义限流拒绝访问: {}, 规则: {}", clientIp, config.getRuleName());
+                return rateLimitService.checkReactive(targets).flatMap(decision -> {
+                    if (!decision.isAllowed()) {
+                        log.warn("{}限流拒绝访问: {}, 规则: {}, 路径: {}, IP: {}", decision.getDeniedDimension(),
+                            decision.getDeniedKey(), decision.getDeniedRule(), requestPath, clientIp);
                         response.setStatusCode(HttpStatus.TOO_MANY_REQUESTS);
                         return response.setComplete();
                     }
-                }
-                
-                // 添加限流信息到请求头
-                ServerHttpRequest mutatedRequest = request.mutate()
-                    .header("X-RateLimit-IP-Remaining", String.valueOf(rateLimitService.getRemainingTime("IP", clientIp, "default")))
-                    .header("X-RateLimit-IP-Reset", String.valueOf(rateLimitService.getCurrentCount("IP", clientIp, "default")))
-                    .build();
-                
-                ServerWebExchange mutatedExchange = exchange.mutate()
-                    .request(mutatedRequest)
-                    .build();
-                
-                return chain.filter(mutatedExchange);
+                    
+                    Long remaining = decision.getRemaining("IP");
+                    if (remaining == null) {
+                        return chain.filter(exchange);
+                    }
+                    
+                    // 添加限流信息到请求头
+                    ServerHttpRequest mutatedRequest = request.mutate()
+                        .header("X-RateLimit-IP-Remaining", String.valueOf(remaining))
+                        .header("X-RateLimit-IP-Reset", String.valueOf(decision.getResetSeconds("IP")))
+                        .build();
+                    
+                    ServerWebExchange mutatedExchange = exchange.mutate()
+                        .request(mutatedRequest)
+                        .build();
+                    
+                    return chain.filter(mutatedExchange);
+                });
             }
         };
     }
@@ -5,7 +5,10 @@ import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.core.script.DefaultRedisScript;
 import org.springframework.stereotype.Repository;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -38,6 +41,43 @@ public class RateLimitRepository {
         "    return 0\n" +
         "end";
     
+    /**
+     * 批量额度租约Lua脚本
+     * 每个键依次传入 limit、window、want 三个参数，在同一固定窗口计数器上预占额度，
+     * 返回每个键的 [实际授予额度, 预占后计数, 窗口剩余毫秒]
+     */
+    private static final String QUOTA_LEASE_LUA_SCRIPT =
+        "local result = {}\n" +
+        "for i = 1, #KEYS do\n" +
+        "    local base = (i - 1) * 3\n" +
+        "    local limit = tonumber(ARGV[base + 1])\n" +
+        "    local window = tonumber(ARGV[base + 2])\n" +
+        "    local want = tonumber(ARGV[base + 3])\n" +
+        "    local current = tonumber(redis.call('get', KEYS[i]) or '0')\n" +
+        "    local grant = math.max(math.min(want, limit - current), 0)\n" +
+        "    if grant > 0 then\n" +
+        "        current = redis.call('incrby', KEYS[i], grant)\n" +
+        "    end\n" +
+        "    local ttl = redis.call('pttl', KEYS[i])\n" +
+        "    if ttl == -1 then\n" +
+        "        redis.call('expire', KEYS[i], window)\n" +
+        "        ttl = window * 1000\n" +
+        "    elseif ttl == -2 then\n" +
+        "        ttl = window * 1000\n" +
+        "    end\n" +
+        "    result[#result + 1] = grant\n" +
+        "    result[#result + 1] = current\n" +
+        "    result[#result + 1] = ttl\n" +
+        "end\n" +
+        "return result";
+    
+    private static final DefaultRedisScript<Long> RATE_LIMIT_SCRIPT =
+        new DefaultRedisScript<>(RATE_LIMIT_LUA_SCRIPT, Long.class);
+    
+    @SuppressWarnings("rawtypes")
+    private static final DefaultRedisScript<List> QUOTA_LEASE_SCRIPT =
+        new DefaultRedisScript<>(QUOTA_LEASE_LUA_SCRIPT, List.class);
+    
     /**
      * 检查是否允许访问
      * 
@@ -47,14 +87,50 @@ public class RateLimitRepository {
      * @return true: 允许访问, false: 拒绝访问
      */
     public boolean isAllowed(String key, int limit, int window) {
-        DefaultRedisScript<Long> script = new DefaultRedisScript<>();
-        script.setScriptText(RATE_LIMIT_LUA_SCRIPT);
-        script.setResultType(Long.class);
-        
-        Long result = redisTemplate.execute(script, Arrays.asList(key), String.valueOf(limit), String.valueOf(window));
+        Long result = redisTemplate.execute(RATE_LIMIT_SCRIPT, Arrays.asList(key), String.valueOf(limit), String.valueOf(window));
         return result != null && result > 0;
     }
     
+    /**
+     * 一次脚本调用为多个限流键预占额度
+     * 
+     * @param keys 限流键列表
+     * @param limits 每个键的阈值
+     * @param windows 每个键的时间窗口（秒）
+     * @param wants 每个键期望预占的额度
+     * @return 每个键的 [实际授予额度, 预占后计数, 窗口剩余毫秒]
+     */
+    public List<long[]> leaseQuotas(List<String> keys, int[] limits, int[] windows, long[] wants) {
+        if (keys.isEmpty()) {
+            return Collections.emptyList();
+        }
+        Object[] args = new Object[keys.size() * 3];
+        for (int i = 0; i < keys.size(); i++) {
+            args[i * 3] = String.valueOf(limits[i]);
+            args[i * 3 + 1] = String.valueOf(windows[i]);
+            args[i * 3 + 2] = String.valueOf(wants[i]);
+        }
+        List<?> raw = redisTemplate.execute(QUOTA_LEASE_SCRIPT, keys, args);
+        if (raw == null || raw.size() != keys.size() * 3) {
+            throw new IllegalStateException("限流额度租约脚本返回结果异常");
+        }
+        List<long[]> result = new ArrayList<>(keys.size());
+        for (int i = 0; i < keys.size(); i++) {
+            result.add(new long[]{toLong(raw.get(i * 3)), toLong(raw.get(i * 3 + 1)), toLong(raw.get(i * 3 + 2))});
+        }
+        return result;
+    }
+    
+    private long toLong(Object value) {
+        if (value instanceof Number) {
+            return ((Number) value).longValue();
+        }
+        if (value instanceof byte[]) {
+            return Long.parseLong(new String((byte[]) value));
+        }
+        return Long.parseLong(String.valueOf(value));
+    }
+    
     /**
      * 获取当前计数
      * 
@@ -0,0 +1,317 @@
+package com.bankshield.gateway.service;
+
+import com.bankshield.common.utils.JsonlSpillStore;
+import com.bankshield.gateway.config.GatewayConfig;
+import com.bankshield.gateway.entity.ApiAccessLog;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * API访问日志批量写入管道
+ * 请求线程只做无锁入队（多生产者单消费者），单写入线程按批次JDBC批量插入；
+ * 队列满时丢弃、成功的快请求可按比例采样，写库失败的批次落盘后在空闲时回放
+ *
+ * @author BankShield
+ */
+@Slf4j
+@Component
+public class ApiAccessLogSink {
+
+    private static final String INSERT_SQL = "INSERT INTO api_access_log (request_path, request_method, " +
+        "request_params, request_headers, response_status, response_content, execute_time, ip_address, user_id, " +
+        "access_time, access_result, error_message, user_agent, request_body_size, response_body_size) " +
+        "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String SPILL_NAME = "api-access-log-spill";
+    private static final long REPLAY_INTERVAL_MS = 5000;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private GatewayConfig gatewayConfig;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final ConcurrentLinkedQueue<ApiAccessLog> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger depth = new AtomicInteger();
+
+    private GatewayConfig.ApiAuditConfig config;
+    private JsonlSpillStore<ApiAccessLog> spillStore;
+    private Thread writer;
+    private volatile boolean running;
+
+    private Counter acceptedCounter;
+    private Counter droppedCounter;
+    private Counter sampledCounter;
+    private Counter writtenCounter;
+    private Counter spilledCounter;
+    private Counter replayedCounter;
+    private Counter lostCounter;
+    private Timer batchTimer;
+
+    @PostConstruct
+    public void start() {
+        config = gatewayConfig.getFilters().getApiAudit();
+        spillStore = new JsonlSpillStore<>(config.getSpillDir(), SPILL_NAME, ApiAccessLog.class, REPLAY_INTERVAL_MS);
+        acceptedCounter = recordCounter("accepted");
+        droppedCounter = recordCounter("dropped");
+        sampledCounter = recordCounter("sampled_out");
+        writtenCounter = recordCounter("written");
+        spilledCounter = recordCounter("spilled");
+        replayedCounter = recordCounter("replayed");
+        lostCounter = recordCounter("lost");
+        batchTimer = Timer.builder("gateway.access_log.batch.write")
+            .description("访问日志批量写入耗时")
+            .register(meterRegistry);
+        Gauge.builder("gateway.access_log.queue.depth", depth, AtomicInteger::get)
+            .description("待写入访问日志条数")
+            .register(meterRegistry);
+        Gauge.builder("gateway.access_log.spill.quarantined", spillStore, JsonlSpillStore::getQuarantined)
+            .description("落盘文件中无法解析而被隔离的行数")
+            .register(meterRegistry);
+        Gauge.builder("gateway.access_log.lag.seconds", this, ApiAccessLogSink::lagSeconds)
+            .description("最早待写入访问日志的滞后时间")
+            .register(meterRegistry);
+
+        running = true;
+        writer = new Thread(this::writeLoop, "access-log-writer");
+        writer.setDaemon(true);
+        writer.start();
+        log.info("API访问日志写入管道已启动，容量: {}, 批次: {}, 采样率: {}",
+            config.getQueueCapacity(), config.getBatchSize(), config.getSampleRate());
+    }
+
+    /**
+     * 提交访问日志，不做任何I/O
+     *
+     * @param accessLog 访问日志
+     * @return 是否入队
+     */
+    public boolean offer(ApiAccessLog accessLog) {
+        if (accessLog == null) {
+            return false;
+        }
+        if (shouldSampleOut(accessLog)) {
+            sampledCounter.increment();
+            return false;
+        }
+        int current = depth.incrementAndGet();
+        if (current > config.getQueueCapacity() || !running) {
+            depth.decrementAndGet();
+            droppedCounter.increment();
+            return false;
+        }
+        queue.offer(accessLog);
+        acceptedCounter.increment();
+        // 与停机排空竞争时，写入线程和停机排空都可能已错过这条记录，改为直接落盘
+        if (!running && queue.remove(accessLog)) {
+            depth.decrementAndGet();
+            spill(Collections.singletonList(accessLog));
+            return true;
+        }
+        if (current % config.getBatchSize() == 0) {
+            LockSupport.unpark(writer);
+        }
+        return true;
+    }
+
+    /**
+     * 失败和慢请求始终保留，其余按采样率保留
+     */
+    private boolean shouldSampleOut(ApiAccessLog accessLog) {
+        double sampleRate = config.getSampleRate();
+        if (sampleRate >= 1.0) {
+            return false;
+        }
+        if (!"SUCCESS".equals(accessLog.getAccessResult())) {
+            return false;
+        }
+        if (accessLog.getExecuteTime() != null && accessLog.getExecuteTime() >= config.getSlowQueryThreshold()) {
+            return false;
+        }
+        return ThreadLocalRandom.current().nextDouble() >= sampleRate;
+    }
+
+    /**
+     * 写入线程主循环
+     */
+    private void writeLoop() {
+        List<ApiAccessLog> batch = new ArrayList<>(config.getBatchSize());
+        while (running || depth.get() > 0) {
+            try {
+                drain(batch);
+                if (!batch.isEmpty()) {
+                    flush(batch);
+                }
+                if (batch.size() < config.getBatchSize()) {
+                    if (batch.isEmpty()) {
+                        replaySpill();
+                    }
+                    LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(config.getFlushIntervalMs()));
+                }
+            } catch (Exception e) {
+                log.error("API访问日志写入线程异常", e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void drain(List<ApiAccessLog> batch) {
+        ApiAccessLog accessLog;
+        while (batch.size() < config.getBatchSize() && (accessLog = queue.poll()) != null) {
+            depth.decrementAndGet();
+            batch.add(accessLog);
+        }
+    }
+
+    private void flush(List<ApiAccessLog> batch) {
+        if (insertBatch(batch)) {
+            writtenCounter.increment(batch.size());
+        } else {
+            spill(batch);
+        }
+    }
+
+    private boolean insertBatch(List<ApiAccessLog> batch) {
+        long start = System.nanoTime();
+        try {
+            jdbcTemplate.batchUpdate(INSERT_SQL, batch, batch.size(), (ps, accessLog) -> {
+                ps.setString(1, accessLog.getRequestPath());
+                ps.setString(2, accessLog.getRequestMethod());
+                ps.setString(3, accessLog.getRequestParams());
+                ps.setString(4, accessLog.getRequestHeaders());
+                ps.setObject(5, accessLog.getResponseStatus(), Types.INTEGER);
+                ps.setString(6, accessLog.getResponseContent());
+                ps.setObject(7, accessLog.getExecuteTime(), Types.BIGINT);
+                ps.setString(8, accessLog.getIpAddress());
+                ps.setObject(9, accessLog.getUserId(), Types.BIGINT);
+                ps.setTimestamp(10, Timestamp.valueOf(accessLog.getAccessTime()));
+                ps.setString(11, accessLog.getAccessResult());
+                ps.setString(12, accessLog.getErrorMessage());
+                ps.setString(13, accessLog.getUserAgent());
+                ps.setObject(14, accessLog.getRequestBodySize(), Types.BIGINT);
+                ps.setObject(15, accessLog.getResponseBodySize(), Types.BIGINT);
+            });
+            return true;
+        } catch (Exception e) {
+            log.error("批量写入API访问日志失败，条数: {}", batch.size(), e);
+            return false;
+        } finally {
+            batchTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * 写库失败的批次落盘，落盘也失败时计入丢失
+     */
+    private void spill(List<ApiAccessLog> batch) {
+        if (spillStore.append(batch)) {
+            spilledCounter.increment(batch.size());
+        } else {
+            lostCounter.increment(batch.size());
+            log.error("API访问日志落盘失败，丢失{}条", batch.size());
+        }
+    }
+
+    /**
+     * 队列空闲时回放落盘记录，数据库仍不可用时从已提交偏移处保留到下次
+     */
+    private void replaySpill() {
+        int replayed = spillStore.replay(config.getBatchSize(), this::insertBatch);
+        if (replayed > 0) {
+            replayedCounter.increment(replayed);
+        }
+    }
+
+    private double lagSeconds() {
+        ApiAccessLog head = queue.peek();
+        if (head == null || head.getAccessTime() == null) {
+            return 0;
+        }
+        long accessMillis = head.getAccessTime().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        return Math.max(0, System.currentTimeMillis() - accessMillis) / 1000.0;
+    }
+
+    private Counter recordCounter(String result) {
+        return Counter.builder("gateway.access_log.records")
+            .description("访问日志处理条数")
+            .tag("result", result)
+            .register(meterRegistry);
+    }
+
+    /**
+     * 获取写入管道统计信息
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("queueDepth", depth.get());
+        stats.put("capacity", config.getQueueCapacity());
+        stats.put("lagSeconds", lagSeconds());
+        stats.put("accepted", (long) acceptedCounter.count());
+        stats.put("dropped", (long) droppedCounter.count());
+        stats.put("sampledOut", (long) sampledCounter.count());
+        stats.put("written", (long) writtenCounter.count());
+        stats.put("spilled", (long) spilledCounter.count());
+        stats.put("replayed", (long) replayedCounter.count());
+        stats.put("lost", (long) lostCounter.count());
+        stats.put("quarantined", spillStore.getQuarantined());
+        return stats;
+    }
+
+    /**
+     * 停机时排空队列；写入线程超时未结束时中断它，剩余记录全部落盘，待下次启动回放
+     */
+    @PreDestroy
+    public void shutdown() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(writer);
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(config.getShutdownTimeoutSeconds()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (writer.isAlive()) {
+            log.warn("API访问日志写入线程未在{}秒内结束，剩余{}条改为落盘", config.getShutdownTimeoutSeconds(), depth.get());
+            writer.interrupt();
+        }
+        List<ApiAccessLog> remaining = new ArrayList<>();
+        ApiAccessLog accessLog;
+        while ((accessLog = queue.poll()) != null) {
+            depth.decrementAndGet();
+            remaining.add(accessLog);
+        }
+        if (!remaining.isEmpty()) {
+            spill(remaining);
+        }
+        log.info("API访问日志写入管道已关闭，累计写入{}条，丢弃{}条", (long) writtenCounter.count(),
+            (long) droppedCounter.count());
+    }
+}
@@ -6,11 +6,11 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 /**
@@ -25,21 +25,29 @@ public class ApiAuditService {
     @Autowired
     private ApiAccessLogRepository apiAccessLogRepository;
     
+    @Autowired
+    private ApiAccessLogSink apiAccessLogSink;
+    
     /**
-     * 异步记录API访问日志
+     * 异步记录API访问日志（入队后由写入管道批量落库）
      * 
      * @param accessLog 访问日志
      */
-    @Async
     public void logApiAccess(ApiAccessLog accessLog) {
-        try {
-            apiAccessLogRepository.save(accessLog);
-            log.debug("API访问日志已记录: {}", accessLog.getRequestPath());
-        } catch (Exception e) {
-            log.error("记录API访问日志失败: {}", e.getMessage(), e);
+        if (!apiAccessLogSink.offer(accessLog)) {
+            log.debug("API访问日志未入队（采样或队列已满）: {}", accessLog.getRequestPath());
         }
     }
     
+    /**
+     * 获取访问日志写入管道统计
+     * 
+     * @return 统计信息
+     */
+    public Map<String, Object> getSinkStatistics() {
+        return apiAccessLogSink.getStatistics();
+    }
+    
     /**
      * 同步记录API访问日志
      * 
@@ -0,0 +1,105 @@
+package com.bankshield.gateway.service;
+
+import com.bankshield.gateway.config.GatewayConfig;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 应用签名密钥本地缓存
+ * 密钥按TTL缓存在节点本地，未命中时异步读取Redis；
+ * 密钥经 {@link AppSecretService} 写入或吊销后向频道发布appId，各节点收到后立即失效对应缓存；
+ * TTL只兜底广播丢失的情况，应保持在分钟级。
+ *
+ * @author BankShield
+ */
+@Slf4j
+@Component
+public class AppSecretCache implements MessageListener {
+
+    /**
+     * 密钥变更广播频道，消息体为appId
+     */
+    public static final String CHANNEL = "app:secret:events";
+
+    static final String SECRET_KEY_PREFIX = "app:secret:";
+
+    @Autowired
+    private ReactiveStringRedisTemplate reactiveRedisTemplate;
+
+    @Autowired
+    private GatewayConfig gatewayConfig;
+
+    private final Map<String, CachedSecret> cache = new ConcurrentHashMap<>();
+
+    /**
+     * 获取应用签名密钥
+     *
+     * @param appId 应用ID
+     * @return 密钥，不存在时为空
+     */
+    public Mono<String> getSecret(String appId) {
+        long now = System.currentTimeMillis();
+        CachedSecret cached = cache.get(appId);
+        if (cached != null && cached.expireAt > now) {
+            return Mono.just(cached.secret);
+        }
+        long ttlMillis = gatewayConfig.getCache().getExpireTimes().getAppSecrets() * 1000L;
+        return reactiveRedisTemplate.opsForValue()
+            .get(SECRET_KEY_PREFIX + appId)
+            .doOnNext(secret -> cache.put(appId, new CachedSecret(secret, now + ttlMillis)));
+    }
+
+    /**
+     * 失效本地缓存并通知其他节点
+     *
+     * @param appId 应用ID
+     */
+    public Mono<Void> invalidate(String appId) {
+        cache.remove(appId);
+        return reactiveRedisTemplate.convertAndSend(CHANNEL, appId)
+            .doOnError(e -> log.error("广播密钥变更失败: {}", appId, e))
+            .onErrorResume(e -> Mono.empty())
+            .then();
+    }
+
+    /**
+     * 清理过期缓存
+     *
+     * @return 清理条数
+     */
+    public int evictExpired() {
+        long now = System.currentTimeMillis();
+        int before = cache.size();
+        cache.values().removeIf(cached -> cached.expireAt <= now);
+        return before - cache.size();
+    }
+
+    /**
+     * 接收密钥变更广播
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String appId = new String(message.getBody(), StandardCharsets.UTF_8);
+        cache.remove(appId);
+        log.debug("应用密钥缓存已失效: {}", appId);
+    }
+
+    private static final class CachedSecret {
+        private final String secret;
+        private final long expireAt;
+
+        private CachedSecret(String secret, long expireAt) {
+            this.secret = secret;
+            this.expireAt = expireAt;
+        }
+    }
+}
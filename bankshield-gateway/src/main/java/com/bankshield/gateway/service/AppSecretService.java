@@ -0,0 +1,50 @@
+package com.bankshield.gateway.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+/**
+ * 应用签名密钥服务
+ * 密钥写入或吊销后立即广播失效，各节点不必等待本地缓存TTL到期
+ *
+ * @author BankShield
+ */
+@Slf4j
+@Service
+public class AppSecretService {
+
+    @Autowired
+    private ReactiveStringRedisTemplate reactiveRedisTemplate;
+
+    @Autowired
+    private AppSecretCache appSecretCache;
+
+    /**
+     * 设置或轮换应用密钥
+     *
+     * @param appId 应用ID
+     * @param secretKey 新密钥
+     * @return 是否写入成功
+     */
+    public Mono<Boolean> updateSecret(String appId, String secretKey) {
+        return reactiveRedisTemplate.opsForValue()
+            .set(AppSecretCache.SECRET_KEY_PREFIX + appId, secretKey)
+            .flatMap(saved -> appSecretCache.invalidate(appId).thenReturn(saved))
+            .doOnNext(saved -> log.info("应用密钥已更新：appId={}", appId));
+    }
+
+    /**
+     * 吊销应用密钥，吊销后该应用的签名请求全部被拒绝
+     *
+     * @param appId 应用ID
+     * @return 密钥是否存在并已删除
+     */
+    public Mono<Boolean> revokeSecret(String appId) {
+        return reactiveRedisTemplate.delete(AppSecretCache.SECRET_KEY_PREFIX + appId)
+            .flatMap(deleted -> appSecretCache.invalidate(appId).thenReturn(deleted > 0))
+            .doOnNext(revoked -> log.info("应用密钥已吊销：appId={}, 存在={}", appId, revoked));
+    }
+}
@@ -0,0 +1,96 @@
+package com.bankshield.gateway.service;
+
+import com.bankshield.common.utils.IpPrefixTrie;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 自动封禁写入器
+ * 过滤器线程只做本地封禁，数据库和Redis写入交给后台线程。
+ * 落库通过注入的 {@link BlacklistService} 代理调用，保证 addToBlacklist 在事务中执行。
+ *
+ * @author BankShield
+ */
+@Slf4j
+@Component
+public class BlacklistAutoBlocker {
+
+    @Autowired
+    private BlacklistService blacklistService;
+
+    @Autowired
+    private IpBlacklistCache ipBlacklistCache;
+
+    /**
+     * 自动封禁落库线程，队列有界，避免突发攻击时堆积
+     */
+    private final ThreadPoolExecutor blacklistWriter = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+        new ArrayBlockingQueue<>(10000), r -> {
+            Thread thread = new Thread(r, "blacklist-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+    /**
+     * 等待落库的IP，同一IP只提交一次
+     */
+    private final Set<String> pendingBlocks = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 异步添加IP到黑名单
+     * 立即在本地生效，数据库和Redis写入交给后台线程，调用方不做任何I/O；
+     * 落库成功前本地封禁会在黑名单全量重建时保留
+     *
+     * @param ipAddress IP地址
+     * @param blockReason 封禁原因
+     * @param blockDuration 封禁时长（秒）
+     * @param operator 操作人员
+     */
+    public void block(String ipAddress, String blockReason, Long blockDuration, String operator) {
+        long expireAt = blockDuration != null && blockDuration > 0
+            ? System.currentTimeMillis() + blockDuration * 1000
+            : IpPrefixTrie.NEVER_EXPIRE;
+        ipBlacklistCache.blockLocally(ipAddress, expireAt);
+
+        if (!pendingBlocks.add(ipAddress)) {
+            return;
+        }
+        try {
+            blacklistWriter.execute(() -> {
+                try {
+                    blacklistService.addToBlacklist(ipAddress, blockReason, blockDuration, operator);
+                    ipBlacklistCache.markPersisted(ipAddress);
+                } catch (Exception e) {
+                    log.error("异步添加IP到黑名单失败，仅本地封禁: {}", ipAddress, e);
+                } finally {
+                    pendingBlocks.remove(ipAddress);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // 本地封禁依然有效，仅持久化被丢弃
+            pendingBlocks.remove(ipAddress);
+            log.warn("黑名单落库队列已满，仅本地封禁: {}", ipAddress);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        blacklistWriter.shutdown();
+        try {
+            if (!blacklistWriter.awaitTermination(10, TimeUnit.SECONDS)) {
+                log.warn("黑名单落库线程未在超时时间内完成，剩余任务: {}", blacklistWriter.getQueue().size());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -29,6 +29,9 @@ public class BlacklistService {
     @Autowired
     private BlacklistRepository blacklistRepository;
     
+    @Autowired
+    private IpBlacklistCache ipBlacklistCache;
+    
     /**
      * 添加IP到黑名单
      * 
@@ -61,6 +64,7 @@ public class BlacklistService {
         
         // 同步到Redis
         blacklistRepository.addToBlacklist(ipAddress, blockReason, blockDuration != null ? blockDuration : 0);
+        ipBlacklistCache.block(ipAddress, IpBlacklistCache.toExpireAt(blacklistIp.getUnblockTime()));
         
         log.info("IP已添加到黑名单: {}, 原因: {}, 操作人员: {}", ipAddress, blockReason, operator);
         return saved;
@@ -89,6 +93,7 @@ public class BlacklistService {
         
         // 从Redis中移除
         blacklistRepository.removeFromBlacklist(blacklistIp.getIpAddress());
+        ipBlacklistCache.unblock(blacklistIp.getIpAddress());
         
         log.info("IP已从黑名单中移除: {}, 操作人员: {}", blacklistIp.getIpAddress(), operator);
         return saved;
@@ -101,7 +106,7 @@ public class BlacklistService {
      * @return true: 在黑名单中, false: 不在黑名单中
      */
     public boolean isBlacklisted(String ipAddress) {
-        return blacklistRepository.isBlacklisted(ipAddress);
+        return ipBlacklistCache.isBlocked(ipAddress);
     }
     
     /**
@@ -158,6 +163,7 @@ public class BlacklistService {
             
             // 从Redis中移除
             blacklistRepository.removeFromBlacklist(blacklistIp.getIpAddress());
+            ipBlacklistCache.unblock(blacklistIp.getIpAddress());
             
             log.info("IP黑名单已过期自动解封: {}", blacklistIp.getIpAddress());
         }
@@ -206,6 +212,7 @@ public class BlacklistService {
                 
                 // 同步到Redis
                 blacklistRepository.addToBlacklist(ipAddress, blockReason, blockDuration != null ? blockDuration : 0);
+                ipBlacklistCache.block(ipAddress, IpBlacklistCache.toExpireAt(unblockTime));
                 
                 log.info("IP已添加到黑名单: {}, 原因: {}, 操作人员: {}", ipAddress, blockReason, operator);
             } catch (Exception e) {
@@ -232,6 +239,7 @@ public class BlacklistService {
             
             // 从Redis中移除
             blacklistRepository.removeFromBlacklist(blacklistIp.getIpAddress());
+            ipBlacklistCache.unblock(blacklistIp.getIpAddress());
             
             log.info("IP已从黑名单中移除: {}, 操作人员: {}", blacklistIp.getIpAddress(), operator);
         }
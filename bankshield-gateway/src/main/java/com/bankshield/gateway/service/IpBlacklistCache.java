@@ -0,0 +1,194 @@
+package com.bankshield.gateway.service;
+
+import com.alibaba.fastjson2.JSON;
+import com.alibaba.fastjson2.JSONObject;
+import com.bankshield.common.utils.IpPrefixTrie;
+import com.bankshield.gateway.config.GatewayConfig;
+import com.bankshield.gateway.entity.BlacklistIp;
+import com.bankshield.gateway.repository.BlacklistIpRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 节点本地IP黑名单缓存
+ * 以数据库为准全量加载到前缀树，节点间通过Redis发布订阅同步增量变更，
+ * 定时全量重建兜底丢失的消息。尚未落库的本地封禁在重建时合并保留，直到落库或过期。
+ * 查询完全在内存中完成。
+ *
+ * @author BankShield
+ */
+@Slf4j
+@Component
+public class IpBlacklistCache implements MessageListener {
+
+    /**
+     * 黑名单变更广播频道
+     */
+    public static final String CHANNEL = "blacklist:events";
+
+    private static final String OP_ADD = "ADD";
+    private static final String OP_REMOVE = "REMOVE";
+
+    @Autowired
+    private BlacklistIpRepository blacklistIpRepository;
+
+    @Autowired
+    private RedisTemplate<String, String> redisTemplate;
+
+    @Autowired
+    private GatewayConfig gatewayConfig;
+
+    private volatile IpPrefixTrie trie = new IpPrefixTrie();
+
+    /**
+     * 仅在本地生效、尚未落库的封禁（IP或CIDR -> 过期时间戳）
+     */
+    private final Map<String, Long> localOnlyBlocks = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        reload();
+    }
+
+    /**
+     * 从数据库和静态配置全量重建前缀树
+     */
+    public void reload() {
+        try {
+            IpPrefixTrie rebuilt = new IpPrefixTrie();
+            for (String ip : gatewayConfig.getSecurity().getBlacklistIps()) {
+                if (!rebuilt.add(ip, IpPrefixTrie.NEVER_EXPIRE)) {
+                    log.warn("静态黑名单配置格式非法: {}", ip);
+                }
+            }
+            int count = 0;
+            for (BlacklistIp blacklistIp : blacklistIpRepository.findActiveBlacklists(LocalDateTime.now())) {
+                if (rebuilt.add(blacklistIp.getIpAddress(), toExpireAt(blacklistIp.getUnblockTime()))) {
+                    count++;
+                }
+            }
+            mergeLocalOnlyBlocks(rebuilt);
+            trie = rebuilt;
+            // 合并期间新增的本地封禁可能只写入了旧前缀树
+            mergeLocalOnlyBlocks(rebuilt);
+            log.debug("本地黑名单已重建，数据库记录数: {}, 未落库的本地封禁: {}", count, localOnlyBlocks.size());
+        } catch (Exception e) {
+            log.error("重建本地黑名单失败，继续使用现有数据", e);
+        }
+    }
+
+    private void mergeLocalOnlyBlocks(IpPrefixTrie target) {
+        long now = System.currentTimeMillis();
+        for (Map.Entry<String, Long> entry : localOnlyBlocks.entrySet()) {
+            if (entry.getValue() <= now) {
+                localOnlyBlocks.remove(entry.getKey(), entry.getValue());
+            } else {
+                target.add(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * 检查IP是否命中黑名单（含CIDR网段）
+     *
+     * @param ip IP地址
+     * @return true: 命中
+     */
+    public boolean isBlocked(String ip) {
+        return trie.contains(ip, System.currentTimeMillis());
+    }
+
+    /**
+     * 本地封禁并广播给其他节点
+     *
+     * @param ipOrCidr IP或CIDR
+     * @param expireAtMillis 过期时间戳（毫秒）
+     */
+    public void block(String ipOrCidr, long expireAtMillis) {
+        if (!trie.add(ipOrCidr, expireAtMillis)) {
+            log.warn("黑名单地址格式非法，忽略本地缓存: {}", ipOrCidr);
+            return;
+        }
+        publish(OP_ADD, ipOrCidr, expireAtMillis);
+    }
+
+    /**
+     * 仅在本地封禁，不广播；落库前在全量重建时保留
+     */
+    public void blockLocally(String ipOrCidr, long expireAtMillis) {
+        if (trie.add(ipOrCidr, expireAtMillis)) {
+            localOnlyBlocks.merge(ipOrCidr, expireAtMillis, Math::max);
+        }
+    }
+
+    /**
+     * 本地封禁已落库，此后以数据库为准
+     */
+    public void markPersisted(String ipOrCidr) {
+        localOnlyBlocks.remove(ipOrCidr);
+    }
+
+    /**
+     * 本地解封并广播给其他节点
+     *
+     * @param ipOrCidr IP或CIDR
+     */
+    public void unblock(String ipOrCidr) {
+        localOnlyBlocks.remove(ipOrCidr);
+        trie.remove(ipOrCidr);
+        publish(OP_REMOVE, ipOrCidr, 0);
+    }
+
+    /**
+     * 接收其他节点广播的黑名单变更
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        try {
+            JSONObject event = JSON.parseObject(new String(message.getBody(), StandardCharsets.UTF_8));
+            String ip = event.getString("ip");
+            if (OP_ADD.equals(event.getString("op"))) {
+                trie.add(ip, event.getLongValue("expireAt"));
+            } else if (OP_REMOVE.equals(event.getString("op"))) {
+                localOnlyBlocks.remove(ip);
+                trie.remove(ip);
+            }
+        } catch (Exception e) {
+            log.error("处理黑名单变更消息失败", e);
+        }
+    }
+
+    /**
+     * 计算过期时间戳，无解封时间视为永久
+     */
+    public static long toExpireAt(LocalDateTime unblockTime) {
+        if (unblockTime == null) {
+            return IpPrefixTrie.NEVER_EXPIRE;
+        }
+        return unblockTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private void publish(String op, String ip, long expireAt) {
+        JSONObject event = new JSONObject();
+        event.put("op", op);
+        event.put("ip", ip);
+        event.put("expireAt", expireAt);
+        try {
+            redisTemplate.convertAndSend(CHANNEL, event.toJSONString());
+        } catch (Exception e) {
+            // 其他节点将在下次全量重建时同步
+            log.error("广播黑名单变更失败: {} {}", op, ip, e);
+        }
+    }
+}
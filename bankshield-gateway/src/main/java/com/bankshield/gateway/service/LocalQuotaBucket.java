@@ -0,0 +1,71 @@
+package com.bankshield.gateway.service;
+
+/**
+ * 本地令牌桶
+ * 令牌来自向Redis固定窗口计数器预占的额度，窗口结束后本地剩余令牌作废，
+ * 因此各节点放行总数不会超过规则阈值
+ *
+ * @author BankShield
+ */
+final class LocalQuotaBucket {
+
+    private long tokens;
+
+    private long windowEndMillis;
+
+    /**
+     * 最近一次预占后Redis中的窗口计数
+     */
+    private long remoteCount;
+
+    synchronized boolean tryAcquire(long now) {
+        if (now >= windowEndMillis || tokens <= 0) {
+            return false;
+        }
+        tokens--;
+        return true;
+    }
+
+    synchronized void release() {
+        tokens++;
+    }
+
+    /**
+     * 补充预占到的额度
+     *
+     * @param granted 授予额度
+     * @param count 预占后Redis计数
+     * @param ttlMillis 窗口剩余毫秒
+     * @param now 当前时间
+     */
+    synchronized void refill(long granted, long count, long ttlMillis, long now) {
+        if (now >= windowEndMillis) {
+            tokens = 0;
+        }
+        tokens += granted;
+        remoteCount = count;
+        windowEndMillis = now + ttlMillis;
+    }
+
+    /**
+     * 由于Redis不可用而降级时，在本地单独开窗
+     */
+    synchronized void refillLocally(long granted, long windowMillis, long now) {
+        if (now >= windowEndMillis) {
+            tokens = granted;
+            windowEndMillis = now + windowMillis;
+        }
+    }
+
+    synchronized long getRemaining(int limit) {
+        return Math.max(0, limit - remoteCount + tokens);
+    }
+
+    synchronized long getResetSeconds(long now) {
+        return Math.max(0, (windowEndMillis - now + 999) / 1000);
+    }
+
+    synchronized boolean isExpired(long now) {
+        return now >= windowEndMillis;
+    }
+}
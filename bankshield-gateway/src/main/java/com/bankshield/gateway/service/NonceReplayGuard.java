@@ -0,0 +1,63 @@
+package com.bankshield.gateway.service;
+
+import com.bankshield.gateway.config.GatewayConfig;
+import com.bankshield.gateway.util.TimeBucketedBloomFilter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import javax.annotation.PostConstruct;
+import java.time.Duration;
+
+/**
+ * 签名nonce防重放校验
+ * 先查节点本地时间分桶布隆过滤器，本节点见过的nonce直接拒绝，不产生网络IO；
+ * 本地未见过的nonce通过一次 SET NX PX 在Redis中原子占用，保证跨节点唯一。
+ *
+ * @author BankShield
+ */
+@Slf4j
+@Component
+public class NonceReplayGuard {
+
+    private static final String NONCE_KEY_PREFIX = "signature:nonce:";
+
+    @Autowired
+    private ReactiveStringRedisTemplate reactiveRedisTemplate;
+
+    @Autowired
+    private GatewayConfig gatewayConfig;
+
+    private TimeBucketedBloomFilter localFilter;
+
+    private Duration nonceTtl;
+
+    @PostConstruct
+    public void init() {
+        GatewayConfig.SignatureConfig config = gatewayConfig.getFilters().getSignature();
+        // 时间戳允许前后各偏差expireTime，nonce需保留两倍时长才能覆盖整个可接受区间
+        long retentionMillis = config.getExpireTime() * 2;
+        this.nonceTtl = Duration.ofMillis(retentionMillis);
+        this.localFilter = new TimeBucketedBloomFilter(retentionMillis, config.getNonceBucketSeconds() * 1000L,
+            config.getNonceExpectedPerBucket(), config.getNonceFalsePositiveRate());
+        log.info("nonce本地过滤器初始化完成，内存: {} KB", localFilter.getMemoryBytes() / 1024);
+    }
+
+    /**
+     * 占用nonce
+     *
+     * @param nonce 请求nonce
+     * @return true: 首次使用；false: 重复使用
+     */
+    public Mono<Boolean> reserve(String nonce) {
+        if (localFilter.mightContainOrPut(nonce, System.currentTimeMillis())) {
+            log.debug("nonce命中本地过滤器: {}", nonce);
+            return Mono.just(false);
+        }
+        return reactiveRedisTemplate.opsForValue()
+            .setIfAbsent(NONCE_KEY_PREFIX + nonce, "1", nonceTtl)
+            .defaultIfEmpty(false);
+    }
+}
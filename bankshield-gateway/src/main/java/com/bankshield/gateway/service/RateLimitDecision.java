@@ -0,0 +1,79 @@
+package com.bankshield.gateway.service;
+
+import lombok.Getter;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 限流检查结果
+ *
+ * @author BankShield
+ */
+@Getter
+public class RateLimitDecision {
+
+    private static final RateLimitDecision UNLIMITED = new RateLimitDecision(true, null, null, null);
+
+    private final boolean allowed;
+
+    /**
+     * 拒绝时命中的维度
+     */
+    private final String deniedDimension;
+
+    /**
+     * 拒绝时命中的限流键
+     */
+    private final String deniedKey;
+
+    /**
+     * 拒绝时命中的规则名称
+     */
+    private final String deniedRule;
+
+    /**
+     * 各维度剩余额度（取该维度最紧的规则）
+     */
+    private final Map<String, Long> remainingByDimension = new HashMap<>();
+
+    /**
+     * 各维度窗口重置剩余秒数
+     */
+    private final Map<String, Long> resetByDimension = new HashMap<>();
+
+    private RateLimitDecision(boolean allowed, String deniedDimension, String deniedKey, String deniedRule) {
+        this.allowed = allowed;
+        this.deniedDimension = deniedDimension;
+        this.deniedKey = deniedKey;
+        this.deniedRule = deniedRule;
+    }
+
+    static RateLimitDecision unlimited() {
+        return UNLIMITED;
+    }
+
+    static RateLimitDecision allowed() {
+        return new RateLimitDecision(true, null, null, null);
+    }
+
+    static RateLimitDecision denied(String dimension, String key, String ruleName) {
+        return new RateLimitDecision(false, dimension, key, ruleName);
+    }
+
+    void record(String dimension, long remainingQuota, long reset) {
+        Long current = remainingByDimension.get(dimension);
+        if (current == null || remainingQuota < current) {
+            remainingByDimension.put(dimension, remainingQuota);
+            resetByDimension.put(dimension, reset);
+        }
+    }
+
+    public Long getRemaining(String dimension) {
+        return remainingByDimension.get(dimension);
+    }
+
+    public Long getResetSeconds(String dimension) {
+        return resetByDimension.get(dimension);
+    }
+}
@@ -0,0 +1,54 @@
+package com.bankshield.gateway.service;
+
+import com.bankshield.gateway.entity.RateLimitRule;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 限流规则不可变快照
+ * 按规则名称和限流维度建立索引，规则变更时整体替换，请求路径上只读
+ *
+ * @author BankShield
+ */
+final class RateLimitRuleSnapshot {
+
+    static final RateLimitRuleSnapshot EMPTY = new RateLimitRuleSnapshot(Collections.emptyList());
+
+    private final Map<String, RateLimitRule> byName;
+
+    private final Map<String, List<RateLimitRule>> enabledByDimension;
+
+    private RateLimitRuleSnapshot(List<RateLimitRule> rules) {
+        Map<String, RateLimitRule> names = new HashMap<>();
+        Map<String, List<RateLimitRule>> dimensions = new HashMap<>();
+        for (RateLimitRule rule : rules) {
+            names.put(rule.getRuleName(), rule);
+            if (Boolean.TRUE.equals(rule.getEnabled())) {
+                dimensions.computeIfAbsent(rule.getLimitDimension(), d -> new ArrayList<>()).add(rule);
+            }
+        }
+        dimensions.replaceAll((d, list) -> Collections.unmodifiableList(list));
+        this.byName = Collections.unmodifiableMap(names);
+        this.enabledByDimension = Collections.unmodifiableMap(dimensions);
+    }
+
+    static RateLimitRuleSnapshot of(List<RateLimitRule> rules) {
+        return new RateLimitRuleSnapshot(rules);
+    }
+
+    RateLimitRule getRule(String ruleName) {
+        return byName.get(ruleName);
+    }
+
+    List<RateLimitRule> getEnabledRules(String dimension) {
+        return enabledByDimension.getOrDefault(dimension, Collections.emptyList());
+    }
+
+    int size() {
+        return byName.size();
+    }
+}
@@ -1,17 +1,28 @@
 package com.bankshield.gateway.service;
 
+import com.bankshield.gateway.config.GatewayConfig;
 import com.bankshield.gateway.entity.RateLimitRule;
 import com.bankshield.gateway.repository.RateLimitRepository;
 import com.bankshield.gateway.repository.RateLimitRuleRepository;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * 限流服务
+ * 规则保存在内存快照中，变更时重建；每个节点维护本地令牌桶，令牌不足时
+ * 通过一次Lua脚本向Redis为所有需要补充的维度批量预占额度
  * 
  * @author BankShield
  */
@@ -25,6 +36,35 @@ public class RateLimitService {
     @Autowired
     private RateLimitRepository rateLimitRepository;
     
+    @Autowired
+    private GatewayConfig gatewayConfig;
+    
+    private volatile RateLimitRuleSnapshot snapshot = RateLimitRuleSnapshot.EMPTY;
+    
+    /**
+     * 本地令牌桶：规则名称 -> 限流键 -> 令牌桶
+     */
+    private final Map<String, Map<String, LocalQuotaBucket>> localBuckets = new ConcurrentHashMap<>();
+    
+    private final AtomicInteger localBucketCount = new AtomicInteger();
+    
+    @PostConstruct
+    public void init() {
+        refreshRules();
+    }
+    
+    /**
+     * 从数据库重新加载限流规则快照
+     */
+    public void refreshRules() {
+        try {
+            snapshot = RateLimitRuleSnapshot.of(rateLimitRuleRepository.findAll());
+            log.debug("限流规则快照已刷新，规则数: {}", snapshot.size());
+        } catch (Exception e) {
+            log.error("加载限流规则失败，继续使用现有快照", e);
+        }
+    }
+    
     /**
      * 检查是否允许访问
      * 
@@ -34,26 +74,7 @@ public class RateLimitService {
      * @return true: 允许访问, false: 拒绝访问
      */
     public boolean isAllowed(String dimension, String key, String ruleName) {
-        Optional<RateLimitRule> ruleOptional = rateLimitRuleRepository.findByRuleName(ruleName);
-        if (!ruleOptional.isPresent() || !ruleOptional.get().getEnabled()) {
-            log.debug("限流规则不存在或未启用: {}", ruleName);
-            return true;
-        }
-        
-        RateLimitRule rule = ruleOptional.get();
-        if (!rule.getLimitDimension().equals(dimension)) {
-            log.warn("限流维度不匹配，规则: {}, 请求维度: {}", rule.getLimitDimension(), dimension);
-            return true;
-        }
-        
-        String rateLimitKey = buildRateLimitKey(dimension, key, ruleName);
-        boolean allowed = rateLimitRepository.isAllowed(rateLimitKey, rule.getLimitThreshold(), rule.getLimitWindow());
-        
-        if (!allowed) {
-            log.warn("限流拒绝访问，维度: {}, 键: {}, 规则: {}", dimension, key, ruleName);
-        }
-        
-        return allowed;
+        return check(Collections.singletonList(new RateLimitTarget(dimension, key, ruleName))).isAllowed();
     }
     
     /**
@@ -64,24 +85,229 @@ public class RateLimitService {
      * @return true: 允许访问, false: 拒绝访问
      */
     public boolean isAllowed(String dimension, String key) {
-        List<RateLimitRule> rules = rateLimitRuleRepository.findByLimitDimensionAndEnabledTrue(dimension);
-        if (rules.isEmpty()) {
-            log.debug("未找到启用的限流规则，维度: {}", dimension);
-            return true;
+        return check(Collections.singletonList(RateLimitTarget.of(dimension, key))).isAllowed();
+    }
+    
+    /**
+     * 同时检查多个维度（同步，可能访问Redis）
+     * 
+     * @param targets 检查目标
+     * @return 检查结果
+     */
+    public RateLimitDecision check(List<RateLimitTarget> targets) {
+        List<Plan> plans = resolve(targets);
+        if (plans.isEmpty()) {
+            return RateLimitDecision.unlimited();
+        }
+        long now = System.currentTimeMillis();
+        List<Plan> missing = tryAcquireAll(plans, now);
+        return missing.isEmpty() ? allowed(plans, now) : leaseAndAcquire(plans, missing);
+    }
+    
+    /**
+     * 同时检查多个维度（响应式）
+     * 本地令牌充足时直接在调用线程返回，需要向Redis预占额度时切换到弹性线程池，避免阻塞事件循环
+     * 
+     * @param targets 检查目标
+     * @return 检查结果
+     */
+    public Mono<RateLimitDecision> checkReactive(List<RateLimitTarget> targets) {
+        List<Plan> plans = resolve(targets);
+        if (plans.isEmpty()) {
+            return Mono.just(RateLimitDecision.unlimited());
+        }
+        long now = System.currentTimeMillis();
+        List<Plan> missing = tryAcquireAll(plans, now);
+        if (missing.isEmpty()) {
+            return Mono.just(allowed(plans, now));
+        }
+        return Mono.fromCallable(() -> leaseAndAcquire(plans, missing))
+            .subscribeOn(Schedulers.boundedElastic());
+    }
+    
+    /**
+     * 清理窗口已结束的本地令牌桶
+     */
+    public void cleanupExpiredBuckets() {
+        long now = System.currentTimeMillis();
+        int removed = 0;
+        for (Map<String, LocalQuotaBucket> buckets : localBuckets.values()) {
+            for (Map.Entry<String, LocalQuotaBucket> entry : buckets.entrySet()) {
+                if (entry.getValue().isExpired(now) && buckets.remove(entry.getKey(), entry.getValue())) {
+                    removed++;
+                }
+            }
+        }
+        localBucketCount.addAndGet(-removed);
+        if (removed > 0) {
+            log.debug("清理过期本地令牌桶: {}", removed);
+        }
+    }
+    
+    private List<Plan> resolve(List<RateLimitTarget> targets) {
+        RateLimitRuleSnapshot current = snapshot;
+        List<Plan> plans = new ArrayList<>();
+        for (RateLimitTarget target : targets) {
+            if (target.getRuleName() != null) {
+                RateLimitRule rule = current.getRule(target.getRuleName());
+                if (rule == null || !Boolean.TRUE.equals(rule.getEnabled())) {
+                    log.debug("限流规则不存在或未启用: {}", target.getRuleName());
+                    continue;
+                }
+                if (!rule.getLimitDimension().equals(target.getDimension())) {
+                    log.warn("限流维度不匹配，规则: {}, 请求维度: {}", rule.getLimitDimension(), target.getDimension());
+                    continue;
+                }
+                plans.add(new Plan(target, rule));
+            } else {
+                for (RateLimitRule rule : current.getEnabledRules(target.getDimension())) {
+                    plans.add(new Plan(target, rule));
+                }
+            }
+        }
+        return plans;
+    }
+    
+    /**
+     * 尝试从本地令牌桶中为所有规则各取一个令牌，任一不足则归还已取令牌
+     * 
+     * @return 令牌不足的规则，为空表示全部取得
+     */
+    private List<Plan> tryAcquireAll(List<Plan> plans, long now) {
+        List<Plan> missing = null;
+        for (Plan plan : plans) {
+            if (!plan.bucket().tryAcquire(now)) {
+                if (missing == null) {
+                    missing = new ArrayList<>();
+                }
+                missing.add(plan);
+            }
+        }
+        if (missing == null) {
+            return Collections.emptyList();
+        }
+        for (Plan plan : plans) {
+            if (!missing.contains(plan)) {
+                plan.bucket().release();
+            }
+        }
+        return missing;
+    }
+    
+    /**
+     * 一次脚本调用为令牌不足的规则预占额度，然后重新取令牌
+     */
+    private RateLimitDecision leaseAndAcquire(List<Plan> plans, List<Plan> missing) {
+        int size = missing.size();
+        List<String> keys = new ArrayList<>(size);
+        int[] limits = new int[size];
+        int[] windows = new int[size];
+        long[] wants = new long[size];
+        for (int i = 0; i < size; i++) {
+            RateLimitRule rule = missing.get(i).rule;
+            keys.add(missing.get(i).redisKey);
+            limits[i] = rule.getLimitThreshold();
+            windows[i] = rule.getLimitWindow();
+            wants[i] = leaseSize(rule);
         }
         
-        // 检查所有适用的规则
-        for (RateLimitRule rule : rules) {
-            String rateLimitKey = buildRateLimitKey(dimension, key, rule.getRuleName());
-            boolean allowed = rateLimitRepository.isAllowed(rateLimitKey, rule.getLimitThreshold(), rule.getLimitWindow());
-            
-            if (!allowed) {
-                log.warn("限流拒绝访问，维度: {}, 键: {}, 规则: {}", dimension, key, rule.getRuleName());
-                return false;
+        long now = System.currentTimeMillis();
+        try {
+            List<long[]> leases = rateLimitRepository.leaseQuotas(keys, limits, windows, wants);
+            for (int i = 0; i < size; i++) {
+                long[] lease = leases.get(i);
+                missing.get(i).bucket().refill(lease[0], lease[1], lease[2], now);
+            }
+        } catch (Exception e) {
+            // Redis不可用时降级为按节点本地开窗限流
+            log.error("向Redis预占限流额度失败，降级为本地限流", e);
+            for (int i = 0; i < size; i++) {
+                missing.get(i).bucket().refillLocally(limits[i], windows[i] * 1000L, now);
             }
         }
         
-        return true;
+        List<Plan> stillMissing = tryAcquireAll(plans, now);
+        if (!stillMissing.isEmpty()) {
+            Plan denied = stillMissing.get(0);
+            log.warn("限流拒绝访问，维度: {}, 键: {}, 规则: {}",
+                denied.target.getDimension(), denied.target.getKey(), denied.rule.getRuleName());
+            return RateLimitDecision.denied(denied.target.getDimension(), denied.target.getKey(), denied.rule.getRuleName());
+        }
+        return allowed(plans, now);
+    }
+    
+    private RateLimitDecision allowed(List<Plan> plans, long now) {
+        RateLimitDecision decision = RateLimitDecision.allowed();
+        for (Plan plan : plans) {
+            LocalQuotaBucket bucket = plan.bucket();
+            decision.record(plan.target.getDimension(), bucket.getRemaining(plan.rule.getLimitThreshold()),
+                bucket.getResetSeconds(now));
+        }
+        return decision;
+    }
+    
+    /**
+     * 每次预占的额度：阈值乘以预占比例，至少为1
+     */
+    private long leaseSize(RateLimitRule rule) {
+        double ratio = gatewayConfig.getFilters().getRateLimit().getLeaseRatio();
+        long size = (long) Math.ceil(rule.getLimitThreshold() * ratio);
+        return Math.max(1, Math.min(size, rule.getLimitThreshold()));
+    }
+    
+    private LocalQuotaBucket getBucket(String ruleName, String redisKey) {
+        Map<String, LocalQuotaBucket> buckets = localBuckets.computeIfAbsent(ruleName, r -> new ConcurrentHashMap<>());
+        LocalQuotaBucket bucket = buckets.get(redisKey);
+        if (bucket != null) {
+            return bucket;
+        }
+        if (localBucketCount.get() >= gatewayConfig.getFilters().getRateLimit().getMaxLocalBuckets()) {
+            cleanupExpiredBuckets();
+            if (localBucketCount.get() >= gatewayConfig.getFilters().getRateLimit().getMaxLocalBuckets()) {
+                // 本地缓存已满，使用临时令牌桶，每次都向Redis预占
+                return new LocalQuotaBucket();
+            }
+        }
+        LocalQuotaBucket created = new LocalQuotaBucket();
+        LocalQuotaBucket existing = buckets.putIfAbsent(redisKey, created);
+        if (existing != null) {
+            return existing;
+        }
+        localBucketCount.incrementAndGet();
+        return created;
+    }
+    
+    /**
+     * 规则变更后丢弃该规则的本地令牌，按新阈值重新预占
+     */
+    private void evictBuckets(String ruleName) {
+        Map<String, LocalQuotaBucket> removed = localBuckets.remove(ruleName);
+        if (removed != null) {
+            localBucketCount.addAndGet(-removed.size());
+        }
+    }
+    
+    /**
+     * 单条规则的检查计划
+     */
+    private final class Plan {
+        private final RateLimitTarget target;
+        private final RateLimitRule rule;
+        private final String redisKey;
+        private LocalQuotaBucket bucket;
+        
+        private Plan(RateLimitTarget target, RateLimitRule rule) {
+            this.target = target;
+            this.rule = rule;
+            this.redisKey = buildRateLimitKey(target.getDimension(), target.getKey(), rule.getRuleName());
+        }
+        
+        private LocalQuotaBucket bucket() {
+            if (bucket == null) {
+                bucket = getBucket(rule.getRuleName(), redisKey);
+            }
+            return bucket;
+        }
     }
     
     /**
@@ -106,8 +332,7 @@ public class RateLimitService {
      * @return 剩余时间（秒）
      */
     public long getRemainingTime(String dimension, String key, String ruleName) {
-        Optional<RateLimitRule> ruleOptional = rateLimitRuleRepository.findByRuleName(ruleName);
-        if (!ruleOptional.isPresent()) {
+        if (snapshot.getRule(ruleName) == null) {
             return 0;
         }
         
@@ -126,7 +351,9 @@ public class RateLimitService {
             throw new IllegalArgumentException("规则名称已存在: " + rule.getRuleName());
         }
         
-        return rateLimitRuleRepository.save(rule);
+        RateLimitRule saved = rateLimitRuleRepository.save(rule);
+        refreshRules();
+        return saved;
     }
     
     /**
@@ -140,7 +367,16 @@ public class RateLimitService {
             throw new IllegalArgumentException("规则名称已存在: " + rule.getRuleName());
         }
         
-        return rateLimitRuleRepository.save(rule);
+        String previousName = rateLimitRuleRepository.findById(rule.getId())
+            .map(RateLimitRule::getRuleName)
+            .orElse(null);
+        RateLimitRule saved = rateLimitRuleRepository.save(rule);
+        if (previousName != null) {
+            evictBuckets(previousName);
+        }
+        evictBuckets(saved.getRuleName());
+        refreshRules();
+        return saved;
     }
     
     /**
@@ -149,7 +385,10 @@ public class RateLimitService {
      * @param id 规则ID
      */
     public void deleteRule(Long id) {
+        Optional<RateLimitRule> existing = rateLimitRuleRepository.findById(id);
         rateLimitRuleRepository.deleteById(id);
+        existing.ifPresent(rule -> evictBuckets(rule.getRuleName()));
+        refreshRules();
     }
     
     /**
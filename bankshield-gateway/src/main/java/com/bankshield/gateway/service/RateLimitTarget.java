@@ -0,0 +1,34 @@
+package com.bankshield.gateway.service;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * 限流检查目标
+ * 指定规则名称时只检查该规则，否则检查该维度下所有启用的规则
+ *
+ * @author BankShield
+ */
+@Getter
+@AllArgsConstructor
+public class RateLimitTarget {
+
+    /**
+     * 限流维度
+     */
+    private final String dimension;
+
+    /**
+     * 限流键
+     */
+    private final String key;
+
+    /**
+     * 规则名称（可为空）
+     */
+    private final String ruleName;
+
+    public static RateLimitTarget of(String dimension, String key) {
+        return new RateLimitTarget(dimension, key, null);
+    }
+}
@@ -0,0 +1,285 @@
+package com.bankshield.gateway.util;
+
+import lombok.Data;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 定长内存的客户端IP行为跟踪器
+ * 按IP保存固定大小的状态：1秒滑动窗口（10个100毫秒槽）的请求数与路径变化数、
+ * 按半衰期衰减的请求/错误计数以及连续错误数。分段LRU限制总条目数，
+ * 长时间无请求的条目按TTL淘汰，内存占用与攻击方IP数量无关。
+ *
+ * @author BankShield
+ */
+public final class IpBehaviorTracker {
+
+    /**
+     * 单条状态的估算内存（对象头、槽数组、链表节点及键）
+     */
+    public static final int ESTIMATED_ENTRY_BYTES = 256;
+
+    private static final int SEGMENTS = 16;
+    private static final int SLOTS = 10;
+    private static final long SLOT_MILLIS = 100;
+    private static final double ERROR_HALF_LIFE_MILLIS = 60_000D;
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+
+    private final int capacity;
+
+    private final long idleTtlMillis;
+
+    private final AtomicLong capacityEvictions = new AtomicLong();
+
+    private final AtomicLong idleEvictions = new AtomicLong();
+
+    /**
+     * @param capacity 最多跟踪的IP数
+     * @param idleTtlMillis 无请求多久后淘汰（毫秒）
+     */
+    public IpBehaviorTracker(int capacity, long idleTtlMillis) {
+        this.capacity = Math.max(SEGMENTS, capacity);
+        this.idleTtlMillis = idleTtlMillis;
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(this.capacity / SEGMENTS);
+        }
+    }
+
+    /**
+     * 记录一次请求并返回包含本次请求在内的行为指标
+     *
+     * @param ip 客户端IP
+     * @param path 请求路径
+     * @param now 当前时间戳（毫秒）
+     * @return 行为指标
+     */
+    public Signals recordRequest(String ip, String path, long now) {
+        Segment segment = segmentFor(ip);
+        synchronized (segment) {
+            IpState state = segment.get(ip);
+            if (state == null) {
+                state = new IpState(now);
+                segment.put(ip, state);
+            }
+            state.recordRequest(path != null ? path.hashCode() : 0, now);
+            return state.toSignals();
+        }
+    }
+
+    /**
+     * 记录请求结果
+     *
+     * @param ip 客户端IP
+     * @param error 是否为错误响应
+     * @param now 当前时间戳（毫秒）
+     */
+    public void recordOutcome(String ip, boolean error, long now) {
+        Segment segment = segmentFor(ip);
+        synchronized (segment) {
+            IpState state = segment.get(ip);
+            if (state != null) {
+                state.recordOutcome(error, now);
+            }
+        }
+    }
+
+    /**
+     * 淘汰超过TTL无请求的条目，访问顺序保证只需从最久未访问处扫描
+     *
+     * @param now 当前时间戳（毫秒）
+     * @return 淘汰条数
+     */
+    public int evictIdle(long now) {
+        int evicted = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                Iterator<IpState> iterator = segment.values().iterator();
+                while (iterator.hasNext()) {
+                    if (now - iterator.next().lastAccess <= idleTtlMillis) {
+                        break;
+                    }
+                    iterator.remove();
+                    evicted++;
+                }
+            }
+        }
+        idleEvictions.addAndGet(evicted);
+        return evicted;
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * 获取内存使用统计
+     */
+    public Statistics getStatistics() {
+        Statistics statistics = new Statistics();
+        int size = size();
+        statistics.setTrackedIps(size);
+        statistics.setCapacity(capacity);
+        statistics.setEstimatedBytes((long) size * ESTIMATED_ENTRY_BYTES);
+        statistics.setMaxEstimatedBytes((long) capacity * ESTIMATED_ENTRY_BYTES);
+        statistics.setCapacityEvictions(capacityEvictions.get());
+        statistics.setIdleEvictions(idleEvictions.get());
+        return statistics;
+    }
+
+    private Segment segmentFor(String ip) {
+        int h = ip.hashCode();
+        h ^= (h >>> 16);
+        return segments[h & (SEGMENTS - 1)];
+    }
+
+    /**
+     * 行为指标
+     */
+    @Data
+    public static class Signals {
+        private int requestsPerSecond;
+        private int pathChangesPerSecond;
+        private double errorRate;
+        /**
+         * 错误率的样本量（按半衰期衰减后的请求数），样本过少时错误率不可信
+         */
+        private double errorSamples;
+        private int consecutiveErrors;
+    }
+
+    /**
+     * 内存使用统计
+     */
+    @Data
+    public static class Statistics {
+        private int trackedIps;
+        private int capacity;
+        private long estimatedBytes;
+        private long maxEstimatedBytes;
+        private long capacityEvictions;
+        private long idleEvictions;
+    }
+
+    private final class Segment extends LinkedHashMap<String, IpState> {
+        private static final long serialVersionUID = 1L;
+
+        private final int maxEntries;
+
+        private Segment(int maxEntries) {
+            super(16, 0.75f, true);
+            this.maxEntries = maxEntries;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, IpState> eldest) {
+            if (size() > maxEntries) {
+                capacityEvictions.incrementAndGet();
+                return true;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * 单个IP的定长状态，由所在分段的锁保护
+     */
+    private static final class IpState {
+        private final int[] requestSlots = new int[SLOTS];
+        private final int[] pathChangeSlots = new int[SLOTS];
+        private long slotEpoch;
+        private int lastPathHash;
+        private boolean hasPath;
+        private double decayedRequests;
+        private double decayedErrors;
+        private long decayTime;
+        private int consecutiveErrors;
+        private long lastAccess;
+
+        private IpState(long now) {
+            this.slotEpoch = now / SLOT_MILLIS;
+            this.decayTime = now;
+            this.lastAccess = now;
+        }
+
+        private void recordRequest(int pathHash, long now) {
+            advance(now);
+            decay(now);
+            int slot = (int) (slotEpoch % SLOTS);
+            requestSlots[slot]++;
+            if (!hasPath || pathHash != lastPathHash) {
+                pathChangeSlots[slot]++;
+                lastPathHash = pathHash;
+                hasPath = true;
+            }
+            decayedRequests += 1;
+            lastAccess = now;
+        }
+
+        private void recordOutcome(boolean error, long now) {
+            decay(now);
+            if (error) {
+                decayedErrors += 1;
+                consecutiveErrors++;
+            } else {
+                consecutiveErrors = 0;
+            }
+        }
+
+        private void advance(long now) {
+            long epoch = now / SLOT_MILLIS;
+            long gap = epoch - slotEpoch;
+            if (gap <= 0) {
+                return;
+            }
+            if (gap >= SLOTS) {
+                Arrays.fill(requestSlots, 0);
+                Arrays.fill(pathChangeSlots, 0);
+            } else {
+                for (long e = slotEpoch + 1; e <= epoch; e++) {
+                    int slot = (int) (e % SLOTS);
+                    requestSlots[slot] = 0;
+                    pathChangeSlots[slot] = 0;
+                }
+            }
+            slotEpoch = epoch;
+        }
+
+        private void decay(long now) {
+            long elapsed = now - decayTime;
+            if (elapsed <= 0) {
+                return;
+            }
+            double factor = Math.pow(0.5, elapsed / ERROR_HALF_LIFE_MILLIS);
+            decayedRequests *= factor;
+            decayedErrors *= factor;
+            decayTime = now;
+        }
+
+        private Signals toSignals() {
+            Signals signals = new Signals();
+            int requests = 0;
+            int pathChanges = 0;
+            for (int i = 0; i < SLOTS; i++) {
+                requests += requestSlots[i];
+                pathChanges += pathChangeSlots[i];
+            }
+            signals.setRequestsPerSecond(requests);
+            signals.setPathChangesPerSecond(pathChanges);
+            signals.setErrorRate(decayedRequests > 0 ? Math.min(1D, decayedErrors / decayedRequests) : 0D);
+            signals.setErrorSamples(decayedRequests);
+            signals.setConsecutiveErrors(consecutiveErrors);
+            return signals;
+        }
+    }
+}
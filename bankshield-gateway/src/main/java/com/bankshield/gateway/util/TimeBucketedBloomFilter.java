@@ -0,0 +1,151 @@
+package com.bankshield.gateway.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 按时间分桶轮转的布隆过滤器
+ * 每个时间桶一个定长位图，写入当前桶，查询覆盖保留窗口内的所有桶，
+ * 过期桶在轮转时整体丢弃，内存占用固定。用于节点本地快速识别重复出现的值（如签名nonce），
+ * 存在可配置的极低误判率，不会漏判窗口内已记录的值。
+ *
+ * @author BankShield
+ */
+public final class TimeBucketedBloomFilter {
+
+    private final long bucketMillis;
+
+    private final int numHashes;
+
+    private final int numBits;
+
+    private final AtomicReferenceArray<Bucket> buckets;
+
+    /**
+     * @param retentionMillis 记录保留时长（毫秒）
+     * @param bucketMillis 单个时间桶跨度（毫秒）
+     * @param expectedPerBucket 单个时间桶预期写入数
+     * @param falsePositiveRate 目标误判率
+     */
+    public TimeBucketedBloomFilter(long retentionMillis, long bucketMillis, int expectedPerBucket,
+                                   double falsePositiveRate) {
+        if (bucketMillis <= 0 || retentionMillis <= 0 || expectedPerBucket <= 0
+                || falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("布隆过滤器参数非法");
+        }
+        this.bucketMillis = bucketMillis;
+        long bits = (long) Math.ceil(-expectedPerBucket * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        // 向上取整到64位，保证位图按long对齐
+        this.numBits = (int) Math.min(Integer.MAX_VALUE - 63L, (bits + 63) & ~63L);
+        this.numHashes = Math.max(1, (int) Math.round((double) numBits / expectedPerBucket * Math.log(2)));
+        // 多保留一个桶，保证跨越桶边界时仍覆盖完整保留时长
+        int bucketCount = (int) ((retentionMillis + bucketMillis - 1) / bucketMillis) + 1;
+        this.buckets = new AtomicReferenceArray<>(bucketCount);
+    }
+
+    /**
+     * 查询并记录
+     *
+     * @param value 待记录的值
+     * @param now 当前时间戳（毫秒）
+     * @return true: 保留窗口内可能已出现过；false: 一定未出现过（本次已记录）
+     */
+    public boolean mightContainOrPut(String value, long now) {
+        long h = hash(value);
+        long h1 = mix(h);
+        long h2 = mix(h ^ 0x9E3779B97F4A7C15L) | 1L;
+        long epoch = now / bucketMillis;
+        long oldest = epoch - buckets.length() + 1;
+        for (int i = 0; i < buckets.length(); i++) {
+            Bucket bucket = buckets.get(i);
+            if (bucket != null && bucket.epoch >= oldest && bucket.epoch <= epoch && bucket.mightContain(h1, h2)) {
+                return true;
+            }
+        }
+        currentBucket(epoch).put(h1, h2);
+        return false;
+    }
+
+    /**
+     * 位图总内存（字节）
+     */
+    public long getMemoryBytes() {
+        return (long) buckets.length() * (numBits / 8);
+    }
+
+    private Bucket currentBucket(long epoch) {
+        int index = (int) Math.floorMod(epoch, (long) buckets.length());
+        while (true) {
+            Bucket bucket = buckets.get(index);
+            if (bucket != null && bucket.epoch == epoch) {
+                return bucket;
+            }
+            if (bucket != null && bucket.epoch > epoch) {
+                // 时钟回拨，写入较新的桶，仍可被查询到
+                return bucket;
+            }
+            Bucket fresh = new Bucket(epoch);
+            if (buckets.compareAndSet(index, bucket, fresh)) {
+                return fresh;
+            }
+        }
+    }
+
+    private static long hash(String value) {
+        // FNV-1a 64位
+        long h = 0xCBF29CE484222325L;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b & 0xFF;
+            h *= 0x100000001B3L;
+        }
+        return h;
+    }
+
+    private static long mix(long h) {
+        // MurmurHash3 fmix64
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private final class Bucket {
+        private final long epoch;
+        private final AtomicLongArray words = new AtomicLongArray(numBits >>> 6);
+
+        private Bucket(long epoch) {
+            this.epoch = epoch;
+        }
+
+        private boolean mightContain(long h1, long h2) {
+            for (int i = 0; i < numHashes; i++) {
+                int bit = index(h1, h2, i);
+                if ((words.get(bit >>> 6) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void put(long h1, long h2) {
+            for (int i = 0; i < numHashes; i++) {
+                int bit = index(h1, h2, i);
+                int word = bit >>> 6;
+                long mask = 1L << bit;
+                long current;
+                while (((current = words.get(word)) & mask) == 0) {
+                    if (words.compareAndSet(word, current, current | mask)) {
+                        break;
+                    }
+                }
+            }
+        }
+
+        private int index(long h1, long h2, int i) {
+            return (int) Math.floorMod(h1 + i * h2, (long) numBits);
+        }
+    }
+}
@@ -1,160 +1,198 @@
 package com.bankshield.gateway.filter;
 
-import com.bankshield.common.utils.SignatureUtil;
+import com.bankshield.gateway.config.GatewayConfig;
+import com.bankshield.gateway.service.AppSecretCache;
+import com.bankshield.gateway.service.NonceReplayGuard;
+import org.bouncycastle.util.encoders.Hex;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
-import org.springframework.http.HttpHeaders;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
 
-import java.util.HashMap;
-import java.util.Map;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
 
 /**
  * 增强版签名验证过滤器测试
- * 
+ *
  * @author BankShield
  */
 public class EnhancedSignatureVerificationFilterTest {
-    
+
+    private static final String APP_ID = "test_app_001";
+    private static final String SECRET_KEY = "test_secret_key_12345";
+    private static final String PATH = "/api/transfer";
+    private static final String QUERY = "from=123&to=456&amount=1000";
+    private static final String BODY = "{\"currency\":\"CNY\",\"remark\":\"test transfer\"}";
+    private static final String CONTENT_TYPE = "application/json";
+
+    private NonceReplayGuard nonceReplayGuard;
+    private GatewayConfig gatewayConfig;
+    private GatewayFilter filter;
+    private String timestamp;
+    private String nonce;
+    private final AtomicReference<ServerWebExchange> forwarded = new AtomicReference<>();
+    private final GatewayFilterChain chain = exchange -> {
+        forwarded.set(exchange);
+        return Mono.empty();
+    };
+
+    @BeforeEach
+    public void setUp() {
+        timestamp = String.valueOf(System.currentTimeMillis());
+        nonce = UUID.randomUUID().toString().replace("-", "");
+        nonceReplayGuard = mock(NonceReplayGuard.class);
+        when(nonceReplayGuard.reserve(anyString())).thenReturn(Mono.just(true));
+        AppSecretCache appSecretCache = mock(AppSecretCache.class);
+        when(appSecretCache.getSecret(anyString())).thenReturn(Mono.empty());
+        when(appSecretCache.getSecret(APP_ID)).thenReturn(Mono.just(SECRET_KEY));
+
+        EnhancedSignatureVerificationFilter factory = new EnhancedSignatureVerificationFilter();
+        ReflectionTestUtils.setField(factory, "nonceReplayGuard", nonceReplayGuard);
+        ReflectionTestUtils.setField(factory, "appSecretCache", appSecretCache);
+        gatewayConfig = new GatewayConfig();
+        ReflectionTestUtils.setField(factory, "gatewayConfig", gatewayConfig);
+        filter = factory.apply(new EnhancedSignatureVerificationFilter.Config());
+    }
+
     @Test
-    public void testSignatureGenerationAndVerification() {
-        // 测试参数
-        String method = "POST";
-        String path = "/api/transfer";
-        String queryString = "from=123&to=456&amount=1000";
-        String body = "{\"currency\":\"CNY\",\"remark\":\"test transfer\"}";
-        String appId = "test_app_001";
-        String secretKey = "test_secret_key_12345";
-        
-        // 生成签名
-        Map<String, String> headers = new HashMap<>();
-        String signature = SignatureUtil.generateSignature(method, path, queryString, headers, body, appId, secretKey);
-        
-        // 验证生成的签名Headers
-        assertNotNull(headers.get("X-Signature"));
-        assertNotNull(headers.get("X-Timestamp"));
-        assertNotNull(headers.get("X-Nonce"));
-        assertNotNull(headers.get("X-App-Id"));
-        assertNotNull(headers.get("Content-MD5"));
-        
-        System.out.println("Generated Headers:");
-        headers.forEach((key, value) -> System.out.println(key + ": " + value));
-        
-        // 验证签名
-        boolean isValid = SignatureUtil.verifySignature(
-            headers.get("X-Signature"), 
-            method, path, queryString, headers, body, appId, secretKey
-        );
-        
-        assertTrue(isValid, "签名验证应该通过");
+    public void testValidSignatureForwardsOriginalBody() {
+        MockServerWebExchange exchange = exchange(signedRequest(CONTENT_TYPE, base64Signature(BODY)), BODY);
+
+        filter.filter(exchange, chain).block();
+
+        assertNotNull(forwarded.get(), "签名正确的请求应转发给下游");
+        assertNotEquals(HttpStatus.UNAUTHORIZED, exchange.getResponse().getStatusCode());
+        String forwardedBody = DataBufferUtils.join(forwarded.get().getRequest().getBody())
+            .map(buffer -> buffer.toString(StandardCharsets.UTF_8))
+            .block();
+        assertEquals(BODY, forwardedBody);
     }
-    
+
     @Test
-    public void testSignatureWithDifferentBody() {
-        // 测试参数
-        String method = "POST";
-        String path = "/api/transfer";
-        String queryString = "from=123&to=456&amount=1000";
-        String originalBody = "{\"currency\":\"CNY\",\"remark\":\"test transfer\"}";
+    public void testTamperedBodyRejected() {
         String tamperedBody = "{\"currency\":\"USD\",\"remark\":\"hacked transfer\"}";
-        String appId = "test_app_001";
-        String secretKey = "test_secret_key_12345";
-        
-        // 生成原始签名
-        Map<String, String> headers = new HashMap<>();
-        String originalSignature = SignatureUtil.generateSignature(method, path, queryString, headers, originalBody, appId, secretKey);
-        
-        // 验证原始签名
-        boolean originalValid = SignatureUtil.verifySignature(
-            originalSignature, method, path, queryString, headers, originalBody, appId, secretKey
-        );
-        assertTrue(originalValid, "原始签名应该有效");
-        
-        // 使用篡改后的body验证签名
-        boolean tamperedValid = SignatureUtil.verifySignature(
-            originalSignature, method, path, queryString, headers, tamperedBody, appId, secretKey
-        );
-        assertFalse(tamperedValid, "篡改后的签名应该无效");
+        MockServerWebExchange exchange = exchange(signedRequest(CONTENT_TYPE, base64Signature(BODY)), tamperedBody);
+
+        filter.filter(exchange, chain).block();
+
+        assertNull(forwarded.get(), "篡改请求体后不应转发");
+        assertEquals(HttpStatus.UNAUTHORIZED, exchange.getResponse().getStatusCode());
     }
-    
+
     @Test
-    public void testSignatureWithHeaders() {
-        // 测试参数
-        String method = "POST";
-        String path = "/api/transfer";
-        String queryString = "";
-        String body = "{\"amount\":1000}";
-        String appId = "test_app_001";
-        String secretKey = "test_secret_key_12345";
-        String contentType = "application/json";
-        
-        // 生成签名
-        Map<String, String> headers = new HashMap<>();
-        headers.put("Content-Type", contentType);
-        
-        String signature = SignatureUtil.generateSignature(method, path, queryString, headers, body, appId, secretKey);
-        
-        // 验证签名
-        boolean isValid = SignatureUtil.verifySignature(
-            signature, method, path, queryString, headers, body, appId, secretKey
-        );
-        
-        assertTrue(isValid, "包含Header的签名应该有效");
-        
-        // 修改Header后验证
-        headers.put("Content-Type", "text/plain");
-        boolean invalidAfterHeaderChange = SignatureUtil.verifySignature(
-            signature, method, path, queryString, headers, body, appId, secretKey
-        );
-        
-        assertFalse(invalidAfterHeaderChange, "Header修改后的签名应该无效");
+    public void testTamperedSignedHeaderRejected() {
+        MockServerWebExchange exchange = exchange(signedRequest("text/plain", base64Signature(BODY)), BODY);
+
+        filter.filter(exchange, chain).block();
+
+        assertNull(forwarded.get(), "参与签名的Header被修改后不应转发");
+        assertEquals(HttpStatus.UNAUTHORIZED, exchange.getResponse().getStatusCode());
     }
-    
+
     @Test
-    public void testNonceGeneration() {
-        // 测试随机数生成
-        Map<String, String> headers1 = new HashMap<>();
-        Map<String, String> headers2 = new HashMap<>();
-        
-        String signature1 = SignatureUtil.generateSignature("GET", "/api/test", "", headers1, "", "app1", "key1");
-        String signature2 = SignatureUtil.generateSignature("GET", "/api/test", "", headers2, "", "app1", "key1");
-        
-        String nonce1 = headers1.get("X-Nonce");
-        String nonce2 = headers2.get("X-Nonce");
-        
-        assertNotNull(nonce1);
-        assertNotNull(nonce2);
-        assertNotEquals(nonce1, nonce2, "两次生成的随机数应该不同");
-        assertEquals(32, nonce1.length(), "随机数长度应该为32位");
-        assertEquals(32, nonce2.length(), "随机数长度应该为32位");
+    public void testHexEncodedSignatureRejected() {
+        // 签名规范为Base64编码的HMAC-SHA256，十六进制编码的签名不被接受
+        String hexSignature = Hex.toHexString(hmac(BODY));
+        MockServerWebExchange exchange = exchange(signedRequest(CONTENT_TYPE, hexSignature), BODY);
+
+        filter.filter(exchange, chain).block();
+
+        assertNull(forwarded.get());
+        assertEquals(HttpStatus.UNAUTHORIZED, exchange.getResponse().getStatusCode());
     }
-    
+
     @Test
-    public void testSignStringFormat() {
-        // 测试签名字符串格式
-        String method = "POST";
-        String path = "/api/test";
-        String queryString = "param=value";
-        String timestamp = "1234567890123";
-        String nonce = "abcdef1234567890abcdef1234567890";
-        String appId = "test_app";
-        String secretKey = "test_key";
-        String body = "test body";
-        String contentType = "application/json";
-        
-        Map<String, String> headers = new HashMap<>();
-        headers.put("Content-Type", contentType);
-        headers.put("X-Timestamp", timestamp);
-        headers.put("X-Nonce", nonce);
-        headers.put("X-App-Id", appId);
-        
-        String signature = SignatureUtil.generateSignature(method, path, queryString, headers, body, appId, secretKey);
-        
-        // 验证生成的签名格式
-        assertNotNull(signature);
-        assertFalse(signature.isEmpty());
-        
-        // Base64编码的签名应该只包含Base64字符
-        assertTrue(signature.matches("^[A-Za-z0-9+/=]+$"), "签名应该是有效的Base64格式");
+    public void testTimestampWindowFollowsNonceRetention() {
+        // 时间戳偏差上限取自 gateway.filters.signature.expire-time，与nonce保留时长同源
+        gatewayConfig.getFilters().getSignature().setExpireTime(60_000);
+        timestamp = String.valueOf(System.currentTimeMillis() - 61_000);
+        MockServerWebExchange exchange = exchange(signedRequest(CONTENT_TYPE, base64Signature(BODY)), BODY);
+
+        filter.filter(exchange, chain).block();
+
+        assertNull(forwarded.get());
+        assertEquals(HttpStatus.UNAUTHORIZED, exchange.getResponse().getStatusCode());
+        verifyNoInteractions(nonceReplayGuard);
+    }
+
+    @Test
+    public void testReplayedNonceRejected() {
+        when(nonceReplayGuard.reserve(anyString())).thenReturn(Mono.just(false));
+        MockServerWebExchange exchange = exchange(signedRequest(CONTENT_TYPE, base64Signature(BODY)), BODY);
+
+        filter.filter(exchange, chain).block();
+
+        assertNull(forwarded.get());
+        assertEquals(HttpStatus.UNAUTHORIZED, exchange.getResponse().getStatusCode());
+    }
+
+    @Test
+    public void testDownstreamErrorIsNotReportedAsInvalidSignature() {
+        MockServerWebExchange exchange = exchange(signedRequest(CONTENT_TYPE, base64Signature(BODY)), BODY);
+        GatewayFilterChain failingChain = forwardedExchange -> Mono.error(new IllegalStateException("backend unavailable"));
+
+        IllegalStateException error = assertThrows(IllegalStateException.class,
+            () -> filter.filter(exchange, failingChain).block());
+
+        assertEquals("backend unavailable", error.getMessage());
+        assertNotEquals(HttpStatus.UNAUTHORIZED, exchange.getResponse().getStatusCode());
+    }
+
+    @Test
+    public void testGetRequestSkipsVerification() {
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/api/query").build());
+
+        filter.filter(exchange, chain).block();
+
+        assertSame(exchange, forwarded.get());
+        verifyNoInteractions(nonceReplayGuard);
+    }
+
+    private MockServerHttpRequest.BodyBuilder signedRequest(String contentType, String signature) {
+        return MockServerHttpRequest.post(PATH + "?" + QUERY)
+            .header("Content-Type", contentType)
+            .header("X-App-Id", APP_ID)
+            .header("X-Timestamp", timestamp)
+            .header("X-Nonce", nonce)
+            .header("X-Signature", signature);
+    }
+
+    private static MockServerWebExchange exchange(MockServerHttpRequest.BodyBuilder request, String body) {
+        return MockServerWebExchange.from(request.body(body));
+    }
+
+    private String base64Signature(String body) {
+        return Base64.getEncoder().encodeToString(hmac(body));
+    }
+
+    /**
+     * 按客户端签名规范计算HMAC-SHA256
+     */
+    private byte[] hmac(String body) {
+        String signStr = "POST\n" + PATH + "\n" + QUERY + "\n" + "content-type:" + CONTENT_TYPE + "\n"
+            + timestamp + "\n" + nonce + "\n" + APP_ID + "\n" + body;
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(SECRET_KEY.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+            return mac.doFinal(signStr.getBytes(StandardCharsets.UTF_8));
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,185 @@
+package com.bankshield.gateway.service;
+
+import com.bankshield.gateway.config.GatewayConfig;
+import com.bankshield.gateway.entity.ApiAccessLog;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * API访问日志批量写入管道测试
+ *
+ * @author BankShield
+ */
+public class ApiAccessLogSinkTest {
+
+    @TempDir
+    Path spillDir;
+
+    private JdbcTemplate jdbcTemplate;
+    private GatewayConfig gatewayConfig;
+    private final List<String> written = new ArrayList<>();
+    private final AtomicBoolean databaseDown = new AtomicBoolean();
+    private final List<ApiAccessLogSink> sinks = new ArrayList<>();
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        jdbcTemplate = mock(JdbcTemplate.class);
+        when(jdbcTemplate.batchUpdate(anyString(), anyCollection(), anyInt(), any(ParameterizedPreparedStatementSetter.class)))
+            .thenAnswer(inv -> {
+                if (databaseDown.get()) {
+                    throw new IllegalStateException("db down");
+                }
+                Collection<ApiAccessLog> batch = inv.getArgument(1);
+                synchronized (written) {
+                    batch.forEach(accessLog -> written.add(accessLog.getRequestPath()));
+                }
+                return new int[0][];
+            });
+
+        gatewayConfig = new GatewayConfig();
+        GatewayConfig.ApiAuditConfig config = gatewayConfig.getFilters().getApiAudit();
+        config.setBatchSize(50);
+        config.setFlushIntervalMs(10);
+        config.setSpillDir(spillDir.toString());
+        config.setShutdownTimeoutSeconds(1);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        sinks.forEach(ApiAccessLogSink::shutdown);
+    }
+
+    @Test
+    public void testAllAcceptedLogsWrittenExactlyOnce() {
+        ApiAccessLogSink sink = newSink();
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(sink.offer(accessLog("/api/" + i)));
+        }
+        sink.shutdown();
+
+        assertEquals(1000, written.size());
+        assertEquals(1000, new HashSet<>(written).size());
+        Map<String, Object> stats = sink.getStatistics();
+        assertEquals(1000L, stats.get("written"));
+        assertEquals(0L, stats.get("spilled"));
+        assertEquals(0, stats.get("queueDepth"));
+    }
+
+    @Test
+    public void testSpilledLogsReplayedAfterRestartAndPoisonLineQuarantined() throws Exception {
+        databaseDown.set(true);
+        ApiAccessLogSink sink = newSink();
+        for (int i = 0; i < 120; i++) {
+            sink.offer(accessLog("/api/" + i));
+        }
+        sink.shutdown();
+        assertEquals(120L, sink.getStatistics().get("spilled"));
+        assertTrue(written.isEmpty());
+
+        // 模拟崩溃留下的半行
+        Files.write(spillDir.resolve("api-access-log-spill.jsonl"), "{\"requestPath\":\"/bro".getBytes(StandardCharsets.UTF_8),
+            StandardOpenOption.APPEND);
+        databaseDown.set(false);
+        ApiAccessLogSink restarted = newSink();
+        waitUntil(() -> written.size() >= 120);
+        restarted.shutdown();
+
+        assertEquals(120, written.size());
+        assertEquals(120, new HashSet<>(written).size());
+        Map<String, Object> stats = restarted.getStatistics();
+        assertEquals(120L, stats.get("replayed"));
+        assertEquals(1L, stats.get("quarantined"));
+        assertTrue(Files.exists(spillDir.resolve("api-access-log-spill.poison")));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testShutdownSpillsQueueWhenWriterIsStuck() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(inv -> {
+            release.await();
+            Collection<ApiAccessLog> batch = inv.getArgument(1);
+            synchronized (written) {
+                batch.forEach(accessLog -> written.add(accessLog.getRequestPath()));
+            }
+            return new int[0][];
+        }).when(jdbcTemplate).batchUpdate(anyString(), anyCollection(), anyInt(), any(ParameterizedPreparedStatementSetter.class));
+        ApiAccessLogSink sink = newSink();
+        for (int i = 0; i < 500; i++) {
+            sink.offer(accessLog("/api/" + i));
+        }
+        sink.shutdown();
+        release.countDown();
+
+        // 超时后中断写入线程，队列剩余记录落盘，被中断的批次写库失败后同样落盘，一条不丢
+        assertEquals(0, sink.getStatistics().get("queueDepth"));
+        waitUntil(() -> spilledOrWritten(sink) == 500L);
+        Map<String, Object> stats = sink.getStatistics();
+        assertEquals(500L, spilledOrWritten(sink));
+        assertTrue((long) stats.get("spilled") > 0L);
+        assertEquals(stats.get("spilled"), (long) Files.readAllLines(spillDir.resolve("api-access-log-spill.jsonl")).size());
+        assertEquals(0L, stats.get("lost"));
+        assertFalse(sink.offer(accessLog("/late")));
+    }
+
+    private ApiAccessLogSink newSink() {
+        ApiAccessLogSink sink = new ApiAccessLogSink();
+        ReflectionTestUtils.setField(sink, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(sink, "gatewayConfig", gatewayConfig);
+        ReflectionTestUtils.setField(sink, "meterRegistry", new SimpleMeterRegistry());
+        sink.start();
+        sinks.add(sink);
+        return sink;
+    }
+
+    private static long spilledOrWritten(ApiAccessLogSink sink) {
+        Map<String, Object> stats = sink.getStatistics();
+        return (long) stats.get("spilled") + (long) stats.get("written");
+    }
+
+    private static ApiAccessLog accessLog(String path) {
+        ApiAccessLog accessLog = new ApiAccessLog();
+        accessLog.setRequestPath(path);
+        accessLog.setRequestMethod("GET");
+        accessLog.setAccessResult("SUCCESS");
+        accessLog.setAccessTime(LocalDateTime.now());
+        return accessLog;
+    }
+
+    private void waitUntil(BooleanSupplier condition) {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.bankshield.gateway.service;
+
+import com.bankshield.gateway.config.GatewayConfig;
+import com.bankshield.gateway.entity.BlacklistIp;
+import com.bankshield.gateway.repository.BlacklistIpRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * 节点本地IP黑名单缓存测试
+ *
+ * @author BankShield
+ */
+public class IpBlacklistCacheTest {
+
+    private BlacklistIpRepository repository;
+    private IpBlacklistCache cache;
+
+    @BeforeEach
+    public void setUp() {
+        repository = mock(BlacklistIpRepository.class);
+        when(repository.findActiveBlacklists(any(LocalDateTime.class))).thenReturn(Collections.emptyList());
+        cache = new IpBlacklistCache();
+        ReflectionTestUtils.setField(cache, "blacklistIpRepository", repository);
+        ReflectionTestUtils.setField(cache, "gatewayConfig", new GatewayConfig());
+        cache.init();
+    }
+
+    @Test
+    public void testReloadKeepsLocalBlocksNotYetPersisted() {
+        cache.blockLocally("203.0.113.7", System.currentTimeMillis() + 60_000);
+        cache.blockLocally("203.0.113.8", System.currentTimeMillis() + 60_000);
+
+        cache.reload();
+
+        assertTrue(cache.isBlocked("203.0.113.7"));
+        assertTrue(cache.isBlocked("203.0.113.8"));
+    }
+
+    @Test
+    public void testReloadFollowsDatabaseOncePersisted() {
+        cache.blockLocally("203.0.113.7", System.currentTimeMillis() + 60_000);
+        cache.markPersisted("203.0.113.7");
+
+        // 落库后以数据库为准：数据库中已解封则重建后不再封禁
+        cache.reload();
+        assertFalse(cache.isBlocked("203.0.113.7"));
+
+        BlacklistIp persisted = new BlacklistIp();
+        persisted.setIpAddress("203.0.113.7");
+        persisted.setUnblockTime(LocalDateTime.now().plusMinutes(1));
+        when(repository.findActiveBlacklists(any(LocalDateTime.class))).thenReturn(Collections.singletonList(persisted));
+        cache.reload();
+        assertTrue(cache.isBlocked("203.0.113.7"));
+    }
+
+    @Test
+    public void testExpiredOrUnblockedLocalBlocksAreDropped() {
+        cache.blockLocally("203.0.113.7", System.currentTimeMillis() + 20);
+        cache.blockLocally("203.0.113.8", System.currentTimeMillis() + 60_000);
+        cache.unblock("203.0.113.8");
+
+        sleep(50);
+        cache.reload();
+
+        assertFalse(cache.isBlocked("203.0.113.7"));
+        assertFalse(cache.isBlocked("203.0.113.8"));
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.bankshield.gateway.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 定长内存IP行为跟踪器测试
+ *
+ * @author BankShield
+ */
+public class IpBehaviorTrackerTest {
+
+    private static final long NOW = 1_700_000_000_000L;
+
+    @Test
+    public void testSlidingWindowCountsRequestsAndPathChanges() {
+        IpBehaviorTracker tracker = new IpBehaviorTracker(1000, 300_000);
+
+        IpBehaviorTracker.Signals signals = null;
+        for (int i = 0; i < 20; i++) {
+            signals = tracker.recordRequest("10.0.0.1", "/api/" + (i % 2), NOW + i * 40);
+        }
+        assertEquals(20, signals.getRequestsPerSecond());
+        assertEquals(20, signals.getPathChangesPerSecond());
+
+        // 1秒后窗口内只剩新请求，同一路径不计路径变化
+        signals = tracker.recordRequest("10.0.0.1", "/api/1", NOW + 2000);
+        assertEquals(1, signals.getRequestsPerSecond());
+        assertEquals(0, signals.getPathChangesPerSecond());
+    }
+
+    @Test
+    public void testErrorRateDecaysWithHalfLife() {
+        IpBehaviorTracker tracker = new IpBehaviorTracker(1000, 3_600_000);
+        for (int i = 0; i < 100; i++) {
+            tracker.recordRequest("10.0.0.1", "/api", NOW + i);
+            tracker.recordOutcome("10.0.0.1", false, NOW + i);
+        }
+
+        // 空闲10分钟（10个半衰期）后，早先的成功请求几乎完全衰减
+        long later = NOW + 600_000;
+        tracker.recordRequest("10.0.0.1", "/api", later);
+        tracker.recordOutcome("10.0.0.1", true, later);
+        tracker.recordRequest("10.0.0.1", "/api", later + 1);
+        tracker.recordOutcome("10.0.0.1", true, later + 1);
+        IpBehaviorTracker.Signals signals = tracker.recordRequest("10.0.0.1", "/api", later + 2);
+
+        assertTrue(signals.getErrorRate() > 0.5, "errorRate=" + signals.getErrorRate());
+        // 样本量只剩约3个请求，错误率规则不应据此封禁
+        assertTrue(signals.getErrorSamples() < 20, "errorSamples=" + signals.getErrorSamples());
+        assertEquals(2, signals.getConsecutiveErrors());
+    }
+
+    @Test
+    public void testConsecutiveErrorsResetOnSuccess() {
+        IpBehaviorTracker tracker = new IpBehaviorTracker(1000, 300_000);
+        tracker.recordRequest("10.0.0.1", "/api", NOW);
+        tracker.recordOutcome("10.0.0.1", true, NOW);
+        tracker.recordOutcome("10.0.0.1", true, NOW);
+        tracker.recordOutcome("10.0.0.1", false, NOW);
+
+        assertEquals(0, tracker.recordRequest("10.0.0.1", "/api", NOW).getConsecutiveErrors());
+        // 未跟踪的IP记录结果不创建状态
+        tracker.recordOutcome("10.0.0.2", true, NOW);
+        assertEquals(1, tracker.size());
+    }
+
+    @Test
+    public void testCapacityBoundEvictsLeastRecentlyUsed() {
+        IpBehaviorTracker tracker = new IpBehaviorTracker(64, 300_000);
+        for (int i = 0; i < 10_000; i++) {
+            tracker.recordRequest("10.0." + (i / 256) + "." + (i % 256), "/api", NOW + i);
+        }
+
+        IpBehaviorTracker.Statistics statistics = tracker.getStatistics();
+        assertTrue(tracker.size() <= 64, "size=" + tracker.size());
+        assertEquals(64, statistics.getCapacity());
+        assertEquals(10_000 - tracker.size(), statistics.getCapacityEvictions());
+        assertEquals(64L * IpBehaviorTracker.ESTIMATED_ENTRY_BYTES, statistics.getMaxEstimatedBytes());
+        // 最近访问的IP仍在跟踪
+        assertEquals(2, tracker.recordRequest("10.0.39.15", "/api", NOW + 10_000).getRequestsPerSecond());
+    }
+
+    @Test
+    public void testEvictIdleRemovesOnlyExpiredEntries() {
+        IpBehaviorTracker tracker = new IpBehaviorTracker(1000, 60_000);
+        tracker.recordRequest("10.0.0.1", "/api", NOW);
+        tracker.recordRequest("10.0.0.2", "/api", NOW + 30_000);
+        tracker.recordRequest("10.0.0.3", "/api", NOW + 50_000);
+
+        assertEquals(1, tracker.evictIdle(NOW + 70_000));
+        assertEquals(2, tracker.size());
+        assertEquals(1L, tracker.getStatistics().getIdleEvictions());
+
+        // 被淘汰的IP重新出现时从零开始计数
+        assertEquals(1, tracker.recordRequest("10.0.0.1", "/api", NOW + 70_000).getRequestsPerSecond());
+    }
+}
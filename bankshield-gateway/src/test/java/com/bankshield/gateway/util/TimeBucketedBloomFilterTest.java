@@ -0,0 +1,51 @@
+package com.bankshield.gateway.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 时间分桶布隆过滤器测试
+ *
+ * @author BankShield
+ */
+public class TimeBucketedBloomFilterTest {
+
+    @Test
+    public void testDuplicateWithinRetention() {
+        TimeBucketedBloomFilter filter = new TimeBucketedBloomFilter(600_000, 60_000, 1000, 0.000001);
+        long now = 1_700_000_000_000L;
+
+        assertFalse(filter.mightContainOrPut("0123456789abcdef0123456789abcdef", now));
+        assertTrue(filter.mightContainOrPut("0123456789abcdef0123456789abcdef", now + 1));
+        // 跨越多个时间桶仍能识别
+        assertTrue(filter.mightContainOrPut("0123456789abcdef0123456789abcdef", now + 599_000));
+        assertFalse(filter.mightContainOrPut("fedcba9876543210fedcba9876543210", now + 599_000));
+    }
+
+    @Test
+    public void testExpireAfterRetention() {
+        TimeBucketedBloomFilter filter = new TimeBucketedBloomFilter(600_000, 60_000, 1000, 0.000001);
+        long now = 1_700_000_000_000L;
+
+        filter.mightContainOrPut("nonce-a", now);
+        assertFalse(filter.mightContainOrPut("nonce-a", now + 720_000));
+    }
+
+    @Test
+    public void testFalsePositiveRate() {
+        TimeBucketedBloomFilter filter = new TimeBucketedBloomFilter(60_000, 60_000, 10_000, 0.001);
+        long now = 1_700_000_000_000L;
+        for (int i = 0; i < 10_000; i++) {
+            filter.mightContainOrPut("seen-" + i, now);
+        }
+        // 查询同时会写入，只取少量样本，避免超出预期容量
+        int falsePositives = 0;
+        for (int i = 0; i < 1000; i++) {
+            if (filter.mightContainOrPut("unseen-" + i, now + 1)) {
+                falsePositives++;
+            }
+        }
+        assertTrue(falsePositives < 10, "误判数过高: " + falsePositives);
+    }
+}
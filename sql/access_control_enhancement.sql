@@ -216,6 +216,22 @@ CREATE TABLE `ip_blacklist` (
     KEY `idx_expire_time` (`expire_time`)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='IP黑名单表';
 
+-- 11. 访问决策汇总表（按小时、结果、策略、规则、用户累加，访问统计直接查询本表）
+DROP TABLE IF EXISTS `access_decision_rollup`;
+CREATE TABLE `access_decision_rollup` (
+    `id` BIGINT NOT NULL AUTO_INCREMENT COMMENT '记录ID',
+    `stat_hour` DATETIME NOT NULL COMMENT '统计小时',
+    `access_result` VARCHAR(20) NOT NULL COMMENT '访问结果：ALLOW/DENY',
+    `policy_matched` VARCHAR(100) NOT NULL DEFAULT '' COMMENT '匹配的策略（未匹配为空）',
+    `rule_matched` VARCHAR(100) NOT NULL DEFAULT '' COMMENT '匹配的规则（未匹配为空）',
+    `username` VARCHAR(100) NOT NULL DEFAULT '' COMMENT '用户名',
+    `decision_count` BIGINT NOT NULL DEFAULT 0 COMMENT '决策次数（采样前）',
+    `updated_time` DATETIME COMMENT '最近累加时间',
+    PRIMARY KEY (`id`),
+    UNIQUE KEY `uk_rollup` (`stat_hour`, `access_result`, `policy_matched`, `rule_matched`, `username`),
+    KEY `idx_stat_hour` (`stat_hour`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='访问决策小时汇总表';
+
 -- =============================================
 -- 初始化数据
 -- =============================================
@@ -465,6 +481,7 @@ DELIMITER ;
 -- GRANT SELECT, INSERT, UPDATE ON bankshield.access_policy TO 'bankshield_app'@'%';
 -- GRANT SELECT, INSERT, UPDATE ON bankshield.access_rule TO 'bankshield_app'@'%';
 -- GRANT SELECT, INSERT ON bankshield.access_log TO 'bankshield_app'@'%';
+-- GRANT SELECT, INSERT, UPDATE ON bankshield.access_decision_rollup TO 'bankshield_app'@'%';
 -- GRANT SELECT, INSERT, UPDATE ON bankshield.mfa_config TO 'bankshield_app'@'%';
 -- GRANT SELECT, INSERT ON bankshield.mfa_verification_log TO 'bankshield_app'@'%';
 -- GRANT EXECUTE ON PROCEDURE bankshield.sp_check_access_permission TO 'bankshield_app'@'%';
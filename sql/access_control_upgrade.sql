@@ -0,0 +1,63 @@
+-- 访问控制模块升级：访问决策小时汇总表
+-- 已部署环境执行；新环境直接使用 access_control_enhancement.sql
+
+CREATE TABLE IF NOT EXISTS `access_decision_rollup` (
+    `id` BIGINT NOT NULL AUTO_INCREMENT COMMENT '记录ID',
+    `stat_hour` DATETIME NOT NULL COMMENT '统计小时',
+    `access_result` VARCHAR(20) NOT NULL COMMENT '访问结果：ALLOW/DENY',
+    `policy_matched` VARCHAR(100) NOT NULL DEFAULT '' COMMENT '匹配的策略（未匹配为空）',
+    `rule_matched` VARCHAR(100) NOT NULL DEFAULT '' COMMENT '匹配的规则（未匹配为空）',
+    `username` VARCHAR(100) NOT NULL DEFAULT '' COMMENT '用户名',
+    `decision_count` BIGINT NOT NULL DEFAULT 0 COMMENT '决策次数（采样前）',
+    `updated_time` DATETIME COMMENT '最近累加时间',
+    PRIMARY KEY (`id`),
+    UNIQUE KEY `uk_rollup` (`stat_hour`, `access_result`, `policy_matched`, `rule_matched`, `username`),
+    KEY `idx_stat_hour` (`stat_hour`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='访问决策小时汇总表';
+
+-- 回填记录：存在记录即表示历史访问日志已回填，重复执行脚本不会重复计数
+CREATE TABLE IF NOT EXISTS `access_decision_rollup_backfill` (
+    `cutover_time` DATETIME NOT NULL COMMENT '切换时间：此前的访问日志已回填入汇总表',
+    `backfilled_time` DATETIME NOT NULL COMMENT '回填时间',
+    PRIMARY KEY (`cutover_time`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='访问决策汇总回填记录';
+
+-- 回填历史访问日志：升级后访问统计只读汇总表，历史明细需先汇总入表。
+-- 执行前将 @rollup_cutover 设为新版本开始处理访问请求的部署时间（应先停止旧版本实例）：
+-- 此前的访问由旧版本全量记录在明细表且未累加，此后的访问由新版本累加且明细表中的允许记录经过采样。
+-- 按该时间精确切分，切换所在小时内切换前的明细同样回填，不与应用已累加的计数重叠。
+-- 未设置时不回填。
+SET @rollup_cutover = NULL;
+-- SET @rollup_cutover = '2026-10-18 09:00:00';
+
+SELECT CASE
+    WHEN @rollup_cutover IS NULL THEN '未设置 @rollup_cutover，跳过回填'
+    WHEN EXISTS (SELECT 1 FROM `access_decision_rollup_backfill`) THEN '历史访问日志已回填，跳过'
+    ELSE CONCAT('回填 ', @rollup_cutover, ' 之前的访问日志')
+END AS `rollup_backfill`;
+
+START TRANSACTION;
+
+INSERT INTO `access_decision_rollup`
+    (`stat_hour`, `access_result`, `policy_matched`, `rule_matched`, `username`, `decision_count`, `updated_time`)
+SELECT
+    STR_TO_DATE(DATE_FORMAT(`access_time`, '%Y-%m-%d %H:00:00'), '%Y-%m-%d %H:%i:%s') AS `stat_hour`,
+    `access_result`,
+    COALESCE(`policy_matched`, ''),
+    COALESCE(`rule_matched`, ''),
+    COALESCE(`username`, ''),
+    COUNT(*),
+    NOW()
+FROM `access_log`
+WHERE `access_time` IS NOT NULL
+  AND `access_time` < @rollup_cutover
+  AND NOT EXISTS (SELECT 1 FROM `access_decision_rollup_backfill`)
+GROUP BY 1, 2, 3, 4, 5
+ON DUPLICATE KEY UPDATE `decision_count` = `decision_count` + VALUES(`decision_count`), `updated_time` = NOW();
+
+INSERT INTO `access_decision_rollup_backfill` (`cutover_time`, `backfilled_time`)
+SELECT @rollup_cutover, NOW() FROM DUAL
+WHERE @rollup_cutover IS NOT NULL
+  AND NOT EXISTS (SELECT 1 FROM `access_decision_rollup_backfill`);
+
+COMMIT;
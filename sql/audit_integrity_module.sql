@@ -25,7 +25,8 @@ CREATE TABLE audit_operation_block (
   id BIGINT PRIMARY KEY AUTO_INCREMENT,
   audit_id BIGINT NOT NULL COMMENT '审计日志ID',
   block_id BIGINT NOT NULL COMMENT '区块ID',
-  merkle_path TEXT COMMENT 'Merkle路径',
+  merkle_path TEXT COMMENT 'Merkle路径（旧版）',
+  merkle_proof VARBINARY(2048) COMMENT 'Merkle包含证明（二进制）',
   index_in_block INT NOT NULL COMMENT '在区块中的索引',
   UNIQUE KEY uk_audit_block (audit_id, block_id),
   INDEX idx_block_id (block_id),
@@ -39,4 +40,23 @@ ADD INDEX idx_block_id (block_id);
 
 -- 添加完整性校验相关的索引
 CREATE INDEX idx_audit_block_status ON audit_block(status, block_time);
-CREATE INDEX idx_audit_operation_block_relation ON audit_operation_block(block_id, audit_id);
\ No newline at end of file
+CREATE INDEX idx_audit_operation_block_relation ON audit_operation_block(block_id, audit_id);
+-- 审计完整性全量校验检查点表
+CREATE TABLE audit_verify_checkpoint (
+  id BIGINT PRIMARY KEY AUTO_INCREMENT,
+  run_id VARCHAR(64) NOT NULL COMMENT '校验批次号',
+  status VARCHAR(20) NOT NULL COMMENT 'RUNNING-运行中, COMPLETED-已完成, FAILED-失败, INTERRUPTED-已中断',
+  last_block_id BIGINT NOT NULL DEFAULT 0 COMMENT '已完成校验的最大区块ID',
+  max_block_id BIGINT NOT NULL DEFAULT 0 COMMENT '本次校验的区块ID上限',
+  total_blocks BIGINT DEFAULT 0 COMMENT '待校验区块总数',
+  verified_blocks BIGINT DEFAULT 0 COMMENT '已校验区块数',
+  verified_audits BIGINT DEFAULT 0 COMMENT '已校验审计日志数',
+  invalid_blocks BIGINT DEFAULT 0 COMMENT '校验失败区块数',
+  invalid_audits BIGINT DEFAULT 0 COMMENT '校验失败涉及的审计日志数',
+  invalid_block_ids TEXT COMMENT '校验失败的区块ID',
+  start_time DATETIME NOT NULL COMMENT '开始时间',
+  update_time DATETIME COMMENT '最近检查点时间',
+  finish_time DATETIME COMMENT '完成时间',
+  UNIQUE KEY uk_run_id (run_id),
+  INDEX idx_status (status)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='审计完整性全量校验检查点表';
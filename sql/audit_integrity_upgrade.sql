@@ -0,0 +1,25 @@
+-- 审计日志完整性模块升级：Merkle包含证明、全量校验检查点
+-- 已部署环境执行；新环境直接使用 audit_integrity_module.sql
+
+ALTER TABLE audit_operation_block
+ADD COLUMN merkle_proof VARBINARY(2048) COMMENT 'Merkle包含证明（二进制）' AFTER merkle_path;
+
+-- 审计完整性全量校验检查点表
+CREATE TABLE IF NOT EXISTS audit_verify_checkpoint (
+  id BIGINT PRIMARY KEY AUTO_INCREMENT,
+  run_id VARCHAR(64) NOT NULL COMMENT '校验批次号',
+  status VARCHAR(20) NOT NULL COMMENT 'RUNNING-运行中, COMPLETED-已完成, FAILED-失败, INTERRUPTED-已中断',
+  last_block_id BIGINT NOT NULL DEFAULT 0 COMMENT '已完成校验的最大区块ID',
+  max_block_id BIGINT NOT NULL DEFAULT 0 COMMENT '本次校验的区块ID上限',
+  total_blocks BIGINT DEFAULT 0 COMMENT '待校验区块总数',
+  verified_blocks BIGINT DEFAULT 0 COMMENT '已校验区块数',
+  verified_audits BIGINT DEFAULT 0 COMMENT '已校验审计日志数',
+  invalid_blocks BIGINT DEFAULT 0 COMMENT '校验失败区块数',
+  invalid_audits BIGINT DEFAULT 0 COMMENT '校验失败涉及的审计日志数',
+  invalid_block_ids TEXT COMMENT '校验失败的区块ID',
+  start_time DATETIME NOT NULL COMMENT '开始时间',
+  update_time DATETIME COMMENT '最近检查点时间',
+  finish_time DATETIME COMMENT '完成时间',
+  UNIQUE KEY uk_run_id (run_id),
+  INDEX idx_status (status)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='审计完整性全量校验检查点表';
@@ -35,12 +35,31 @@ CREATE TABLE IF NOT EXISTS key_rotation_history (
   rotated_by VARCHAR(50) COMMENT '操作人员',
   rotation_status VARCHAR(20) DEFAULT 'SUCCESS' COMMENT '轮换状态',
   failure_reason TEXT COMMENT '失败原因',
+  reencrypt_total BIGINT DEFAULT 0 COMMENT '待重加密行数',
+  reencrypt_count BIGINT DEFAULT 0 COMMENT '已重加密行数',
+  reencrypt_checkpoint TEXT COMMENT '重加密断点（各加密列已完成的主键水位，JSON）',
+  progress_percentage INT DEFAULT 0 COMMENT '重加密进度百分比',
   create_time DATETIME DEFAULT CURRENT_TIMESTAMP,
   INDEX idx_old_key_id (old_key_id),
   INDEX idx_new_key_id (new_key_id),
   INDEX idx_rotation_time (rotation_time)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='密钥轮换历史表';
 
+-- 加密列登记表（密钥轮换时按此表重加密业务数据）
+CREATE TABLE IF NOT EXISTS encrypt_column_registry (
+  id BIGINT PRIMARY KEY AUTO_INCREMENT,
+  table_name VARCHAR(64) NOT NULL COMMENT '业务表名',
+  pk_column VARCHAR(64) NOT NULL DEFAULT 'id' COMMENT '数值型主键列名',
+  column_name VARCHAR(64) NOT NULL COMMENT '加密列名',
+  key_id BIGINT NOT NULL COMMENT '当前保护该列的密钥ID',
+  enabled TINYINT(1) DEFAULT 1 COMMENT '是否启用',
+  description VARCHAR(500) COMMENT '描述',
+  create_time DATETIME DEFAULT CURRENT_TIMESTAMP,
+  update_time DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+  UNIQUE KEY uk_table_column (table_name, column_name),
+  INDEX idx_key_id (key_id)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='加密列登记表';
+
 -- 密钥使用审计表
 CREATE TABLE IF NOT EXISTS key_usage_audit (
   id BIGINT PRIMARY KEY AUTO_INCREMENT,
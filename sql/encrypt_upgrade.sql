@@ -0,0 +1,42 @@
+-- 密钥管理模块升级：轮换期间后台重加密
+-- 已部署环境执行；新环境直接使用 encrypt_module.sql
+
+-- 1. 轮换历史表增加重加密进度与断点
+ALTER TABLE key_rotation_history
+ADD COLUMN IF NOT EXISTS reencrypt_total BIGINT DEFAULT 0 COMMENT '待重加密行数' AFTER failure_reason;
+
+ALTER TABLE key_rotation_history
+ADD COLUMN IF NOT EXISTS reencrypt_count BIGINT DEFAULT 0 COMMENT '已重加密行数' AFTER reencrypt_total;
+
+ALTER TABLE key_rotation_history
+ADD COLUMN IF NOT EXISTS reencrypt_checkpoint TEXT COMMENT '重加密断点（各加密列已完成的主键水位，JSON）' AFTER reencrypt_count;
+
+ALTER TABLE key_rotation_history
+ADD COLUMN IF NOT EXISTS progress_percentage INT DEFAULT 0 COMMENT '重加密进度百分比' AFTER reencrypt_checkpoint;
+
+-- 2. 加密列登记表
+CREATE TABLE IF NOT EXISTS encrypt_column_registry (
+  id BIGINT PRIMARY KEY AUTO_INCREMENT,
+  table_name VARCHAR(64) NOT NULL COMMENT '业务表名',
+  pk_column VARCHAR(64) NOT NULL DEFAULT 'id' COMMENT '数值型主键列名',
+  column_name VARCHAR(64) NOT NULL COMMENT '加密列名',
+  key_id BIGINT NOT NULL COMMENT '当前保护该列的密钥ID',
+  enabled TINYINT(1) DEFAULT 1 COMMENT '是否启用',
+  description VARCHAR(500) COMMENT '描述',
+  create_time DATETIME DEFAULT CURRENT_TIMESTAMP,
+  update_time DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+  UNIQUE KEY uk_table_column (table_name, column_name),
+  INDEX idx_key_id (key_id)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='加密列登记表';
+
+-- 3. 轮换计划表增加阶段调度字段（key_rotation_enhancement.sql 已创建该表）
+ALTER TABLE key_rotation_plan
+ADD COLUMN IF NOT EXISTS phase VARCHAR(20) DEFAULT 'WARMING_UP' COMMENT '已进入的轮换阶段' AFTER complete_time;
+
+ALTER TABLE key_rotation_plan
+ADD COLUMN IF NOT EXISTS next_transition_time DATETIME COMMENT '下一次阶段切换时间' AFTER phase;
+
+ALTER TABLE key_rotation_plan
+ADD COLUMN IF NOT EXISTS progress_percentage INT DEFAULT 0 COMMENT '重加密进度百分比' AFTER next_transition_time;
+
+CREATE INDEX IF NOT EXISTS idx_status_transition ON key_rotation_plan(status, next_transition_time);
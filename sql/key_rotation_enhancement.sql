@@ -30,7 +30,7 @@ ADD COLUMN IF NOT EXISTS secondary_encrypt_key_id BIGINT COMMENT '备用加密
 ALTER TABLE data_source 
 ADD COLUMN IF NOT EXISTS dual_encrypt_mode TINYINT(1) DEFAULT 0 COMMENT '是否双密钥模式' AFTER secondary_encrypt_key_id;
 
--- 4. 添加轮换计划表（可选，如果需要持久化轮换计划）
+-- 4. 添加轮换计划表（持久化轮换计划，阶段切换按next_transition_time调度）
 CREATE TABLE IF NOT EXISTS key_rotation_plan (
     id VARCHAR(50) PRIMARY KEY COMMENT '轮换计划ID',
     old_key_id BIGINT NOT NULL COMMENT '旧密钥ID',
@@ -44,11 +44,15 @@ CREATE TABLE IF NOT EXISTS key_rotation_plan (
     decrypt_only_start_time DATETIME COMMENT '仅解密期开始时间',
     decrypt_only_end_time DATETIME COMMENT '仅解密期结束时间',
     complete_time DATETIME COMMENT '完成时间',
+    phase VARCHAR(20) DEFAULT 'WARMING_UP' COMMENT '已进入的轮换阶段',
+    next_transition_time DATETIME COMMENT '下一次阶段切换时间',
+    progress_percentage INT DEFAULT 0 COMMENT '重加密进度百分比',
     create_time DATETIME DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
     update_time DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
     INDEX idx_old_key_id (old_key_id),
     INDEX idx_new_key_id (new_key_id),
     INDEX idx_status (status),
+    INDEX idx_status_transition (status, next_transition_time),
     INDEX idx_create_time (create_time)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='密钥轮换计划表';
 
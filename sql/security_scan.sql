@@ -40,7 +40,7 @@ CREATE TABLE `security_scan_task` (
 DROP TABLE IF EXISTS `vulnerability_record`;
 CREATE TABLE `vulnerability_record` (
     `id` BIGINT NOT NULL AUTO_INCREMENT COMMENT '漏洞ID',
-    `task_id` BIGINT NOT NULL COMMENT '所属扫描任务ID',
+    `task_id` BIGINT NOT NULL COMMENT '最近发现该漏洞的扫描任务ID',
     `vuln_code` VARCHAR(100) NOT NULL COMMENT '漏洞编码',
     `vuln_name` VARCHAR(200) NOT NULL COMMENT '漏洞名称',
     `vuln_type` VARCHAR(50) NOT NULL COMMENT '漏洞类型：SQL_INJECTION/XSS/CSRF/XXE/SSRF/RCE/LFI/DEPENDENCY等',
@@ -64,10 +64,13 @@ CREATE TABLE `vulnerability_record` (
     `verification_status` VARCHAR(50) COMMENT '验证状态：PENDING/VERIFIED/FAILED',
     `verified_by` VARCHAR(100) COMMENT '验证人',
     `verified_time` DATETIME COMMENT '验证时间',
+    `scope_key` CHAR(64) COMMENT '扫描范围键：SHA-256(扫描类别|扫描目标)',
+    `fingerprint` CHAR(64) COMMENT '漏洞指纹：SHA-256(规则编码|位置|规范化代码片段)，代码扫描的位置不含行号',
     `created_time` DATETIME DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
     `updated_time` DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
     PRIMARY KEY (`id`),
-    UNIQUE KEY `uk_vuln_code` (`vuln_code`),
+    UNIQUE KEY `uk_scope_fingerprint` (`scope_key`, `fingerprint`),
+    KEY `idx_vuln_code` (`vuln_code`),
     KEY `idx_task_id` (`task_id`),
     KEY `idx_vuln_type` (`vuln_type`),
     KEY `idx_severity` (`severity`),
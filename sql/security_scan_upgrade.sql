@@ -0,0 +1,10 @@
+-- 安全扫描模块升级：漏洞记录按指纹跨扫描去重
+-- 已部署环境执行；新环境直接使用 security_scan.sql
+-- 升级前的记录指纹为空，不参与去重与修复判定
+
+ALTER TABLE `vulnerability_record`
+    DROP INDEX `uk_vuln_code`,
+    ADD KEY `idx_vuln_code` (`vuln_code`),
+    ADD COLUMN `scope_key` CHAR(64) COMMENT '扫描范围键：SHA-256(扫描类别|扫描目标)' AFTER `verified_time`,
+    ADD COLUMN `fingerprint` CHAR(64) COMMENT '漏洞指纹：SHA-256(规则编码|位置|规范化代码片段)，代码扫描的位置不含行号' AFTER `scope_key`,
+    ADD UNIQUE KEY `uk_scope_fingerprint` (`scope_key`, `fingerprint`);